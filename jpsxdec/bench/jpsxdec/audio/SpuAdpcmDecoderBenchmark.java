@@ -0,0 +1,99 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jpsxdec.util.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Decoding {@link #SOUND_UNITS} sound units (per channel) of synthetic
+ * SPU ADPCM audio. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpuAdpcmDecoderBenchmark {
+
+    private static final int SOUND_UNITS = 4096;
+
+    private final SpuAdpcmDecoder.Mono _mono = new SpuAdpcmDecoder.Mono(1.0);
+    private final SpuAdpcmDecoder.Stereo _stereo = new SpuAdpcmDecoder.Stereo(1.0);
+    private byte[] _abLeft, _abRight;
+    private ByteArrayOutputStream _out;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(SOUND_UNITS);
+        _abLeft = SyntheticData.makeSpuAdpcm(SOUND_UNITS, rand);
+        _abRight = SyntheticData.makeSpuAdpcm(SOUND_UNITS, rand);
+        _out = new ByteArrayOutputStream(
+                SpuAdpcmDecoder.calculatePcmBytesGenerated(_abLeft.length) * 2);
+    }
+
+    @Benchmark
+    public int mono() throws IOException {
+        _out.reset();
+        _mono.resetContext();
+        return _mono.decode(new ByteArrayInputStream(_abLeft), _abLeft.length, _out);
+    }
+
+    @Benchmark
+    public int stereo() throws IOException {
+        _out.reset();
+        _stereo.resetContext();
+        return _stereo.decode(new ByteArrayInputStream(_abLeft),
+                              new ByteArrayInputStream(_abRight),
+                              _abLeft.length, _out);
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jpsxdec.util.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Decoding {@link #SECTORS} sectors of synthetic XA ADPCM audio. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XaAdpcmDecoderBenchmark {
+
+    private static final int SECTORS = 75;
+
+    @Param({"4", "8"})
+    public int bitsPerSample;
+
+    @Param({"false", "true"})
+    public boolean stereo;
+
+    private XaAdpcmDecoder _decoder;
+    private byte[] _abAdpcm;
+    private ByteArrayOutputStream _out;
+    private short[] _asiPcm;
+
+    @Setup
+    public void setup() {
+        _decoder = new XaAdpcmDecoder(bitsPerSample, stereo, 1.0);
+        Random rand = new Random(bitsPerSample);
+        ByteArrayOutputStream adpcm = new ByteArrayOutputStream();
+        for (int i = 0; i < SECTORS; i++) {
+            byte[] ab = SyntheticData.makeXaAdpcm(bitsPerSample, rand);
+            adpcm.write(ab, 0, ab.length);
+        }
+        _abAdpcm = adpcm.toByteArray();
+        _out = new ByteArrayOutputStream(SECTORS *
+                XaAdpcmDecoder.bytesGeneratedFromXaAdpcmSector(bitsPerSample));
+        _asiPcm = new short[XaAdpcmDecoder.pcmSamplesGeneratedFromXaAdpcmSector(bitsPerSample)];
+    }
+
+    @Benchmark
+    public int decode() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(_abAdpcm);
+        _out.reset();
+        _decoder.resetContext();
+        for (int i = 0; i < SECTORS; i++)
+            _decoder.decode(in, _out, i);
+        return _out.size();
+    }
+
+    @Benchmark
+    public int decodeBlock() {
+        return decodeBlock(false);
+    }
+
+    @Benchmark
+    public int decodeBlockPsxFixedPoint() {
+        return decodeBlock(true);
+    }
+
+    private int decodeBlock(boolean blnPsxFixedPoint) {
+        _decoder.setPsxFixedPoint(blnPsxFixedPoint);
+        _decoder.resetContext();
+        int iTotal = 0;
+        for (int i = 0; i < SECTORS; i++)
+            iTotal += _decoder.decode(_abAdpcm, i * XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR, _asiPcm, 0, i);
+        return iTotal;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.cdreaders;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
+import jpsxdec.util.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Generating the error detection and correction codes for
+ * {@link #SECTORS} synthetic sectors, as done when verifying or
+ * patching a disc image. Offsets are those used by
+ * {@link CdSector2352#rebuildErrorCorrection(byte[], int)}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SectorErrorCorrectionBenchmark {
+
+    private static final int SECTORS = 64;
+
+    private final byte[][] _aabForm1 = new byte[SECTORS][];
+    private final byte[][] _aabForm2 = new byte[SECTORS][];
+    private final SectorErrorCorrection.Verifier _verifier = new SectorErrorCorrection.Verifier();
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(SECTORS);
+        byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+        for (int i = 0; i < SECTORS; i++) {
+            rand.nextBytes(abUserData);
+            _aabForm1[i] = SyntheticData.makeMode2Sector(i, 1, 1, SubMode.MASK_DATA, 0, abUserData);
+            _aabForm2[i] = SyntheticData.makeMode2Sector(i, 1, 1,
+                    SubMode.MASK_FORM | SubMode.MASK_AUDIO, 0x01, abUserData);
+        }
+    }
+
+    @Benchmark
+    public long edcForm1() {
+        long lngSum = 0;
+        for (byte[] abSector : _aabForm1)
+            lngSum += SectorErrorCorrection.generateErrorDetectionAndCorrection(abSector, 0x10, 0x818);
+        return lngSum;
+    }
+
+    @Benchmark
+    public long edcForm2() {
+        long lngSum = 0;
+        for (byte[] abSector : _aabForm2)
+            lngSum += SectorErrorCorrection.generateErrorDetectionAndCorrection(abSector, 0x10, 0x92C);
+        return lngSum;
+    }
+
+    /** ECC P and Q, with the address zeroed as mode 2 requires. */
+    @Benchmark
+    public byte[][] eccForm1() {
+        for (byte[] abSector : _aabForm1) {
+            Arrays.fill(abSector, 12, 12+4, (byte)0);
+            SectorErrorCorrection.generateErrorCorrectionCode_P(abSector, 12, abSector, 0x81C);
+            SectorErrorCorrection.generateErrorCorrectionCode_Q(abSector, 12, abSector, 0x8C8);
+        }
+        return _aabForm1;
+    }
+
+    /** Checking EDC and ECC without changing the sectors. */
+    @Benchmark
+    public int verifyForm1() {
+        int iErrors = 0;
+        for (byte[] abSector : _aabForm1)
+            iErrors |= _verifier.verify(abSector, 0);
+        return iErrors;
+    }
+
+    /** EDC and ECC together, the way sectors are rebuilt when patched. */
+    @Benchmark
+    public byte[][] rebuildForm1() {
+        for (byte[] abSector : _aabForm1)
+            CdSector2352.rebuildErrorCorrection(abSector, 1);
+        return _aabForm1;
+    }
+
+}
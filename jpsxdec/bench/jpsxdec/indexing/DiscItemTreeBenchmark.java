@@ -0,0 +1,225 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.DiscItemSaverBuilder;
+import jpsxdec.discitems.IndexId;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.i18n.UnlocalizedMessage;
+import jpsxdec.util.DebugLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares {@link DiscItemTree} with the O(n^2) parent searches it
+ * replaced, on the same synthetic items. The brute force searches take
+ * minutes with 100k items, so each operation is timed once. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DiscItemTreeBenchmark {
+
+    @Param({"10000", "100000"})
+    public int items;
+
+    private List<DiscItem> _items;
+
+    @Setup
+    public void setup() {
+        _items = makeItems(items, 42);
+        // same ids as DiscItemTreeTest: files are named, some items are
+        // numbered under the last file, the rest are numbered at the root
+        IndexId rootId = new IndexId(0);
+        IndexId childId = null;
+        for (DiscItem item : _items) {
+            if (item.getType() == DiscItem.GeneralType.File) {
+                item.setIndexId(new IndexId(new File("FILE" + item.getStartSector())));
+                childId = item.getIndexId().createChild();
+            } else if (childId != null && item.getStartSector() % 3 != 0) {
+                item.setIndexId(childId);
+                childId = childId.createNext();
+            } else {
+                item.setIndexId(rootId);
+                rootId = rootId.createNext();
+            }
+        }
+    }
+
+    @Benchmark
+    public Object buildTree() {
+        return DiscItemTree.buildTree(_items);
+    }
+
+    /** The original search: ask every item to rate every other item. */
+    @Benchmark
+    public Object buildTreeBruteForce() {
+        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
+        for (DiscItem child : _items) {
+            DiscItem bestParent = null;
+            int iBestParentRating = 0;
+            for (DiscItem parent : _items) {
+                int iRating = parent.getParentRating(child);
+                if (iRating > iBestParentRating) {
+                    bestParent = parent;
+                    iBestParentRating = iRating;
+                }
+            }
+            if (bestParent == null)
+                rootItems.add(child);
+            else
+                bestParent.addChild(child);
+        }
+        return rootItems;
+    }
+
+    @Benchmark
+    public Object recreateTree() {
+        return DiscItemTree.recreateTree(_items, DebugLogger.Log);
+    }
+
+    /** The original search: check every item's id to find the parent. */
+    @Benchmark
+    public Object recreateTreeBruteForce() {
+        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
+        for (DiscItem child : _items) {
+            IndexId id = child.getIndexId();
+            DiscItem parent = null;
+            if (!id.isRoot()) {
+                for (DiscItem possibleParent : _items) {
+                    if (possibleParent != child && id.isParent(possibleParent.getIndexId())) {
+                        parent = possibleParent;
+                        break;
+                    }
+                }
+            }
+            if (parent == null)
+                rootItems.add(child);
+            else
+                parent.addChild(child);
+        }
+        return rootItems;
+    }
+
+    /** Files with video and audio items inside and across them. */
+    private static List<DiscItem> makeItems(int iCount, long lngSeed) {
+        Random rand = new Random(lngSeed);
+        ArrayList<DiscItem> items = new ArrayList<DiscItem>(iCount);
+        int iSector = 0;
+        while (items.size() < iCount) {
+            int iLength = 1 + rand.nextInt(2000);
+            items.add(new FakeItem(DiscItem.GeneralType.File, iSector, iSector + iLength - 1));
+            int iInside = rand.nextInt(4);
+            for (int i = 0; i < iInside && items.size() < iCount; i++) {
+                int iStart = iSector - 50 + rand.nextInt(iLength + 50);
+                int iEnd = iStart + rand.nextInt(iLength);
+                DiscItem.GeneralType type = rand.nextBoolean() ? DiscItem.GeneralType.Video : DiscItem.GeneralType.Audio;
+                items.add(new FakeItem(type, Math.max(0, iStart), iEnd));
+            }
+            iSector += iLength;
+        }
+        return items;
+    }
+
+    /** Rates parents like the real items: files are parents of anything
+     * that isn't a file, videos are parents of audio. */
+    private static class FakeItem extends DiscItem {
+        private final GeneralType _type;
+
+        public FakeItem(GeneralType type, int iStartSector, int iEndSector) {
+            super(null, iStartSector, iEndSector);
+            _type = type;
+        }
+
+        @Override
+        public int getParentRating(@Nonnull DiscItem child) {
+            if (_type == GeneralType.File) {
+                if (((FakeItem)child)._type == GeneralType.File)
+                    return 0;
+                return getOverlap(child)*100 / child.getSectorLength();
+            } else if (_type == GeneralType.Video) {
+                if (((FakeItem)child)._type != GeneralType.Audio)
+                    return 0;
+                int iOverlapPercent = child.getOverlap(this)*100 / child.getSectorLength();
+                if (iOverlapPercent > 0)
+                    iOverlapPercent += 100;
+                return iOverlapPercent;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean addChild(@Nonnull DiscItem child) {
+            return true;
+        }
+
+        public String getSerializationTypeId() {
+            return _type.name();
+        }
+
+        public GeneralType getType() {
+            return _type;
+        }
+
+        public ILocalizedMessage getInterestingDescription() {
+            return new UnlocalizedMessage(_type.name());
+        }
+
+        public DiscItemSaverBuilder makeSaverBuilder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import java.util.concurrent.TimeUnit;
+import jpsxdec.psxvideo.mdec.MdecInputStream.MdecCode;
+import jpsxdec.util.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of uncompressing a whole synthetic 320x240 frame
+ * into MDEC codes for each bitstream type. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitStreamUncompressorBenchmark {
+
+    @Param({"STRv2", "STRv3", "Iki", "Lain"})
+    public String format;
+
+    /** Lower quantization scales leave more codes in the bitstream. */
+    @Param({"2", "8"})
+    public int qscale;
+
+    private BitStreamUncompressor _uncompressor;
+    private byte[] _abFrame;
+    private int _iBlockCount;
+    private final MdecCode _code = new MdecCode();
+
+    @Setup
+    public void setup() throws Exception {
+        if ("STRv2".equals(format))
+            _uncompressor = new BitStreamUncompressor_STRv2();
+        else if ("STRv3".equals(format))
+            _uncompressor = new BitStreamUncompressor_STRv3();
+        else if ("Iki".equals(format))
+            _uncompressor = new BitStreamUncompressor_Iki();
+        else if ("Lain".equals(format))
+            _uncompressor = new BitStreamUncompressor_Lain();
+        else
+            throw new IllegalArgumentException(format);
+
+        int iWidth = SyntheticData.FRAME_WIDTH, iHeight = SyntheticData.FRAME_HEIGHT;
+        _abFrame = SyntheticData.makeFrame(_uncompressor.makeCompressor(),
+                                           iWidth, iHeight, qscale, 0);
+        _iBlockCount = ((iWidth + 15) / 16) * ((iHeight + 15) / 16) * 6;
+        // fail now if the frame isn't what we think it is
+        uncompress();
+    }
+
+    @Benchmark
+    public int uncompress() throws Exception {
+        _uncompressor.reset(_abFrame);
+        int iCodes = 0;
+        for (int iBlock = 0; iBlock < _iBlockCount; ) {
+            if (_uncompressor.readMdecCode(_code))
+                iBlock++;
+            iCodes++;
+        }
+        return iCodes;
+    }
+
+}
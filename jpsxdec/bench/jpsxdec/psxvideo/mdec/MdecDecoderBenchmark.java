@@ -0,0 +1,115 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec;
+
+import java.util.concurrent.TimeUnit;
+import jpsxdec.discitems.savers.MdecDecodeQuality;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2;
+import jpsxdec.psxvideo.mdec.idct.IDCT_int;
+import jpsxdec.psxvideo.mdec.idct.SimpleIDCT;
+import jpsxdec.util.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Decoding a synthetic 320x240 STRv2 frame with every
+ * {@link MdecDecodeQuality}, plus the macroblock-parallel decoder.
+ * The bitstream uncompressing is included since it is part of the
+ * decoding and can't be avoided. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MdecDecoderBenchmark {
+
+    /** One of the {@link MdecDecodeQuality} names, or "LOW_PARALLEL" for
+     * {@link MdecDecoder_int_parallel} with a {@link SimpleIDCT} per CPU. */
+    @Param({"LOW", "HIGH_PLUS", "PSX", "LOW_PARALLEL"})
+    public String quality;
+
+    @Param({"2", "8"})
+    public int qscale;
+
+    private MdecDecoder _decoder;
+    private final BitStreamUncompressor_STRv2 _uncompressor = new BitStreamUncompressor_STRv2();
+    private byte[] _abFrame;
+    private int[] _aiRgb;
+
+    @Setup
+    public void setup() throws Exception {
+        int iWidth = SyntheticData.FRAME_WIDTH, iHeight = SyntheticData.FRAME_HEIGHT;
+        if ("LOW_PARALLEL".equals(quality)) {
+            IDCT_int[] aoIdcts = new IDCT_int[Runtime.getRuntime().availableProcessors()];
+            for (int i = 0; i < aoIdcts.length; i++)
+                aoIdcts[i] = new SimpleIDCT();
+            _decoder = new MdecDecoder_int_parallel(aoIdcts, iWidth, iHeight);
+        } else {
+            _decoder = MdecDecodeQuality.valueOf(quality).makeDecoder(iWidth, iHeight);
+        }
+        _abFrame = SyntheticData.makeFrame(_uncompressor.makeCompressor(),
+                                           iWidth, iHeight, qscale, 0);
+        _aiRgb = new int[iWidth * iHeight];
+        decodeToRgb();
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        _uncompressor.reset(_abFrame);
+        _decoder.decode(_uncompressor);
+        return _decoder;
+    }
+
+    @Benchmark
+    public int[] decodeToRgb() throws Exception {
+        _uncompressor.reset(_abFrame);
+        _decoder.decode(_uncompressor);
+        _decoder.readDecodedRgb(SyntheticData.FRAME_WIDTH, SyntheticData.FRAME_HEIGHT, _aiRgb);
+        return _aiRgb;
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec.idct;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares the original IDCT-then-copy path with the direct-to-destination
+ * sparse IDCT for every IDCT implementation. Each operation is the IDCT of
+ * {@link #BLOCKS} blocks into a plane buffer. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdctBenchmark {
+
+    private static final int BLOCKS = 256;
+    /** Width of the plane the blocks are written into (16 blocks across). */
+    private static final int PLANE_WIDTH = 128;
+
+    /** {@link NaiveIDCT} is left out: it isn't used by any decoder, and it
+     * loops over a 16x16 matrix, so it runs past the end of an 8x8 block. */
+    @Param({"SimpleIDCT", "PsxMdecIDCT_int", "PsxMdecIDCT_double", "StephensIDCT"})
+    public String idct;
+
+    /** Zig-zag position of the last non-zero coefficient.
+     * 0 = DC only, 9 = inside the top-left 4x4, 63 = full block. */
+    @Param({"0", "9", "20", "63"})
+    public int lastZigZagPos;
+
+    private IDCT_int _idctInt;
+    private IDCT_double _idctDouble;
+
+    private final int[][] _aaiBlocks = new int[BLOCKS][];
+    private final double[][] _aadblBlocks = new double[BLOCKS][];
+    private final int[] _aiWork = new int[64];
+    private final double[] _adblWork = new double[64];
+    private final int[] _aiPlane = new int[PLANE_WIDTH * (BLOCKS / 16) * 8];
+    private final double[] _adblPlane = new double[_aiPlane.length];
+
+    @Setup
+    public void setup() {
+        if ("SimpleIDCT".equals(idct))
+            _idctInt = new SimpleIDCT();
+        else if ("PsxMdecIDCT_int".equals(idct))
+            _idctInt = new PsxMdecIDCT_int();
+        else if ("PsxMdecIDCT_double".equals(idct))
+            _idctDouble = new PsxMdecIDCT_double();
+        else if ("StephensIDCT".equals(idct))
+            _idctDouble = new StephensIDCT();
+        else
+            throw new IllegalArgumentException(idct);
+
+        // typical dequantized coefficients get smaller further along the zig-zag
+        Random rand = new Random(lastZigZagPos);
+        for (int iBlk = 0; iBlk < BLOCKS; iBlk++) {
+            int[] aiBlock = new int[64];
+            double[] adblBlock = new double[64];
+            for (int i = 0; i <= lastZigZagPos; i++) {
+                int iMax = 1024 / (i + 1);
+                int iVal = rand.nextInt(iMax * 2 + 1) - iMax;
+                if (i == lastZigZagPos && iVal == 0)
+                    iVal = 1;
+                aiBlock[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i]] = iVal;
+                adblBlock[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i]] = iVal;
+            }
+            _aaiBlocks[iBlk] = aiBlock;
+            _aadblBlocks[iBlk] = adblBlock;
+        }
+    }
+
+    private static int blockOffset(int iBlk) {
+        return (iBlk % 16) * 8 + (iBlk / 16) * 8 * PLANE_WIDTH;
+    }
+
+    /** How the decoders used to do it: full IDCT in place, then copy rows. */
+    @Benchmark
+    public Object fullThenCopy() {
+        for (int iBlk = 0; iBlk < BLOCKS; iBlk++) {
+            int iOutOffset = blockOffset(iBlk);
+            if (_idctInt != null) {
+                System.arraycopy(_aaiBlocks[iBlk], 0, _aiWork, 0, 64);
+                _idctInt.IDCT(_aiWork, 0, _aiWork);
+                for (int i=0, iSrcOfs=0; i < 8; i++, iSrcOfs+=8, iOutOffset += PLANE_WIDTH)
+                    System.arraycopy(_aiWork, iSrcOfs, _aiPlane, iOutOffset, 8);
+            } else {
+                System.arraycopy(_aadblBlocks[iBlk], 0, _adblWork, 0, 64);
+                _idctDouble.IDCT(_adblWork, 0, _adblWork);
+                for (int i=0, iSrcOfs=0; i < 8; i++, iSrcOfs+=8, iOutOffset += PLANE_WIDTH)
+                    System.arraycopy(_adblWork, iSrcOfs, _adblPlane, iOutOffset, 8);
+            }
+        }
+        return _idctInt != null ? _aiPlane : _adblPlane;
+    }
+
+    /** Sparse IDCT straight into the plane. */
+    @Benchmark
+    public Object sparseDirect() {
+        for (int iBlk = 0; iBlk < BLOCKS; iBlk++) {
+            int iOutOffset = blockOffset(iBlk);
+            if (_idctInt != null) {
+                System.arraycopy(_aaiBlocks[iBlk], 0, _aiWork, 0, 64);
+                _idctInt.IDCT(_aiWork, lastZigZagPos, _aiPlane, iOutOffset, PLANE_WIDTH);
+            } else {
+                System.arraycopy(_aadblBlocks[iBlk], 0, _adblWork, 0, 64);
+                _idctDouble.IDCT(_adblWork, lastZigZagPos, _adblPlane, iOutOffset, PLANE_WIDTH);
+            }
+        }
+        return _idctInt != null ? _aiPlane : _adblPlane;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.sectors;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2;
+import jpsxdec.util.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Identifying every sector of a synthetic disc image of STR video
+ * interleaved with XA audio, as done when indexing. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentifiedSectorIteratorBenchmark {
+
+    private static final int SECTORS = 4000;
+
+    /** 1 is the sequential iterator. */
+    @Param({"1", "4"})
+    public int threads;
+
+    private File _discFile;
+    private CdFileSectorReader _cd;
+
+    @Setup
+    public void setup() throws Exception {
+        _discFile = SyntheticData.writeStrDisc(
+                new BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2(), SECTORS);
+        _cd = new CdFileSectorReader(_discFile);
+        // fail now if the synthetic sectors aren't identified
+        int iIdentified = identifyAll();
+        if (iIdentified != SECTORS - SyntheticData.DATA_SECTORS)
+            throw new IllegalStateException("Only " + iIdentified + " sectors identified");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        _cd.close();
+        _discFile.delete();
+    }
+
+    /** @return Number of video and audio sectors identified. */
+    @Benchmark
+    public int identifyAll() throws Exception {
+        IdentifiedSectorIterator it = IdentifiedSectorIterator.create(
+                _cd, 0, _cd.getLength() - 1, threads);
+        int iIdentified = 0;
+        try {
+            while (it.hasNext()) {
+                IdentifiedSector idSect = it.next();
+                if (idSect instanceof SectorStrVideo || idSect instanceof SectorXaAudio)
+                    iIdentified++;
+            }
+        } finally {
+            it.close();
+        }
+        return iIdentified;
+    }
+
+}
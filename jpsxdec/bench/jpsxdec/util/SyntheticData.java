@@ -0,0 +1,260 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import javax.annotation.Nonnull;
+import jpsxdec.audio.SpuAdpcmDecoder;
+import jpsxdec.audio.XaAdpcmDecoder;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector2352;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
+import jpsxdec.psxvideo.bitstreams.BitStreamCompressor;
+import jpsxdec.psxvideo.encode.MacroBlockEncoder;
+import jpsxdec.psxvideo.encode.MdecEncoder;
+import jpsxdec.psxvideo.encode.PsxYCbCrImage;
+import jpsxdec.psxvideo.mdec.MdecException;
+import jpsxdec.sectors.SectorStrVideo;
+
+/** Generates the data the benchmarks work on, so they don't need any
+ * (copyrighted) disc images. Everything is generated from a fixed seed
+ * so runs are comparable. */
+public class SyntheticData {
+
+    /** Size of the STR video sector header. */
+    private static final int STR_HEADER_SIZE = 32;
+    /** Video sectors are mode 2 form 1. */
+    private static final int STR_PAYLOAD_SIZE =
+            CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1 - STR_HEADER_SIZE;
+
+    /** Every 8th sector of the synthetic disc is XA audio
+     * (37800 Hz, 4 bits/sample, stereo), like a typical 2x speed STR. */
+    public static final int XA_STRIDE = 8;
+    /** The synthetic disc starts with this many plain data sectors. */
+    public static final int DATA_SECTORS = 16;
+
+    private static final byte[] SYNC_HEADER = {
+        (byte)0x00, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+        (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0x00
+    };
+
+    public static final int FRAME_WIDTH = 320;
+    public static final int FRAME_HEIGHT = 240;
+
+    /** An image with enough detail to produce realistic bitstreams,
+     * but smooth enough to fit in a frame at low quantization scales. */
+    public static @Nonnull BufferedImage makeImage(int iWidth, int iHeight, int iSeed) {
+        Random rand = new Random(iSeed);
+        BufferedImage bi = new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < iHeight; y++) {
+            for (int x = 0; x < iWidth; x++) {
+                int r = (x + iSeed * 7) & 0xff;
+                int g = (y * 2 + x / 4) & 0xff;
+                int b = ((x / 16 + y / 16) % 2 == 0 ? 0x40 : 0xc0) | (rand.nextInt() & 0x0f);
+                bi.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return bi;
+    }
+
+    /** Encodes a synthetic image using the given compressor. Like frames
+     * demuxed from a disc, the frame is padded with zeroes to fill
+     * the last sector. */
+    public static @Nonnull byte[] makeFrame(@Nonnull BitStreamCompressor compressor,
+                                            int iWidth, int iHeight,
+                                            int iQscale, int iSeed)
+            throws IncompatibleException, MdecException.EndOfStream,
+                   MdecException.ReadCorruption, MdecException.TooMuchEnergy
+    {
+        MdecEncoder encoder = new MdecEncoder(new PsxYCbCrImage(makeImage(iWidth, iHeight, iSeed)),
+                                              iWidth, iHeight);
+        int[] aiQscale = { iQscale, iQscale, iQscale, iQscale, iQscale, iQscale };
+        for (MacroBlockEncoder macblk : encoder)
+            macblk.setToFullEncode(aiQscale);
+        byte[] abFrame = compressor.compress(encoder.getStream(), iWidth, iHeight);
+        int iSectors = (abFrame.length + STR_PAYLOAD_SIZE - 1) / STR_PAYLOAD_SIZE;
+        byte[] abPadded = new byte[iSectors * STR_PAYLOAD_SIZE];
+        System.arraycopy(abFrame, 0, abPadded, 0, abFrame.length);
+        return abPadded;
+    }
+
+    /** A sector's worth ({@value XaAdpcmDecoder#ADPCM_SOUND_GROUPS_PER_SECTOR}
+     * sound groups) of XA ADPCM data with valid, properly repeated
+     * sound parameters. */
+    public static @Nonnull byte[] makeXaAdpcm(int iBitsPerSample, @Nonnull Random rand) {
+        byte[] ab = new byte[XaAdpcmDecoder.ADPCM_SOUND_GROUPS_PER_SECTOR *
+                             XaAdpcmDecoder.SIZEOF_SOUND_GROUP];
+        rand.nextBytes(ab);
+        for (int iOfs = 0; iOfs < ab.length; iOfs += XaAdpcmDecoder.SIZEOF_SOUND_GROUP) {
+            if (iBitsPerSample == 4) {
+                // 0,1,2,3, 0,1,2,3, 4,5,6,7, 4,5,6,7
+                for (int i = 0; i < 4; i++) {
+                    ab[iOfs + i] = ab[iOfs + 4 + i] = soundParameter(rand);
+                    ab[iOfs + 8 + i] = ab[iOfs + 12 + i] = soundParameter(rand);
+                }
+            } else {
+                // 0,1,2,3, 0,1,2,3, 0,1,2,3, 0,1,2,3
+                for (int i = 0; i < 4; i++) {
+                    ab[iOfs + i] = ab[iOfs + 4 + i] =
+                    ab[iOfs + 8 + i] = ab[iOfs + 12 + i] = soundParameter(rand);
+                }
+            }
+        }
+        return ab;
+    }
+
+    /** SPU ADPCM data of {@code iSoundUnits} sound units. */
+    public static @Nonnull byte[] makeSpuAdpcm(int iSoundUnits, @Nonnull Random rand) {
+        byte[] ab = new byte[iSoundUnits * SpuAdpcmDecoder.SIZEOF_SOUND_UNIT];
+        rand.nextBytes(ab);
+        for (int iOfs = 0; iOfs < ab.length; iOfs += SpuAdpcmDecoder.SIZEOF_SOUND_UNIT) {
+            ab[iOfs] = soundParameter(rand);
+            ab[iOfs + 1] = 0; // flags
+        }
+        return ab;
+    }
+
+    /** Filter index in the top nibble, range in the bottom. */
+    private static byte soundParameter(@Nonnull Random rand) {
+        return (byte)((rand.nextInt(4) << 4) | rand.nextInt(13));
+    }
+
+    /** Builds a raw 2352 byte mode 2 sector with valid sync header,
+     * address, sub-header, and error correction.
+     * @param abUserData Copied into the user data area. */
+    public static @Nonnull byte[] makeMode2Sector(int iSector, int iFile, int iChannel,
+                                                  int iSubMode, int iCodingInfo,
+                                                  @Nonnull byte[] abUserData)
+    {
+        byte[] abSector = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+        System.arraycopy(SYNC_HEADER, 0, abSector, 0, SYNC_HEADER.length);
+        // sector addresses start after the 2 second pregap
+        int iAddress = iSector + 150;
+        abSector[12] = toBcd(iAddress / 75 / 60);
+        abSector[13] = toBcd((iAddress / 75) % 60);
+        abSector[14] = toBcd(iAddress % 75);
+        abSector[15] = 2; // mode 2
+        for (int i = 16; i < 24; i += 4) {
+            abSector[i    ] = (byte)iFile;
+            abSector[i + 1] = (byte)iChannel;
+            abSector[i + 2] = (byte)iSubMode;
+            abSector[i + 3] = (byte)iCodingInfo;
+        }
+        int iForm = (iSubMode & SubMode.MASK_FORM) == 0 ? 1 : 2;
+        int iUserDataSize = iForm == 1 ? CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1
+                                       : CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2;
+        System.arraycopy(abUserData, 0, abSector, 24, Math.min(abUserData.length, iUserDataSize));
+        CdSector2352.rebuildErrorCorrection(abSector, iForm);
+        return abSector;
+    }
+
+    private static byte toBcd(int i) {
+        return (byte)(((i / 10) << 4) | (i % 10));
+    }
+
+    /** Writes a disc image of raw 2352 byte sectors: {@link #DATA_SECTORS}
+     * data sectors followed by STR video sectors (version 2 frames)
+     * interleaved with XA audio sectors every {@link #XA_STRIDE} sectors.
+     * The file is deleted when the JVM exits. */
+    public static @Nonnull File writeStrDisc(@Nonnull BitStreamCompressor compressor,
+                                             int iSectorCount)
+            throws IOException, IncompatibleException, MdecException.EndOfStream,
+                   MdecException.ReadCorruption, MdecException.TooMuchEnergy
+    {
+        // a handful of distinct frames is enough
+        byte[][] aabFrames = new byte[4][];
+        for (int i = 0; i < aabFrames.length; i++)
+            aabFrames[i] = makeFrame(compressor, FRAME_WIDTH, FRAME_HEIGHT, 2 + i, i);
+
+        Random rand = new Random(iSectorCount);
+        File file = File.createTempFile("jpsxdec-bench", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+            int iFrame = 0, iChunk = 0;
+            for (int iSector = 0; iSector < iSectorCount; iSector++) {
+                byte[] abSector;
+                if (iSector < DATA_SECTORS) {
+                    rand.nextBytes(abUserData);
+                    abSector = makeMode2Sector(iSector, 0, 0, SubMode.MASK_DATA, 0, abUserData);
+                } else if (iSector % XA_STRIDE == 0) {
+                    byte[] abXa = makeXaAdpcm(4, rand);
+                    abSector = makeMode2Sector(iSector, 1, 1,
+                            SubMode.MASK_REAL_TIME | SubMode.MASK_FORM | SubMode.MASK_AUDIO,
+                            0x01, abXa);
+                } else {
+                    byte[] abFrame = aabFrames[iFrame % aabFrames.length];
+                    int iChunks = (abFrame.length + STR_PAYLOAD_SIZE - 1) / STR_PAYLOAD_SIZE;
+                    Arrays.fill(abUserData, (byte)0);
+                    IO.writeInt32LE(abUserData, 0, SectorStrVideo.VIDEO_SECTOR_MAGIC);
+                    IO.writeInt16LE(abUserData, 4, (short)iChunk);
+                    IO.writeInt16LE(abUserData, 6, (short)iChunks);
+                    IO.writeInt32LE(abUserData, 8, iFrame + 1);
+                    IO.writeInt32LE(abUserData, 12, (abFrame.length + 3) & ~3);
+                    IO.writeInt16LE(abUserData, 16, (short)FRAME_WIDTH);
+                    IO.writeInt16LE(abUserData, 18, (short)FRAME_HEIGHT);
+                    // the rest of the sector header is a copy of the frame header
+                    System.arraycopy(abFrame, 0, abUserData, 20, 8);
+                    int iStart = iChunk * STR_PAYLOAD_SIZE;
+                    System.arraycopy(abFrame, iStart, abUserData, STR_HEADER_SIZE,
+                                     Math.min(STR_PAYLOAD_SIZE, abFrame.length - iStart));
+                    int iSubMode = SubMode.MASK_REAL_TIME | SubMode.MASK_DATA;
+                    if (iChunk == iChunks - 1)
+                        iSubMode |= SubMode.MASK_EOF_MARKER;
+                    abSector = makeMode2Sector(iSector, 1, 1, iSubMode, 0, abUserData);
+                    iChunk++;
+                    if (iChunk == iChunks) {
+                        iChunk = 0;
+                        iFrame++;
+                    }
+                }
+                fos.write(abSector);
+            }
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+}
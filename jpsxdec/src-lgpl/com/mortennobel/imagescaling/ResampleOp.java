@@ -23,7 +23,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Based on work from Java Image Util ( http://schmidt.devlib.org/jiu/ )
  *
- * Note that the filter method is not thread safe
+ * Note that the filter method is not thread safe.
+ * The sub-sampling and work buffers are kept between calls.
  *
  * @author Morten Nobel-Joergensen
  * @author Heinz Doerr
@@ -86,6 +87,12 @@ public class ResampleOp
 
 	private SubSamplingData horizontalSubsamplingData;
 	private SubSamplingData verticalSubsamplingData;
+	// what the sub-sampling was last calculated for
+	private ResampleFilter subsamplingFilter;
+	private int subsamplingSrcWidth, subsamplingSrcHeight;
+
+	// work buffers for each image being filtered, reused between calls
+	private final double[][][] workPixels = new double[2][][];
 
 	private int processedItems;
 	private float totalItems;
@@ -116,71 +123,125 @@ public class ResampleOp
 		this.numberOfThreads = numberOfThreads;
 	}
 
-	public void doFilter(final double[] srcImg, int srcWidth, int srcHeight, final double[] dest) {
-        
+	public void doFilter(double[] srcImg, int srcWidth, int srcHeight, double[] dest) {
+		doFilter(srcImg, dest, null, null, srcWidth, srcHeight);
+	}
+
+	/**
+	 * Filters 2 images of the same size at once (like the 2 chroma planes),
+	 * sharing the work between the threads.
+	 * @param srcImg2 may be null to only filter 1 image
+	 */
+	public void doFilter(final double[] srcImg1, final double[] dest1,
+	                     final double[] srcImg2, final double[] dest2,
+	                     int srcWidth, int srcHeight) {
+
 		assert multipleInvocationLock.incrementAndGet()==1:"Multiple concurrent invocations detected";
 
 		this.dstWidth = srcWidth * SCALE;
 		this.dstHeight = srcHeight * SCALE;
 
-        if (dest.length < dstWidth * dstHeight)
-            throw new IllegalArgumentException("Output buffer not big enough");
+		if (dest1.length < dstWidth * dstHeight || (srcImg2 != null && dest2.length < dstWidth * dstHeight))
+			throw new IllegalArgumentException("Output buffer not big enough");
 
 		this.srcWidth = srcWidth;
-        this.srcHeight = srcHeight;
-
-        final double[][] workPixels = new double[srcHeight][dstWidth];
-
-        this.processedItems = 0;
-		this.totalItems = srcHeight + dstWidth;
-
-		// Pre-calculate  sub-sampling
-		horizontalSubsamplingData = createSubSampling(filter, srcWidth, dstWidth);
-		verticalSubsamplingData = createSubSampling(filter,srcHeight, dstHeight);
+		this.srcHeight = srcHeight;
 
-
-        Thread[] threads = new Thread[numberOfThreads-1];
-        for (int i=1;i<numberOfThreads;i++){
-            final int finalI = i;
-            threads[i-1] = new Thread(new Runnable(){
-                public void run(){
-                    horizontallyFromSrcToWork(srcImg, workPixels,finalI,numberOfThreads);
-                }
-            });
-            threads[i-1].start();
-        }
-        horizontallyFromSrcToWork(srcImg, workPixels,0,numberOfThreads);
-        waitForAllThreads(threads);
-
-
-        // --------------------------------------------------
-		// Apply filter to sample vertically from Work to Dst
-		// --------------------------------------------------
-        for (int i=1;i<numberOfThreads;i++){
-            final int finalI = i;
-            threads[i-1] = new Thread(new Runnable(){
-                public void run(){
-					verticalFromWorkToDst(workPixels, dest, finalI,numberOfThreads);
-                }
-            });
-            threads[i-1].start();
-        }
-        verticalFromWorkToDst(workPixels, dest, 0,numberOfThreads);
-        waitForAllThreads(threads);
+		final int imageCount = srcImg2 == null ? 1 : 2;
+		for (int i = 0; i < imageCount; i++) {
+			if (workPixels[i] == null || workPixels[i].length != srcHeight || workPixels[i][0].length != dstWidth)
+				workPixels[i] = new double[srcHeight][dstWidth];
+		}
+		final double[][] workPixels1 = workPixels[0], workPixels2 = workPixels[1];
+
+		this.processedItems = 0;
+		this.totalItems = (srcHeight + dstWidth) * imageCount;
+
+		// Pre-calculate sub-sampling, only when something changed
+		if (filter != subsamplingFilter || srcWidth != subsamplingSrcWidth)
+			horizontalSubsamplingData = createSubSampling(filter, srcWidth, dstWidth);
+		if (filter != subsamplingFilter || srcHeight != subsamplingSrcHeight)
+			verticalSubsamplingData = createSubSampling(filter, srcHeight, dstHeight);
+		subsamplingFilter = filter;
+		subsamplingSrcWidth = srcWidth;
+		subsamplingSrcHeight = srcHeight;
+
+		final int threads = Math.max(1, numberOfThreads);
+		if (threads == 1) {
+			horizontallyFromSrcToWork(srcImg1, workPixels1, 0, 1);
+			if (srcImg2 != null)
+				horizontallyFromSrcToWork(srcImg2, workPixels2, 0, 1);
+			verticalFromWorkToDst(workPixels1, dest1, 0, 1);
+			if (srcImg2 != null)
+				verticalFromWorkToDst(workPixels2, dest2, 0, 1);
+		} else {
+			List<Thread> workers = new ArrayList<Thread>();
+			for (int i=0;i<threads;i++){
+				final int finalI = i;
+				if (i > 0) {
+					workers.add(startWorker(new Runnable(){
+						public void run(){
+							horizontallyFromSrcToWork(srcImg1, workPixels1, finalI, threads);
+						}
+					}));
+				}
+				if (srcImg2 != null) {
+					workers.add(startWorker(new Runnable(){
+						public void run(){
+							horizontallyFromSrcToWork(srcImg2, workPixels2, finalI, threads);
+						}
+					}));
+				}
+			}
+			horizontallyFromSrcToWork(srcImg1, workPixels1, 0, threads);
+			waitForAllThreads(workers);
+
+
+			// --------------------------------------------------
+			// Apply filter to sample vertically from Work to Dst
+			// --------------------------------------------------
+			for (int i=0;i<threads;i++){
+				final int finalI = i;
+				if (i > 0) {
+					workers.add(startWorker(new Runnable(){
+						public void run(){
+							verticalFromWorkToDst(workPixels1, dest1, finalI, threads);
+						}
+					}));
+				}
+				if (srcImg2 != null) {
+					workers.add(startWorker(new Runnable(){
+						public void run(){
+							verticalFromWorkToDst(workPixels2, dest2, finalI, threads);
+						}
+					}));
+				}
+			}
+			verticalFromWorkToDst(workPixels1, dest1, 0, threads);
+			waitForAllThreads(workers);
+		}
 
 		assert multipleInvocationLock.decrementAndGet()==0:"Multiple concurrent invocations detected";
-    }
+	}
 
-    private void waitForAllThreads(Thread[] threads) {
-        try {
-            for (Thread t:threads){
-                t.join(Long.MAX_VALUE);
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
-    }
+	private static Thread startWorker(Runnable work) {
+		Thread t = new Thread(work);
+		t.start();
+		return t;
+	}
+
+	private static void waitForAllThreads(List<Thread> threads) {
+		try {
+			for (Thread t:threads){
+				t.join(Long.MAX_VALUE);
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		} finally {
+			threads.clear();
+		}
+	}
 
     static SubSamplingData createSubSampling(ResampleFilter filter, int srcSize, int dstSize) {
 		int[] arrN= new int[dstSize];
@@ -39,6 +39,11 @@ public class simple_idct {
 	// input is actually short and output is actually byte
 	// but Java makes that really hard
 	protected void idct1D(int coeff[], int off, int stride, int shift, int outoff, int[] outbuff) {
+		idct1D(coeff, off, stride, shift, outbuff, outoff+off, stride);
+	}
+
+	// same as above, but the output has its own offset and stride
+	protected void idct1D(int coeff[], int off, int stride, int shift, int[] outbuff, int outoff, int outstride) {
 		int i0 = coeff[off+0*stride], i1 = coeff[off+1*stride], i2 = coeff[off+2*stride],
 			i3 = coeff[off+3*stride], i4 = coeff[off+4*stride], i5 = coeff[off+5*stride],
 			i6 = coeff[off+6*stride], i7 = coeff[off+7*stride];
@@ -90,14 +95,14 @@ public class simple_idct {
 			o3 += m53 - m71;
 		}
 		
-		outbuff[outoff+off+0*stride] = (e0+o0) >> shift;
-		outbuff[outoff+off+7*stride] = (e0-o0) >> shift;
-		outbuff[outoff+off+1*stride] = (e1+o1) >> shift;
-		outbuff[outoff+off+6*stride] = (e1-o1) >> shift;
-		outbuff[outoff+off+2*stride] = (e2+o2) >> shift;
-		outbuff[outoff+off+5*stride] = (e2-o2) >> shift;
-		outbuff[outoff+off+3*stride] = (e3+o3) >> shift;
-		outbuff[outoff+off+4*stride] = (e3-o3) >> shift;
+		outbuff[outoff+0*outstride] = (e0+o0) >> shift;
+		outbuff[outoff+7*outstride] = (e0-o0) >> shift;
+		outbuff[outoff+1*outstride] = (e1+o1) >> shift;
+		outbuff[outoff+6*outstride] = (e1-o1) >> shift;
+		outbuff[outoff+2*outstride] = (e2+o2) >> shift;
+		outbuff[outoff+5*outstride] = (e2-o2) >> shift;
+		outbuff[outoff+3*outstride] = (e3+o3) >> shift;
+		outbuff[outoff+4*outstride] = (e3-o3) >> shift;
 	}
 	
 	public void invers_dct(int[] coeff, int outoff, int[] outbuff) {
@@ -114,6 +119,23 @@ public class simple_idct {
 		for (i = 0; i < 8; i++) idct1D(coeff, i, 8, COL_SHIFT, outoff, outbuff);
 	}
 	
+	// rows after maxrow must be all zero, so their row pass can be skipped.
+	// the result is written to outbuff with rows outstride apart
+	public void invers_dct_rows(int[] coeff, int maxrow, int outoff, int outstride, int[] outbuff) {
+		int i;
+		
+		for (i = 0; i <= maxrow; i++) idct1D(coeff, i*8, 1, ROW_SHIFT, coeff, i*8, 1);
+		for (i = 0; i < 8; i++) idct1D(coeff, i, 8, COL_SHIFT, outbuff, outoff+i, outstride);
+	}
+	
+	// only the DC coefficient is non-zero, so every output value is the same
+	public void invers_dct_dc(int dc, int outoff, int outstride, int[] outbuff) {
+		int row = (dc * W4 + (1 << (ROW_SHIFT - 1))) >> ROW_SHIFT;
+		int val = (row * W4 + (1 << (COL_SHIFT - 1))) >> COL_SHIFT;
+		for (int i = 0; i < 8; i++, outoff += outstride)
+			java.util.Arrays.fill(outbuff, outoff, outoff + 8, val);
+	}
+	
 	
 	/*public static void main(String args[]) {
 		int dct[] = new int[64];
@@ -94,6 +94,20 @@ public class AdpcmContext {
         return clampPCM(lngSample);
     }
 
+    /** The PlayStation hardware way: clamps the sample, saves it as one of
+     * the previous 2 samples, then scales the saved sample by the volume.
+     * When the volume scale is 1.0 the result is identical to the hardware.
+     * @param iPCMSample  raw PCM sample from integer decoding.
+     * @return The polished PCM sample for saving. */
+    public short saveClampScalePCMSample(int iPCMSample) {
+        short siSample = clampPCM(iPCMSample);
+        _dblPreviousPCMSample2 = _dblPreviousPCMSample1;
+        _dblPreviousPCMSample1 = siSample;
+        if (_dblVolumeScale == 1.0)
+            return siSample;
+        return clampPCM(jpsxdec.util.Maths.round(siSample * _dblVolumeScale));
+    }
+
     /** Clamps the PCM audio sample within a signed 16-bit value. */
     private short clampPCM(long lngPCMSample) {
         if (lngPCMSample > Short.MAX_VALUE)
@@ -114,9 +128,16 @@ public class AdpcmContext {
         return _dblPreviousPCMSample2;
     }
 
+    /** Restores the previous 2 samples after they've been used outside
+     * of this class. */
+    void setPreviousPCMSamples(double dblPreviousPCMSample1, double dblPreviousPCMSample2) {
+        _dblPreviousPCMSample1 = dblPreviousPCMSample1;
+        _dblPreviousPCMSample2 = dblPreviousPCMSample2;
+    }
+
     /** Resets the context as if it has just been constructed. */
     public void reset() {
         _dblPreviousPCMSample1 = 0;
         _dblPreviousPCMSample2 = 0;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -66,11 +66,34 @@ public class SoundUnitDecoder {
      * the right. */
     private int _iRange = -1;
 
+    /** Decode with the integer math of the PlayStation hardware instead
+     * of floating-point. */
+    private boolean _blnPsxFixedPoint = false;
+
 
     public SoundUnitDecoder(@Nonnull K0K1Filter filterTable) {
         _filterTable = filterTable;
     }
 
+    /** The range parameter the PlayStation hardware actually uses.
+     * Ranges 13 to 15 are reserved and behave the same as 9. */
+    public static int psxRange(int iRange) {
+        return iRange > 12 ? 9 : iRange;
+    }
+
+    /** @see #setPsxFixedPoint(boolean) */
+    public boolean isPsxFixedPoint() {
+        return _blnPsxFixedPoint;
+    }
+
+    /** Decode using the same integer math as the PlayStation hardware
+     * (filtering in 1/64ths, with the previous samples being the rounded and
+     * clamped result), instead of the default floating-point math that keeps
+     * the full precision of the previous samples. */
+    public void setPsxFixedPoint(boolean blnPsxFixedPoint) {
+        _blnPsxFixedPoint = blnPsxFixedPoint;
+    }
+
     public void setParameters(int iParameter) {
         setFilterAndRange(
             (iParameter >>> 4) & 0xf,
@@ -103,34 +126,66 @@ public class SoundUnitDecoder {
         Telemetry telemetry = null;
             if (TELEMETRY_LISTENER != null)
                 telemetry = new Telemetry(loggingContext, _iFilterIndex, _iRange);
-        for (int i = 0; i < SAMPLES_PER_SOUND_UNIT; i++) {
-            short siAdpcmShortTopSample = _asiShiftedAdpcmBuffer[i];
+        if (_blnPsxFixedPoint) {
+            decodeSoundUnitFixed(context, asiPcmOutBuffer, telemetry);
+        } else {
+            for (int i = 0; i < SAMPLES_PER_SOUND_UNIT; i++) {
+                short siAdpcmShortTopSample = _asiShiftedAdpcmBuffer[i];
+
+                // shift sound data according to the range, keeping the sign
+                int iUnRanged = _asiShiftedAdpcmBuffer[i] >> _iRange;
+
+                // adjust according to the filter
+                double dblDecodedPcm =
+                    iUnRanged + _filterTable.getK0(_iFilterIndex) * context.getPreviousPCMSample1()
+                              + _filterTable.getK1(_iFilterIndex) * context.getPreviousPCMSample2();
+
+                if (telemetry != null) {
+                    telemetry.asiSourceAdpcmSamples[i] = siAdpcmShortTopSample;
+                    telemetry.aiUnRangedSamples[i] = iUnRanged;
+                    telemetry.adblPrev1Samples[i] = context.getPreviousPCMSample1();
+                    telemetry.adblPrev2Samples[i] = context.getPreviousPCMSample2();
+                    telemetry.adblDecodedPcmSamples[i] = dblDecodedPcm;
+                }
+            
+                // let the context scale, round, and clamp
+                short siPcmSample = context.saveScaleRoundClampPCMSample(dblDecodedPcm);
+                // finally return the polished sample
+                asiPcmOutBuffer[i] = siPcmSample;
+            }
+        }
+        _iWritePos = 0;
 
-            // shift sound data according to the range, keeping the sign
-            int iUnRanged = _asiShiftedAdpcmBuffer[i] >> _iRange;
+        if (telemetry != null && TELEMETRY_LISTENER != null)
+            TELEMETRY_LISTENER.soundUnitDecoded(telemetry);
+    }
 
-            // adjust according to the filter
-            double dblDecodedPcm =
-                iUnRanged + _filterTable.getK0(_iFilterIndex) * context.getPreviousPCMSample1()
-                          + _filterTable.getK1(_iFilterIndex) * context.getPreviousPCMSample2();
+    /** The PlayStation hardware integer version of decoding.
+     * The previous samples saved in the context will always be whole
+     * numbers within a signed 16-bit range. */
+    private void decodeSoundUnitFixed(@Nonnull AdpcmContext context,
+                                      @Nonnull short[] asiPcmOutBuffer,
+                                      @CheckForNull Telemetry telemetry)
+    {
+        int iRange = psxRange(_iRange);
+        int iK0 = _filterTable.getK0Fixed(_iFilterIndex);
+        int iK1 = _filterTable.getK1Fixed(_iFilterIndex);
+        for (int i = 0; i < SAMPLES_PER_SOUND_UNIT; i++) {
+            int iUnRanged = _asiShiftedAdpcmBuffer[i] >> iRange;
+            int iPrev1 = (int)context.getPreviousPCMSample1();
+            int iPrev2 = (int)context.getPreviousPCMSample2();
+            int iDecodedPcm = iUnRanged + ((iK0 * iPrev1 + iK1 * iPrev2 + 32) >> 6);
 
             if (telemetry != null) {
-                telemetry.asiSourceAdpcmSamples[i] = siAdpcmShortTopSample;
+                telemetry.asiSourceAdpcmSamples[i] = _asiShiftedAdpcmBuffer[i];
                 telemetry.aiUnRangedSamples[i] = iUnRanged;
-                telemetry.adblPrev1Samples[i] = context.getPreviousPCMSample1();
-                telemetry.adblPrev2Samples[i] = context.getPreviousPCMSample2();
-                telemetry.adblDecodedPcmSamples[i] = dblDecodedPcm;
+                telemetry.adblPrev1Samples[i] = iPrev1;
+                telemetry.adblPrev2Samples[i] = iPrev2;
+                telemetry.adblDecodedPcmSamples[i] = iDecodedPcm;
             }
-            
-            // let the context scale, round, and clamp
-            short siPcmSample = context.saveScaleRoundClampPCMSample(dblDecodedPcm);
-            // finally return the polished sample
-            asiPcmOutBuffer[i] = siPcmSample;
-        }
-        _iWritePos = 0;
 
-        if (telemetry != null && TELEMETRY_LISTENER != null)
-            TELEMETRY_LISTENER.soundUnitDecoded(telemetry);
+            asiPcmOutBuffer[i] = context.saveClampScalePCMSample(iDecodedPcm);
+        }
     }
 
     // =========================================================================
@@ -182,6 +182,18 @@ public abstract class SpuAdpcmDecoder {
         _leftOrMonoSoundUnit.setVolume(dblVolume);
     }
 
+    /** @see SoundUnitDecoder#setPsxFixedPoint(boolean) */
+    public boolean isPsxFixedPoint() {
+        return _leftOrMonoSoundUnit.isPsxFixedPoint();
+    }
+
+    /** Decode using the same integer math as the PlayStation hardware
+     * instead of floating-point.
+     * @see SoundUnitDecoder#setPsxFixedPoint(boolean) */
+    public void setPsxFixedPoint(boolean blnPsxFixedPoint) {
+        _leftOrMonoSoundUnit.setPsxFixedPoint(blnPsxFixedPoint);
+    }
+
     /** Returns if the last call to
      * {@link #decode(java.io.InputStream, java.io.InputStream, int, java.io.OutputStream)}
      * encountered corruption in the sound parameters. */
@@ -278,6 +290,12 @@ public abstract class SpuAdpcmDecoder {
             _rightSoundUnit.setVolume(dblVolume);
         }
 
+        @Override
+        public void setPsxFixedPoint(boolean blnPsxFixedPoint) {
+            super.setPsxFixedPoint(blnPsxFixedPoint);
+            _rightSoundUnit.setPsxFixedPoint(blnPsxFixedPoint);
+        }
+
         @Override
         public @Nonnull AudioFormat getOutputFormat(int iSampleRate) {
             return new AudioFormat(iSampleRate, 16, 2, true, false);
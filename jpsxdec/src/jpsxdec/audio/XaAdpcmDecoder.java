@@ -49,6 +49,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.sound.sampled.AudioFormat;
 import jpsxdec.util.IO;
+import jpsxdec.util.Maths;
 import jpsxdec.util.Misc;
 
 /** The ultimate XA ADPCM decoder. Based on the code and documentation by
@@ -122,6 +123,10 @@ public class XaAdpcmDecoder {
         return pcmSamplesGeneratedFromXaAdpcmSector(iBitsPerSample) * 2;
     }
 
+    /** Number of bytes of ADPCM data in a sector that is decoded = 2304. */
+    public static final int SIZEOF_ADPCM_SECTOR =
+            ADPCM_SOUND_GROUPS_PER_SECTOR * SIZEOF_SOUND_GROUP;
+
     // =========================================================================
     // instance
 
@@ -149,6 +154,17 @@ public class XaAdpcmDecoder {
     private final AdpcmSoundUnit _aoSoundUnits[];
     private final byte[] _abParameterBuffer = new byte[16];
 
+    /** Filters for {@link #decode(byte[], int, short[], int, int)},
+     * copied out of {@link K0K1Filter#XA} to avoid calls for every sample. */
+    private final double[] _adblK0 = new double[K0K1Filter.XA.getCount()],
+                           _adblK1 = new double[K0K1Filter.XA.getCount()];
+    private final int[] _aiK0 = new int[K0K1Filter.XA.getCount()],
+                        _aiK1 = new int[K0K1Filter.XA.getCount()];
+    /** Buffer for {@link #decode(byte[], int, byte[], int, int)}. */
+    @CheckForNull
+    private short[] _asiBlockBuffer;
+    private boolean _blnPsxFixedPoint = false;
+
     /** Keeps track of the state of the decoding process so loggers can
      * more clearly report the state. */
     private final LogContext _logContext = new LogContext();
@@ -233,6 +249,13 @@ public class XaAdpcmDecoder {
         } else
             throw new IllegalArgumentException("Invalid bits per sample " + iAdpcmBitsPerSample);
 
+        for (int i = 0; i < _adblK0.length; i++) {
+            _adblK0[i] = K0K1Filter.XA.getK0(i);
+            _adblK1[i] = K0K1Filter.XA.getK1(i);
+            _aiK0[i] = K0K1Filter.XA.getK0Fixed(i);
+            _aiK1[i] = K0K1Filter.XA.getK1Fixed(i);
+        }
+
         _aoSoundUnits = new AdpcmSoundUnit[iSoundUnitsPerSoundGroup];
         for (int iSoundUnitIndex = 0; iSoundUnitIndex < _aoSoundUnits.length; iSoundUnitIndex++) {
             _aoSoundUnits[iSoundUnitIndex] = new AdpcmSoundUnit(iRedundantSoundParamterCount, iSoundUnitIndex);
@@ -268,6 +291,21 @@ public class XaAdpcmDecoder {
     }
 
 
+    /** @see SoundUnitDecoder#setPsxFixedPoint(boolean) */
+    public boolean isPsxFixedPoint() {
+        return _blnPsxFixedPoint;
+    }
+
+    /** Decode using the same integer math as the PlayStation hardware
+     * instead of floating-point. Only affects the decoding from now on.
+     * @see SoundUnitDecoder#setPsxFixedPoint(boolean) */
+    public void setPsxFixedPoint(boolean blnPsxFixedPoint) {
+        _blnPsxFixedPoint = blnPsxFixedPoint;
+        for (AdpcmSoundUnit soundUnit : _aoSoundUnits) {
+            soundUnit.setPsxFixedPoint(blnPsxFixedPoint);
+        }
+    }
+
     /** Returns if the decoder is outputting stereo audio. */
     public boolean isStereo() {
         return _blnStereo;
@@ -325,6 +363,164 @@ public class XaAdpcmDecoder {
         _logContext.iSoundGroup = -1;
     }
 
+    /** Decodes a sector's worth of ADPCM data directly from an array,
+     * writing little-endian 16-bit PCM samples (interleaved if stereo).
+     * Produces the same output as
+     * {@link #decode(java.io.InputStream, java.io.OutputStream, int)}.
+     * @param abAdpcm       Holds the {@link #SIZEOF_ADPCM_SECTOR} bytes to decode.
+     * @param abPcmOut      Will receive
+     *                      {@link #bytesGeneratedFromXaAdpcmSector(int)} bytes.
+     * @param iSourceSector Optional original sector the ADPCM data came from.
+     *                      Only used for logging.
+     * @return the number of bytes written.
+     */
+    public int decode(@Nonnull byte[] abAdpcm, int iAdpcmOffset,
+                      @Nonnull byte[] abPcmOut, int iPcmOutOffset,
+                      int iSourceSector)
+    {
+        if (_asiBlockBuffer == null)
+            _asiBlockBuffer = new short[pcmSamplesGeneratedFromXaAdpcmSector(_iBitsPerSample)];
+        int iSamples = decode(abAdpcm, iAdpcmOffset, _asiBlockBuffer, 0, iSourceSector);
+        for (int i = 0, j = iPcmOutOffset; i < iSamples; i++, j+=2) {
+            short siSample = _asiBlockBuffer[i];
+            abPcmOut[j  ] = (byte)siSample;
+            abPcmOut[j+1] = (byte)(siSample >> 8);
+        }
+        return iSamples * 2;
+    }
+
+    /** Decodes a sector's worth of ADPCM data directly from an array,
+     * writing 16-bit PCM samples (interleaved if stereo).
+     * Produces the same samples as
+     * {@link #decode(java.io.InputStream, java.io.OutputStream, int)},
+     * but each sound unit is de-interleaved and decoded in a single loop
+     * without any intermediate buffers.
+     * {@link SoundUnitDecoder#TELEMETRY_LISTENER} is not notified.
+     * @param abAdpcm       Holds the {@link #SIZEOF_ADPCM_SECTOR} bytes to decode.
+     * @param asiPcmOut     Will receive
+     *                      {@link #pcmSamplesGeneratedFromXaAdpcmSector(int)} samples.
+     * @param iSourceSector Optional original sector the ADPCM data came from.
+     *                      Only used for logging.
+     * @return the number of samples written.
+     */
+    public int decode(@Nonnull byte[] abAdpcm, int iAdpcmOffset,
+                      @Nonnull short[] asiPcmOut, int iPcmOutOffset,
+                      int iSourceSector)
+    {
+        if (abAdpcm.length - iAdpcmOffset < SIZEOF_ADPCM_SECTOR)
+            throw new IllegalArgumentException("Not enough ADPCM data");
+        if (asiPcmOut.length - iPcmOutOffset < pcmSamplesGeneratedFromXaAdpcmSector(_iBitsPerSample))
+            throw new IllegalArgumentException("PCM buffer is too small");
+
+        _logContext.decodeReset(iSourceSector);
+        int iOut = iPcmOutOffset;
+        int iSoundGroupStart = iAdpcmOffset;
+        for (_logContext.iSoundGroup = 0;
+             _logContext.iSoundGroup < ADPCM_SOUND_GROUPS_PER_SECTOR;
+             _logContext.iSoundGroup++, iSoundGroupStart += SIZEOF_SOUND_GROUP)
+        {
+            System.arraycopy(abAdpcm, iSoundGroupStart, _abParameterBuffer, 0, _abParameterBuffer.length);
+            if (_iBitsPerSample == 4)
+                chooseSoundParameters4BitsPerSample();
+            else
+                chooseSoundParameters8BitsPerSample();
+
+            int iData = iSoundGroupStart + _abParameterBuffer.length;
+            if (_blnStereo) {
+                for (int iSoundUnit = 0; iSoundUnit < _aoSoundUnits.length; iSoundUnit+=2) {
+                    decodeSoundUnit(abAdpcm, iData, iSoundUnit,   _leftMonoContext, asiPcmOut, iOut,   2);
+                    decodeSoundUnit(abAdpcm, iData, iSoundUnit+1, _rightContext,    asiPcmOut, iOut+1, 2);
+                    iOut += SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT * 2;
+                    _logContext.lngSampleFramesWritten += SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT;
+                }
+            } else {
+                for (int iSoundUnit = 0; iSoundUnit < _aoSoundUnits.length; iSoundUnit++) {
+                    decodeSoundUnit(abAdpcm, iData, iSoundUnit, _leftMonoContext, asiPcmOut, iOut, 1);
+                    iOut += SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT;
+                    _logContext.lngSampleFramesWritten += SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT;
+                }
+            }
+        }
+        _logContext.iSourceSector = -1;
+        _logContext.iSoundGroup = -1;
+        return iOut - iPcmOutOffset;
+    }
+
+    /** De-interleaves and decodes one sound unit straight from the
+     * sound group data.
+     * @param iData    Start of the 112 bytes of interleaved ADPCM data.
+     * @param iOutStep 2 to interleave stereo samples, otherwise 1. */
+    private void decodeSoundUnit(@Nonnull byte[] abAdpcm, int iData, int iSoundUnit,
+                                 @Nonnull AdpcmContext context,
+                                 @Nonnull short[] asiPcmOut, int iOut, int iOutStep)
+    {
+        // Each row of 4 bytes holds 1 sample for every sound unit.
+        // Shift the unit's nibble or byte to the top of an int
+        // so it can then be shifted back down keeping the sign.
+        int iPos, iShift, iMask;
+        if (_iBitsPerSample == 4) {
+            // low nibble: even sound unit, high nibble: odd sound unit
+            iPos = iData + (iSoundUnit >> 1);
+            iShift = (iSoundUnit & 1) == 0 ? 28 : 24;
+            iMask = 0xF0000000;
+        } else {
+            iPos = iData + iSoundUnit;
+            iShift = 24;
+            iMask = 0xFF000000;
+        }
+
+        int iParameter = _aoSoundUnits[iSoundUnit].getParameter();
+        int iFilterIndex = (iParameter >>> 4) & 0xf;
+        int iRange       =  iParameter        & 0xf;
+        double dblVolume = context.getVolumeScale();
+        int iEnd = iOut + SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT * iOutStep;
+
+        if (_blnPsxFixedPoint) {
+            // same as SoundUnitDecoder.decodeSoundUnitFixed()
+            int iDownShift = 16 + SoundUnitDecoder.psxRange(iRange);
+            int iK0 = _aiK0[iFilterIndex], iK1 = _aiK1[iFilterIndex];
+            int iPrev1 = (int)context.getPreviousPCMSample1();
+            int iPrev2 = (int)context.getPreviousPCMSample2();
+            for (; iOut < iEnd; iOut += iOutStep, iPos += 4) {
+                int iUnRanged = ((abAdpcm[iPos] << iShift) & iMask) >> iDownShift;
+                int iPcm = iUnRanged + ((iK0 * iPrev1 + iK1 * iPrev2 + 32) >> 6);
+                if (iPcm > Short.MAX_VALUE)
+                    iPcm = Short.MAX_VALUE;
+                else if (iPcm < Short.MIN_VALUE)
+                    iPcm = Short.MIN_VALUE;
+                iPrev2 = iPrev1;
+                iPrev1 = iPcm;
+                if (dblVolume != 1.0)
+                    iPcm = clampPcm(Maths.round(iPcm * dblVolume));
+                asiPcmOut[iOut] = (short)iPcm;
+            }
+            context.setPreviousPCMSamples(iPrev1, iPrev2);
+        } else {
+            // same as SoundUnitDecoder.decodeSoundUnit()
+            int iDownShift = 16 + iRange;
+            double dblK0 = _adblK0[iFilterIndex], dblK1 = _adblK1[iFilterIndex];
+            double dblPrev1 = context.getPreviousPCMSample1();
+            double dblPrev2 = context.getPreviousPCMSample2();
+            for (; iOut < iEnd; iOut += iOutStep, iPos += 4) {
+                int iUnRanged = ((abAdpcm[iPos] << iShift) & iMask) >> iDownShift;
+                double dblPcm = iUnRanged + dblK0 * dblPrev1 + dblK1 * dblPrev2;
+                dblPrev2 = dblPrev1;
+                dblPrev1 = dblPcm;
+                asiPcmOut[iOut] = clampPcm(Maths.round(dblPcm * dblVolume));
+            }
+            context.setPreviousPCMSamples(dblPrev1, dblPrev2);
+        }
+    }
+
+    private static short clampPcm(long lngPcm) {
+        if (lngPcm > Short.MAX_VALUE)
+            return Short.MAX_VALUE;
+        else if (lngPcm < Short.MIN_VALUE)
+            return Short.MIN_VALUE;
+        else
+            return (short) lngPcm;
+    }
+
     /** Reads 16 bytes of interleaved sound parameters, followed by
      *  112 bytes of interleaved ADPCM sound units. */
     private void decodeSoundGroup(@Nonnull InputStream inStream,
@@ -333,10 +529,13 @@ public class XaAdpcmDecoder {
     {
         IO.readByteArray(inStream, _abParameterBuffer);
         
-        if (_iBitsPerSample == 4)
+        if (_iBitsPerSample == 4) {
+            chooseSoundParameters4BitsPerSample();
             deinterleave4BitsPerSampleSoundGroup(inStream);
-        else 
+        } else {
+            chooseSoundParameters8BitsPerSample();
             deinterleave8BitsPerSampleSoundGroup(inStream);
+        }
 
         // read decoded samples and write them to the output stream
         if (_blnStereo) {
@@ -378,12 +577,9 @@ public class XaAdpcmDecoder {
         }
     }
 
-    /** Reads the sound parameters and ADPCM data for sound groups with
-     * 4 bits per sample and stores the result in the {@link #_aoSoundUnits}
-     * array. */
-    private void deinterleave4BitsPerSampleSoundGroup(@Nonnull InputStream inStream)
-            throws EOFException, IOException
-    {
+    /** Chooses the sound parameters for sound groups with 4 bits per sample
+     * from {@link #_abParameterBuffer}. */
+    private void chooseSoundParameters4BitsPerSample() {
         // Process the 16 byte sound parameters at the
         // start of each sound group
         // the 8 sound parameters (one for each sound unit)
@@ -401,7 +597,13 @@ public class XaAdpcmDecoder {
             _aoSoundUnits[iSoundUnit+4].finalizeSoundParamter();
         }
         _logContext.iSoundUnit = -1;
-        
+    }
+
+    /** Reads the ADPCM data for sound groups with 4 bits per sample
+     * and stores the result in the {@link #_aoSoundUnits} array. */
+    private void deinterleave4BitsPerSampleSoundGroup(@Nonnull InputStream inStream)
+            throws EOFException, IOException
+    {
         // de-interleave the sound units
         for (int iSampleIdx = 0; iSampleIdx < SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT; iSampleIdx++)
         {
@@ -434,12 +636,9 @@ public class XaAdpcmDecoder {
         }
     }
 
-    /** Reads the sound parameters and ADPCM data for sound groups with
-     * 8 bits per sample and stores the result in the {@link #_aoSoundUnits}
-     * array. */
-    private void deinterleave8BitsPerSampleSoundGroup(@Nonnull InputStream inStream)
-            throws EOFException, IOException
-    {
+    /** Chooses the sound parameters for sound groups with 8 bits per sample
+     * from {@link #_abParameterBuffer}. */
+    private void chooseSoundParameters8BitsPerSample() {
         // Process the 16 byte sound parameters at the
         // start of each sound group
         // the 4 sound parameters (one for each sound unit)
@@ -453,7 +652,13 @@ public class XaAdpcmDecoder {
             soundUnit.finalizeSoundParamter();
         }
         _logContext.iSoundUnit = -1;
-        
+    }
+
+    /** Reads the ADPCM data for sound groups with 8 bits per sample
+     * and stores the result in the {@link #_aoSoundUnits} array. */
+    private void deinterleave8BitsPerSampleSoundGroup(@Nonnull InputStream inStream)
+            throws EOFException, IOException
+    {
         // de-interleave the sound units
         for (int iSampleIdx = 0; iSampleIdx < SoundUnitDecoder.SAMPLES_PER_SOUND_UNIT; iSampleIdx++)
         {
@@ -488,6 +693,8 @@ public class XaAdpcmDecoder {
 
         @Nonnull
         private final RobustSoundParameter __soundParameter;
+        /** The sound parameter chosen by {@link #finalizeSoundParamter()}. */
+        private int __iParameter;
 
         /** @param iSoundParameter Sound unit number. */
         public AdpcmSoundUnit(int iRedundantSoundParamterCount, int iSoundUnitIndex) {
@@ -508,6 +715,12 @@ public class XaAdpcmDecoder {
         public void finalizeSoundParamter() {
             int iBest = __soundParameter.getBestParameter();
             setParameters(iBest);
+            __iParameter = iBest;
+        }
+
+        /** The sound parameter chosen by {@link #finalizeSoundParamter()}. */
+        public int getParameter() {
+            return __iParameter;
         }
 
     }
@@ -43,12 +43,16 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.i18n.I;
+import jpsxdec.util.ILocalizedLogger;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.LocalizedIOException;
 import jpsxdec.util.DeserializationFail;
@@ -66,6 +70,10 @@ import jpsxdec.util.BinaryDataNotRecognized;
  * <li>{@link #SECTOR_SIZE_2352_BIN}
  * <li>{@link #SECTOR_SIZE_2448_BIN_SUBCHANNEL}
  * </ul>
+ * Sectors are normally read in small bulk chunks through a
+ * {@link RandomAccessFile}. Optionally the disc image can be memory-mapped
+ * (see {@link #enableMemoryMapping()}), in which case every sector is copied
+ * directly out of the mapped image without any seeking or read calls.
  */
 public class CdFileSectorReader implements Closeable {
 
@@ -110,6 +118,21 @@ public class CdFileSectorReader implements Closeable {
     private byte[] _abBulkReadCache;
     private long _lngCacheFileOffset;
 
+    /** If not null, sectors written are buffered here until it is committed. */
+    @CheckForNull
+    private SectorWriteSession _writeSession;
+
+    /** If not null, sectors are read from this instead of {@link #_inputFile}. */
+    @CheckForNull
+    private MappedImage _mappedImage;
+    /** Each thread's most recent run of sectors copied out of
+     * {@link #_mappedImage}, so threads reading different parts of the
+     * disc don't replace each other's sectors. */
+    private final ThreadLocal<MappedWindow> _mappedWindow = new ThreadLocal<MappedWindow>();
+    /** Changed whenever the disc image is written to, so stale
+     * {@link MappedWindow}s of every thread are dropped. */
+    private volatile int _iCacheGeneration = 0;
+
     /* ---------------------------------------------------------------------- */
     /* Constructors --------------------------------------------------------- */
     /* ---------------------------------------------------------------------- */
@@ -141,6 +164,7 @@ public class CdFileSectorReader implements Closeable {
         } catch (FileNotFoundException ex) {
             throw new CdFileNotFoundException(I.IO_OPENING_FILE_NOT_FOUND_NAME(sourceFile.toString()), sourceFile, ex);
         }
+        checkInterruptedPatch(blnAllowWrites);
 
         SectorFactory factory;
 
@@ -187,6 +211,7 @@ public class CdFileSectorReader implements Closeable {
             throw new CdFileNotFoundException(
                     I.IO_OPENING_FILE_NOT_FOUND_NAME(sourceFile.toString()), sourceFile, ex);
         }
+        checkInterruptedPatch(blnAllowWrites);
 
         switch (iSectorSize) {
             case SECTOR_SIZE_2048_ISO:
@@ -253,6 +278,7 @@ public class CdFileSectorReader implements Closeable {
         } catch (FileNotFoundException ex) {
             throw new CdFileNotFoundException(I.IO_OPENING_FILE_NOT_FOUND_NAME(_sourceFile.getName()), _sourceFile, ex);
         }
+        checkInterruptedPatch(blnAllowWrites);
 
         _iSectorsToCache = iSectorsToBuffer;
 
@@ -264,6 +290,27 @@ public class CdFileSectorReader implements Closeable {
 
     }
 
+    /** If a previous patch of the disc image was interrupted, restores the
+     * disc image from the journal left behind, or warns that it may be
+     * partially patched if it can't be written to.
+     * Closes the disc image if restoring it fails. */
+    private void checkInterruptedPatch(boolean blnAllowWrites) throws IOException {
+        File journalFile = SectorWriteSession.getJournalFile(_sourceFile);
+        if (!journalFile.exists())
+            return;
+        if (!blnAllowWrites) {
+            I.PATCH_JOURNAL_NEEDS_WRITE_ACCESS(journalFile).logEnglish(LOG, Level.WARNING);
+            return;
+        }
+        try {
+            if (rollbackInterruptedPatch())
+                I.PATCH_JOURNAL_ROLLED_BACK(journalFile).logEnglish(LOG, Level.WARNING);
+        } catch (IOException ex) {
+            IO.closeSilently(_inputFile, LOG);
+            throw ex;
+        }
+    }
+
     private int calculateSectorCount() throws IOException {
         return (int)((_inputFile.length() - _sectorFactory.get1stSectorOffset())
                       / _sectorFactory.getRawSectorSize());
@@ -307,11 +354,61 @@ public class CdFileSectorReader implements Closeable {
     }
 
     public void close() throws IOException {
+        releaseMappedImage();
         _inputFile.close();
     }
 
     //..........................................................................
 
+    /** Switches sector reading to use a memory-mapped view of the disc image.
+     * If the image could not be mapped (e.g. not enough address space)
+     * the normal {@link RandomAccessFile} reading will continue to be used.
+     * @return if sectors will now be read from memory-mapped data.
+     */
+    public boolean enableMemoryMapping() {
+        if (_mappedImage != null)
+            return true;
+        try {
+            _mappedImage = new MappedImage(_inputFile.getChannel(),
+                                           _sectorFactory.get1stSectorOffset(),
+                                           _sectorFactory.getRawSectorSize(),
+                                           _iSectorCount);
+            // make sure the image can actually be mapped
+            if (_iSectorCount > 0)
+                _mappedImage.getChunk(0);
+            _abBulkReadCache = null;
+            LOG.info("Using memory-mapped sector reading");
+            return true;
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Unable to memory-map disc image, falling back to normal reading", ex);
+        }
+        _mappedImage = null;
+        return false;
+    }
+
+    /** Returns to reading sectors through the {@link RandomAccessFile}. */
+    public void disableMemoryMapping() {
+        releaseMappedImage();
+    }
+
+    /** Drops the mappings so they can be unmapped (and the file unlocked
+     * on Windows) as soon as possible. Synchronized like
+     * {@link #clearReadCache()} so neither loses the other's change
+     * to {@link #_iCacheGeneration}. */
+    private synchronized void releaseMappedImage() {
+        MappedImage mappedImage = _mappedImage;
+        _mappedImage = null;
+        _iCacheGeneration++;
+        if (mappedImage != null)
+            mappedImage.release();
+    }
+
+    public boolean isMemoryMapped() {
+        return _mappedImage != null;
+    }
+
+    //..........................................................................
+
     /** Size of the raw sectors of the source disc image. */
     public int getRawSectorSize() {
         return _sectorFactory.getRawSectorSize();
@@ -344,37 +441,141 @@ public class CdFileSectorReader implements Closeable {
 
     //..........................................................................
 
+    /** Reads a sector from the disc image. Safe to call from multiple threads
+     * (e.g. parallel sector identification during indexing). */
     public @Nonnull CdSector getSector(int iSector) throws IOException {
         if (iSector < 0 || iSector >= _iSectorCount)
             throw new IndexOutOfBoundsException("Sector "+iSector+" not in bounds of CD");
 
+        SectorWriteSession writeSession = _writeSession;
+        if (writeSession != null) {
+            CdSector pending = writeSession.getPendingSector(iSector);
+            if (pending != null)
+                return pending;
+        }
+
+        MappedImage mappedImage = _mappedImage;
+        if (mappedImage != null) {
+            // sectors are copied out of the mapping a run at a time, like
+            // the bulk read cache, but without any lock
+            MappedWindow window = _mappedWindow.get();
+            int iGeneration = _iCacheGeneration;
+            if (window == null || !window.contains(iSector, mappedImage, iGeneration)) {
+                int iCount = Math.min(_iSectorsToCache, _iSectorCount - iSector);
+                byte[] abSectors = new byte[_sectorFactory.getRawSectorSize() * iCount];
+                mappedImage.readSectors(iSector, iCount, abSectors);
+                window = new MappedWindow(mappedImage, iGeneration, iSector, iCount, abSectors);
+                _mappedWindow.set(window);
+            }
+            int iOffset = _sectorFactory.getRawSectorSize() * (iSector - window._iStartSector);
+            return _sectorFactory.createSector(iSector, window._abSectors, iOffset, getFilePointer(iSector));
+        }
+
+        byte[] abBulkReadCache;
+        int iOffset;
+        long lngFilePointer;
+        // the cache and file position are shared, but the sector itself
+        // can be created outside of the lock
+        synchronized (this) {
+            if (iSector >= _iCachedSectorStart + _iSectorsToCache || iSector < _iCachedSectorStart || _abBulkReadCache == null) {
+                _abBulkReadCache = null; // in case of failure, make sure we aren't left with some invalid cache
+
+                _iCachedSectorStart = iSector;
+                _lngCacheFileOffset = getFilePointer(iSector);
+                _inputFile.seek(_lngCacheFileOffset);
 
-        if (iSector >= _iCachedSectorStart + _iSectorsToCache || iSector < _iCachedSectorStart || _abBulkReadCache == null) {
-            _abBulkReadCache = null; // in case of failure, make sure we aren't left with some invalid cache
+                byte[] abNewCache = new byte[_sectorFactory.getRawSectorSize() * _iSectorsToCache];
+                int iBytesRead = IO.readByteArrayMax(_inputFile, abNewCache, 0, abNewCache.length);
 
-            _iCachedSectorStart = iSector;
-            _lngCacheFileOffset = getFilePointer(iSector);
-            _inputFile.seek(_lngCacheFileOffset);
-            
-            byte[] abBulkReadCache = new byte[_sectorFactory.getRawSectorSize() * _iSectorsToCache];
-            int iBytesRead = IO.readByteArrayMax(_inputFile, abBulkReadCache, 0, abBulkReadCache.length);
-            
-            if (iBytesRead < _sectorFactory.getRawSectorSize())
-                throw new LocalizedIOException(I.FAILED_TO_READ_1_SECTOR());
-            _abBulkReadCache = abBulkReadCache;
+                if (iBytesRead < _sectorFactory.getRawSectorSize())
+                    throw new LocalizedIOException(I.FAILED_TO_READ_1_SECTOR());
+                _abBulkReadCache = abNewCache;
+            }
+
+            abBulkReadCache = _abBulkReadCache;
+            iOffset = _sectorFactory.getRawSectorSize() * (iSector - _iCachedSectorStart);
+            lngFilePointer = _lngCacheFileOffset + iOffset;
         }
 
-        int iOffset = _sectorFactory.getRawSectorSize() * (iSector - _iCachedSectorStart);
+        return _sectorFactory.createSector(iSector, abBulkReadCache, iOffset, lngFilePointer);
+    }
+
+    /** Reads a run of sectors with a single read into a buffer of their own,
+     * bypassing the sector cache. Safe to call from multiple threads, and
+     * threads reading different runs never wait on or replace each other's
+     * sectors (e.g. parallel sector identification during indexing).
+     * @return the sectors, fewer than requested only if the end of the
+     *         image is reached. */
+    public @Nonnull CdSector[] getSectors(int iStartSector, int iSectorCount) throws IOException {
+        if (iStartSector < 0 || iStartSector >= _iSectorCount)
+            throw new IndexOutOfBoundsException("Sector "+iStartSector+" not in bounds of CD");
+        iSectorCount = Math.min(iSectorCount, _iSectorCount - iStartSector);
+
+        int iSize = _sectorFactory.getRawSectorSize();
+        byte[] abSectors = new byte[iSectorCount * iSize];
+        iSectorCount = readRawSectors(iStartSector, iSectorCount, abSectors);
+
+        SectorWriteSession writeSession = _writeSession;
+        CdSector[] aoSectors = new CdSector[iSectorCount];
+        for (int i = 0; i < iSectorCount; i++) {
+            int iSector = iStartSector + i;
+            CdSector pending = writeSession == null ? null : writeSession.getPendingSector(iSector);
+            if (pending != null)
+                aoSectors[i] = pending;
+            else
+                aoSectors[i] = _sectorFactory.createSector(iSector, abSectors, i * iSize, getFilePointer(iSector));
+        }
+        return aoSectors;
+    }
 
-        return _sectorFactory.createSector(iSector, _abBulkReadCache, iOffset, _lngCacheFileOffset + iOffset);
+    /** Copies the raw bytes of a run of sectors into the buffer, bypassing
+     * the sector cache. Safe to call from multiple threads
+     * (e.g. parallel whole-disc scanning).
+     * @return number of sectors read, less than requested only if the end
+     *         of the image is reached.
+     */
+    public int readRawSectors(int iStartSector, int iSectorCount, @Nonnull byte[] abDest)
+            throws IOException
+    {
+        if (iStartSector < 0 || iStartSector >= _iSectorCount)
+            throw new IndexOutOfBoundsException("Sector "+iStartSector+" not in bounds of CD");
+        iSectorCount = Math.min(iSectorCount, _iSectorCount - iStartSector);
+
+        MappedImage mappedImage = _mappedImage;
+        if (mappedImage != null) {
+            mappedImage.readSectors(iStartSector, iSectorCount, abDest);
+            return iSectorCount;
+        }
+
+        // positional reads don't touch the shared file position
+        int iSize = _sectorFactory.getRawSectorSize();
+        ByteBuffer dest = ByteBuffer.wrap(abDest, 0, iSectorCount * iSize);
+        FileChannel channel = _inputFile.getChannel();
+        long lngPos = getFilePointer(iStartSector);
+        while (dest.hasRemaining()) {
+            int iRead = channel.read(dest, lngPos + dest.position());
+            if (iRead < 0)
+                break;
+        }
+        int iSectorsRead = dest.position() / iSize;
+        if (iSectorsRead < 1)
+            throw new LocalizedIOException(I.FAILED_TO_READ_1_SECTOR());
+        return iSectorsRead;
     }
 
     //..........................................................................
 
-    /** Will fail if CD was not opened with write access. */
+    /** Will fail if CD was not opened with write access.
+     * If a {@link SectorWriteSession} is open, the sector is only written
+     * when the session is committed. */
     public void writeSector(int iSector, @Nonnull byte[] abSrcUserData)
             throws IOException
     {
+        SectorWriteSession writeSession = _writeSession;
+        if (writeSession != null) {
+            writeSession.writeSector(iSector, abSrcUserData);
+            return;
+        }
 
         CdSector cdSector = getSector(iSector);
 
@@ -386,8 +587,57 @@ public class CdFileSectorReader implements Closeable {
         long lngOffset = (long)_sectorFactory.get1stSectorOffset() + 
                          (long)_sectorFactory.getRawSectorSize() * iSector;
 
-        _inputFile.seek(lngOffset);
-        _inputFile.write(abRawData);
+        synchronized (this) {
+            _inputFile.seek(lngOffset);
+            _inputFile.write(abRawData);
+        }
+        clearReadCache();
+    }
+
+    /** Starts buffering and journaling all sector writes until the
+     * session is committed or closed.
+     * If a previous patch of this disc image was interrupted, the disc image
+     * is restored from its journal when it is opened for writing, and
+     * again here in case a journal was left behind since then.
+     * Will fail if CD was not opened with write access.
+     * @param log Notified if a previous patch was rolled back. */
+    public synchronized @Nonnull SectorWriteSession beginWriteSession(@Nonnull ILocalizedLogger log)
+            throws IOException
+    {
+        if (_writeSession != null)
+            throw new IllegalStateException("Write session already open");
+        if (rollbackInterruptedPatch())
+            log.log(Level.WARNING, I.PATCH_JOURNAL_ROLLED_BACK(SectorWriteSession.getJournalFile(_sourceFile)));
+        _writeSession = new SectorWriteSession(this, _inputFile.getChannel());
+        return _writeSession;
+    }
+
+    synchronized void endWriteSession(@Nonnull SectorWriteSession session) {
+        if (_writeSession == session)
+            _writeSession = null;
+    }
+
+    /** Restores the disc image if a previous patch was interrupted
+     * (i.e. a journal file was left behind).
+     * Will fail if CD was not opened with write access.
+     * @return if the disc image was restored. */
+    public synchronized boolean rollbackInterruptedPatch() throws IOException {
+        boolean blnRestored = SectorWriteSession.rollback(SectorWriteSession.getJournalFile(_sourceFile),
+                                                          _inputFile.getChannel());
+        if (blnRestored)
+            clearReadCache();
+        return blnRestored;
+    }
+
+    /** Creates a sector from raw sector bytes of this disc image. */
+    @Nonnull CdSector createSector(int iSector, @Nonnull byte[] abRawSector, int iOffset) {
+        return _sectorFactory.createSector(iSector, abRawSector, iOffset, getFilePointer(iSector));
+    }
+
+    /** Drops any cached sector data after the disc image is changed. */
+    synchronized void clearReadCache() {
+        _abBulkReadCache = null;
+        _iCacheGeneration++;
     }
 
     //..........................................................................
@@ -398,8 +648,117 @@ public class CdFileSectorReader implements Closeable {
     }
 
     public void reopenForWriting() throws IOException {
+        boolean blnWasMapped = _mappedImage != null;
+        releaseMappedImage();
         _inputFile.close(); // expose close exception
         _inputFile = new RandomAccessFile(_sourceFile, "rw");
+        // the old mapping would be tied to the closed file, so map again
+        if (blnWasMapped)
+            enableMemoryMapping();
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /* Memory-mapped reading ------------------------------------------------ */
+    /* ---------------------------------------------------------------------- */
+
+    /** Read-only memory-mapped view of a disc image. A single mapping is
+     * limited to 2GB, so the image is mapped in chunks of whole sectors
+     * (so no sector ever spans 2 chunks). Chunks are only mapped as they
+     * are needed. */
+    private static class MappedImage {
+        /** Target size of each mapped chunk: 64MB. */
+        private static final int CHUNK_TARGET_SIZE = 64 * 1024 * 1024;
+
+        @Nonnull
+        private final FileChannel _channel;
+        private final long _lng1stSectorOffset;
+        private final int _iRawSectorSize;
+        private final int _iSectorsPerChunk;
+        private final int _iSectorCount;
+        @Nonnull
+        private final MappedByteBuffer[] _aoChunks;
+        private boolean _blnReleased = false;
+
+        public MappedImage(@Nonnull FileChannel channel, long lng1stSectorOffset,
+                           int iRawSectorSize, int iSectorCount)
+        {
+            _channel = channel;
+            _lng1stSectorOffset = lng1stSectorOffset;
+            _iRawSectorSize = iRawSectorSize;
+            _iSectorCount = iSectorCount;
+            _iSectorsPerChunk = CHUNK_TARGET_SIZE / iRawSectorSize;
+            _aoChunks = new MappedByteBuffer[(iSectorCount + _iSectorsPerChunk - 1) / _iSectorsPerChunk];
+        }
+
+        private synchronized @Nonnull MappedByteBuffer getChunk(int iChunk) throws IOException {
+            if (_blnReleased)
+                throw new IOException("Memory-mapped disc image was closed");
+            MappedByteBuffer chunk = _aoChunks[iChunk];
+            if (chunk == null) {
+                int iChunkStartSector = iChunk * _iSectorsPerChunk;
+                int iChunkSectors = Math.min(_iSectorsPerChunk, _iSectorCount - iChunkStartSector);
+                chunk = _channel.map(FileChannel.MapMode.READ_ONLY,
+                                     _lng1stSectorOffset + (long)iChunkStartSector * _iRawSectorSize,
+                                     (long)iChunkSectors * _iRawSectorSize);
+                _aoChunks[iChunk] = chunk;
+            }
+            return chunk;
+        }
+
+        /** Drops all the mapped chunks. Java has no way to unmap them, so
+         * this lets them be unmapped when they are garbage collected. */
+        public synchronized void release() {
+            _blnReleased = true;
+            Arrays.fill(_aoChunks, null);
+        }
+
+        /** Copies a run of raw sectors into the buffer, which may span
+         * chunks. Safe to call from multiple threads. */
+        public void readSectors(int iStartSector, int iCount, @Nonnull byte[] abDest)
+                throws IOException
+        {
+            int iDestOffset = 0;
+            while (iCount > 0) {
+                int iChunk = iStartSector / _iSectorsPerChunk;
+                int iChunkSector = iStartSector - iChunk * _iSectorsPerChunk;
+                int iInChunk = Math.min(iCount, _iSectorsPerChunk - iChunkSector);
+                // duplicate so the position is not shared with other readers
+                ByteBuffer view = getChunk(iChunk).duplicate();
+                view.position(iChunkSector * _iRawSectorSize);
+                view.get(abDest, iDestOffset, iInChunk * _iRawSectorSize);
+                iDestOffset += iInChunk * _iRawSectorSize;
+                iStartSector += iInChunk;
+                iCount -= iInChunk;
+            }
+        }
+    }
+
+    /** A run of sectors copied out of a {@link MappedImage} by one thread.
+     * The buffer is never changed after it is created, so sectors made from
+     * it stay valid after the window is replaced. */
+    private static class MappedWindow {
+        @Nonnull
+        private final MappedImage _mappedImage;
+        private final int _iGeneration;
+        private final int _iStartSector;
+        private final int _iSectorCount;
+        @Nonnull
+        private final byte[] _abSectors;
+
+        public MappedWindow(@Nonnull MappedImage mappedImage, int iGeneration,
+                            int iStartSector, int iSectorCount, @Nonnull byte[] abSectors)
+        {
+            _mappedImage = mappedImage;
+            _iGeneration = iGeneration;
+            _iStartSector = iStartSector;
+            _iSectorCount = iSectorCount;
+            _abSectors = abSectors;
+        }
+
+        public boolean contains(int iSector, @Nonnull MappedImage mappedImage, int iGeneration) {
+            return _mappedImage == mappedImage && _iGeneration == iGeneration &&
+                   iSector >= _iStartSector && iSector < _iStartSector + _iSectorCount;
+        }
     }
 
     /* ---------------------------------------------------------------------- */
@@ -103,6 +103,13 @@ public abstract class  CdSector {
      * sector header and error correction data and returns the result. */
     abstract public @Nonnull byte[] rebuildRawSector(@Nonnull byte[] abNewUserData);
 
+    /** Same as {@link #rebuildRawSector(byte[])}, but writes the result
+     * into {@code abDest} instead of a new array.
+     * @return Number of bytes written (the size of
+     *         {@link #getRawSectorDataCopy()}). */
+    abstract public int rebuildRawSector(@Nonnull byte[] abNewUserData,
+                                         @Nonnull byte[] abDest, int iDestOffset);
+
     /**
      * @throws UnsupportedOperationException when the sector doesn't have a header.
      */
@@ -123,6 +123,12 @@ public class CdSector2048 extends CdSector {
     public @Nonnull byte[] rebuildRawSector(@Nonnull byte[] abUserData) {
         return abUserData.clone();
     }
+
+    @Override
+    public int rebuildRawSector(@Nonnull byte[] abUserData, @Nonnull byte[] abDest, int iDestOffset) {
+        System.arraycopy(abUserData, 0, abDest, iDestOffset, abUserData.length);
+        return abUserData.length;
+    }
     
     @Override
     public boolean hasHeaderErrors() {
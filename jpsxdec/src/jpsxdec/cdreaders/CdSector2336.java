@@ -184,11 +184,18 @@ public class CdSector2336 extends CdSector {
 
     @Override
     public @Nonnull byte[] rebuildRawSector(@Nonnull byte[] abNewUserData) {
-        byte[] abRawData = getRawSectorDataCopy();
-        System.arraycopy(abNewUserData, 0, abRawData, _subHeader.getSize(), _iUserDataSize);
+        byte[] abRawData = new byte[CdFileSectorReader.SECTOR_SIZE_2336_BIN_NOSYNC];
+        rebuildRawSector(abNewUserData, abRawData, 0);
+        return abRawData;
+    }
+
+    @Override
+    public int rebuildRawSector(@Nonnull byte[] abNewUserData, @Nonnull byte[] abDest, int iDestOffset) {
+        System.arraycopy(_abSectorBytes, _iByteStartOffset, abDest, iDestOffset, CdFileSectorReader.SECTOR_SIZE_2336_BIN_NOSYNC);
+        System.arraycopy(abNewUserData, 0, abDest, iDestOffset + _subHeader.getSize(), _iUserDataSize);
         Logger.getLogger(CdSector2336.class.getName()).info("No need to rebuild 2336 EDC");
 
-        return abRawData;
+        return CdFileSectorReader.SECTOR_SIZE_2336_BIN_NOSYNC;
     }
     
     
@@ -247,6 +247,13 @@ public class CdSector2352 extends CdSector {
 
     @Override
     public @Nonnull byte[] rebuildRawSector(@Nonnull byte[] abNewUserData) {
+        byte[] abRawData = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+        rebuildRawSector(abNewUserData, abRawData, 0);
+        return abRawData;
+    }
+
+    @Override
+    public int rebuildRawSector(@Nonnull byte[] abNewUserData, @Nonnull byte[] abDest, int iDestOffset) {
         CdxaHeader.Type eType = _header.getType();
         
         if (eType == CdxaHeader.Type.MODE1)
@@ -255,15 +262,17 @@ public class CdSector2352 extends CdSector {
         if (abNewUserData.length != _iUserDataSize)
             throw new IllegalArgumentException();
 
-        if (eType == CdxaHeader.Type.CD_AUDIO)
-            return abNewUserData.clone();
+        if (eType == CdxaHeader.Type.CD_AUDIO) {
+            System.arraycopy(abNewUserData, 0, abDest, iDestOffset, _iUserDataSize);
+            return _iUserDataSize;
+        }
 
         // MODE2 form 1 & 2
-        byte[] abRawData = getRawSectorDataCopy();
-        System.arraycopy(abNewUserData, 0, abRawData, _iHeaderSize, _iUserDataSize);
-        CdSector2352.rebuildErrorCorrection(abRawData, getSubMode().getForm());
+        System.arraycopy(_abSectorBytes, _iByteStartOffset, abDest, iDestOffset, _iHeaderSize);
+        System.arraycopy(abNewUserData, 0, abDest, iDestOffset + _iHeaderSize, _iUserDataSize);
+        CdSector2352.rebuildErrorCorrection(abDest, iDestOffset, getSubMode().getForm());
         
-        return abRawData;
+        return CdFileSectorReader.SECTOR_SIZE_2352_BIN;
     }
 
     /**
@@ -291,35 +300,40 @@ public class CdSector2352 extends CdSector {
      * </pre>
      */
     public static void rebuildErrorCorrection(@Nonnull byte[] abRawData, int iForm) {
+        rebuildErrorCorrection(abRawData, 0, iForm);
+    }
+
+    /** @param iOffset Start of the 2352 byte sector in {@code abRawData}. */
+    public static void rebuildErrorCorrection(@Nonnull byte[] abRawData, int iOffset, int iForm) {
         if (iForm == 1) {
             // Sets EDC
-            long lngEdc = SectorErrorCorrection.generateErrorDetectionAndCorrection(abRawData, 0x10, 0x818);
-            abRawData[0x818  ] = (byte)(lngEdc & 0xff);
-            abRawData[0x818+1] = (byte)((lngEdc >>  8) & 0xff);
-            abRawData[0x818+2] = (byte)((lngEdc >> 16) & 0xff);
-            abRawData[0x818+3] = (byte)((lngEdc >> 24) & 0xff);
+            long lngEdc = SectorErrorCorrection.generateErrorDetectionAndCorrection(abRawData, iOffset + 0x10, iOffset + 0x818);
+            abRawData[iOffset + 0x818  ] = (byte)(lngEdc & 0xff);
+            abRawData[iOffset + 0x818+1] = (byte)((lngEdc >>  8) & 0xff);
+            abRawData[iOffset + 0x818+2] = (byte)((lngEdc >> 16) & 0xff);
+            abRawData[iOffset + 0x818+3] = (byte)((lngEdc >> 24) & 0xff);
 
             // save the binary coded decimal sector number
-            byte[] bcd = Misc.copyOfRange(abRawData, 12, 12+4);
+            byte[] bcd = Misc.copyOfRange(abRawData, iOffset + 12, iOffset + 12+4);
             // fill the binary coded decimal sector number with zeros
-            Arrays.fill(abRawData, 12, 12+4, (byte)0);
+            Arrays.fill(abRawData, iOffset + 12, iOffset + 12+4, (byte)0);
             // fill the ECC P and ECC Q with zeros
-            Arrays.fill(abRawData, 0x81C, 0x8C8, (byte)0);
-            Arrays.fill(abRawData, 0x8C8, 0x930, (byte)0);
+            Arrays.fill(abRawData, iOffset + 0x81C, iOffset + 0x8C8, (byte)0);
+            Arrays.fill(abRawData, iOffset + 0x8C8, iOffset + 0x930, (byte)0);
 
             // rebuild ECC P+Q
-            SectorErrorCorrection.generateErrorCorrectionCode_P(abRawData, 12/*to 12+2064*/, abRawData, 0x81C/*to 0x8C8*/);
-            SectorErrorCorrection.generateErrorCorrectionCode_Q(abRawData, 12/*to 12+4+0x800+4+8+L2_P*/, abRawData, 0x8C8/*to 0x930*/);
+            SectorErrorCorrection.generateErrorCorrectionCode_P(abRawData, iOffset + 12/*to 12+2064*/, abRawData, iOffset + 0x81C/*to 0x8C8*/);
+            SectorErrorCorrection.generateErrorCorrectionCode_Q(abRawData, iOffset + 12/*to 12+4+0x800+4+8+L2_P*/, abRawData, iOffset + 0x8C8/*to 0x930*/);
 
             // restore the binary coded decimal sector number
-            System.arraycopy(bcd, 0, abRawData, 12, bcd.length);
+            System.arraycopy(bcd, 0, abRawData, iOffset + 12, bcd.length);
         } else { // form 2
             // Sets EDC
-            long lngEdc = SectorErrorCorrection.generateErrorDetectionAndCorrection(abRawData, 0x10, 0x92C);
-            abRawData[0x92C  ] = (byte)(lngEdc & 0xff);
-            abRawData[0x92C+1] = (byte)((lngEdc >>  8) & 0xff);
-            abRawData[0x92C+2] = (byte)((lngEdc >> 16) & 0xff);
-            abRawData[0x92C+3] = (byte)((lngEdc >> 24) & 0xff);
+            long lngEdc = SectorErrorCorrection.generateErrorDetectionAndCorrection(abRawData, iOffset + 0x10, iOffset + 0x92C);
+            abRawData[iOffset + 0x92C  ] = (byte)(lngEdc & 0xff);
+            abRawData[iOffset + 0x92C+1] = (byte)((lngEdc >>  8) & 0xff);
+            abRawData[iOffset + 0x92C+2] = (byte)((lngEdc >> 16) & 0xff);
+            abRawData[iOffset + 0x92C+3] = (byte)((lngEdc >> 24) & 0xff);
         }
     }
     
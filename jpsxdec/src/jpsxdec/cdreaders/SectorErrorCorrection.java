@@ -15,6 +15,7 @@
 */
 package jpsxdec.cdreaders;
 
+import java.util.Arrays;
 import javax.annotation.Nonnull;
 
 /**
@@ -109,21 +110,83 @@ public class SectorErrorCorrection {
     private static final int RS_L12_BITS = 8;
     private static final int L2_P = 43 * 2 * 2;
     private static final int L2_Q = 26 * 2 * 2;
-    
+    /** Bytes covered by the ECC Q: header, sub header, user data, EDC, ECC P. */
+    private static final int ECC_Q_DATA_SIZE = 4 + 0x800 + 4 + 8 + L2_P;
+
+    /** Slice-by-8 tables for the EDC. {@code EDC_SLICE[k][b]} is the
+     * CRC of byte {@code b} followed by {@code k} zero bytes. */
+    private static final int[][] EDC_SLICE = new int[8][256];
+
+    /** {@code ECC_P_MUL[t][i][b]} is {@code b} multiplied by the P parity
+     * coefficient {@code DP[t][i]} in GF(2^8). */
+    private static final byte[][][] ECC_P_MUL = new byte[2][24][];
+    /** {@code ECC_Q_MUL[t][i][b]} is {@code b} multiplied by the Q parity
+     * coefficient {@code DQ[t][i]} in GF(2^8). */
+    private static final byte[][][] ECC_Q_MUL = new byte[2][43][];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            EDC_SLICE[0][b] = (int)EDC_crctable[b];
+        }
+        for (int k = 1; k < EDC_SLICE.length; k++) {
+            for (int b = 0; b < 256; b++) {
+                int iPrev = EDC_SLICE[k-1][b];
+                EDC_SLICE[k][b] = (iPrev >>> 8) ^ EDC_SLICE[0][iPrev & 0xff];
+            }
+        }
+
+        for (int t = 0; t < 2; t++) {
+            for (int i = 0; i < 24; i++) {
+                ECC_P_MUL[t][i] = makeMultiplyTable(DP[t][i]);
+            }
+            for (int i = 0; i < 43; i++) {
+                ECC_Q_MUL[t][i] = makeMultiplyTable(DQ[t][i]);
+            }
+        }
+    }
+
+    /** Multiplies every possible byte by the coefficient the same
+     * way the log/antilog tables do. */
+    private static @Nonnull byte[] makeMultiplyTable(int iCoefficientLog) {
+        byte[] abTable = new byte[256];
+        // 0 * anything is 0
+        for (int b = 1; b < 256; b++) {
+            int sum = rs_l12_log[b] + iCoefficientLog;
+            if (sum >= ((1 << RS_L12_BITS) - 1)) {
+                sum -= (1 << RS_L12_BITS) - 1;
+            }
+            abTable[b] = (byte)rs_l12_alog[sum];
+        }
+        return abTable;
+    }
 
     /** Generate sector EDC. It is a 32-but value, unsigned in a long. */
     public static long generateErrorDetectionAndCorrection(@Nonnull byte[] data, 
                                                            int iStart, int iEnd)
     {
-        long edc_i = 0;
-        for (int i = iStart; i < iEnd; i++) {
-            edc_i = EDC_crctable[(int)((edc_i ^ data[i]) & 0xFF)] ^ (edc_i >> 8);
+        final int[] aiT0 = EDC_SLICE[0], aiT1 = EDC_SLICE[1], aiT2 = EDC_SLICE[2], aiT3 = EDC_SLICE[3],
+                    aiT4 = EDC_SLICE[4], aiT5 = EDC_SLICE[5], aiT6 = EDC_SLICE[6], aiT7 = EDC_SLICE[7];
+        int iEdc = 0;
+        int i = iStart;
+        // 8 bytes at a time
+        for (; i + 8 <= iEnd; i += 8) {
+            int iLow = iEdc ^ ((data[i  ] & 0xff)       | ((data[i+1] & 0xff) <<  8) |
+                               ((data[i+2] & 0xff) << 16) | ((data[i+3] & 0xff) << 24));
+            iEdc = aiT7[ iLow         & 0xff] ^ aiT6[(iLow >>>  8) & 0xff] ^
+                   aiT5[(iLow >>> 16) & 0xff] ^ aiT4[ iLow >>> 24        ] ^
+                   aiT3[data[i+4] & 0xff] ^ aiT2[data[i+5] & 0xff] ^
+                   aiT1[data[i+6] & 0xff] ^ aiT0[data[i+7] & 0xff];
+        }
+        // then the rest
+        for (; i < iEnd; i++) {
+            iEdc = aiT0[(iEdc ^ data[i]) & 0xff] ^ (iEdc >>> 8);
         }
 
-        return edc_i;
+        return iEdc & 0xffffffffL;
     }
     
-    /** Generate sector ECC P.
+    /** Generate sector ECC P. The result is xor'ed into {@code output},
+     * so that should start as zeros.
      * @param data_p Start pointer to {@code data}.
      * @param output_p Start pointer to {@code output}. */
     public static void generateErrorCorrectionCode_P(@Nonnull byte[] data, int data_p, 
@@ -132,57 +195,131 @@ public class SectorErrorCorrection {
         assert data.length - data_p >= 43 * 24 * 2;
         assert output.length - output_p >= L2_P;
 
+        final byte[][] aabMul0 = ECC_P_MUL[0], aabMul1 = ECC_P_MUL[1];
         for (int j = 0; j < 43; j++, output_p += 2, data_p += 2) {
-            for (int i = 0; i < 24; i++) {
-                for (int n = 0; n < 2; n++) {
-                    int cdata = data[data_p+ i * 2 * 43 + n] & 0xff;
-                    if (cdata == 0) {
-                        continue;
-                    }
-
-                    int base = rs_l12_log[cdata];
-
-                    for (int t = 0; t < 2; t++) {
-                        int sum = base + DP[t][i];
-                        if (sum >= ((1 << RS_L12_BITS) - 1)) {
-                            sum -= (1 << RS_L12_BITS) - 1;
-                        }
-                        output[output_p+ 43 * 2 * t + n] ^= rs_l12_alog[sum];
-                    }
-                }
+            int iP0n0 = 0, iP0n1 = 0, iP1n0 = 0, iP1n1 = 0;
+            for (int i = 0, iData = data_p; i < 24; i++, iData += 2 * 43) {
+                int iData0 = data[iData  ] & 0xff;
+                int iData1 = data[iData+1] & 0xff;
+                byte[] abMul0 = aabMul0[i], abMul1 = aabMul1[i];
+                iP0n0 ^= abMul0[iData0];
+                iP0n1 ^= abMul0[iData1];
+                iP1n0 ^= abMul1[iData0];
+                iP1n1 ^= abMul1[iData1];
             }
+            output[output_p            ] ^= iP0n0;
+            output[output_p         + 1] ^= iP0n1;
+            output[output_p + 43 * 2    ] ^= iP1n0;
+            output[output_p + 43 * 2 + 1] ^= iP1n1;
         }
     }
 
-    /** Generate sector ECC Q.
+    /** Generate sector ECC Q. The result is xor'ed into {@code output},
+     * so that should start as zeros.
      * @param data_p Start pointer to {@code data}.
      * @param output_p Start pointer to {@code output}. */
     public static void generateErrorCorrectionCode_Q(@Nonnull byte[] data, int data_p, 
                                                      @Nonnull byte[] output, int output_p)
     {
-        assert data.length - data_p >= 4 + 0x800 + 4 + 8 + L2_P;
+        assert data.length - data_p >= ECC_Q_DATA_SIZE;
         assert output.length - output_p >= L2_Q;
 
+        final byte[][] aabMul0 = ECC_Q_MUL[0], aabMul1 = ECC_Q_MUL[1];
         for (int j = 0; j < 26; j++, output_p += 2) {
-            for (int i = 0; i < 43; i++) {
-                for (int n = 0; n < 2; n++) {
-                    int cdata = data[data_p+ (j * 43 * 2 + i * 2 * 44 + n) % (4 + 0x800 + 4 + 8 + L2_P)] & 0xff;
-                    if (cdata == 0) {
-                        continue;
-                    }
-
-                    int base = rs_l12_log[cdata];
-
-                    for (int t = 0; t < 2; t++) {
-                        int sum = base + DQ[t][i];
-                        if (sum >= ((1 << RS_L12_BITS) - 1)) {
-                            sum -= (1 << RS_L12_BITS) - 1;
-                        }
-                        output[output_p+ 26 * 2 * t + n] ^= rs_l12_alog[sum];
-
-                    }
+            int iQ0n0 = 0, iQ0n1 = 0, iQ1n0 = 0, iQ1n1 = 0;
+            // the diagonals wrap around the end of the data
+            for (int i = 0, iOfs = j * 43 * 2; i < 43; i++) {
+                int iData0 = data[data_p + iOfs    ] & 0xff;
+                int iData1 = data[data_p + iOfs + 1] & 0xff;
+                byte[] abMul0 = aabMul0[i], abMul1 = aabMul1[i];
+                iQ0n0 ^= abMul0[iData0];
+                iQ0n1 ^= abMul0[iData1];
+                iQ1n0 ^= abMul1[iData0];
+                iQ1n1 ^= abMul1[iData1];
+                iOfs += 2 * 44;
+                if (iOfs >= ECC_Q_DATA_SIZE)
+                    iOfs -= ECC_Q_DATA_SIZE;
+            }
+            output[output_p            ] ^= iQ0n0;
+            output[output_p         + 1] ^= iQ0n1;
+            output[output_p + 26 * 2    ] ^= iQ1n0;
+            output[output_p + 26 * 2 + 1] ^= iQ1n1;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+
+    /** Checks the EDC and ECC of raw 2352 byte sectors without changing them.
+     * Holds the buffers used for checking, so each thread needs its own. */
+    public static class Verifier {
+
+        /** The stored EDC doesn't match the data. */
+        public static final int EDC_ERROR = 1;
+        /** The stored ECC P parity doesn't match the data. */
+        public static final int ECC_P_ERROR = 2;
+        /** The stored ECC Q parity doesn't match the data and ECC P. */
+        public static final int ECC_Q_ERROR = 4;
+
+        /** Copy of the part of a mode 2 form 1 sector covered by the ECC,
+         * with the header zeroed. */
+        private final byte[] _abEccData = new byte[ECC_Q_DATA_SIZE];
+        private final byte[] _abParity = new byte[L2_P + L2_Q];
+
+        /** Checks a mode 1 or mode 2 sector, as identified by its header.
+         * Form 2 sectors are allowed to leave the EDC as 0.
+         * Should not be used on CD audio sectors, which have none of this.
+         * @param iOffset Start of the 2352 byte sector in {@code abSector}.
+         * @return 0 if everything matches, otherwise a combination of
+         *         {@link #EDC_ERROR}, {@link #ECC_P_ERROR} and {@link #ECC_Q_ERROR}. */
+        public int verify(@Nonnull byte[] abSector, int iOffset) {
+            if (abSector[iOffset + 15] == 1) {
+                // mode 1: EDC covers the sync and header,
+                // ECC includes the header
+                int iErrors = verifyEdc(abSector, iOffset, 0, 0x810);
+                return iErrors | verifyEcc(abSector, iOffset + 12, abSector, iOffset);
+            } else if ((abSector[iOffset + 18] & CdxaSubHeader.SubMode.MASK_FORM) == 0) {
+                // mode 2 form 1: ECC is calculated with the header as zeros
+                int iErrors = verifyEdc(abSector, iOffset, 0x10, 0x818);
+                System.arraycopy(abSector, iOffset + 12, _abEccData, 0, ECC_Q_DATA_SIZE);
+                _abEccData[0] = _abEccData[1] = _abEccData[2] = _abEccData[3] = 0;
+                return iErrors | verifyEcc(_abEccData, 0, abSector, iOffset);
+            } else {
+                // mode 2 form 2: EDC is optional
+                if (abSector[iOffset + 0x92C  ] == 0 && abSector[iOffset + 0x92C+1] == 0 &&
+                    abSector[iOffset + 0x92C+2] == 0 && abSector[iOffset + 0x92C+3] == 0)
+                    return 0;
+                return verifyEdc(abSector, iOffset, 0x10, 0x92C);
+            }
+        }
+
+        private static int verifyEdc(@Nonnull byte[] abSector, int iOffset, int iStart, int iEnd) {
+            long lngEdc = generateErrorDetectionAndCorrection(abSector, iOffset + iStart, iOffset + iEnd);
+            int i = iOffset + iEnd;
+            long lngStoredEdc = ( abSector[i  ] & 0xff)        | ((abSector[i+1] & 0xff) <<  8) |
+                                ((abSector[i+2] & 0xff) << 16) | ((abSector[i+3] & 0xffL) << 24);
+            return lngEdc == lngStoredEdc ? 0 : EDC_ERROR;
+        }
+
+        private int verifyEcc(@Nonnull byte[] abEccData, int iEccDataStart,
+                              @Nonnull byte[] abSector, int iOffset)
+        {
+            Arrays.fill(_abParity, (byte)0);
+            generateErrorCorrectionCode_P(abEccData, iEccDataStart, _abParity, 0);
+            generateErrorCorrectionCode_Q(abEccData, iEccDataStart, _abParity, L2_P);
+            int iErrors = 0;
+            for (int i = 0; i < L2_P; i++) {
+                if (_abParity[i] != abSector[iOffset + 0x81C + i]) {
+                    iErrors |= ECC_P_ERROR;
+                    break;
+                }
+            }
+            for (int i = L2_P; i < L2_P + L2_Q; i++) {
+                if (_abParity[i] != abSector[iOffset + 0x81C + i]) {
+                    iErrors |= ECC_Q_ERROR;
+                    break;
                 }
             }
+            return iErrors;
         }
     }
 
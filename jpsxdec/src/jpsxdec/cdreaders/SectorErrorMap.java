@@ -0,0 +1,466 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.annotation.Nonnull;
+import jpsxdec.i18n.I;
+import jpsxdec.util.DaemonThreadFactory;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.IO;
+import jpsxdec.util.ProgressLogger;
+import jpsxdec.util.TaskCanceledException;
+
+/** Which sectors of a raw disc image have EDC or ECC that doesn't match
+ * their data. Sectors are verified with
+ * {@link SectorErrorCorrection.Verifier} across multiple threads.
+ * Only raw (2352 or 2448 byte) sectors have EDC and ECC, and CD audio
+ * sectors (no sync header) have none, so those are never marked as errors.
+ * <p>
+ * Can be saved to a small text file that lists only the sectors with
+ * errors, so it can be used later by the indexer and visualizer.
+ */
+public class SectorErrorMap {
+
+    private static final Logger LOG = Logger.getLogger(SectorErrorMap.class.getName());
+
+    /** First line of the error map file. */
+    public static final String HEADER = "[jPSXdec sector error map]";
+
+    private static final String EDC = "EDC";
+    private static final String ECC_P = "P";
+    private static final String ECC_Q = "Q";
+
+    /** Number of sectors each thread verifies at a time. */
+    private static final int SECTORS_PER_RANGE = 256;
+
+    /** Number of sectors in the disc image. */
+    private final int _iSectorCount;
+    /** Number of sectors that have EDC/ECC and were verified. */
+    private int _iCheckedCount;
+    @Nonnull
+    private final BitSet _edcErrors;
+    @Nonnull
+    private final BitSet _eccPErrors;
+    @Nonnull
+    private final BitSet _eccQErrors;
+
+    private SectorErrorMap(int iSectorCount) {
+        _iSectorCount = iSectorCount;
+        _edcErrors = new BitSet(iSectorCount);
+        _eccPErrors = new BitSet(iSectorCount);
+        _eccQErrors = new BitSet(iSectorCount);
+    }
+
+    /** If the disc image has sectors that can be verified. */
+    public static boolean canScan(@Nonnull CdFileSectorReader cd) {
+        int iSize = cd.getRawSectorSize();
+        return iSize == CdFileSectorReader.SECTOR_SIZE_2352_BIN ||
+               iSize == CdFileSectorReader.SECTOR_SIZE_2448_BIN_SUBCHANNEL;
+    }
+
+    /** Verifies every sector of the disc image.
+     * Sectors are read in ranges using
+     * {@link CdFileSectorReader#readRawSectors(int, int, byte[])}, which is
+     * fastest when the disc image is memory-mapped.
+     * @param iThreads Number of threads to verify sectors with,
+     *                 less than 2 to verify on this thread.
+     * @throws IllegalArgumentException if the disc image doesn't have raw sectors.
+     * @see #canScan(CdFileSectorReader) */
+    public static @Nonnull SectorErrorMap scan(@Nonnull CdFileSectorReader cd, int iThreads,
+                                               @Nonnull ProgressLogger pl)
+            throws IOException, TaskCanceledException
+    {
+        if (!canScan(cd))
+            throw new IllegalArgumentException("Disc image does not have raw sectors");
+
+        SectorErrorMap map = new SectorErrorMap(cd.getLength());
+        AtomicInteger nextRange = new AtomicInteger();
+        AtomicInteger sectorsDone = new AtomicInteger();
+
+        pl.progressStart(cd.getLength());
+
+        if (iThreads < 2) {
+            RangeScanner scanner = new RangeScanner(cd, nextRange, sectorsDone);
+            while (scanner.scanNextRange())
+                pl.progressUpdate(sectorsDone.get());
+            map.add(scanner);
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(iThreads,
+                                           new DaemonThreadFactory("jPSXdec-errorscan"));
+            try {
+                List<Future<RangeScanner>> results = new ArrayList<Future<RangeScanner>>(iThreads);
+                for (int i = 0; i < iThreads; i++) {
+                    results.add(pool.submit(new RangeScanner(cd, nextRange, sectorsDone)));
+                }
+                pool.shutdown();
+                try {
+                    while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS))
+                        pl.progressUpdate(sectorsDone.get());
+                    for (Future<RangeScanner> result : results) {
+                        map.add(result.get());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new TaskCanceledException();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new RuntimeException(cause);
+                }
+            } finally {
+                // stops the workers if canceled or failed
+                pool.shutdownNow();
+            }
+        }
+
+        pl.progressEnd();
+        return map;
+    }
+
+    /** Takes ranges of sectors to verify until there are no more.
+     * Each has its own buffer and verifier, and keeps its own results
+     * until they are combined at the end. */
+    private static class RangeScanner implements Callable<RangeScanner> {
+        @Nonnull
+        private final CdFileSectorReader _cd;
+        @Nonnull
+        private final AtomicInteger _nextRange;
+        @Nonnull
+        private final AtomicInteger _sectorsDone;
+        @Nonnull
+        private final byte[] _abRange;
+        private final SectorErrorCorrection.Verifier _verifier = new SectorErrorCorrection.Verifier();
+
+        private int _iCheckedCount = 0;
+        private final BitSet _edcErrors = new BitSet();
+        private final BitSet _eccPErrors = new BitSet();
+        private final BitSet _eccQErrors = new BitSet();
+
+        public RangeScanner(@Nonnull CdFileSectorReader cd,
+                            @Nonnull AtomicInteger nextRange, @Nonnull AtomicInteger sectorsDone)
+        {
+            _cd = cd;
+            _nextRange = nextRange;
+            _sectorsDone = sectorsDone;
+            _abRange = new byte[SECTORS_PER_RANGE * cd.getRawSectorSize()];
+        }
+
+        public @Nonnull RangeScanner call() throws IOException {
+            while (scanNextRange()) {
+                if (Thread.currentThread().isInterrupted())
+                    break;
+            }
+            return this;
+        }
+
+        /** @return false if there are no more ranges to verify. */
+        public boolean scanNextRange() throws IOException {
+            int iStartSector = _nextRange.getAndIncrement() * SECTORS_PER_RANGE;
+            if (iStartSector >= _cd.getLength() || iStartSector < 0)
+                return false;
+            int iCount = _cd.readRawSectors(iStartSector, SECTORS_PER_RANGE, _abRange);
+            int iRawSize = _cd.getRawSectorSize();
+            for (int i = 0; i < iCount; i++) {
+                int iOffset = i * iRawSize;
+                if (!hasSyncHeader(_abRange, iOffset))
+                    continue; // CD audio
+                _iCheckedCount++;
+                int iErrors = _verifier.verify(_abRange, iOffset);
+                if (iErrors != 0) {
+                    int iSector = iStartSector + i;
+                    if ((iErrors & SectorErrorCorrection.Verifier.EDC_ERROR) != 0)
+                        _edcErrors.set(iSector);
+                    if ((iErrors & SectorErrorCorrection.Verifier.ECC_P_ERROR) != 0)
+                        _eccPErrors.set(iSector);
+                    if ((iErrors & SectorErrorCorrection.Verifier.ECC_Q_ERROR) != 0)
+                        _eccQErrors.set(iSector);
+                }
+            }
+            _sectorsDone.addAndGet(iCount);
+            return true;
+        }
+    }
+
+    private static boolean hasSyncHeader(@Nonnull byte[] abSector, int iOffset) {
+        for (int i = 0; i < CdxaHeader.SECTOR_SYNC_HEADER.length; i++) {
+            if (abSector[iOffset + i] != CdxaHeader.SECTOR_SYNC_HEADER[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void add(@Nonnull RangeScanner scanner) {
+        _iCheckedCount += scanner._iCheckedCount;
+        _edcErrors.or(scanner._edcErrors);
+        _eccPErrors.or(scanner._eccPErrors);
+        _eccQErrors.or(scanner._eccQErrors);
+    }
+
+    //..........................................................................
+
+    /** Number of sectors in the disc image that was scanned. */
+    public int getSectorCount() {
+        return _iSectorCount;
+    }
+
+    /** Number of sectors that were verified (i.e. not CD audio). */
+    public int getCheckedCount() {
+        return _iCheckedCount;
+    }
+
+    /** If this map could have come from the disc image.
+     * Only the number of sectors can be compared. */
+    public boolean matches(@Nonnull CdFileSectorReader cd) {
+        return cd.getLength() == _iSectorCount;
+    }
+
+    /** Errors of the sector.
+     * @return 0 if no errors, otherwise a combination of
+     *         {@link SectorErrorCorrection.Verifier#EDC_ERROR},
+     *         {@link SectorErrorCorrection.Verifier#ECC_P_ERROR} and
+     *         {@link SectorErrorCorrection.Verifier#ECC_Q_ERROR}. */
+    public int getSectorErrors(int iSector) {
+        int iErrors = 0;
+        if (_edcErrors.get(iSector))
+            iErrors |= SectorErrorCorrection.Verifier.EDC_ERROR;
+        if (_eccPErrors.get(iSector))
+            iErrors |= SectorErrorCorrection.Verifier.ECC_P_ERROR;
+        if (_eccQErrors.get(iSector))
+            iErrors |= SectorErrorCorrection.Verifier.ECC_Q_ERROR;
+        return iErrors;
+    }
+
+    public boolean hasErrors(int iSector) {
+        return _edcErrors.get(iSector) || _eccPErrors.get(iSector) || _eccQErrors.get(iSector);
+    }
+
+    /** Returns the first sector with errors at or after {@code iSector},
+     * or -1 if there are no more. */
+    public int nextErrorSector(int iSector) {
+        return nextErrorSector(iSector, _iSectorCount);
+    }
+
+    private int nextErrorSector(int iSector, int iEndSector) {
+        int iNext = -1;
+        for (BitSet errors : new BitSet[] {_edcErrors, _eccPErrors, _eccQErrors}) {
+            int i = errors.nextSetBit(iSector);
+            if (i >= 0 && i < iEndSector && (iNext < 0 || i < iNext))
+                iNext = i;
+        }
+        return iNext;
+    }
+
+    /** Number of sectors with any error. */
+    public int getErrorSectorCount() {
+        return countErrorSectors(0, _iSectorCount - 1);
+    }
+
+    /** Number of sectors with any error between the sectors (inclusive). */
+    public int countErrorSectors(int iStartSector, int iEndSector) {
+        int iEndExclusive = Math.min(iEndSector + 1, _iSectorCount);
+        int iCount = 0;
+        for (int i = nextErrorSector(Math.max(iStartSector, 0), iEndExclusive);
+             i >= 0;
+             i = nextErrorSector(i + 1, iEndExclusive))
+        {
+            iCount++;
+        }
+        return iCount;
+    }
+
+    /** Number of sectors with an EDC that doesn't match. */
+    public int getEdcErrorCount() {
+        return _edcErrors.cardinality();
+    }
+
+    /** Number of sectors with ECC P parity that doesn't match. */
+    public int getEccPErrorCount() {
+        return _eccPErrors.cardinality();
+    }
+
+    /** Number of sectors with ECC Q parity that doesn't match. */
+    public int getEccQErrorCount() {
+        return _eccQErrors.cardinality();
+    }
+
+    /** Describes the errors of the sector, like "EDC,P,Q",
+     * or an empty string if there are none. */
+    public @Nonnull String describeErrors(int iSector) {
+        StringBuilder sb = new StringBuilder();
+        if (_edcErrors.get(iSector))
+            sb.append(EDC);
+        if (_eccPErrors.get(iSector)) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(ECC_P);
+        }
+        if (_eccQErrors.get(iSector)) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(ECC_Q);
+        }
+        return sb.toString();
+    }
+
+    //..........................................................................
+
+    /** Saves the map as text: the header, the sector counts, then one
+     * line for each sector with errors. */
+    public void write(@Nonnull File file) throws FileNotFoundException {
+        PrintStream ps;
+        try {
+            ps = new PrintStream(file, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            // Every implementation of the Java platform is required to support UTF-8
+            throw new RuntimeException(ex);
+        }
+        try {
+            ps.println(HEADER);
+            ps.println("Sectors:" + _iSectorCount + "|Checked:" + _iCheckedCount);
+            for (int i = nextErrorSector(0); i >= 0; i = nextErrorSector(i + 1)) {
+                ps.println(i + ":" + describeErrors(i));
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    /** Loads a map saved with {@link #write(File)}. */
+    public static @Nonnull SectorErrorMap read(@Nonnull File file)
+            throws FileNotFoundException, IOException, DeserializationFail
+    {
+        FileInputStream fis = new FileInputStream(file);
+        Closeable streamToClose = fis;
+        boolean blnExceptionThrown = true; // only way to catch all exceptions using finally block
+        try {
+            BufferedReader reader;
+            try {
+                reader = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
+            } catch (UnsupportedEncodingException ex) {
+                // Every implementation of the Java platform is required to support UTF-8
+                throw new RuntimeException(ex);
+            }
+            streamToClose = reader;
+
+            if (!HEADER.equals(reader.readLine()))
+                throw new DeserializationFail(I.ERROR_MAP_HEADER_MISSING());
+
+            String sLine = reader.readLine();
+            SectorErrorMap map;
+            try {
+                if (sLine == null)
+                    throw new NumberFormatException();
+                String[] asCounts = sLine.split("\\|");
+                if (asCounts.length != 2 || !asCounts[0].startsWith("Sectors:") ||
+                    !asCounts[1].startsWith("Checked:"))
+                    throw new NumberFormatException();
+                map = new SectorErrorMap(Integer.parseInt(asCounts[0].substring(8)));
+                map._iCheckedCount = Integer.parseInt(asCounts[1].substring(8));
+            } catch (NumberFormatException ex) {
+                throw new DeserializationFail(I.ERROR_MAP_INVALID_LINE(String.valueOf(sLine)), ex);
+            }
+
+            while ((sLine = reader.readLine()) != null) {
+                if (sLine.trim().length() == 0)
+                    continue;
+                map.parseSectorLine(sLine);
+            }
+            blnExceptionThrown = false;
+            return map;
+        } finally {
+            if (blnExceptionThrown)
+                IO.closeSilently(streamToClose, LOG);
+            else
+                streamToClose.close(); // expose close exception
+        }
+    }
+
+    private void parseSectorLine(@Nonnull String sLine) throws DeserializationFail {
+        int iColon = sLine.indexOf(':');
+        if (iColon < 0)
+            throw new DeserializationFail(I.ERROR_MAP_INVALID_LINE(sLine));
+        int iSector;
+        try {
+            iSector = Integer.parseInt(sLine.substring(0, iColon));
+        } catch (NumberFormatException ex) {
+            throw new DeserializationFail(I.ERROR_MAP_INVALID_LINE(sLine), ex);
+        }
+        if (iSector < 0 || iSector >= _iSectorCount)
+            throw new DeserializationFail(I.ERROR_MAP_INVALID_LINE(sLine));
+        for (String sError : sLine.substring(iColon + 1).split(",")) {
+            if (EDC.equals(sError))
+                _edcErrors.set(iSector);
+            else if (ECC_P.equals(sError))
+                _eccPErrors.set(iSector);
+            else if (ECC_Q.equals(sError))
+                _eccQErrors.set(iSector);
+            else
+                throw new DeserializationFail(I.ERROR_MAP_INVALID_LINE(sLine));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Sectors:%d Checked:%d Errors:%d",
+                             _iSectorCount, _iCheckedCount, getErrorSectorCount());
+    }
+}
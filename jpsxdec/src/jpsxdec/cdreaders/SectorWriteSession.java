@@ -0,0 +1,370 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.i18n.I;
+import jpsxdec.i18n.LocalizedIOException;
+import jpsxdec.util.IO;
+
+/** Patches sectors of a disc image as one unit.
+ * <p>
+ * Sectors written with {@link CdFileSectorReader#writeSector(int, byte[])}
+ * while the session is open are rebuilt into a reusable buffer instead of
+ * being written immediately. When the buffer is full (or the session is
+ * committed) the sectors are sorted, and each run of contiguous sectors is
+ * written with a single positional write.
+ * <p>
+ * Before anything in the disc image is changed, the original bytes of the
+ * sectors are saved to a journal file next to the disc image. If the patch
+ * fails or the session is closed without being committed, the journal is
+ * used to restore the disc image. If the process is killed, the journal is
+ * left behind and the disc image is restored the next time it is opened
+ * for writing.
+ * <p>
+ * Sectors that haven't been written yet are still returned by
+ * {@link CdFileSectorReader#getSector(int)}.
+ */
+public class SectorWriteSession implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(SectorWriteSession.class.getName());
+
+    /** First thing in the journal file. */
+    private static final String JOURNAL_HEADER = "jPSXdec patch journal";
+    /** Appended to the disc image file name to make the journal file name. */
+    private static final String JOURNAL_EXTENSION = ".patch-journal";
+    /** Number of sectors to buffer before writing. */
+    private static final int BUFFER_SECTORS = 512;
+    /** Size of the file pointer and length saved before each sector in
+     * the journal. */
+    private static final int JOURNAL_ENTRY_HEADER_SIZE = 8 + 4;
+
+    /** Where the journal of the disc image is (or would be) saved. */
+    public static @Nonnull File getJournalFile(@Nonnull File discImage) {
+        return new File(discImage.getPath() + JOURNAL_EXTENSION);
+    }
+
+    /** If the disc image has a journal left behind by a patch that didn't
+     * finish, puts back the original sectors saved in it and deletes it.
+     * @param discImage Must be opened for writing.
+     * @return if the disc image was restored. */
+    static boolean rollback(@Nonnull File journalFile, @Nonnull FileChannel discImage)
+            throws IOException
+    {
+        if (!journalFile.exists())
+            return false;
+
+        DataInputStream journal = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+        try {
+            try {
+                if (!JOURNAL_HEADER.equals(journal.readUTF()))
+                    throw new LocalizedIOException(I.PATCH_JOURNAL_INVALID(journalFile));
+            } catch (EOFException ex) {
+                // journal was never finished being created, so nothing was changed
+                LOG.log(Level.WARNING, "Empty journal {0}", journalFile);
+            }
+            byte[] abOriginal = new byte[0];
+            while (true) {
+                long lngFilePointer;
+                int iLength;
+                try {
+                    lngFilePointer = journal.readLong();
+                    iLength = journal.readInt();
+                    if (iLength < 0 || lngFilePointer < 0)
+                        throw new LocalizedIOException(I.PATCH_JOURNAL_INVALID(journalFile));
+                    if (abOriginal.length != iLength)
+                        abOriginal = new byte[iLength];
+                    journal.readFully(abOriginal);
+                } catch (EOFException ex) {
+                    // anything partially journaled never made it to the disc image
+                    break;
+                }
+                write(discImage, abOriginal, 0, iLength, lngFilePointer);
+            }
+        } finally {
+            IO.closeSilently(journal, LOG);
+        }
+        discImage.force(false);
+        if (!journalFile.delete())
+            throw new LocalizedIOException(I.IO_DELETING_FILE_ERROR_NAME(journalFile.toString()));
+        return true;
+    }
+
+    /** Saves the directory so the journal's entry in it survives a crash.
+     * Opening a directory needs {@code FileChannel.open()} from Java 7, so
+     * this is called through reflection. Does nothing on older Java versions
+     * or systems that can't sync a directory (like Windows). */
+    private static void syncDirectory(@Nonnull File dir) {
+        try {
+            Object path = File.class.getMethod("toPath").invoke(dir);
+            Class<?> openOption = Class.forName("java.nio.file.OpenOption");
+            Object aoOptions = Array.newInstance(openOption, 1);
+            Array.set(aoOptions, 0, Class.forName("java.nio.file.StandardOpenOption").getField("READ").get(null));
+            FileChannel channel = (FileChannel)FileChannel.class
+                    .getMethod("open", Class.forName("java.nio.file.Path"), aoOptions.getClass())
+                    .invoke(null, path, aoOptions);
+            try {
+                channel.force(true);
+            } finally {
+                IO.closeSilently(channel, LOG);
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.FINE, "Unable to sync directory " + dir, ex);
+        }
+    }
+
+    private static void write(@Nonnull FileChannel channel, @Nonnull byte[] ab, int iOffset, int iLength,
+                              long lngFilePointer)
+            throws IOException
+    {
+        ByteBuffer src = ByteBuffer.wrap(ab, iOffset, iLength);
+        while (src.hasRemaining()) {
+            channel.write(src, lngFilePointer + src.position() - iOffset);
+        }
+    }
+
+    //..........................................................................
+
+    @Nonnull
+    private final CdFileSectorReader _cd;
+    @Nonnull
+    private final FileChannel _channel;
+    @Nonnull
+    private final File _journalFile;
+    private final int _iRawSectorSize;
+
+    /** Rebuilt sectors waiting to be written, one per slot. */
+    @Nonnull
+    private final byte[] _abPending;
+    /** Bytes of the sectors in the disc image before they were rebuilt,
+     * in the same slots as {@link #_abPending}. */
+    @Nonnull
+    private final byte[] _abOriginals;
+    /** Pending sectors copied in sector order for writing. */
+    @Nonnull
+    private final byte[] _abRun;
+    /** Journal entries of one flush, so they are saved with a single write. */
+    @Nonnull
+    private final ByteBuffer _journalEntries;
+    @Nonnull
+    private final int[] _aiSlotSectors = new int[BUFFER_SECTORS];
+    /** Sector number in the upper 32 bits, slot in the lower,
+     * so sorting these sorts the slots by sector. */
+    @Nonnull
+    private final long[] _alngSortedSlots = new long[BUFFER_SECTORS];
+    private int _iPendingCount = 0;
+    /** Sector number to slot of the pending sectors. */
+    private final HashMap<Integer, Integer> _pendingLookup = new HashMap<Integer, Integer>();
+    /** Sectors whose original bytes have been saved in the journal. */
+    private final BitSet _journaled = new BitSet();
+
+    /** Created when the first sectors are written. */
+    @CheckForNull
+    private FileOutputStream _journal;
+
+    private boolean _blnCommitted = false;
+    private boolean _blnClosed = false;
+
+    /** Use {@link CdFileSectorReader#beginWriteSession(jpsxdec.util.ILocalizedLogger)}. */
+    SectorWriteSession(@Nonnull CdFileSectorReader cd, @Nonnull FileChannel channel) {
+        _cd = cd;
+        _channel = channel;
+        _journalFile = getJournalFile(cd.getSourceFile());
+        _iRawSectorSize = cd.getRawSectorSize();
+        _abPending = new byte[BUFFER_SECTORS * _iRawSectorSize];
+        _abOriginals = new byte[BUFFER_SECTORS * _iRawSectorSize];
+        _abRun = new byte[BUFFER_SECTORS * _iRawSectorSize];
+        _journalEntries = ByteBuffer.allocate(BUFFER_SECTORS * (JOURNAL_ENTRY_HEADER_SIZE + _iRawSectorSize));
+    }
+
+    /** Rebuilds the raw sector with the new user data and queues it to be
+     * written. */
+    synchronized void writeSector(int iSector, @Nonnull byte[] abSrcUserData) throws IOException {
+        if (_blnClosed)
+            throw new IllegalStateException("Write session is closed");
+
+        int iSlot;
+        Integer slot = _pendingLookup.get(Integer.valueOf(iSector));
+        if (slot != null) {
+            iSlot = slot.intValue();
+        } else {
+            if (_iPendingCount == BUFFER_SECTORS)
+                flush();
+            iSlot = _iPendingCount;
+            // the caller usually just read the sector, so it should be cached
+            CdSector original = _cd.getSector(iSector);
+            // whole raw sector, including any subchannel data (for 2448 sectors)
+            System.arraycopy(original._abSectorBytes, original._iByteStartOffset,
+                             _abOriginals, iSlot * _iRawSectorSize, _iRawSectorSize);
+            System.arraycopy(original._abSectorBytes, original._iByteStartOffset,
+                             _abPending, iSlot * _iRawSectorSize, _iRawSectorSize);
+        }
+
+        CdSector original = _cd.createSector(iSector, _abOriginals, iSlot * _iRawSectorSize);
+        if (original.getCdUserDataSize() != abSrcUserData.length)
+            throw new IllegalArgumentException("Data to write is not the right size.");
+        original.rebuildRawSector(abSrcUserData, _abPending, iSlot * _iRawSectorSize);
+
+        if (slot == null) {
+            _aiSlotSectors[iSlot] = iSector;
+            _pendingLookup.put(Integer.valueOf(iSector), Integer.valueOf(iSlot));
+            _iPendingCount++;
+        }
+    }
+
+    /** Returns the sector if it is waiting to be written, otherwise null. */
+    synchronized @CheckForNull CdSector getPendingSector(int iSector) {
+        Integer slot = _pendingLookup.get(Integer.valueOf(iSector));
+        if (slot == null)
+            return null;
+        // the buffer is reused, so the sector gets its own copy
+        byte[] abSector = new byte[_iRawSectorSize];
+        System.arraycopy(_abPending, slot.intValue() * _iRawSectorSize, abSector, 0, _iRawSectorSize);
+        return _cd.createSector(iSector, abSector, 0);
+    }
+
+    /** Journals the original bytes of the pending sectors, then writes
+     * the pending sectors to the disc image. */
+    private void flush() throws IOException {
+        if (_iPendingCount == 0)
+            return;
+
+        for (int i = 0; i < _iPendingCount; i++) {
+            _alngSortedSlots[i] = ((long)_aiSlotSectors[i] << 32) | i;
+        }
+        Arrays.sort(_alngSortedSlots, 0, _iPendingCount);
+
+        // the journal must be safely saved before the disc image is changed
+        if (_journal == null) {
+            _journal = new FileOutputStream(_journalFile);
+            DataOutputStream header = new DataOutputStream(_journal);
+            header.writeUTF(JOURNAL_HEADER);
+            header.flush();
+            // the journal has to be found after a crash, not just saved
+            File dir = _journalFile.getAbsoluteFile().getParentFile();
+            if (dir != null)
+                syncDirectory(dir);
+        }
+        _journalEntries.clear();
+        for (int i = 0; i < _iPendingCount; i++) {
+            int iSector = (int)(_alngSortedSlots[i] >> 32);
+            if (_journaled.get(iSector))
+                continue; // the bytes from before this session are already saved
+            int iSlot = (int)_alngSortedSlots[i];
+            // same layout as DataOutputStream.writeLong() and writeInt()
+            _journalEntries.putLong(_cd.getFilePointer(iSector));
+            _journalEntries.putInt(_iRawSectorSize);
+            _journalEntries.put(_abOriginals, iSlot * _iRawSectorSize, _iRawSectorSize);
+            _journaled.set(iSector);
+        }
+        _journal.write(_journalEntries.array(), 0, _journalEntries.position());
+        _journal.getFD().sync();
+
+        // write each run of contiguous sectors at once
+        int iRunStart = 0;
+        for (int i = 0; i < _iPendingCount; i++) {
+            int iSector = (int)(_alngSortedSlots[i] >> 32);
+            int iSlot = (int)_alngSortedSlots[i];
+            System.arraycopy(_abPending, iSlot * _iRawSectorSize, _abRun, i * _iRawSectorSize, _iRawSectorSize);
+            if (i + 1 == _iPendingCount || (int)(_alngSortedSlots[i + 1] >> 32) != iSector + 1) {
+                int iRunStartSector = (int)(_alngSortedSlots[iRunStart] >> 32);
+                write(_channel, _abRun, iRunStart * _iRawSectorSize, (i + 1 - iRunStart) * _iRawSectorSize,
+                      _cd.getFilePointer(iRunStartSector));
+                iRunStart = i + 1;
+            }
+        }
+
+        _iPendingCount = 0;
+        _pendingLookup.clear();
+        _cd.clearReadCache();
+    }
+
+    /** Writes all the sectors and removes the journal.
+     * After this the patch can't be rolled back. */
+    public synchronized void commit() throws IOException {
+        if (_blnClosed)
+            throw new IllegalStateException("Write session is closed");
+        flush();
+        _channel.force(false);
+        if (_journal != null) {
+            _journal.close();
+            _journal = null;
+            if (!_journalFile.delete())
+                throw new LocalizedIOException(I.IO_DELETING_FILE_ERROR_NAME(_journalFile.toString()));
+        }
+        _blnCommitted = true;
+        close();
+    }
+
+    /** Ends the session. If it wasn't committed, any sectors that were
+     * already written are restored from the journal. */
+    public synchronized void close() throws IOException {
+        if (_blnClosed)
+            return;
+        _blnClosed = true;
+        _iPendingCount = 0;
+        _pendingLookup.clear();
+        _cd.endWriteSession(this);
+        if (!_blnCommitted && _journal != null) {
+            _journal.close();
+            _journal = null;
+            rollback(_journalFile, _channel);
+            _cd.clearReadCache();
+        }
+    }
+
+}
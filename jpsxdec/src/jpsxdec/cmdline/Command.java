@@ -37,14 +37,17 @@
 
 package jpsxdec.cmdline;
 
+import argparser.BooleanHolder;
 import argparser.StringHolder;
 import java.io.File;
 import java.io.IOException;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.SectorErrorMap;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.indexing.BinaryIndexFile;
 import jpsxdec.indexing.DiscIndex;
 import jpsxdec.util.ArgParser;
 import jpsxdec.util.DeserializationFail;
@@ -66,18 +69,26 @@ public abstract class Command {
     @Nonnull
     private StringHolder _receiver;
     @Nonnull
-    private StringHolder inputFileArg, indexFileArg;
+    private StringHolder inputFileArg, indexFileArg, errorMapArg, indexThreadsArg;
+    @Nonnull
+    private BooleanHolder memoryMapArg;
     @Nonnull
     protected FeedbackStream _fbs;
 
     final public Command init(@Nonnull ArgParser ap,
                               @Nonnull StringHolder inputFileArg,
                               @Nonnull StringHolder indexFileArg,
+                              @Nonnull BooleanHolder memoryMapArg,
+                              @Nonnull StringHolder errorMapArg,
+                              @Nonnull StringHolder indexThreadsArg,
                               @Nonnull FeedbackStream fbs)
     {
         _receiver = ap.addStringOption(_asFlags);
         this.inputFileArg = inputFileArg;
         this.indexFileArg = indexFileArg;
+        this.memoryMapArg = memoryMapArg;
+        this.errorMapArg = errorMapArg;
+        this.indexThreadsArg = indexThreadsArg;
         _fbs = fbs;
         return this;
     }
@@ -96,9 +107,30 @@ public abstract class Command {
         *  Returns {@code null} if OK, or error message if invalid. */
     abstract protected @CheckForNull ILocalizedMessage validate(@Nonnull String sOptionValue);
 
+    /** If the -mmap option was given. */
+    protected boolean isMemoryMap() {
+        return memoryMapArg.value;
+    }
+
+    /** Number of sector identification threads given with the
+     * -indexthreads option (default 1). */
+    protected int getIndexThreads() throws CommandLineException {
+        return CommandLine.parseIndexThreads(indexThreadsArg.value);
+    }
+
+    /** Loads the error map given with the -errormap option.
+     * @return null if no error map was given, or it isn't for the disc. */
+    protected @CheckForNull SectorErrorMap getErrorMap(@Nonnull CdFileSectorReader cd)
+            throws CommandLineException
+    {
+        if (errorMapArg.value == null)
+            return null;
+        return CommandLine.loadErrorMap(errorMapArg.value, cd, _fbs);
+    }
+
     protected @Nonnull CdFileSectorReader getCdReader() throws CommandLineException {
         if (inputFileArg.value != null) {
-            return CommandLine.loadDisc(inputFileArg.value, _fbs);
+            return CommandLine.loadDisc(inputFileArg.value, memoryMapArg.value, _fbs);
         } else if (indexFileArg.value != null) {
             _fbs.println(I.CMD_READING_INDEX_FILE(indexFileArg.value));
             DiscIndex index;
@@ -113,17 +145,71 @@ public abstract class Command {
                 log.close();
             }
             _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+            if (memoryMapArg.value)
+                CommandLine.memoryMapDisc(index.getSourceCd(), _fbs);
             return index.getSourceCd();
         }
         throw new CommandLineException(I.CMD_DISC_FILE_REQUIRED());
     }
 
-    // TODO: cleanup
+    /** Loads or builds the index, then warns about any items that
+     * include sectors in the -errormap. */
     protected @Nonnull DiscIndex getIndex() throws CommandLineException {
+        DiscIndex index = loadIndex();
+        SectorErrorMap errorMap = getErrorMap(index.getSourceCd());
+        if (errorMap != null)
+            CommandLine.warnSectorErrors(index, errorMap, _fbs);
+        return index;
+    }
+
+    /** Like {@link #getIndex()}, but when the -x index is an existing binary
+     * index, only the one item (and the items sharing its sectors) is read.
+     * @param itemKey Integer item number or String item id. */
+    protected @Nonnull DiscIndex getIndexForItem(@Nonnull Object itemKey) throws CommandLineException {
+        if (indexFileArg.value == null)
+            return getIndex();
+        File idxFile = new File(indexFileArg.value);
+        try {
+            if (!idxFile.exists() || !BinaryIndexFile.isBinaryIndex(idxFile))
+                return getIndex();
+        } catch (IOException ex) {
+            throw new CommandLineException(I.ERR_LOADING_INDEX_FILE(), ex);
+        }
+
+        CdFileSectorReader cd = null;
+        if (inputFileArg.value != null)
+            cd = CommandLine.loadDisc(inputFileArg.value, memoryMapArg.value, _fbs);
+        _fbs.println(I.CMD_READING_INDEX_FILE(indexFileArg.value));
+        DiscIndex index;
+        UserFriendlyLogger log = new UserFriendlyLogger(I.INDEX_LOG_FILE_BASE_NAME().getLocalizedMessage());
+        try {
+            index = new DiscIndex(indexFileArg.value, cd, itemKey, log);
+        } catch (IOException ex) {
+            throw new CommandLineException(I.ERR_LOADING_INDEX_FILE(), ex);
+        } catch (DeserializationFail ex) {
+            throw new CommandLineException(I.ERR_LOADING_INDEX_FILE(), ex);
+        } finally {
+            log.close();
+        }
+        _fbs.println(I.CMD_USING_SRC_FILE(index.getSourceCd().getSourceFile()));
+        _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+        if (cd == null && memoryMapArg.value)
+            CommandLine.memoryMapDisc(index.getSourceCd(), _fbs);
+
+        SectorErrorMap errorMap = getErrorMap(index.getSourceCd());
+        if (errorMap != null)
+            CommandLine.warnSectorErrors(index, errorMap, _fbs);
+        return index;
+    }
+
+    // TODO: cleanup
+    /** Loads or builds the index without checking the -errormap,
+     * for commands that need the error map themselves. */
+    protected @Nonnull DiscIndex loadIndex() throws CommandLineException {
         final DiscIndex index;
         if (indexFileArg.value != null) {
             if (inputFileArg.value != null) {
-                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, _fbs);
+                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, memoryMapArg.value, _fbs);
                 File idxFile = new File(indexFileArg.value);
                 if (idxFile.exists()) {
                     _fbs.println(I.CMD_READING_INDEX_FILE(indexFileArg.value));
@@ -140,7 +226,7 @@ public abstract class Command {
                     _fbs.println(I.CMD_USING_SRC_FILE(index.getSourceCd().getSourceFile()));
                     _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
                 } else {
-                    index = CommandLine.buildIndex(cd, _fbs);
+                    index = CommandLine.buildIndex(cd, getIndexThreads(), _fbs);
                     CommandLine.saveIndex(index, indexFileArg.value, _fbs);
                 }
             } else {
@@ -157,11 +243,13 @@ public abstract class Command {
                 }
                 _fbs.println(I.CMD_USING_SRC_FILE(index.getSourceCd().getSourceFile()));
                 _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+                if (memoryMapArg.value)
+                    CommandLine.memoryMapDisc(index.getSourceCd(), _fbs);
             }
         } else {
             if (inputFileArg.value != null) {
-                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, _fbs);
-                index = CommandLine.buildIndex(cd, _fbs);
+                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, memoryMapArg.value, _fbs);
+                index = CommandLine.buildIndex(cd, getIndexThreads(), _fbs);
             } else {
                 throw new CommandLineException(I.CMD_NEED_INPUT_OR_INDEX());
             }
@@ -37,6 +37,7 @@
 
 package jpsxdec.cmdline;
 
+import argparser.BooleanHolder;
 import argparser.StringHolder;
 import java.io.BufferedReader;
 import java.io.File;
@@ -51,12 +52,16 @@ import javax.annotation.Nonnull;
 import jpsxdec.Version;
 import jpsxdec.cdreaders.CdFileNotFoundException;
 import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.SectorErrorMap;
+import jpsxdec.discitems.DiscItem;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.MiscResources;
+import jpsxdec.indexing.BinaryIndexFile;
 import jpsxdec.indexing.DiscIndex;
 import jpsxdec.util.ArgParser;
 import jpsxdec.util.ConsoleProgressLogger;
+import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.FeedbackStream;
 import jpsxdec.util.IO;
 import jpsxdec.util.TaskCanceledException;
@@ -76,18 +81,23 @@ public class CommandLine {
 
         StringHolder inputFileArg = ap.addStringOption("-f","-file");
         StringHolder indexFileArg = ap.addStringOption("-x","-index");
+        BooleanHolder memoryMapArg = ap.addBoolOption("-mmap");
+        StringHolder errorMapArg = ap.addStringOption("-errormap");
+        StringHolder indexThreadsArg = ap.addStringOption("-indexthreads");
 
         Command[] aoCommands = {
             new Command_CopySect(),
             new Command_SectorDump(),
             new Command_Static(),
             new Command_Visualize(),
+            new Command_ErrorScan(),
             new Command_Items.Command_Item(),
             new Command_Items.Command_All(),
+            new Command_Batch(),
         };
 
         for (Command command : aoCommands) {
-            command.init(ap, inputFileArg, indexFileArg, Feedback);
+            command.init(ap, inputFileArg, indexFileArg, memoryMapArg, errorMapArg, indexThreadsArg, Feedback);
         }
 
         ap.match();
@@ -110,7 +120,9 @@ public class CommandLine {
                     printMainHelp(Feedback);
                 } else {
                     if (inputFileArg.value != null && indexFileArg.value != null) {
-                        createAndSaveIndex(inputFileArg.value, indexFileArg.value, Feedback);
+                        createAndSaveIndex(inputFileArg.value, indexFileArg.value, memoryMapArg.value,
+                                           errorMapArg.value, parseIndexThreads(indexThreadsArg.value),
+                                           Feedback);
                     } else {
                         Feedback.printlnErr(I.CMD_NEED_MAIN_COMMAND());
                         Feedback.printlnErr(I.CMD_TRY_HELP());
@@ -176,12 +188,20 @@ public class CommandLine {
 
     private static void createAndSaveIndex(@CheckForNull String sDiscFile,
                                            @Nonnull String sIndexFile,
+                                           boolean blnMemoryMap,
+                                           @CheckForNull String sErrorMapFile,
+                                           int iIndexThreads,
                                            @Nonnull FeedbackStream Feedback)
             throws CommandLineException
     {
-        CdFileSectorReader cd = loadDisc(sDiscFile, Feedback);
+        CdFileSectorReader cd = loadDisc(sDiscFile, blnMemoryMap, Feedback);
         try {
-            DiscIndex index = buildIndex(cd, Feedback);
+            DiscIndex index = buildIndex(cd, iIndexThreads, Feedback);
+            if (sErrorMapFile != null) {
+                SectorErrorMap errorMap = loadErrorMap(sErrorMapFile, cd, Feedback);
+                if (errorMap != null)
+                    warnSectorErrors(index, errorMap, Feedback);
+            }
             saveIndex(index, sIndexFile, Feedback);
         } finally {
             IO.closeSilently(cd, LOG);
@@ -189,6 +209,7 @@ public class CommandLine {
     }
 
     static @Nonnull CdFileSectorReader loadDisc(@CheckForNull String sDiscFile,
+                                                boolean blnMemoryMap,
                                                 @Nonnull FeedbackStream Feedback)
             throws CommandLineException
     {
@@ -198,6 +219,8 @@ public class CommandLine {
         try {
             CdFileSectorReader cd = new CdFileSectorReader(new File(sDiscFile));
             Feedback.println(I.CMD_DISC_IDENTIFIED(cd.getTypeDescription()));
+            if (blnMemoryMap)
+                memoryMapDisc(cd, Feedback);
             return cd;
         } catch (CdFileNotFoundException ex) {
             throw new CommandLineException(I.CMD_FILE_NOT_FOUND_FILE(ex.getFile()), ex);
@@ -206,16 +229,85 @@ public class CommandLine {
         }
     }
 
-    static DiscIndex buildIndex(@Nonnull CdFileSectorReader cd,
+    /** Switches the disc to memory-mapped reading, warning if it fails. */
+    static void memoryMapDisc(@Nonnull CdFileSectorReader cd,
+                              @Nonnull FeedbackStream Feedback)
+    {
+        if (!cd.enableMemoryMapping())
+            Feedback.printlnWarn(I.CMD_MEMORY_MAP_FAILED());
+    }
+
+    /** Loads an error map saved by -errorscan.
+     * @return null if the map isn't for the disc. */
+    static @CheckForNull SectorErrorMap loadErrorMap(@Nonnull String sErrorMapFile,
+                                                     @Nonnull CdFileSectorReader cd,
+                                                     @Nonnull FeedbackStream Feedback)
+            throws CommandLineException
+    {
+        SectorErrorMap errorMap;
+        try {
+            errorMap = SectorErrorMap.read(new File(sErrorMapFile));
+        } catch (FileNotFoundException ex) {
+            throw new CommandLineException(I.IO_OPENING_FILE_NOT_FOUND_NAME(sErrorMapFile), ex);
+        } catch (IOException ex) {
+            throw new CommandLineException(I.CMD_ERROR_MAP_LOAD_FAILED(sErrorMapFile), ex);
+        } catch (DeserializationFail ex) {
+            throw new CommandLineException(I.CMD_ERROR_MAP_LOAD_FAILED(sErrorMapFile), ex);
+        }
+        if (!errorMap.matches(cd)) {
+            Feedback.printlnWarn(I.CMD_ERROR_MAP_MISMATCH(sErrorMapFile, errorMap.getSectorCount(), cd.getLength()));
+            return null;
+        }
+        return errorMap;
+    }
+
+    /** Warns about every item that includes sectors with EDC/ECC errors. */
+    static void warnSectorErrors(@Nonnull DiscIndex index, @Nonnull SectorErrorMap errorMap,
+                                 @Nonnull FeedbackStream Feedback)
+    {
+        for (DiscItem item : index) {
+            int iErrorCount = errorMap.countErrorSectors(item.getStartSector(), item.getEndSector());
+            if (iErrorCount > 0)
+                Feedback.printlnWarn(I.CMD_ITEM_SECTOR_ERRORS(item, iErrorCount));
+        }
+    }
+
+    /** Parses the -indexthreads option.
+     * @param sThreads null for the default of 1. */
+    static int parseIndexThreads(@CheckForNull String sThreads) throws CommandLineException {
+        if (sThreads == null)
+            return 1;
+        int iThreads;
+        try {
+            iThreads = Integer.parseInt(sThreads);
+        } catch (NumberFormatException ex) {
+            throw new CommandLineException(I.CMD_INDEX_THREADS_INVALID(sThreads), ex);
+        }
+        if (iThreads < 1)
+            throw new CommandLineException(I.CMD_INDEX_THREADS_INVALID(sThreads));
+        return iThreads;
+    }
+
+    /** @param iThreads Number of sector identification threads. */
+    static DiscIndex buildIndex(@Nonnull CdFileSectorReader cd, int iThreads,
                                 @Nonnull FeedbackStream fbs)
+    {
+        return buildIndex(cd, iThreads, fbs, I.INDEX_LOG_FILE_BASE_NAME().getLocalizedMessage());
+    }
+
+    /** @param iThreads Number of sector identification threads.
+     *  @param sLogBaseName Base name (and path) of the indexing log file. */
+    static DiscIndex buildIndex(@Nonnull CdFileSectorReader cd, int iThreads,
+                                @Nonnull FeedbackStream fbs,
+                                @Nonnull String sLogBaseName)
     {
         fbs.println(I.CMD_BUILDING_INDEX());
         DiscIndex index = null;
         ConsoleProgressLogger cpl = new ConsoleProgressLogger(
-                I.INDEX_LOG_FILE_BASE_NAME().getLocalizedMessage(), fbs.getUnderlyingStream());
+                sLogBaseName, fbs.getUnderlyingStream());
         try {
             cpl.log(Level.INFO, I.CMD_GUI_INDEXING(cd));
-            index = new DiscIndex(cd, cpl);
+            index = new DiscIndex(cd, iThreads, cpl);
         } catch (TaskCanceledException ex) {
             throw new RuntimeException("Impossible TaskCanceledException during commandline indexing", ex);
         } finally {
@@ -234,9 +326,15 @@ public class CommandLine {
         } else {
             Feedback.println(I.CMD_SAVING_INDEX(sIndexFile));
             try {
-                index.serializeIndex(new File(sIndexFile));
+                File indexFile = new File(sIndexFile);
+                if (sIndexFile.toLowerCase().endsWith(BinaryIndexFile.EXTENSION))
+                    index.serializeIndexBinary(indexFile);
+                else
+                    index.serializeIndex(indexFile);
             } catch (FileNotFoundException ex) {
                 throw new CommandLineException(I.IO_OPENING_FILE_NOT_FOUND_NAME(sIndexFile), ex);
+            } catch (IOException ex) {
+                throw new CommandLineException(I.IO_WRITING_FILE_ERROR_NAME(sIndexFile), ex);
             }
         }
     }
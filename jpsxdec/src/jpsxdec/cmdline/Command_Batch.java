@@ -0,0 +1,374 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.cmdline;
+
+import argparser.StringHolder;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.i18n.I;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.i18n.LocalizedFileNotFoundException;
+import jpsxdec.indexing.DiscIndex;
+import jpsxdec.util.ArgParser;
+import jpsxdec.util.ConsoleProgressLogger;
+import jpsxdec.util.DaemonThreadFactory;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.FeedbackStream;
+import jpsxdec.util.IO;
+import jpsxdec.util.Misc;
+import jpsxdec.util.UserFriendlyLogger;
+
+/** Indexes and saves the items of many disc images in one process.
+ * <p>
+ * The disc images are listed in a text file (one path per line, blank lines
+ * and lines starting with # are ignored, relative paths are relative to the
+ * list) or are all the disc image files in a directory. Each disc is handled
+ * by a worker of a shared fixed size pool. The workers share one thread
+ * budget: each disc is indexed on its worker thread alone, and any threads
+ * the workers don't need go to decoding each disc's videos, so the
+ * processors are not oversubscribed. Everything a disc would normally
+ * print to the console goes to a file in the disc's own output directory,
+ * along with its index and logs, and only a line when each disc finishes
+ * and a summary at the end are printed to the console.
+ * <p>
+ * If the disc's output directory already has an index, it is used instead
+ * of indexing the disc again. */
+class Command_Batch extends Command {
+
+    private static final Logger LOG = Logger.getLogger(Command_Batch.class.getName());
+
+    /** File extensions of disc images picked up from a directory. */
+    private static final String[] DISC_EXTENSIONS = {
+        ".bin", ".iso", ".img", ".mdf"
+    };
+
+    @Nonnull
+    private String _sListOrDir;
+
+    public Command_Batch() {
+        super("-batch");
+    }
+
+    protected @CheckForNull ILocalizedMessage validate(@Nonnull String s) {
+        _sListOrDir = s;
+        return null;
+    }
+
+    public void execute(@Nonnull ArgParser ap) throws CommandLineException {
+        StringHolder dirArg = ap.addStringOption("-dir");
+        StringHolder threadsArg = ap.addStringOption("-threads");
+        StringHolder typeArg = ap.addStringOption("-type");
+        ap.match();
+
+        // total threads for every disc together
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        if (threadsArg.value != null) {
+            try {
+                iThreads = Integer.parseInt(threadsArg.value);
+            } catch (NumberFormatException ex) {
+                throw new CommandLineException(I.CMD_BATCH_THREADS_INVALID(threadsArg.value), ex);
+            }
+            if (iThreads < 1)
+                throw new CommandLineException(I.CMD_BATCH_THREADS_INVALID(threadsArg.value));
+        }
+
+        File listOrDir = new File(_sListOrDir);
+        List<File> discs = listDiscs(listOrDir);
+        if (discs.isEmpty())
+            throw new CommandLineException(I.CMD_BATCH_NO_DISCS(listOrDir));
+        final int iDiscsAtOnce = Math.min(iThreads, discs.size());
+        // threads left over when there are fewer discs than threads
+        final int iDecodeThreads = Math.max(1, iThreads / iDiscsAtOnce);
+
+        File outputRoot = new File(dirArg.value == null ? "." : dirArg.value);
+        HashSet<String> usedDirNames = new HashSet<String>();
+
+        _fbs.println(I.CMD_BATCH_STARTING(discs.size(), iDiscsAtOnce * iDecodeThreads));
+
+        long lngStart = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(iDiscsAtOnce, new DaemonThreadFactory("Batch"));
+        int iFailed = 0;
+        try {
+            CompletionService<DiscResult> completed = new ExecutorCompletionService<DiscResult>(pool);
+            for (File disc : discs) {
+                // discs with the same name in different directories each get their own output
+                String sDirName = Misc.removeExt(disc.getName());
+                for (int i = 2; !usedDirNames.add(sDirName.toLowerCase()); i++)
+                    sDirName = Misc.removeExt(disc.getName()) + "_" + i;
+
+                File outputDir = new File(outputRoot, sDirName);
+                // the batch -threads option has been matched, so the
+                // savers only see the share of the threads for each disc
+                ArgParser saveAp = iDecodeThreads > 1
+                                   ? ap.copyAppend("-threads", String.valueOf(iDecodeThreads))
+                                   : ap.copy();
+                completed.submit(new DiscTask(disc, outputDir, typeArg.value, saveAp));
+            }
+
+            for (int i = 0; i < discs.size(); i++) {
+                DiscResult result;
+                try {
+                    result = completed.take().get();
+                } catch (InterruptedException ex) {
+                    throw new CommandLineException(ex);
+                } catch (ExecutionException ex) {
+                    // the task catches everything, so this should not happen
+                    throw new CommandLineException(ex.getCause());
+                }
+                if (result.blnFailed) {
+                    iFailed++;
+                    _fbs.printlnErr(result.message);
+                } else {
+                    _fbs.println(result.message);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long lngEnd = System.currentTimeMillis();
+
+        _fbs.println(I.CMD_BATCH_SUMMARY(discs.size() - iFailed, discs.size(),
+                                         (lngEnd - lngStart) / 1000.0));
+        if (iFailed > 0)
+            throw new CommandLineException(I.CMD_BATCH_DISCS_FAILED(iFailed));
+    }
+
+    private static @Nonnull List<File> listDiscs(@Nonnull File listOrDir)
+            throws CommandLineException
+    {
+        ArrayList<File> discs = new ArrayList<File>();
+        if (listOrDir.isDirectory()) {
+            File[] aoFiles = listOrDir.listFiles();
+            if (aoFiles == null)
+                throw new CommandLineException(I.IO_READING_FILE_ERROR_NAME(listOrDir.toString()));
+            Arrays.sort(aoFiles);
+            for (File file : aoFiles) {
+                if (file.isFile() && isDiscImage(file))
+                    discs.add(file);
+            }
+        } else {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(listOrDir), "UTF-8"));
+                String sLine;
+                while ((sLine = reader.readLine()) != null) {
+                    sLine = sLine.trim();
+                    if (sLine.length() == 0 || sLine.startsWith("#"))
+                        continue;
+                    File disc = new File(sLine);
+                    if (!disc.isAbsolute())
+                        disc = new File(listOrDir.getAbsoluteFile().getParentFile(), sLine);
+                    discs.add(disc);
+                }
+            } catch (FileNotFoundException ex) {
+                throw new CommandLineException(I.CMD_FILE_NOT_FOUND_FILE(listOrDir), ex);
+            } catch (IOException ex) {
+                throw new CommandLineException(I.IO_READING_FILE_ERROR_NAME(listOrDir.toString()), ex);
+            } finally {
+                IO.closeSilently(reader, LOG);
+            }
+        }
+        return discs;
+    }
+
+    private static boolean isDiscImage(@Nonnull File file) {
+        String sName = file.getName().toLowerCase();
+        for (String sExt : DISC_EXTENSIONS) {
+            if (sName.endsWith(sExt))
+                return true;
+        }
+        return false;
+    }
+
+    /** What happened to one disc. */
+    private static class DiscResult {
+        public final boolean blnFailed;
+        @Nonnull
+        public final ILocalizedMessage message;
+
+        public DiscResult(boolean blnFailed, @Nonnull ILocalizedMessage message) {
+            this.blnFailed = blnFailed;
+            this.message = message;
+        }
+    }
+
+    /** Indexes and saves one disc. Everything that would be printed goes
+     * to a file in the disc's output directory.
+     * Never throws, any failure is returned in the result. */
+    private class DiscTask implements Callable<DiscResult> {
+        @Nonnull
+        private final File _disc;
+        @Nonnull
+        private final File _outputDir;
+        @CheckForNull
+        private final String _sType;
+        @Nonnull
+        private final ArgParser _ap;
+
+        public DiscTask(@Nonnull File disc, @Nonnull File outputDir,
+                        @CheckForNull String sType, @Nonnull ArgParser ap)
+        {
+            _disc = disc;
+            _outputDir = outputDir;
+            _sType = sType;
+            _ap = ap;
+        }
+
+        public @Nonnull DiscResult call() {
+            // printed when a thread picks up the disc, not when it is queued
+            _fbs.println(I.CMD_BATCH_DISC_STARTED(_disc, _outputDir));
+            long lngStart = System.currentTimeMillis();
+            PrintStream ps = null;
+            CdFileSectorReader cd = null;
+            ConsoleProgressLogger saveLog = null;
+            try {
+                IO.makeDirs(_outputDir);
+                File outputFile = new File(_outputDir, I.BATCH_OUTPUT_FILE_BASE_NAME().getLocalizedMessage() + ".txt");
+                ps = new PrintStream(new FileOutputStream(outputFile), true, "UTF-8");
+                FeedbackStream fbs = new FeedbackStream(ps, _fbs.getLevel());
+
+                cd = CommandLine.loadDisc(_disc.getPath(), isMemoryMap(), fbs);
+                DiscIndex index = getIndex(cd, fbs);
+
+                ArrayList<DiscItem> items = new ArrayList<DiscItem>();
+                for (DiscItem item : index) {
+                    if (_sType == null || item.getType().getName().equalsIgnoreCase(_sType))
+                        items.add(item);
+                }
+
+                int iFileCount = 0;
+                if (items.isEmpty()) {
+                    if (_sType != null)
+                        fbs.println(I.CMD_NO_ITEMS_OF_TYPE(_sType));
+                } else {
+                    saveLog = new ConsoleProgressLogger(logBaseName(I.SAVE_LOG_FILE_BASE_NAME()), ps);
+                    iFileCount = Command_Items.saveAll(items, _outputDir, _ap, fbs, saveLog);
+                    fbs.println(I.CMD_ALL_ITEMS_COMPLETE());
+                }
+
+                long lngEnd = System.currentTimeMillis();
+                return new DiscResult(false, I.CMD_BATCH_DISC_DONE(_disc, items.size(), iFileCount,
+                                                                   (lngEnd - lngStart) / 1000.0));
+            } catch (CommandLineException ex) {
+                ILocalizedMessage msg = ex.getSourceMessage();
+                if (msg == null) {
+                    LOG.log(Level.SEVERE, null, ex);
+                    msg = I.CMD_ERR_EX_CLASS(ex, ex.getClass().getSimpleName());
+                } else {
+                    msg.logEnglish(LOG, Level.SEVERE, ex);
+                }
+                if (ps != null)
+                    ps.println(msg.getLocalizedMessage());
+                return new DiscResult(true, I.CMD_BATCH_DISC_FAILED(_disc, msg));
+            } catch (LocalizedFileNotFoundException ex) {
+                ex.getSourceMessage().logEnglish(LOG, Level.SEVERE, ex);
+                return new DiscResult(true, I.CMD_BATCH_DISC_FAILED(_disc, ex.getSourceMessage()));
+            } catch (Throwable ex) {
+                LOG.log(Level.SEVERE, "Unhandled exception", ex);
+                ILocalizedMessage msg = I.CMD_ERR_EX_CLASS(ex, ex.getClass().getSimpleName());
+                if (ps != null)
+                    ps.println(msg.getLocalizedMessage());
+                return new DiscResult(true, I.CMD_BATCH_DISC_FAILED(_disc, msg));
+            } finally {
+                if (saveLog != null)
+                    saveLog.close();
+                if (cd != null)
+                    IO.closeSilently(cd, LOG);
+                if (ps != null)
+                    ps.close();
+            }
+        }
+
+        /** Uses the index already in the output directory, otherwise
+         * indexes the disc and saves the index there. */
+        private @Nonnull DiscIndex getIndex(@Nonnull CdFileSectorReader cd,
+                                            @Nonnull FeedbackStream fbs)
+                throws CommandLineException
+        {
+            File indexFile = new File(_outputDir, Misc.removeExt(_disc.getName()) + ".idx");
+            if (indexFile.exists()) {
+                fbs.println(I.CMD_READING_INDEX_FILE(indexFile.getPath()));
+                UserFriendlyLogger log = new UserFriendlyLogger(logBaseName(I.INDEX_LOG_FILE_BASE_NAME()));
+                DiscIndex index;
+                try {
+                    index = new DiscIndex(indexFile.getPath(), cd, log);
+                } catch (IOException ex) {
+                    throw new CommandLineException(I.ERR_LOADING_INDEX_FILE(), ex);
+                } catch (DeserializationFail ex) {
+                    throw new CommandLineException(I.ERR_LOADING_INDEX_FILE(), ex);
+                } finally {
+                    log.close();
+                }
+                fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+                return index;
+            } else {
+                // several discs are already being converted at once
+                DiscIndex index = CommandLine.buildIndex(cd, 1, fbs, logBaseName(I.INDEX_LOG_FILE_BASE_NAME()));
+                CommandLine.saveIndex(index, indexFile.getPath(), fbs);
+                return index;
+            }
+        }
+
+        private @Nonnull String logBaseName(@Nonnull ILocalizedMessage baseName) {
+            return new File(_outputDir, baseName.getLocalizedMessage()).getPath();
+        }
+    }
+
+}
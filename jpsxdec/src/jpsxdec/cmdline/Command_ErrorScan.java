@@ -0,0 +1,143 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cmdline;
+
+import argparser.StringHolder;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.SectorErrorCorrection;
+import jpsxdec.cdreaders.SectorErrorMap;
+import jpsxdec.i18n.I;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.util.ArgParser;
+import jpsxdec.util.ConsoleProgressLogger;
+import jpsxdec.util.IO;
+import jpsxdec.util.TaskCanceledException;
+
+/** Verifies the EDC and ECC of every sector of a raw disc image and saves
+ * which sectors have errors, so bad rips can be found before spending time
+ * converting them. The saved map can be given to other commands with
+ * {@code -errormap}. */
+class Command_ErrorScan extends Command {
+
+    private static final Logger LOG = Logger.getLogger(Command_ErrorScan.class.getName());
+
+    @Nonnull
+    private String _sMapFile;
+
+    public Command_ErrorScan() {
+        super("-errorscan");
+    }
+
+    protected @CheckForNull ILocalizedMessage validate(@Nonnull String s) {
+        _sMapFile = s;
+        return null;
+    }
+
+    public void execute(@Nonnull ArgParser ap) throws CommandLineException {
+        StringHolder threadsArg = ap.addStringOption("-threads");
+        ap.match();
+
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        if (threadsArg.value != null) {
+            try {
+                iThreads = Integer.parseInt(threadsArg.value);
+            } catch (NumberFormatException ex) {
+                throw new CommandLineException(I.CMD_ERRORSCAN_THREADS_INVALID(threadsArg.value), ex);
+            }
+            if (iThreads < 1)
+                throw new CommandLineException(I.CMD_ERRORSCAN_THREADS_INVALID(threadsArg.value));
+        }
+
+        CdFileSectorReader cd = getCdReader();
+        try {
+            if (!SectorErrorMap.canScan(cd))
+                throw new CommandLineException(I.CMD_ERRORSCAN_NOT_RAW(cd.getTypeDescription()));
+            // every sector is read exactly once, which mapping does best
+            if (!cd.isMemoryMapped())
+                CommandLine.memoryMapDisc(cd, _fbs);
+
+            _fbs.println(I.CMD_ERRORSCAN_STARTING(cd.getLength(), iThreads));
+            long lngStart = System.currentTimeMillis();
+            SectorErrorMap map;
+            ConsoleProgressLogger cpl = new ConsoleProgressLogger(
+                    I.ERRORSCAN_LOG_FILE_BASE_NAME().getLocalizedMessage(), _fbs.getUnderlyingStream());
+            try {
+                map = SectorErrorMap.scan(cd, iThreads, cpl);
+            } catch (IOException ex) {
+                throw new CommandLineException(I.CMD_ERRORSCAN_FAILED(), ex);
+            } catch (TaskCanceledException ex) {
+                throw new RuntimeException("Impossible TaskCanceledException during commandline error scan", ex);
+            } finally {
+                cpl.close();
+            }
+            long lngEnd = System.currentTimeMillis();
+
+            int iRepairable = 0;
+            for (int i = map.nextErrorSector(0); i >= 0; i = map.nextErrorSector(i + 1)) {
+                _fbs.printlnMore(I.CMD_ERRORSCAN_SECTOR(i, map.describeErrors(i)));
+                // Full Reed-Solomon correction isn't attempted, but if the
+                // EDC matches then the data is fine and only the parity is bad
+                if ((map.getSectorErrors(i) & SectorErrorCorrection.Verifier.EDC_ERROR) == 0)
+                    iRepairable++;
+            }
+
+            _fbs.println(I.CMD_ERRORSCAN_SUMMARY(map.getCheckedCount(), map.getErrorSectorCount(),
+                                                 map.getEdcErrorCount(), map.getEccPErrorCount(),
+                                                 map.getEccQErrorCount(), (lngEnd - lngStart) / 1000.0));
+            if (iRepairable > 0)
+                _fbs.println(I.CMD_ERRORSCAN_REPAIRABLE(iRepairable));
+
+            _fbs.println(I.CMD_ERRORSCAN_SAVING(_sMapFile));
+            try {
+                map.write(new File(_sMapFile));
+            } catch (FileNotFoundException ex) {
+                throw new CommandLineException(I.IO_OPENING_FILE_NOT_FOUND_NAME(_sMapFile), ex);
+            }
+        } finally {
+            IO.closeSilently(cd, LOG);
+        }
+    }
+
+}
@@ -43,6 +43,8 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -56,6 +58,7 @@ import jpsxdec.discitems.DiscItemTim;
 import jpsxdec.discitems.DiscItemVideoStream;
 import jpsxdec.discitems.DiscItemXaAudioStream;
 import jpsxdec.discitems.IDiscItemSaver;
+import jpsxdec.discitems.savers.SectorSweep;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.UnlocalizedMessage;
@@ -97,7 +100,11 @@ class Command_Items {
             }
         }
         public void execute(@Nonnull ArgParser ap) throws CommandLineException {
-            DiscIndex discIndex = getIndex();
+            DiscIndex discIndex;
+            if (_sItemId != null)
+                discIndex = getIndexForItem(_sItemId);
+            else
+                discIndex = getIndexForItem(Integer.valueOf(_iItemNum));
 
             DiscItem item;
             if (_sItemId != null) {
@@ -138,16 +145,30 @@ class Command_Items {
         public void execute(@Nonnull ArgParser ap) throws CommandLineException {
             DiscIndex discIndex = getIndex();
 
-            boolean blnFound = false;
+            ArrayList<DiscItem> items = new ArrayList<DiscItem>();
+            for (DiscItem item : discIndex) {
+                if (item.getType().getName().equalsIgnoreCase(_sType))
+                    items.add(item);
+            }
+
+            if (items.isEmpty()) {
+                _fbs.println(I.CMD_NO_ITEMS_OF_TYPE(_sType));
+                return;
+            }
+
             ConsoleProgressLogger saveLog = new ConsoleProgressLogger(
                     I.SAVE_LOG_FILE_BASE_NAME().getLocalizedMessage(), _fbs.getUnderlyingStream());
             ConsoleProgressLogger replaceLog = new ConsoleProgressLogger(
                     I.REPLACE_LOG_FILE_BASE_NAME().getLocalizedMessage(), _fbs.getUnderlyingStream());
 
             try {
-                for (DiscItem item : discIndex) {
-                    if (item.getType().getName().equalsIgnoreCase(_sType)) {
-                        blnFound = true;
+                ArgParser saveAp = ap.copy();
+                ItemArgs itemArgs = new ItemArgs(saveAp);
+                if (itemArgs.isSave()) {
+                    // just saving, so all the items can share one pass over the disc
+                    saveAll(items, itemArgs.getDir(), saveAp, _fbs, saveLog);
+                } else {
+                    for (DiscItem item : items) {
                         handleItem(item, ap.copy(), _fbs, saveLog, replaceLog);
                         _fbs.println(I.CMD_ITEM_COMPLETE());
                         _fbs.println();
@@ -158,11 +179,53 @@ class Command_Items {
                 replaceLog.close();
             }
 
-            if (!blnFound) {
-                _fbs.println(I.CMD_NO_ITEMS_OF_TYPE(_sType));
-            } else {
-                _fbs.println(I.CMD_ALL_ITEMS_COMPLETE());
-            }
+            _fbs.println(I.CMD_ALL_ITEMS_COMPLETE());
+        }
+    }
+
+    /** The item options that aren't for the saver. */
+    private static class ItemArgs {
+        @Nonnull
+        public final BooleanHolder fpsDump;
+        @Nonnull
+        public final BooleanHolder itemHelp;
+        @Nonnull
+        public final BooleanHolder frameInfo;
+        @Nonnull
+        public final StringHolder replaceFrames;
+        @Nonnull
+        public final StringHolder replaceTim;
+        @Nonnull
+        public final StringHolder replaceXa;
+        @Nonnull
+        public final StringHolder xaNum;
+        @Nonnull
+        public final StringHolder directory;
+
+        public ItemArgs(@Nonnull ArgParser ap) {
+            fpsDump = ap.addBoolOption("-fpsdump");
+            itemHelp = ap.addHelp();
+            frameInfo = ap.addBoolOption("-frameinfodump");
+            replaceFrames = ap.addStringOption("-replaceframes");
+            replaceTim = ap.addStringOption("-replacetim");
+            replaceXa = ap.addStringOption("-replacexa");
+            xaNum = ap.addStringOption("-xa");
+            directory = ap.addStringOption("-dir");
+            ap.match();
+        }
+
+        /** If none of the options are asking for something besides saving. */
+        public boolean isSave() {
+            return !fpsDump.value && !itemHelp.value && !frameInfo.value &&
+                   replaceFrames.value == null && replaceTim.value == null &&
+                   replaceXa.value == null;
+        }
+
+        public @CheckForNull File getDir() {
+            if (directory.value != null)
+                return new File(directory.value);
+            else
+                return null;
         }
     }
 
@@ -173,18 +236,10 @@ class Command_Items {
                                    @Nonnull ConsoleProgressLogger replaceLog)
             throws CommandLineException
     {
-        BooleanHolder fpsDumpArg = ap.addBoolOption("-fpsdump");
-        BooleanHolder itemHelpArg = ap.addHelp();
-        BooleanHolder frameInfoArg = ap.addBoolOption("-frameinfodump");
-        StringHolder replaceFrames = ap.addStringOption("-replaceframes");
-        StringHolder replaceTim = ap.addStringOption("-replacetim");
-        StringHolder replaceXa = ap.addStringOption("-replacexa");
-        StringHolder xaNum = ap.addStringOption("-xa");
-        StringHolder directory = ap.addStringOption("-dir");
-        ap.match();
+        ItemArgs args = new ItemArgs(ap);
 
         try {
-            if (fpsDumpArg.value) {
+            if (args.fpsDump.value) {
 
                 if (!(item instanceof DiscItemStrVideoStream)) {
                     throw new CommandLineException(I.CMD_DISC_ITEM_NOT_VIDEO());
@@ -199,27 +254,27 @@ class Command_Items {
                     }
                 }
 
-            } else if (itemHelpArg.value) {
+            } else if (args.itemHelp.value) {
                 fbs.println(I.CMD_DETAILED_HELP_FOR());
                 fbs.println(new UnlocalizedMessage(item.toString()));
                 item.makeSaverBuilder().printHelp(fbs);
-            } else if (frameInfoArg.value) {
+            } else if (args.frameInfo.value) {
                 if (!(item instanceof DiscItemVideoStream)) {
                     throw new CommandLineException(I.CMD_DISC_ITEM_NOT_VIDEO());
                 } else {
                     ((DiscItemVideoStream)item).frameInfoDump(fbs.getUnderlyingStream(),
                                                               fbs.getLevel() >= FeedbackStream.MORE);
                 }
-            } else if (replaceFrames.value != null) {
+            } else if (args.replaceFrames.value != null) {
                 if (!(item instanceof DiscItemVideoStream)) {
                     throw new CommandLineException(I.CMD_DISC_ITEM_NOT_VIDEO());
                 } else {
                     fbs.printlnWarn(I.CMD_BACKUP_DISC_IMAGE_WARNING());
                     fbs.printlnWarn(I.CMD_REOPENING_DISC_WRITE_ACCESS());
                     item.getSourceCd().reopenForWriting();
-                    ((DiscItemVideoStream)item).replaceFrames(replaceLog, replaceFrames.value);
+                    ((DiscItemVideoStream)item).replaceFrames(replaceLog, args.replaceFrames.value);
                 }
-            } else if (replaceTim.value != null) {
+            } else if (args.replaceTim.value != null) {
                 if (!(item instanceof DiscItemTim)) {
                     throw new CommandLineException(I.CMD_DISC_ITEM_NOT_TIM());
                 } else {
@@ -227,34 +282,34 @@ class Command_Items {
                     if (timItem.getPaletteCount() != 1) {
                         throw new CommandLineException(I.CMD_UNABLE_TO_REPLACE_MULTI_PAL_TIM());
                     }
-                    BufferedImage bi = ImageIO.read(new File(replaceTim.value));
+                    BufferedImage bi = ImageIO.read(new File(args.replaceTim.value));
                     fbs.printlnWarn(I.CMD_BACKUP_DISC_IMAGE_WARNING());
                     fbs.printlnWarn(I.CMD_REOPENING_DISC_WRITE_ACCESS());
                     item.getSourceCd().reopenForWriting();
                     timItem.replace(fbs, bi);
                 }
-            } else if (replaceXa.value != null) {
+            } else if (args.replaceXa.value != null) {
                 if (!(item instanceof DiscItemXaAudioStream)) {
                     throw new CommandLineException(I.CMD_DISC_ITEM_NOT_XA());
                 } else {
                     fbs.printlnWarn(I.CMD_BACKUP_DISC_IMAGE_WARNING());
                     DiscItemXaAudioStream xaItem = (DiscItemXaAudioStream)item;
-                    if (xaNum.value != null) {
-                        fbs.println(I.CMD_XA_REPLACE_OPENING_PATCH_IDX(replaceXa.value));
+                    if (args.xaNum.value != null) {
+                        fbs.println(I.CMD_XA_REPLACE_OPENING_PATCH_IDX(args.replaceXa.value));
                         DiscIndex patchIndex;
                         try {
-                            patchIndex = new DiscIndex(replaceXa.value, replaceLog);
+                            patchIndex = new DiscIndex(args.replaceXa.value, replaceLog);
                         } catch (IOException ex) {
                             throw new CommandLineException(ex);
                         }
                         DiscItemXaAudioStream patchXa;
                         try {
-                            int iPatchXaIndex = Integer.parseInt(xaNum.value);
+                            int iPatchXaIndex = Integer.parseInt(args.xaNum.value);
                             patchXa = (DiscItemXaAudioStream) patchIndex.getByIndex(iPatchXaIndex);
                             if (patchXa == null)
                                 throw new NullPointerException();
                         } catch (Throwable ex) {
-                            throw new CommandLineException(I.CMD_XA_REPLACE_BAD_ITEM_NUM(xaNum.value), ex);
+                            throw new CommandLineException(I.CMD_XA_REPLACE_BAD_ITEM_NUM(args.xaNum.value), ex);
                         }
                         fbs.printlnWarn(I.CMD_REOPENING_DISC_WRITE_ACCESS());
                         item.getSourceCd().reopenForWriting();
@@ -262,15 +317,11 @@ class Command_Items {
                     } else {
                         fbs.printlnWarn(I.CMD_REOPENING_DISC_WRITE_ACCESS());
                         item.getSourceCd().reopenForWriting();
-                        xaItem.replaceXa(replaceLog, new File(replaceXa.value));
+                        xaItem.replaceXa(replaceLog, new File(args.replaceXa.value));
                     }
                 }
             } else {
-                File dir;
-                if (directory.value != null)
-                    dir = new File(directory.value);
-                else
-                    dir = null;
+                File dir = args.getDir();
                 // decode/extract the desired disc item
                 decodeDiscItem(item, dir, ap, fbs, saveLog);
                 fbs.println(I.CMD_PROCESS_COMPLETE());
@@ -326,4 +377,60 @@ class Command_Items {
         fbs.println(I.PROCESS_TIME((lngEnd - lngStart) / 1000.0));
     }
 
+    /** Saves all the items, sharing reads of the disc between them
+     * wherever their sectors overlap.
+     * @return the number of files created. */
+    static int saveAll(@Nonnull List<DiscItem> items, @CheckForNull File dir,
+                       @Nonnull ArgParser ap,
+                       @Nonnull final FeedbackStream fbs,
+                       @Nonnull ConsoleProgressLogger cpl)
+            throws CommandLineException
+    {
+        final int[] aiFileCount = { 0 };
+        try {
+            SectorSweep sweep = new SectorSweep(items.get(0).getSourceCd());
+            for (DiscItem item : items) {
+                DiscItemSaverBuilder builder = item.makeSaverBuilder();
+
+                fbs.println(I.CMD_SAVING(item));
+
+                builder.commandLineOptions(ap.copy(), fbs);
+
+                fbs.println();
+
+                IDiscItemSaver saver = builder.makeSaver(dir);
+
+                saver.printSelectedOptions(fbs);
+
+                cpl.log(Level.INFO, new UnlocalizedMessage(item.toString()));
+                sweep.add(saver);
+            }
+
+            fbs.println(I.CMD_ALL_SAVING_IN_ONE_PASS(sweep.getSweepSaverCount()));
+
+            long lngStart, lngEnd;
+            lngStart = System.currentTimeMillis();
+            try {
+                cpl.log(Level.INFO, new UnlocalizedMessage(items.get(0).getSourceCd().toString()));
+                sweep.save(cpl, new SectorSweep.Listener() {
+                    public void saverComplete(@Nonnull IDiscItemSaver saver) {
+                        File[] aoGenerated = saver.getGeneratedFiles();
+                        int iGenerated = aoGenerated == null ? 0 : aoGenerated.length;
+                        aiFileCount[0] += iGenerated;
+                        fbs.println(I.CMD_ALL_ITEM_SAVED(saver.getDiscItem(), iGenerated));
+                    }
+                });
+            } catch (TaskCanceledException ex) {
+                LOG.log(Level.SEVERE, "SHOULD NEVER HAPPEN", ex);
+            }
+            lngEnd = System.currentTimeMillis();
+            fbs.println(I.PROCESS_TIME((lngEnd - lngStart) / 1000.0));
+        } catch (Throwable ex) {
+            ILocalizedMessage msg = I.CMD_ERR_EX_CLASS(ex, ex.getClass().getSimpleName());
+            cpl.log(Level.SEVERE, msg, ex);
+            throw new CommandLineException(msg, ex);
+        }
+        return aiFileCount[0];
+    }
+
 }
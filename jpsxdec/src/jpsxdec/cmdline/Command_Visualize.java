@@ -38,14 +38,23 @@
 package jpsxdec.cmdline;
 
 import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.imageio.ImageIO;
 import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.SectorErrorMap;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
@@ -55,9 +64,50 @@ import jpsxdec.sectors.IdentifiedSectorIterator;
 import jpsxdec.sectors.UnidentifiedSector;
 import jpsxdec.util.ArgParser;
 import jpsxdec.util.IO;
+import jpsxdec.util.Misc;
 
 
 class Command_Visualize extends Command {
+
+    private static final int SECTOR_SECTION_SIZE = 32;
+    private static final int TEXT_LINE_HEIGHT = 16;
+    private static final int BOX_AREA_WIDTH = 16;
+    private static final int BOX_MARGIN_LEFT = 2;
+    private static final int BOX_MARGIN_RIGHT = 2;
+    private static final int BOX_WIDTH = BOX_AREA_WIDTH - (BOX_MARGIN_RIGHT + BOX_MARGIN_LEFT);
+    private static final double MAX_PDF_SIZE = 200.0 * 72.0 - 18.0;
+    /** Sectors (pixel rows) in each PNG image. A whole CD is about
+     * 330,000 sectors, which is too tall for one image. */
+    private static final int PNG_TILE_SECTORS = 8192;
+    /** Item labels are drawn above the start of the item. */
+    private static final int PNG_LABEL_HEIGHT = 10;
+
+    /** A filled box on the sector map, covering a run of sectors.
+     * Coordinates are in sectors, so the same boxes can be drawn to
+     * a PDF or an image at any scale. */
+    static class MapBox {
+        public final int _iX;
+        public final int _iWidth;
+        public final int _iStartSector;
+        public final int _iSectorCount;
+        @Nonnull
+        public final Color _color;
+        /** Index items are outlined and labeled. */
+        @CheckForNull
+        public final String _sLabel;
+
+        public MapBox(int iX, int iWidth, int iStartSector, int iEndSectorExclusive,
+                      @Nonnull Color color, @CheckForNull String sLabel)
+        {
+            _iX = iX;
+            _iWidth = iWidth;
+            _iStartSector = iStartSector;
+            _iSectorCount = iEndSectorExclusive - iStartSector;
+            _color = color;
+            _sLabel = sLabel;
+        }
+    }
+
     @Nonnull
     private String _sOutfile;
 
@@ -71,17 +121,12 @@ class Command_Visualize extends Command {
     }
 
     public void execute(@Nonnull ArgParser ap) throws CommandLineException {
-        DiscIndex index = getIndex();
+        DiscIndex index = loadIndex();
         CdFileSectorReader cd = index.getSourceCd();
-        FileOutputStream pdfStream = null;
+        SectorErrorMap errorMap = getErrorMap(cd);
+        if (errorMap != null)
+            CommandLine.warnSectorErrors(index, errorMap, _fbs);
         try {
-            final int SECTOR_SECTION_SIZE = 32;
-            final int TEXT_LINE_HEIGHT = 16;
-            final int BOX_AREA_WIDTH = 16;
-            final int BOX_MARGIN_LEFT = 2;
-            final int BOX_MARGIN_RIGHT = 2;
-            final int BOX_WIDTH = BOX_AREA_WIDTH - (BOX_MARGIN_RIGHT + BOX_MARGIN_LEFT);
-            final double MAX_PDF_SIZE = 200.0 * 72.0 - 18.0;
             /* priority:
              * ISO file
              * video
@@ -91,102 +136,207 @@ class Command_Visualize extends Command {
              * summarize to just the important data-points
              */
             _fbs.println(I.CMD_GENERATING_VISUALIZATION());
-            int[] aiDataPoints = extractDataPoints(index);
+            DiscItem[] aoItems = sortedItems(index);
+            int[] aiDataPoints = extractDataPoints(aoItems);
             // pre-determine the tree-area width based on max point of overalpping items
-            int iMaxOverlap = findMaxOverlap(aiDataPoints, index);
+            int iMaxOverlap = findMaxOverlap(aiDataPoints, aoItems);
             //########################################################
             int iWidth = SECTOR_SECTION_SIZE + iMaxOverlap * TEXT_LINE_HEIGHT + iMaxOverlap * BOX_AREA_WIDTH;
             int iHeight = cd.getLength() + 1;
-            final double SCALE;
-            if (iHeight < MAX_PDF_SIZE) {
-                SCALE = 1;
-            } else {
-                SCALE = MAX_PDF_SIZE / iHeight;
+
+            ArrayList<MapBox> boxes = new ArrayList<MapBox>();
+            addSectorBoxes(cd, errorMap, boxes);
+            addItemBoxes(aoItems, aiDataPoints, iMaxOverlap, boxes);
+
+            if ("png".equalsIgnoreCase(Misc.getExt(_sOutfile)))
+                writePngTiles(boxes, iWidth, iHeight);
+            else
+                writePdf(boxes, iWidth, iHeight);
+        } catch (Exception ex) {
+            throw new CommandLineException(I.CMD_VISUALIZATION_ERR(), ex);
+        }
+    }
+
+    /** Adds a box for each run of sectors of the same type, then a box
+     * for each run of sectors with EDC/ECC errors (on the right half). */
+    void addSectorBoxes(@Nonnull CdFileSectorReader cd, @CheckForNull SectorErrorMap errorMap,
+                        @Nonnull List<MapBox> boxes)
+    {
+        ArrayList<MapBox> errorBoxes = new ArrayList<MapBox>();
+        // null if the sector couldn't be read, so nothing is drawn
+        Class<?> runClass = null;
+        int iRunStart = 0;
+        int iErrorRunStart = -1;
+        IdentifiedSectorIterator it = IdentifiedSectorIterator.create(cd);
+        int iSector;
+        for (iSector = 0; it.hasNext(); iSector++) {
+            Class<?> sectorClass;
+            try {
+                IdentifiedSector sector = it.next();
+                if (sector == null)
+                    sectorClass = UnidentifiedSector.class;
+                else
+                    sectorClass = sector.getClass();
+            } catch (IOException ex) {
+                ex.printStackTrace(); // TODO?
+                sectorClass = null;
+            }
+            if (sectorClass != runClass) {
+                if (runClass != null)
+                    boxes.add(new MapBox(0, SECTOR_SECTION_SIZE, iRunStart, iSector, classToColor(runClass), null));
+                runClass = sectorClass;
+                iRunStart = iSector;
             }
+
+            boolean blnError = errorMap != null && errorMap.hasErrors(iSector);
+            if (blnError && iErrorRunStart < 0) {
+                iErrorRunStart = iSector;
+            } else if (!blnError && iErrorRunStart >= 0) {
+                errorBoxes.add(makeErrorBox(iErrorRunStart, iSector));
+                iErrorRunStart = -1;
+            }
+        }
+        if (runClass != null)
+            boxes.add(new MapBox(0, SECTOR_SECTION_SIZE, iRunStart, iSector, classToColor(runClass), null));
+        if (iErrorRunStart >= 0)
+            errorBoxes.add(makeErrorBox(iErrorRunStart, iSector));
+        boxes.addAll(errorBoxes);
+    }
+
+    private static @Nonnull MapBox makeErrorBox(int iStartSector, int iEndSectorExclusive) {
+        return new MapBox(SECTOR_SECTION_SIZE / 2, SECTOR_SECTION_SIZE / 2,
+                          iStartSector, iEndSectorExclusive, Color.RED, null);
+    }
+
+    /** Adds a box for each item, in the first column free at its start.
+     * @param aoItems Sorted by start sector. */
+    void addItemBoxes(@Nonnull DiscItem[] aoItems, @Nonnull int[] aiDataPoints,
+                      int iMaxOverlap, @Nonnull List<MapBox> boxes)
+    {
+        DiscItem[] aoRunningItems = new DiscItem[iMaxOverlap];
+        int iNextItem = 0;
+        /*
+         * at each datapoint, there are basically 3 different things that can happen
+         * 1) 1 item begins
+         * 2) 2 or more items begin
+         * and
+         * 3) one or more items end
+         *
+         * Also, disc items can begin and end at the same sector
+         *
+         */
+        for (int iDataPoint : aiDataPoints) {
+            // open
+            for (; iNextItem < aoItems.length && aoItems[iNextItem].getStartSector() == iDataPoint; iNextItem++) {
+                DiscItem item = aoItems[iNextItem];
+                int i = findFree(aoRunningItems);
+                aoRunningItems[i] = item;
+                boxes.add(new MapBox(SECTOR_SECTION_SIZE + i * BOX_AREA_WIDTH + BOX_MARGIN_LEFT, BOX_WIDTH,
+                                     item.getStartSector(), item.getStartSector() + item.getSectorLength(),
+                                     classToColor(item.getClass()), item.toString()));
+            }
+            for (int i = 0; i < aoRunningItems.length; i++) {
+                if (aoRunningItems[i] != null) {
+                    if (iDataPoint >= aoRunningItems[i].getEndSector()) {
+                        aoRunningItems[i] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    private void writePdf(@Nonnull List<MapBox> boxes, int iWidth, int iHeight) throws Exception {
+        final double SCALE;
+        if (iHeight < MAX_PDF_SIZE) {
+            SCALE = 1;
+        } else {
+            SCALE = MAX_PDF_SIZE / iHeight;
+        }
+        FileOutputStream pdfStream = null;
+        try {
             pdfStream = new FileOutputStream(_sOutfile);
             com.pdfjet.PDF pdf = new com.pdfjet.PDF(pdfStream);
             com.pdfjet.Font pdfFont = new com.pdfjet.Font(pdf, "Helvetica");
             pdfFont.setSize(6 * SCALE);
             com.pdfjet.Page pdfPage = new com.pdfjet.Page(pdf, new double[]{iWidth * SCALE, iHeight * SCALE});
-            IdentifiedSectorIterator it = IdentifiedSectorIterator.create(cd);
-            for (int iSector = 0; it.hasNext(); iSector++) {
-                try {
-                    IdentifiedSector sector = it.next();
-                    Color c;
-                    if (sector == null)
-                        c = classToColor(UnidentifiedSector.class);
-                    else
-                        c = classToColor(sector.getClass());
-                    int[] aiRgb = {c.getRed(), c.getGreen(), c.getBlue()};
-                    
-                    com.pdfjet.Box pdfBox = new com.pdfjet.Box(0 * SCALE, iSector * SCALE, SECTOR_SECTION_SIZE * SCALE, 1 * SCALE);
-                    pdfBox.setFillShape(true);
-                    pdfBox.setLineWidth(0);
-                    pdfBox.setColor(aiRgb);
+            for (MapBox box : boxes) {
+                double x = box._iX * SCALE;
+                double y = box._iStartSector * SCALE;
+                com.pdfjet.Box pdfBox = new com.pdfjet.Box(x, y, box._iWidth * SCALE, box._iSectorCount * SCALE);
+                int[] aiRgb = {box._color.getRed(), box._color.getGreen(), box._color.getBlue()};
+                pdfBox.setColor(aiRgb);
+                pdfBox.setFillShape(true);
+                pdfBox.setLineWidth(0);
+                pdfBox.drawOn(pdfPage);
+                if (box._sLabel != null) {
+                    pdfBox.setFillShape(false);
+                    pdfBox.setColor(com.pdfjet.RGB.WHITE);
+                    pdfBox.setLineWidth(0.3 * SCALE);
                     pdfBox.drawOn(pdfPage);
-                } catch (IOException ex) {
-                    ex.printStackTrace(); // TODO?
-                }
-            }
-            DiscItem[] aoRunningItems = new DiscItem[iMaxOverlap];
-            /*
-             * at each datapoint, there are basically 3 different things that can happen
-             * 1) 1 item begins
-             * 2) 2 or more items begin
-             * and
-             * 3) one or more items end
-             *
-             * Also, disc items can begin and end at the same sector
-             *
-             */
-            for (int iDataPoint : aiDataPoints) {
-                // open
-                for (DiscItem item : index) {
-                    if (item.getStartSector() == iDataPoint) {
-                        int i = findFree(aoRunningItems);
-                        aoRunningItems[i] = item;
-                        double x = (SECTOR_SECTION_SIZE + i * BOX_AREA_WIDTH + BOX_MARGIN_LEFT) * SCALE;
-                        double y = item.getStartSector() * SCALE;
-                        double w = BOX_WIDTH * SCALE;
-                        double h = item.getSectorLength() * SCALE;
-                        // draw box
-                        com.pdfjet.Box pdfBox = new com.pdfjet.Box(x, y, w, h);
-                        Color c = classToColor(item.getClass());
-                        int[] aiRgb = {c.getRed(), c.getGreen(), c.getBlue()};
-                        pdfBox.setColor(aiRgb);
-                        pdfBox.setFillShape(true);
-                        pdfBox.setLineWidth(0);
-                        pdfBox.drawOn(pdfPage);
-                        pdfBox.setFillShape(false);
-                        pdfBox.setColor(com.pdfjet.RGB.WHITE);
-                        pdfBox.setLineWidth(0.3 * SCALE);
-                        pdfBox.drawOn(pdfPage);
-                        com.pdfjet.TextLine pdfText = new com.pdfjet.TextLine(pdfFont, item.toString());
-                        pdfText.setPosition(x, y);
-                        pdfText.setColor(com.pdfjet.RGB.DARK_GRAY);
-                        pdfText.drawOn(pdfPage);
-                    }
-                }
-                for (int i = 0; i < aoRunningItems.length; i++) {
-                    if (aoRunningItems[i] != null) {
-                        if (iDataPoint >= aoRunningItems[i].getEndSector()) {
-                            aoRunningItems[i] = null;
-                        }
-                    }
+                    com.pdfjet.TextLine pdfText = new com.pdfjet.TextLine(pdfFont, box._sLabel);
+                    pdfText.setPosition(x, y);
+                    pdfText.setColor(com.pdfjet.RGB.DARK_GRAY);
+                    pdfText.drawOn(pdfPage);
                 }
             }
             pdf.flush();
-        } catch (Exception ex) {
-            throw new CommandLineException(I.CMD_VISUALIZATION_ERR(), ex);
         } finally {
             IO.closeSilently(pdfStream, Logger.getLogger(Command_Visualize.class.getName()));
         }
     }
 
-    private final HashMap<Class, Color> colorLookup = new HashMap<Class, Color>();
+    /** Draws the map 1 pixel per sector, split into images of
+     * {@link #PNG_TILE_SECTORS} sectors named with the first sector of
+     * each image. If it fits in one image, the output file name is used
+     * as is. */
+    private void writePngTiles(@Nonnull List<MapBox> boxes, int iWidth, int iHeight) throws IOException {
+        int iTileCount = (iHeight + PNG_TILE_SECTORS - 1) / PNG_TILE_SECTORS;
+        String sBaseName = Misc.removeExt(_sOutfile);
+        int iDigitCount = String.valueOf(iHeight).length();
+        Font font = new Font("SansSerif", Font.PLAIN, 8);
+        Color textColor = new Color(64, 64, 64);
+
+        for (int iTile = 0; iTile < iTileCount; iTile++) {
+            int iTileStart = iTile * PNG_TILE_SECTORS;
+            int iTileHeight = Math.min(PNG_TILE_SECTORS, iHeight - iTileStart);
+            BufferedImage bi = new BufferedImage(iWidth, iTileHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = bi.createGraphics();
+            try {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, iWidth, iTileHeight);
+                g.translate(0, -iTileStart);
+                g.setFont(font);
+                for (MapBox box : boxes) {
+                    int iTop = box._sLabel == null ? box._iStartSector : box._iStartSector - PNG_LABEL_HEIGHT;
+                    if (iTop >= iTileStart + iTileHeight || box._iStartSector + box._iSectorCount <= iTileStart)
+                        continue;
+                    g.setColor(box._color);
+                    g.fillRect(box._iX, box._iStartSector, box._iWidth, box._iSectorCount);
+                    if (box._sLabel != null) {
+                        g.setColor(Color.WHITE);
+                        g.drawRect(box._iX, box._iStartSector, box._iWidth - 1, box._iSectorCount - 1);
+                        g.setColor(textColor);
+                        g.drawString(box._sLabel, box._iX, box._iStartSector);
+                    }
+                }
+            } finally {
+                g.dispose();
+            }
+
+            File file;
+            if (iTileCount == 1)
+                file = new File(_sOutfile);
+            else
+                file = new File(String.format("%s_%0" + iDigitCount + "d.png", sBaseName, iTileStart));
+            _fbs.println(I.IO_WRITING_FILE(file.getName()));
+            ImageIO.write(bi, "png", file);
+        }
+    }
+
+    private final HashMap<Class<?>, Color> colorLookup = new HashMap<Class<?>, Color>();
 
-    private @Nonnull Color classToColor(@Nonnull Class c) {
-        Color color = colorLookup.get(c.getClass());
+    @Nonnull Color classToColor(@Nonnull Class<?> c) {
+        Color color = colorLookup.get(c);
         if (color == null) {
             int iClr = c.getName().hashCode();
             color = new Color(iClr);
@@ -203,9 +353,22 @@ class Command_Visualize extends Command {
         return -1;
     }
 
-    private static @Nonnull int[] extractDataPoints(@Nonnull DiscIndex index) {
-        TreeSet<Integer> dataPoints = new TreeSet<Integer>();
+    /** Items sorted by start sector, so the items starting at each
+     * data point can be found without searching the whole index. */
+    static @Nonnull DiscItem[] sortedItems(@Nonnull DiscIndex index) {
+        DiscItem[] aoItems = new DiscItem[index.size()];
+        int i = 0;
         for (DiscItem item : index) {
+            aoItems[i] = item;
+            i++;
+        }
+        Arrays.sort(aoItems);
+        return aoItems;
+    }
+
+    static @Nonnull int[] extractDataPoints(@Nonnull DiscItem[] aoItems) {
+        TreeSet<Integer> dataPoints = new TreeSet<Integer>();
+        for (DiscItem item : aoItems) {
             dataPoints.add(item.getStartSector());
             dataPoints.add(item.getEndSector());
         }
@@ -219,14 +382,24 @@ class Command_Visualize extends Command {
         return aiDataPoints;
     }
 
-    private static int findMaxOverlap(@Nonnull int[] aiDataPoints, @Nonnull DiscIndex index) {
+    /** Sweeps the sorted data points, counting the items started at or
+     * before each point minus the items ended before it.
+     * @param aoItems Sorted by start sector. */
+    static int findMaxOverlap(@Nonnull int[] aiDataPoints, @Nonnull DiscItem[] aoItems) {
+        int[] aiEndSectors = new int[aoItems.length];
+        for (int i = 0; i < aoItems.length; i++) {
+            aiEndSectors[i] = aoItems[i].getEndSector();
+        }
+        Arrays.sort(aiEndSectors);
+
         int iMaxOverlap = 0;
+        int iStarted = 0, iEnded = 0;
         for (int iSector : aiDataPoints) {
-            int iSectorOverlap = 0;
-            for (DiscItem item : index) {
-                if (iSector >= item.getStartSector() && iSector <= item.getEndSector())
-                    iSectorOverlap++;
-            }
+            while (iStarted < aoItems.length && aoItems[iStarted].getStartSector() <= iSector)
+                iStarted++;
+            while (iEnded < aiEndSectors.length && aiEndSectors[iEnded] < iSector)
+                iEnded++;
+            int iSectorOverlap = iStarted - iEnded;
             if (iSectorOverlap > iMaxOverlap)
                 iMaxOverlap = iSectorOverlap;
         }
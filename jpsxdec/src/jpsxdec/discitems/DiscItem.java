@@ -176,7 +176,9 @@ public abstract class DiscItem implements Comparable<DiscItem> {
     }
     
     /** Returns how likely the supplied {@link DiscItem} 
-     * is a child of this item. */
+     * is a child of this item.
+     * Only items whose sectors overlap the child's sectors are asked,
+     * so a non-zero rating should only be returned if they overlap. */
     public int getParentRating(@Nonnull DiscItem child) {
         return 0;
     }
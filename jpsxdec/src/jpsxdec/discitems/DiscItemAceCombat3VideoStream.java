@@ -156,8 +156,8 @@ public class DiscItemAceCombat3VideoStream extends DiscItemStrVideoStream {
     }
 
     @Override
-    public @Nonnull ISectorFrameDemuxer makeDemuxer() {
-        return new Demuxer(getEndFrame().getHeaderFrameNumber(), _iChannel);
+    public @Nonnull ISectorFrameDemuxer makeDemuxer(@CheckForNull FrameNumber startFrame) {
+        return new Demuxer(getEndFrame().getHeaderFrameNumber(), _iChannel, startFrame);
     }
 
     /** Public facing (external) demuxer for Ace Combat 3.
@@ -168,12 +168,14 @@ public class DiscItemAceCombat3VideoStream extends DiscItemStrVideoStream {
         private final int _iEndFrame;
         @Nonnull
         private final Ac3Demuxer _demuxer;
-        private final FrameNumber.FactoryWithHeader _frameNumberFactory = new FrameNumber.FactoryWithHeader();
+        @Nonnull
+        private final FrameNumber.FactoryWithHeader _frameNumberFactory;
         @CheckForNull
         private ICompletedFrameListener _listener;
 
-        public Demuxer(int iEndFrame, int iChannel) {
+        public Demuxer(int iEndFrame, int iChannel, @CheckForNull FrameNumber startFrame) {
             _iEndFrame = iEndFrame;
+            _frameNumberFactory = new FrameNumber.FactoryWithHeader(startFrame);
             _demuxer = new Ac3Demuxer(iChannel);
             _demuxer.setFrameListener(this);
         }
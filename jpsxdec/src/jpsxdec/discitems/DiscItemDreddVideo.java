@@ -140,8 +140,8 @@ public class DiscItemDreddVideo extends DiscItemStrVideoStream {
     }
 
     @Override
-    public @Nonnull ISectorFrameDemuxer makeDemuxer() {
-        return new Demuxer();
+    public @Nonnull ISectorFrameDemuxer makeDemuxer(@CheckForNull FrameNumber startFrame) {
+        return new Demuxer(startFrame);
     }
     
     /** Public facing (external) demuxer for Judge Dredd.
@@ -150,11 +150,13 @@ public class DiscItemDreddVideo extends DiscItemStrVideoStream {
     public static class Demuxer implements ISectorFrameDemuxer, DreddDemuxer.Listener {
 
         private final DreddDemuxer _demuxer = new DreddDemuxer();
-        private final FrameNumber.FactoryNoHeader _frameNumberFactory = new FrameNumber.FactoryNoHeader();
+        @Nonnull
+        private final FrameNumber.FactoryNoHeader _frameNumberFactory;
         @CheckForNull
         private ICompletedFrameListener _listener;
 
-        public Demuxer() {
+        public Demuxer(@CheckForNull FrameNumber startFrame) {
+            _frameNumberFactory = new FrameNumber.FactoryNoHeader(startFrame);
             _demuxer.setFrameListener(this);
         }
 
@@ -61,6 +61,7 @@ import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.LocalizedFileNotFoundException;
 import jpsxdec.i18n.UnlocalizedMessage;
+import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.util.ArgParser;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.FeedbackStream;
@@ -343,7 +344,7 @@ public class DiscItemISO9660File extends DiscItem {
         }
     }
 
-    private static class ISO9660FileSaver implements IDiscItemSaver {
+    private static class ISO9660FileSaver implements ISectorSweepSaver {
         @Nonnull
         private final DiscItemISO9660File _item;
         private final boolean __blnSaveRaw;
@@ -351,6 +352,8 @@ public class DiscItemISO9660File extends DiscItem {
         private final File __outputDir;
         @CheckForNull
         private File __generatedFile;
+        @CheckForNull
+        private FileOutputStream __fos;
 
         public ISO9660FileSaver(@Nonnull DiscItemISO9660File item,
                                 boolean blnSaveRaw, @CheckForNull File outputDir)
@@ -373,25 +376,10 @@ public class DiscItemISO9660File extends DiscItem {
         }
 
         public void startSave(@Nonnull ProgressLogger pl) throws LoggedFailure, TaskCanceledException {
-            File outputFile = new File(__outputDir, _item.getPath().getPath());
-
-            try {
-                IO.makeDirsForFile(outputFile);
-            } catch (LocalizedFileNotFoundException ex) {
-                throw new LoggedFailure(pl, Level.SEVERE, ex.getSourceMessage(), ex);
-            }
-
-            FileOutputStream fos;
             try {
-                fos = new FileOutputStream(outputFile);
-            } catch (FileNotFoundException ex) {
-                throw new LoggedFailure(pl, Level.SEVERE, I.IO_OPENING_FILE_ERROR_NAME(outputFile.toString()), ex);
-            }
-            try {
-                __generatedFile = outputFile;
+                sweepStart(pl);
                 int iSectorLength = _item.getSectorLength();
                 pl.progressStart(iSectorLength);
-                // TODO: only save the bytes associated with this file from the last sector?
                 for (int iSector = 0; iSector < iSectorLength; iSector++) {
                     CdSector cdSector;
                     try {
@@ -400,24 +388,67 @@ public class DiscItemISO9660File extends DiscItem {
                         throw new LoggedFailure(pl, Level.SEVERE, I.IO_READING_FROM_FILE_ERROR_NAME(
                                                 _item.getSourceCd().getSourceFile().toString()), ex);
                     }
-
-                    try {
-                        if (__blnSaveRaw)
-                            fos.write(cdSector.getRawSectorDataCopy());
-                        else
-                            fos.write(cdSector.getCdUserDataCopy());
-                    } catch (IOException ex) {
-                        throw new LoggedFailure(pl, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(outputFile.toString()), ex);
-                    }
-                    
+                    sweepSector(cdSector, null, pl);
                     pl.progressUpdate(iSector);
                 }
             } finally {
-                IO.closeSilently(fos, LOG);
+                sweepClose();
             }
             pl.progressEnd();
         }
 
+        public int getSweepStartSector() {
+            return _item.getStartSector();
+        }
+
+        public int getSweepEndSector() {
+            return _item.getEndSector();
+        }
+
+        public void sweepStart(@Nonnull ProgressLogger pl) throws LoggedFailure {
+            File outputFile = new File(__outputDir, _item.getPath().getPath());
+
+            try {
+                IO.makeDirsForFile(outputFile);
+            } catch (LocalizedFileNotFoundException ex) {
+                throw new LoggedFailure(pl, Level.SEVERE, ex.getSourceMessage(), ex);
+            }
+
+            try {
+                __fos = new FileOutputStream(outputFile);
+            } catch (FileNotFoundException ex) {
+                throw new LoggedFailure(pl, Level.SEVERE, I.IO_OPENING_FILE_ERROR_NAME(outputFile.toString()), ex);
+            }
+            __generatedFile = outputFile;
+        }
+
+        public boolean sweepSector(@Nonnull CdSector cdSector,
+                                   @CheckForNull IdentifiedSector idSector,
+                                   @Nonnull ProgressLogger pl)
+                throws LoggedFailure
+        {
+            // TODO: only save the bytes associated with this file from the last sector?
+            try {
+                if (__blnSaveRaw)
+                    __fos.write(cdSector.getRawSectorDataCopy());
+                else
+                    __fos.write(cdSector.getCdUserDataCopy());
+            } catch (IOException ex) {
+                throw new LoggedFailure(pl, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(__generatedFile.toString()), ex);
+            }
+            return false;
+        }
+
+        public void sweepEnd(@Nonnull ProgressLogger pl) {
+        }
+
+        public void sweepClose() {
+            if (__fos != null) {
+                IO.closeSilently(__fos, LOG);
+                __fos = null;
+            }
+        }
+
         public void printSelectedOptions(@Nonnull FeedbackStream fbs) {
             if (__blnSaveRaw)
                 fbs.println(I.CMD_ISOFILE_SAVING_RAW());
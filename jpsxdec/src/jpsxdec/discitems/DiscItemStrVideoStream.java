@@ -52,6 +52,7 @@ import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.savers.FrameLookup;
 import jpsxdec.discitems.savers.MediaPlayer;
 import jpsxdec.discitems.savers.VideoSaverBuilderStr;
 import jpsxdec.i18n.I;
@@ -92,6 +93,11 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
     private int _iDiscSpeed = -1;
     private int _iAudioDiscSpeed = 0;
 
+    private static final String SEEK_KEY = "Seek";
+    /** Optional, older indexes won't have it. */
+    @CheckForNull
+    private FrameSeekTable _seekTable;
+
     private final SortedSet<DiscItemAudioStream> _audioStreams =
             new TreeSet<DiscItemAudioStream>();
 
@@ -136,6 +142,10 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
 
         _iDiscSpeed = fields.getInt(DISC_SPEED_KEY, -1);
         _iFirstFrameLastSector = fields.getInt(FRAME1_LAST_SECTOR_KEY);
+
+        String sSeek = fields.getString(SEEK_KEY, null);
+        if (sSeek != null)
+            _seekTable = new FrameSeekTable(sSeek);
     }
 
     @Override
@@ -148,6 +158,8 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
         int iDiscSpeed = getDiscSpeed();
         if (iDiscSpeed > 0)
             serial.addNumber(DISC_SPEED_KEY, iDiscSpeed);
+        if (_seekTable != null)
+            serial.addString(SEEK_KEY, _seekTable.serialize());
         return serial;
     }
 
@@ -159,6 +171,21 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
         return _endFrame;
     }
 
+    /** Set by the indexer after all the frames have been found. */
+    public void setSeekTable(@CheckForNull FrameSeekTable seekTable) {
+        _seekTable = seekTable;
+    }
+
+    /** Finds where to start demuxing so the frame is the first (or one
+     * of the first) frames found.
+     * @return null if the stream has no seek table, or the frame is near
+     *         the start of the stream. */
+    public @CheckForNull FrameSeekTable.SeekPoint findSeekPoint(@Nonnull FrameLookup frame) {
+        if (_seekTable == null)
+            return null;
+        return _seekTable.find(frame);
+    }
+
     @Override
     public int getDiscSpeed() {
         return _iDiscSpeed > 0 ? _iDiscSpeed : 
@@ -393,6 +420,16 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
         return _longestNonIntersectingAudioStreams;
     }
 
+    @Override
+    public @Nonnull ISectorFrameDemuxer makeDemuxer() {
+        return makeDemuxer(null);
+    }
+
+    /** @param startFrame If not null, sectors will start being fed to the
+     *                   demuxer from the start sector of this frame,
+     *                   usually from a {@link FrameSeekTable.SeekPoint}. */
+    abstract public @Nonnull ISectorFrameDemuxer makeDemuxer(@CheckForNull FrameNumber startFrame);
+
     abstract public int splitAudio(@Nonnull DiscItemXaAudioStream audio);
     
     abstract public void fpsDump(@Nonnull PrintStream ps) throws IOException;
@@ -421,6 +458,16 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
 
     @Override
     public @Nonnull PlayController makePlayController() {
+        return makePlayController(null);
+    }
+
+    /** Plays from the seek point before the start frame, using the
+     * {@link FrameSeekTable} (if it has been built) to skip straight to it.
+     * @param startFrame null to play from the start. */
+    public @Nonnull PlayController makePlayController(@CheckForNull FrameLookup startFrame) {
+        FrameSeekTable.SeekPoint seekPoint = startFrame == null ? null : findSeekPoint(startFrame);
+        FrameNumber seekFrame = seekPoint == null ? null : seekPoint.getFrame();
+        int iVideoStartSector = seekPoint == null ? getStartSector() : seekPoint.getSector();
 
         if (hasAudio()) {
 
@@ -433,12 +480,16 @@ public abstract class DiscItemStrVideoStream extends DiscItemVideoStream {
             else
                 decoder = new AudioStreamsCombiner(audios, 1.0);
 
-            int iStartSector = Math.min(decoder.getStartSector(), getStartSector());
+            int iStartSector;
+            if (seekPoint == null)
+                iStartSector = Math.min(decoder.getStartSector(), getStartSector());
+            else
+                iStartSector = iVideoStartSector;
             int iEndSector = Math.max(decoder.getEndSector(), getEndSector());
 
-            return new PlayController(new MediaPlayer(this, makeDemuxer(), decoder, iStartSector, iEndSector));
+            return new PlayController(new MediaPlayer(this, makeDemuxer(seekFrame), decoder, iStartSector, iEndSector));
         } else {
-            return new PlayController(new MediaPlayer(this, makeDemuxer()));
+            return new PlayController(new MediaPlayer(this, makeDemuxer(seekFrame), iVideoStartSector, getEndSector()));
         }
     }
     
@@ -135,8 +135,8 @@ public class DiscItemStrVideoWithFrame extends DiscItemStrVideoStream {
     }
 
     @Override
-    public @Nonnull ISectorFrameDemuxer makeDemuxer() {
-        return new Demuxer();
+    public @Nonnull ISectorFrameDemuxer makeDemuxer(@CheckForNull FrameNumber startFrame) {
+        return new Demuxer(startFrame);
     }
     
     /** Public facing (external) demuxer for standard STR videos.
@@ -145,11 +145,13 @@ public class DiscItemStrVideoWithFrame extends DiscItemStrVideoStream {
     public static class Demuxer implements ISectorFrameDemuxer, StrDemuxer.Listener {
 
         private final StrDemuxer _demuxer = new StrDemuxer();
-        private final FrameNumber.FactoryWithHeader _frameNumberFactory = new FrameNumber.FactoryWithHeader();
+        @Nonnull
+        private final FrameNumber.FactoryWithHeader _frameNumberFactory;
         @CheckForNull
         private ICompletedFrameListener _listener;
 
-        public Demuxer() {
+        public Demuxer(@CheckForNull FrameNumber startFrame) {
+            _frameNumberFactory = new FrameNumber.FactoryWithHeader(startFrame);
             _demuxer.setFrameListener(this);
         }
 
@@ -41,11 +41,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.logging.Level;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.discitems.psxvideoencode.ReplaceFrames;
 import jpsxdec.i18n.I;
 import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.psxvideo.encode.ParsedMdecImage;
 import jpsxdec.psxvideo.mdec.Calc;
 import jpsxdec.sectors.IdentifiedSector;
@@ -76,6 +78,12 @@ public abstract class DiscItemVideoStream extends DiscItem {
     @Nonnull
     private final FrameNumberFormat _frameNumberFormat;
 
+    private static final String BITSTREAM_KEY = "Bitstream";
+    /** Name of the bitstream type of the first frame, found when indexing.
+     * Optional, so older indexes still load. */
+    @CheckForNull
+    private String _sBitstreamType;
+
     public DiscItemVideoStream(@Nonnull CdFileSectorReader cd,
                                int iStartSector, int iEndSector,
                                int iWidth, int iHeight,
@@ -101,6 +109,11 @@ public abstract class DiscItemVideoStream extends DiscItem {
         _iFrameCount = fields.getInt(FRAMECOUNT_KEY);
 
         _frameNumberFormat = new FrameNumberFormat(fields.getString(FORMAT_KEY));
+
+        // only a hint, so an unknown type is just ignored
+        String sBitstreamType = fields.getString(BITSTREAM_KEY, null);
+        if (BitStreamUncompressorPool.isTypeName(sBitstreamType))
+            _sBitstreamType = sBitstreamType;
     }
     
     @Override
@@ -109,6 +122,8 @@ public abstract class DiscItemVideoStream extends DiscItem {
         serial.addDimensions(DIMENSIONS_KEY, _iWidth, _iHeight);
         serial.addNumber(FRAMECOUNT_KEY, _iFrameCount);
         serial.addString(FORMAT_KEY, _frameNumberFormat.serialize());
+        if (_sBitstreamType != null)
+            serial.addString(BITSTREAM_KEY, _sBitstreamType);
         return serial;
     }
     
@@ -132,6 +147,23 @@ public abstract class DiscItemVideoStream extends DiscItem {
         return _frameNumberFormat;
     }
     
+    /** Name of the bitstream type of the video frames
+     * ({@link BitStreamUncompressor#getName()}), or null if unknown. */
+    public @CheckForNull String getBitstreamType() {
+        return _sBitstreamType;
+    }
+
+    /** Set by the indexer from the first frame of the video. */
+    public void setBitstreamType(@CheckForNull String sBitstreamType) {
+        _sBitstreamType = sBitstreamType;
+    }
+
+    /** Creates a pool of uncompressors that first tries the bitstream type
+     * of this video, so frames usually don't need to be identified. */
+    public @Nonnull BitStreamUncompressorPool makeUncompressorPool() {
+        return new BitStreamUncompressorPool(_sBitstreamType);
+    }
+
     public boolean shouldBeCropped() {
         return (_iHeight % 16) != 0 ||
                (_iWidth  % 16) != 0;
@@ -161,6 +193,7 @@ public abstract class DiscItemVideoStream extends DiscItem {
 
     public void frameInfoDump(@Nonnull final PrintStream ps, final boolean blnMore) {
         ISectorFrameDemuxer demuxer = makeDemuxer();
+        final BitStreamUncompressorPool uncompressorPool = makeUncompressorPool();
         demuxer.setFrameListener(new ISectorFrameDemuxer.ICompletedFrameListener() {
             public void frameComplete(IDemuxedFrame frame) {
                 ps.println(frame);
@@ -169,7 +202,7 @@ public abstract class DiscItemVideoStream extends DiscItem {
                 
                 byte[] abBitStream = frame.copyDemuxData(null);
                 try {
-                    BitStreamUncompressor uncompressor = BitStreamUncompressor.identifyUncompressor(abBitStream, frame.getDemuxSize());
+                    BitStreamUncompressor uncompressor = uncompressorPool.reset(abBitStream, frame.getDemuxSize());
                     ParsedMdecImage parsed = new ParsedMdecImage(uncompressor, getWidth(), getHeight());
                     uncompressor.skipPaddingBits();
                     ps.println("  Bitstream info: " + uncompressor);
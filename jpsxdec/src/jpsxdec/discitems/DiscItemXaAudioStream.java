@@ -52,12 +52,12 @@ import jpsxdec.audio.XaAdpcmDecoder;
 import jpsxdec.audio.XaAdpcmEncoder;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.cdreaders.CdSector;
+import jpsxdec.cdreaders.SectorWriteSession;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.IdentifiedSectorIterator;
 import jpsxdec.sectors.SectorXaAudio;
-import jpsxdec.util.ByteArrayFPIS;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.ExposedBAOS;
 import jpsxdec.util.Fraction;
@@ -298,31 +298,38 @@ public class DiscItemXaAudioStream extends DiscItemAudioStream {
             }
             XaAdpcmEncoder encoder = new XaAdpcmEncoder(ais, _iBitsPerSample);
             IdentifiedSectorIterator it = identifiedSectorIterator();
-            pl.progressStart(getSectorLength());
-            for (int iSector = 0; it.hasNext(); iSector++) {
-                IdentifiedSector origIdSect = it.next();
-                if (origIdSect instanceof SectorXaAudio && isPartOfStream((SectorXaAudio)origIdSect)) {
-                    CdSector origSect = origIdSect.getCdSector();
-                    byte[] abOrigData = origSect.getCdUserDataCopy();
-                    ExposedBAOS baos = new ExposedBAOS(abOrigData.length);
-                    try {
-                        encoder.encode1Sector(baos);
-                    } catch (IOException ex) {
-                        throw new RuntimeException("Should not happen", ex);
-                    }
-                    System.arraycopy(baos.getBuffer(), 0, abOrigData, 0, baos.size());
-                    if (encoder.isEof()) {
-                        pl.log(Level.INFO, I.XA_ENCODE_REPLACE_SRC_AUDIO_EXHAUSTED());
+            // if anything fails the disc image is left unchanged
+            SectorWriteSession writeSession = getSourceCd().beginWriteSession(pl);
+            try {
+                pl.progressStart(getSectorLength());
+                for (int iSector = 0; it.hasNext(); iSector++) {
+                    IdentifiedSector origIdSect = it.next();
+                    if (origIdSect instanceof SectorXaAudio && isPartOfStream((SectorXaAudio)origIdSect)) {
+                        CdSector origSect = origIdSect.getCdSector();
+                        byte[] abOrigData = origSect.getCdUserDataCopy();
+                        ExposedBAOS baos = new ExposedBAOS(abOrigData.length);
+                        try {
+                            encoder.encode1Sector(baos);
+                        } catch (IOException ex) {
+                            throw new RuntimeException("Should not happen", ex);
+                        }
+                        System.arraycopy(baos.getBuffer(), 0, abOrigData, 0, baos.size());
+                        if (encoder.isEof()) {
+                            pl.log(Level.INFO, I.XA_ENCODE_REPLACE_SRC_AUDIO_EXHAUSTED());
+                        }
+                        pl.log(Level.INFO, I.CMD_PATCHING_SECTOR_DESCRIPTION(origIdSect.toString()));
+                        if (pl.isSeekingEvent())
+                            pl.event(I.CMD_PATCHING_SECTOR_NUMBER(origIdSect.getSectorNumber()));
+                        getSourceCd().writeSector(origSect.getSectorNumberFromStart(), abOrigData);
+
+                        pl.progressUpdate(iSector);
                     }
-                    pl.log(Level.INFO, I.CMD_PATCHING_SECTOR_DESCRIPTION(origIdSect.toString()));
-                    if (pl.isSeekingEvent())
-                        pl.event(I.CMD_PATCHING_SECTOR_NUMBER(origIdSect.getSectorNumber()));
-                    getSourceCd().writeSector(origSect.getSectorNumberFromStart(), abOrigData);
-
-                    pl.progressUpdate(iSector);
                 }
+                writeSession.commit();
+                pl.progressEnd();
+            } finally {
+                IO.closeSilently(writeSession, Logger.getLogger(DiscItemXaAudioStream.class.getName()));
             }
-            pl.progressEnd();
         } finally {
             IO.closeSilently(ais, Logger.getLogger(DiscItemXaAudioStream.class.getName()));
         }
@@ -342,33 +349,40 @@ public class DiscItemXaAudioStream extends DiscItemAudioStream {
 
         IdentifiedSectorIterator origIt = identifiedSectorIterator();
         IdentifiedSectorIterator patchIt = other.identifiedSectorIterator();
-        pl.progressStart(getSectorLength());
-        EndOfOther:
-        for (int iSector = 0; origIt.hasNext(); iSector++) {
-            IdentifiedSector origIdSect = origIt.next();
-            if (origIdSect instanceof SectorXaAudio && isPartOfStream((SectorXaAudio)origIdSect)) {
-                SectorXaAudio origXaSect = (SectorXaAudio) origIdSect;
-                // seek to the next other XA sector
-                IdentifiedSector patchIdSect = null;
-                do {
-                    if (!patchIt.hasNext()) {
-                        pl.log(Level.INFO, I.XA_COPY_REPLACE_SRC_XA_EXHAUSTED());
-                        break EndOfOther;
-                    }
-                    patchIdSect = patchIt.next();
-                } while (!(patchIdSect instanceof SectorXaAudio && other.isPartOfStream((SectorXaAudio)patchIdSect)));
-                SectorXaAudio patchXaSect = (SectorXaAudio) patchIdSect;
-                pl.log(Level.INFO, I.CMD_PATCHING_SECTOR_DESCRIPTION(origXaSect.toString()));
-                pl.log(Level.INFO, I.CMD_PATCHING_WITH_SECTOR_DESCRIPTION(patchXaSect.toString()));
-                if (pl.isSeekingEvent())
-                    pl.event(I.CMD_PATCHING_SECTOR_NUMBER(origIdSect.getSectorNumber()));
-                byte[] abPatchData = patchXaSect.getCdSector().getCdUserDataCopy();
-                getSourceCd().writeSector(origXaSect.getSectorNumber(), abPatchData);
-
-                pl.progressUpdate(iSector);
+        // if anything fails the disc image is left unchanged
+        SectorWriteSession writeSession = getSourceCd().beginWriteSession(pl);
+        try {
+            pl.progressStart(getSectorLength());
+            EndOfOther:
+            for (int iSector = 0; origIt.hasNext(); iSector++) {
+                IdentifiedSector origIdSect = origIt.next();
+                if (origIdSect instanceof SectorXaAudio && isPartOfStream((SectorXaAudio)origIdSect)) {
+                    SectorXaAudio origXaSect = (SectorXaAudio) origIdSect;
+                    // seek to the next other XA sector
+                    IdentifiedSector patchIdSect = null;
+                    do {
+                        if (!patchIt.hasNext()) {
+                            pl.log(Level.INFO, I.XA_COPY_REPLACE_SRC_XA_EXHAUSTED());
+                            break EndOfOther;
+                        }
+                        patchIdSect = patchIt.next();
+                    } while (!(patchIdSect instanceof SectorXaAudio && other.isPartOfStream((SectorXaAudio)patchIdSect)));
+                    SectorXaAudio patchXaSect = (SectorXaAudio) patchIdSect;
+                    pl.log(Level.INFO, I.CMD_PATCHING_SECTOR_DESCRIPTION(origXaSect.toString()));
+                    pl.log(Level.INFO, I.CMD_PATCHING_WITH_SECTOR_DESCRIPTION(patchXaSect.toString()));
+                    if (pl.isSeekingEvent())
+                        pl.event(I.CMD_PATCHING_SECTOR_NUMBER(origIdSect.getSectorNumber()));
+                    byte[] abPatchData = patchXaSect.getCdSector().getCdUserDataCopy();
+                    getSourceCd().writeSector(origXaSect.getSectorNumber(), abPatchData);
+
+                    pl.progressUpdate(iSector);
+                }
             }
+            writeSession.commit();
+            pl.progressEnd();
+        } finally {
+            IO.closeSilently(writeSession, Logger.getLogger(DiscItemXaAudioStream.class.getName()));
         }
-        pl.progressEnd();
     }
 
     private class XAConverter implements ISectorAudioDecoder {
@@ -378,16 +392,18 @@ public class DiscItemXaAudioStream extends DiscItemAudioStream {
         /** Must be set before using this class. */
         @CheckForNull
         private ISectorTimedAudioWriter __outFeed;
+        /** ADPCM data copied out of each sector. */
+        private final byte[] __abAdpcm = new byte[XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR];
+        /** PCM data decoded from each sector. */
         @Nonnull
-        private final ExposedBAOS __tempBuffer;
+        private final byte[] __abPcm;
         @CheckForNull
         private AudioFormat __format;
 
         public XAConverter(double dblVolume) {
             __decoder = DiscItemXaAudioStream.this.makeXaDecoder(dblVolume);
-            __tempBuffer = new ExposedBAOS(
-                    XaAdpcmDecoder.bytesGeneratedFromXaAdpcmSector(
-                    DiscItemXaAudioStream.this.getAdpcmBitsPerSample()));
+            __abPcm = new byte[XaAdpcmDecoder.bytesGeneratedFromXaAdpcmSector(
+                    DiscItemXaAudioStream.this.getAdpcmBitsPerSample())];
         }
 
         public void setAudioListener(@Nonnull ISectorTimedAudioWriter audioFeed) {
@@ -401,15 +417,10 @@ public class DiscItemXaAudioStream extends DiscItemAudioStream {
             if (!isPartOfStream(xaSector))
                 return false;
 
-            __tempBuffer.reset();
             long lngSamplesWritten = __decoder.getSampleFramesWritten();
             
-            try {
-                ByteArrayFPIS inStream = xaSector.getIdentifiedUserDataStream();
-                __decoder.decode(inStream, __tempBuffer, xaSector.getSectorNumber());
-            } catch (IOException ex) {
-                throw new RuntimeException("Should not happen when reading/writing to/from byte stream", ex);
-            }
+            xaSector.getCdSector().getCdUserDataCopy(0, __abAdpcm, 0, __abAdpcm.length);
+            int iPcmSize = __decoder.decode(__abAdpcm, 0, __abPcm, 0, xaSector.getSectorNumber());
 
             if (__decoder.hadCorruption())
                 log.log(Level.WARNING, I.XA_AUDIO_CORRUPTED(xaSector.getSectorNumber(), lngSamplesWritten));
@@ -419,7 +430,7 @@ public class DiscItemXaAudioStream extends DiscItemAudioStream {
 
             if (__outFeed == null)
                 throw new IllegalStateException("Must set audio listener before feeding sectors.");
-            __outFeed.write(__format, __tempBuffer.getBuffer(), 0, __tempBuffer.size(), new Fraction(xaSector.getSectorNumber()));
+            __outFeed.write(__format, __abPcm, 0, iPcmSize, new Fraction(xaSector.getSectorNumber()));
             return true;
         }
 
@@ -68,10 +68,27 @@ public class FrameNumber {
     public static class FactoryNoHeader { // TODO?: special handling for no header
         @CheckForNull
         private FrameNumber _lastNumber;
+        @CheckForNull
+        private final FrameNumber _startFrame;
+
+        public FactoryNoHeader() {
+            this(null);
+        }
+
+        /** @param startFrame If the stream is being demuxed from the middle,
+         *                   the number of the first frame that will be demuxed. */
+        public FactoryNoHeader(@CheckForNull FrameNumber startFrame) {
+            _startFrame = startFrame;
+        }
 
         public FrameNumber next(int iStartSector) {
             if (_lastNumber == null) {
-                _lastNumber = new FrameNumber(0, iStartSector, 0, 0, 0);
+                if (_startFrame == null)
+                    _lastNumber = new FrameNumber(0, iStartSector, 0, 0, 0);
+                else
+                    _lastNumber = new FrameNumber(_startFrame._iIndex, iStartSector,
+                                                  _startFrame._iStartSectorDuplicateIndex,
+                                                  _startFrame._iHeaderFrameNumber, 0);
             } else {
                 final int iDupSector;
                 if (iStartSector == _lastNumber._iStartSector)
@@ -91,10 +108,28 @@ public class FrameNumber {
     public static class FactoryWithHeader {
         @CheckForNull
         private FrameNumber _lastNumber;
+        @CheckForNull
+        private final FrameNumber _startFrame;
+
+        public FactoryWithHeader() {
+            this(null);
+        }
+
+        /** @param startFrame If the stream is being demuxed from the middle,
+         *                   the number of the first frame that will be demuxed. */
+        public FactoryWithHeader(@CheckForNull FrameNumber startFrame) {
+            _startFrame = startFrame;
+        }
 
         public FrameNumber next(int iStartSector, int iHeaderFrameNumber) {
             if (_lastNumber == null) {
-                _lastNumber = new FrameNumber(0, iStartSector, 0, iHeaderFrameNumber, 0);
+                if (_startFrame == null)
+                    _lastNumber = new FrameNumber(0, iStartSector, 0, iHeaderFrameNumber, 0);
+                else
+                    _lastNumber = new FrameNumber(_startFrame._iIndex, iStartSector,
+                                                  _startFrame._iStartSectorDuplicateIndex,
+                                                  iHeaderFrameNumber,
+                                                  _startFrame._iHeaderDuplicateIndex);
             } else {
                 final int iDupSector;
                 if (iStartSector == _lastNumber._iStartSector)
@@ -0,0 +1,192 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems;
+
+import java.util.ArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.discitems.savers.FrameLookup;
+import jpsxdec.i18n.I;
+import jpsxdec.util.DeserializationFail;
+
+/** Sparse table of frames in a video stream where demuxing can cleanly start.
+ * Lets saving and playback jump close to a frame instead of demuxing every
+ * sector before it.
+ * <p>
+ * A frame is only a seek point if every frame before it ended before it
+ * started, so demuxing from its start sector produces it first. The table is
+ * only created if the frames' sectors and header frame numbers never go
+ * backwards, so everything before a seek point also comes before
+ * any {@link FrameLookup} that the seek point comes before. */
+public class FrameSeekTable {
+
+    /** Roughly how many frames between seek points. */
+    public static final int SEEK_INTERVAL = 64;
+
+    private static final String ENTRY_DELIMITER = ",";
+    private static final char PRESENTATION_PREFIX = '>';
+
+    /** A frame where demuxing can start. */
+    public static class SeekPoint {
+        @Nonnull
+        private final FrameNumber _frame;
+        private final int _iPresentationSector;
+
+        public SeekPoint(@Nonnull FrameNumber frame, int iPresentationSector) {
+            _frame = frame;
+            _iPresentationSector = iPresentationSector;
+        }
+
+        /** The frame number to prime the demuxer with. */
+        public @Nonnull FrameNumber getFrame() {
+            return _frame;
+        }
+
+        /** First sector to start demuxing. */
+        public int getSector() {
+            return _frame.getSector();
+        }
+
+        /** Sector where the frame is complete (and would be shown). */
+        public int getPresentationSector() {
+            return _iPresentationSector;
+        }
+
+        @Override
+        public String toString() {
+            return _frame.serialize() + PRESENTATION_PREFIX + _iPresentationSector;
+        }
+    }
+
+    /** Collects the seek points while a video is being indexed. */
+    public static class Builder {
+        private final ArrayList<SeekPoint> _seekPoints = new ArrayList<SeekPoint>();
+        @CheckForNull
+        private FrameNumber _lastFrame;
+        private int _iMaxEndSector;
+        private int _iNextSeekIndex;
+        private boolean _blnInOrder = true;
+
+        /** Frames must be added in the order they are demuxed. */
+        public void addFrame(@Nonnull FrameNumber frame, int iEndSector) {
+            if (_lastFrame == null) {
+                _iNextSeekIndex = frame.getIndex() + SEEK_INTERVAL;
+            } else {
+                if (frame.getSector() < _lastFrame.getSector() ||
+                    frame.getHeaderFrameNumber() < _lastFrame.getHeaderFrameNumber())
+                    _blnInOrder = false;
+                if (frame.getIndex() >= _iNextSeekIndex && frame.getSector() > _iMaxEndSector) {
+                    _seekPoints.add(new SeekPoint(frame, iEndSector));
+                    _iNextSeekIndex = frame.getIndex() + SEEK_INTERVAL;
+                }
+            }
+            _iMaxEndSector = Math.max(_iMaxEndSector, iEndSector);
+            _lastFrame = frame;
+        }
+
+        /** @return null if the video has no usable seek points. */
+        public @CheckForNull FrameSeekTable build() {
+            if (!_blnInOrder || _seekPoints.isEmpty())
+                return null;
+            return new FrameSeekTable(_seekPoints.toArray(new SeekPoint[_seekPoints.size()]));
+        }
+    }
+
+    // =========================================================================
+
+    @Nonnull
+    private final SeekPoint[] _aoSeekPoints;
+
+    private FrameSeekTable(@Nonnull SeekPoint[] aoSeekPoints) {
+        _aoSeekPoints = aoSeekPoints;
+    }
+
+    /** Deserialize the table.
+     * <p>
+     * Format: frame&gt;presentation sector[,frame&gt;presentation sector...]
+     * where frame is a serialized {@link FrameNumber}. */
+    public FrameSeekTable(@Nonnull String sSerialized) throws DeserializationFail {
+        String[] asEntries = sSerialized.split(ENTRY_DELIMITER, -1);
+        _aoSeekPoints = new SeekPoint[asEntries.length];
+        for (int i = 0; i < asEntries.length; i++) {
+            String sEntry = asEntries[i];
+            int iSplit = sEntry.indexOf(PRESENTATION_PREFIX);
+            if (iSplit < 0)
+                throw new DeserializationFail(I.FRAME_NUM_INVALID(sEntry));
+            FrameNumber frame = new FrameNumber(sEntry.substring(0, iSplit));
+            try {
+                _aoSeekPoints[i] = new SeekPoint(frame, Integer.parseInt(sEntry.substring(iSplit + 1)));
+            } catch (NumberFormatException ex) {
+                throw new DeserializationFail(I.FRAME_NUM_INVALID(sEntry), ex);
+            }
+        }
+    }
+
+    public @Nonnull String serialize() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < _aoSeekPoints.length; i++) {
+            if (i > 0)
+                sb.append(ENTRY_DELIMITER);
+            sb.append(_aoSeekPoints[i]);
+        }
+        return sb.toString();
+    }
+
+    public int getSeekPointCount() {
+        return _aoSeekPoints.length;
+    }
+
+    /** Finds the last seek point that is the frame or comes before it.
+     * Starting to demux from it will produce every frame at and after
+     * the looked up frame.
+     * @return null if there is no seek point at or before the frame. */
+    public @CheckForNull SeekPoint find(@Nonnull FrameLookup frame) {
+        SeekPoint found = null;
+        for (SeekPoint seekPoint : _aoSeekPoints) {
+            if (frame.compareTo(seekPoint.getFrame()) < 0)
+                break;
+            found = seekPoint;
+        }
+        return found;
+    }
+
+    @Override
+    public String toString() {
+        return serialize();
+    }
+}
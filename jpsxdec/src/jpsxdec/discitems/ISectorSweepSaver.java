@@ -0,0 +1,82 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.sectors.IdentifiedSector;
+import jpsxdec.util.ProgressLogger;
+import jpsxdec.util.LoggedFailure;
+
+/** A saver that can be fed its sectors by someone else instead of reading
+ * them itself in {@link #startSave(ProgressLogger)}.
+ * This lets many savers share a single read through the disc
+ * (see {@link jpsxdec.discitems.savers.SectorSweep}).
+ * <p>
+ * {@link #sweepStart(ProgressLogger)} is called first, then
+ * {@link #sweepSector(CdSector, IdentifiedSector, ProgressLogger)} for
+ * every sector in order from {@link #getSweepStartSector()} to
+ * {@link #getSweepEndSector()} (or until it returns true), then
+ * {@link #sweepEnd(ProgressLogger)}. {@link #sweepClose()} is always
+ * called last, even if something failed. The progress of the sweep is
+ * reported by whoever is feeding the sectors, so the savers should not
+ * touch the progress of the {@link ProgressLogger}s they are given. */
+public interface ISectorSweepSaver extends IDiscItemSaver {
+
+    /** First sector this saver needs. */
+    int getSweepStartSector();
+    /** Last sector this saver needs (inclusive). */
+    int getSweepEndSector();
+
+    /** Opens the output. */
+    void sweepStart(@Nonnull ProgressLogger log) throws LoggedFailure;
+
+    /** @param idSector The identified {@code cdSector}, or null if it
+     *                  wasn't identified.
+     * @return true if no more sectors are needed. */
+    boolean sweepSector(@Nonnull CdSector cdSector, @CheckForNull IdentifiedSector idSector,
+                        @Nonnull ProgressLogger log)
+            throws LoggedFailure;
+
+    /** Finishes writing anything that is left after the last sector. */
+    void sweepEnd(@Nonnull ProgressLogger log) throws LoggedFailure;
+
+    /** Closes the output. */
+    void sweepClose();
+}
@@ -172,6 +172,18 @@ public class IndexId {
         return false;
     }
 
+    /** Returns the id of the direct parent of this id, or null if this is
+     * a root id. The inverse of {@link #isParent(IndexId)}. */
+    public @CheckForNull IndexId getParentId() {
+        if (isRoot())
+            return null;
+        if (_aiTreeIndexes.length == 1) // _aiTreeIndexes already confirmed to != null in isRoot()
+            return new IndexId(_sourceFile);
+        int[] aiParent = new int[_aiTreeIndexes.length - 1];
+        System.arraycopy(_aiTreeIndexes, 0, aiParent, 0, aiParent.length);
+        return new IndexId(_sourceFile, aiParent);
+    }
+
     public boolean isRoot() {
         if (_aiTreeIndexes == null)
             return true;
@@ -216,6 +228,7 @@ public class IndexId {
     public int hashCode() {
         int hash = 5;
         hash = 89 * hash + (_sourceFile != null ? _sourceFile.hashCode() : 0);
+        hash = 89 * hash + Arrays.hashCode(_aiTreeIndexes);
         return hash;
     }
 
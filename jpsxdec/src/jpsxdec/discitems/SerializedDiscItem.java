@@ -37,6 +37,9 @@
 
 package jpsxdec.discitems;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -54,6 +57,10 @@ import jpsxdec.util.DeserializationFail;
  * <p>
  * For deserialization, this class will parse a one-line string into the
  * various bits of information for easy access to the {@link DiscItem}.
+ * <p>
+ * The same fields can also be written and read in a compact binary form
+ * (see {@link #writeBinary(java.io.DataOutputStream)}), which avoids all
+ * of the string parsing when reading.
  */
 public class SerializedDiscItem {
     
@@ -106,6 +113,36 @@ public class SerializedDiscItem {
             throw new DeserializationFail(I.SERIALIZATION_MISSING_REQUIRED_FIELDS(sSerialized));
     }
 
+    /** Reads the fields written by {@link #writeBinary(java.io.DataOutputStream)}. */
+    public static @Nonnull SerializedDiscItem readBinary(@Nonnull DataInputStream dis)
+            throws IOException, DeserializationFail
+    {
+        SerializedDiscItem serial = new SerializedDiscItem();
+        int iFieldCount = dis.readUnsignedShort();
+        for (int i = 0; i < iFieldCount; i++) {
+            String sKey = dis.readUTF();
+            String sValue = dis.readUTF();
+            serial._fields.put(sKey, sValue);
+        }
+        if (!serial._fields.containsKey(INDEX_KEY) || !serial._fields.containsKey(ID_KEY) ||
+            !serial._fields.containsKey(TYPE_KEY)  || !serial._fields.containsKey(SECTOR_RANGE_KEY))
+            throw new DeserializationFail(I.SERIALIZATION_MISSING_REQUIRED_FIELDS(serial._fields.toString()));
+        return serial;
+    }
+
+    /** For {@link #readBinary(java.io.DataInputStream)}. */
+    private SerializedDiscItem() {
+    }
+
+    /** Writes all the fields in binary form. */
+    public void writeBinary(@Nonnull DataOutputStream dos) throws IOException {
+        dos.writeShort(_fields.size());
+        for (Map.Entry<String, String> entry : _fields.entrySet()) {
+            dos.writeUTF(entry.getKey());
+            dos.writeUTF(entry.getValue());
+        }
+    }
+
     /** Converts the data into a string. No additional data may be added to the
      *  object without throwing an exception. */
     public @Nonnull String serialize() {
@@ -243,6 +280,14 @@ public class SerializedDiscItem {
         return sValue;
     }
     
+    /** @return the field value, or the default if the field doesn't exist. */
+    public @CheckForNull String getString(@Nonnull String sFieldName, @CheckForNull String sDefault) {
+        String sValue = _fields.get(sFieldName);
+        if (sValue == null)
+            return sDefault;
+        return sValue;
+    }
+
     public @Nonnull boolean getYesNo(@Nonnull String sFieldName) throws DeserializationFail {
         String sValue = getString(sFieldName);
 
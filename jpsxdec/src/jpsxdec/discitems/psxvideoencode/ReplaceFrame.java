@@ -53,6 +53,7 @@ import jpsxdec.discitems.savers.FrameLookup;
 import jpsxdec.i18n.I;
 import jpsxdec.psxvideo.bitstreams.BitStreamCompressor;
 import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.psxvideo.encode.MdecEncoder;
 import jpsxdec.psxvideo.encode.PsxYCbCrImage;
 import jpsxdec.psxvideo.mdec.Calc;
@@ -141,7 +142,10 @@ public class ReplaceFrame { // rename to ReplaceFrameFull
         _format = format;
     }
 
+    /** @param uncompressorPool Uncompressors for the video the frame is from,
+     *                         used to parse the existing frame. */
     public void replace(@Nonnull IDemuxedFrame frame, @Nonnull CdFileSectorReader cd,
+                        @Nonnull BitStreamUncompressorPool uncompressorPool,
                         @Nonnull ILocalizedLogger log)
             throws LoggedFailure
     {
@@ -149,7 +153,7 @@ public class ReplaceFrame { // rename to ReplaceFrameFull
         byte[] abExistingFrame = frame.copyDemuxData(null);
         BitStreamUncompressor bsu;
         try {
-            bsu = BitStreamUncompressor.identifyUncompressor(abExistingFrame);
+            bsu = uncompressorPool.reset(abExistingFrame);
         } catch (BinaryDataNotRecognized ex) {
             throw new LoggedFailure(log, Level.SEVERE, I.UNABLE_TO_DETERMINE_FRAME_TYPE_FRM(getFrameLookup().toString()), ex);
         }
@@ -56,6 +56,7 @@ import jpsxdec.i18n.I;
 import jpsxdec.i18n.UnlocalizedMessage;
 import jpsxdec.psxvideo.bitstreams.BitStreamCompressor;
 import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.psxvideo.encode.MdecEncoder;
 import jpsxdec.psxvideo.encode.ParsedMdecImage;
 import jpsxdec.psxvideo.encode.PsxYCbCrImage;
@@ -168,6 +169,7 @@ public class ReplaceFramePartial extends ReplaceFrame {
 
     @Override
     public void replace(@Nonnull IDemuxedFrame frame, @Nonnull CdFileSectorReader cd,
+                        @Nonnull BitStreamUncompressorPool uncompressorPool,
                         @Nonnull ILocalizedLogger log)
             throws LoggedFailure
     {
@@ -191,7 +193,7 @@ public class ReplaceFramePartial extends ReplaceFrame {
         byte[] abExistingFrame = frame.copyDemuxData(null);
         BitStreamUncompressor bsu;
         try {
-            bsu = BitStreamUncompressor.identifyUncompressor(abExistingFrame);
+            bsu = uncompressorPool.reset(abExistingFrame);
         } catch (BinaryDataNotRecognized ex) {
             throw new LoggedFailure(log, Level.SEVERE, I.UNABLE_TO_DETERMINE_FRAME_TYPE_FRM(getFrameLookup().toString()), ex);
         }
@@ -57,6 +57,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.SectorWriteSession;
 import jpsxdec.discitems.DiscItemVideoStream;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.FrameNumberFormat;
@@ -64,6 +65,7 @@ import jpsxdec.discitems.FrameNumberFormatter;
 import jpsxdec.discitems.IDemuxedFrame;
 import jpsxdec.discitems.ISectorFrameDemuxer;
 import jpsxdec.i18n.I;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.IdentifiedSectorIterator;
 import jpsxdec.util.DeserializationFail;
@@ -193,13 +195,36 @@ public class ReplaceFrames {
         _replacers.add(replace);
     }
 
+    /** All the frames are patched as one {@link SectorWriteSession},
+     * so if anything fails the disc image is left unchanged. */
     public void replaceFrames(@Nonnull DiscItemVideoStream vidItem, 
                               final @Nonnull CdFileSectorReader cd,
                               final @Nonnull ProgressLogger pl)
             throws LoggedFailure, TaskCanceledException
+    {
+        SectorWriteSession writeSession;
+        try {
+            writeSession = cd.beginWriteSession(pl);
+        } catch (IOException ex) {
+            throw new LoggedFailure(pl, Level.SEVERE,
+                    I.IO_WRITING_TO_FILE_ERROR_NAME(cd.getSourceFile().toString()), ex);
+        }
+        try {
+            replaceFrames(vidItem, cd, pl, writeSession);
+        } finally {
+            // rolls back the patch if it wasn't committed
+            IO.closeSilently(writeSession, Logger.getLogger(ReplaceFrames.class.getName()));
+        }
+    }
+
+    private void replaceFrames(@Nonnull DiscItemVideoStream vidItem,
+                               @Nonnull CdFileSectorReader cd,
+                               @Nonnull ProgressLogger pl,
+                               @Nonnull SectorWriteSession writeSession)
+            throws LoggedFailure, TaskCanceledException
     {
         ISectorFrameDemuxer demuxer = vidItem.makeDemuxer();
-        ReplaceFrameListener replaceListener = new ReplaceFrameListener(pl, cd);
+        ReplaceFrameListener replaceListener = new ReplaceFrameListener(pl, cd, vidItem.makeUncompressorPool());
         demuxer.setFrameListener(replaceListener);
 
         FrameNumberFormatter numFormatter =
@@ -226,6 +251,14 @@ public class ReplaceFrames {
                 throw replaceListener.exception;
         }
         demuxer.flush(pl);
+        if (replaceListener.exception != null)
+            throw replaceListener.exception;
+        try {
+            writeSession.commit();
+        } catch (IOException ex) {
+            throw new LoggedFailure(pl, Level.SEVERE,
+                    I.IO_WRITING_TO_FILE_ERROR_NAME(cd.getSourceFile().toString()), ex);
+        }
         pl.progressEnd();
     }
 
@@ -235,6 +268,8 @@ public class ReplaceFrames {
         private final ProgressLogger _pl;
         @Nonnull
         private final CdFileSectorReader _cd;
+        @Nonnull
+        private final BitStreamUncompressorPool _uncompressorPool;
 
         @CheckForNull
         public FrameNumber currentFrameNum;
@@ -242,9 +277,12 @@ public class ReplaceFrames {
         @CheckForNull
         public LoggedFailure exception;
 
-        public ReplaceFrameListener(ProgressLogger pl, CdFileSectorReader cd) {
+        public ReplaceFrameListener(ProgressLogger pl, CdFileSectorReader cd,
+                                    BitStreamUncompressorPool uncompressorPool)
+        {
             _pl = pl;
             _cd = cd;
+            _uncompressorPool = uncompressorPool;
         }
 
         public void frameComplete(@Nonnull IDemuxedFrame frame) {
@@ -254,7 +292,7 @@ public class ReplaceFrames {
             if (replacer != null) {
                 try {
                     _pl.log(Level.INFO, I.CMD_REPLACING_FRAME_WITH_FILE(frame.getFrame(), replacer.getImageFile()));
-                    replacer.replace(frame, _cd, _pl);
+                    replacer.replace(frame, _cd, _uncompressorPool, _pl);
                 } catch (LoggedFailure ex) {
                     exception = ex;
                 }
@@ -44,9 +44,10 @@ import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.sound.sampled.AudioFormat;
+import jpsxdec.cdreaders.CdSector;
 import jpsxdec.discitems.DiscItemAudioStream;
-import jpsxdec.discitems.IDiscItemSaver;
 import jpsxdec.discitems.ISectorAudioDecoder;
+import jpsxdec.discitems.ISectorSweepSaver;
 import jpsxdec.formats.JavaAudioFormat;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
@@ -64,7 +65,7 @@ import jpsxdec.util.TaskCanceledException;
 
 /** Actually performs the saving process using the options selected in
  * {@link AudioSaverBuilder}. */
-public class AudioSaver implements IDiscItemSaver  {
+public class AudioSaver implements ISectorSweepSaver  {
 
     private static final Logger LOG = Logger.getLogger(AudioSaver.class.getName());
 
@@ -80,6 +81,8 @@ public class AudioSaver implements IDiscItemSaver  {
     private final JavaAudioFormat _containerFormat;
     @CheckForNull
     private File _generatedFile;
+    @CheckForNull
+    private AudioOutputFileWriter _audioWriter;
 
     public AudioSaver(@Nonnull DiscItemAudioStream audItem,
                       @CheckForNull File outputDir, @Nonnull File fileRelativePath,
@@ -111,7 +114,38 @@ public class AudioSaver implements IDiscItemSaver  {
     }
 
 
-    public void startSave(@Nonnull final ProgressLogger pl) throws LoggedFailure, TaskCanceledException {
+    public void startSave(@Nonnull ProgressLogger pl) throws LoggedFailure, TaskCanceledException {
+        try {
+            sweepStart(pl);
+            IdentifiedSectorIterator it = _audItem.identifiedSectorIterator();
+            pl.progressStart(_audItem.getSectorLength());
+            for (int iSector = 0; it.hasNext(); iSector++) {
+                IdentifiedSector identifiedSect;
+                try {
+                    identifiedSect = it.next();
+                } catch (IOException ex) {
+                    throw new LoggedFailure(pl, Level.SEVERE,
+                            I.IO_READING_FROM_FILE_ERROR_NAME(it.getSourceCdFile().toString()), ex);
+                }
+                sweepSector(it.currentCd(), identifiedSect, pl);
+                pl.progressUpdate(iSector);
+            }
+            sweepEnd(pl);
+            pl.progressEnd();
+        } finally {
+            sweepClose();
+        }
+    }
+
+    public int getSweepStartSector() {
+        return _audItem.getStartSector();
+    }
+
+    public int getSweepEndSector() {
+        return _audItem.getEndSector();
+    }
+
+    public void sweepStart(@Nonnull final ProgressLogger pl) throws LoggedFailure {
 
         final File outputFile = new File(_outputDir, _fileRelativePath.getPath());
 
@@ -130,6 +164,7 @@ public class AudioSaver implements IDiscItemSaver  {
         } catch (IOException ex) {
             throw new LoggedFailure(pl, Level.SEVERE, I.IO_WRITING_FILE_ERROR_NAME(outputFile.toString()), ex);
         }
+        _audioWriter = audioWriter;
         _generatedFile = outputFile;
 
         _decoder.setAudioListener(new ISectorAudioDecoder.ISectorTimedAudioWriter() {
@@ -141,25 +176,26 @@ public class AudioSaver implements IDiscItemSaver  {
                 }
             }
         });
-        
-        try {
-            IdentifiedSectorIterator it = _audItem.identifiedSectorIterator();
-            pl.progressStart(_audItem.getSectorLength());
-            for (int iSector = 0; it.hasNext(); iSector++) {
-                IdentifiedSector identifiedSect;
-                try {
-                    identifiedSect = it.next();
-                } catch (IOException ex) {
-                    throw new LoggedFailure(pl, Level.SEVERE,
-                            I.IO_READING_FROM_FILE_ERROR_NAME(it.getSourceCdFile().toString()), ex);
-                }
-                if (identifiedSect != null)
-                    _decoder.feedSector(identifiedSect, pl);
-                pl.progressUpdate(iSector);
-            }
-            pl.progressEnd();
-        } finally {
-            IO.closeSilently(audioWriter, LOG);
+    }
+
+    public boolean sweepSector(@Nonnull CdSector cdSector,
+                               @CheckForNull IdentifiedSector identifiedSect,
+                               @Nonnull ProgressLogger pl)
+            throws LoggedFailure
+    {
+        if (identifiedSect != null)
+            _decoder.feedSector(identifiedSect, pl);
+        return false;
+    }
+
+    public void sweepEnd(@Nonnull ProgressLogger pl) {
+        // nothing is held back
+    }
+
+    public void sweepClose() {
+        if (_audioWriter != null) {
+            IO.closeSilently(_audioWriter, LOG);
+            _audioWriter = null;
         }
     }
 
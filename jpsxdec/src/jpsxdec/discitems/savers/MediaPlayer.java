@@ -52,6 +52,8 @@ import jpsxdec.discitems.ISectorFrameDemuxer;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.psxvideo.mdec.MdecDecoder;
 import jpsxdec.psxvideo.mdec.MdecDecoder_int;
+import jpsxdec.psxvideo.mdec.MdecDecoder_int_parallel;
+import jpsxdec.psxvideo.mdec.idct.IDCT_int;
 import jpsxdec.psxvideo.mdec.idct.SimpleIDCT;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.IdentifiedSectorIterator;
@@ -107,15 +109,25 @@ public class MediaPlayer extends AudioVideoReader implements ISectorFrameDemuxer
         _dblDuration = vid.getApproxDuration();
 
         _vid = vid;
-        _m2d = new VDP.Mdec2Decoded(new MdecDecoder_int(new SimpleIDCT(),
-                                                        vid.getWidth(),
-                                                        vid.getHeight()), 
+        _m2d = new VDP.Mdec2Decoded(makeDecoder(vid.getWidth(), vid.getHeight()),
                                     DebugLogger.Log);
-        _b2m = new VDP.Bitstream2Mdec(_m2d);
+        _b2m = new VDP.Bitstream2Mdec(_m2d, vid.getBitstreamType());
         _demuxer = demuxer;
         _demuxer.setFrameListener(this);
     }
 
+    /** Spreads the decoding of each frame over all processors to keep
+     * frame latency low. */
+    private static @Nonnull MdecDecoder makeDecoder(int iWidth, int iHeight) {
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        if (iThreads <= 1)
+            return new MdecDecoder_int(new SimpleIDCT(), iWidth, iHeight);
+        IDCT_int[] aoIdcts = new IDCT_int[iThreads];
+        for (int i = 0; i < aoIdcts.length; i++)
+            aoIdcts[i] = new SimpleIDCT();
+        return new MdecDecoder_int_parallel(aoIdcts, iWidth, iHeight);
+    }
+
     //-----------------------------------------------------------------------
 
     @CheckForNull
@@ -210,6 +222,7 @@ public class MediaPlayer extends AudioVideoReader implements ISectorFrameDemuxer
         StrFrame strFrame = _framePool.borrow();
         strFrame.init(frame.getDemuxSize(), frame.getFrame(), frame.getPresentationSector() - _iMovieStartSector);
         strFrame.__abDemuxBuf = frame.copyDemuxData(strFrame.__abDemuxBuf);
+        strFrame.__iDemuxSize = frame.getDemuxSize();
         writeFrame(strFrame);
     }
 
@@ -262,6 +275,8 @@ public class MediaPlayer extends AudioVideoReader implements ISectorFrameDemuxer
 
         @CheckForNull
         public byte[] __abDemuxBuf;
+        /** Pooled buffers may be bigger than the frame. */
+        public int __iDemuxSize;
         @CheckForNull
         private FrameNumber __frameNum;
         private int __iSectorFromStart;
@@ -287,7 +302,7 @@ public class MediaPlayer extends AudioVideoReader implements ISectorFrameDemuxer
             try {
                 // this will call _m2d which in turn will call decoded()
                 // __abDemuxBuf and __frameNum should have been initialied in init()
-                _b2m.bitstream(__abDemuxBuf, __abDemuxBuf.length, __frameNum, _iMovieEndSector);
+                _b2m.bitstream(__abDemuxBuf, __iDemuxSize, __frameNum, _iMovieEndSector);
             } catch (LoggedFailure ex) {
                 System.err.print("Frame "+__frameNum+' '+ex.getMessage());
                 if (ex.getCause() != null && ex.getCause().getMessage() != null)
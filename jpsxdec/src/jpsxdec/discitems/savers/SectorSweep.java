@@ -0,0 +1,268 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems.savers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.discitems.IDiscItemSaver;
+import jpsxdec.discitems.ISectorSweepSaver;
+import jpsxdec.i18n.I;
+import jpsxdec.sectors.IdentifiedSector;
+import jpsxdec.sectors.IdentifiedSectorIterator;
+import jpsxdec.util.LoggedFailure;
+import jpsxdec.util.ProgressLogger;
+import jpsxdec.util.TaskCanceledException;
+
+/** Saves many disc items with as few reads of the disc as possible.
+ * <p>
+ * Every {@link ISectorSweepSaver} is sorted by the sectors it needs, then
+ * the disc is read once from the first needed sector to the last, and each
+ * sector is handed to every saver that needs it. Items that are interleaved
+ * or share sectors (like the XA channels of a movie) are then only read and
+ * identified once, instead of once for every item.
+ * A saver is only opened when the sweep reaches its first sector, and is
+ * finished and closed as soon as the sweep passes its last one, so only
+ * the savers overlapping the current sector have files open.
+ * Stretches of the disc that no saver needs are skipped.
+ * A saver that fails is closed and dropped, and the sweep carries on
+ * with the rest.
+ * <p>
+ * Savers that can't be fed sectors are saved on their own afterwards. */
+public class SectorSweep {
+
+    public interface Listener {
+        /** Called when a saver has finished saving. */
+        void saverComplete(@Nonnull IDiscItemSaver saver);
+    }
+
+    private static final Comparator<ISectorSweepSaver> SECTOR_ORDER =
+            new Comparator<ISectorSweepSaver>()
+    {
+        public int compare(ISectorSweepSaver o1, ISectorSweepSaver o2) {
+            if (o1.getSweepStartSector() != o2.getSweepStartSector())
+                return o1.getSweepStartSector() < o2.getSweepStartSector() ? -1 : 1;
+            if (o1.getSweepEndSector() != o2.getSweepEndSector())
+                return o1.getSweepEndSector() < o2.getSweepEndSector() ? -1 : 1;
+            return 0;
+        }
+    };
+
+    @Nonnull
+    private final CdFileSectorReader _cd;
+    @Nonnull
+    private final ArrayList<ISectorSweepSaver> _sweepSavers = new ArrayList<ISectorSweepSaver>();
+    @Nonnull
+    private final ArrayList<IDiscItemSaver> _otherSavers = new ArrayList<IDiscItemSaver>();
+    /** First saver failure of the current save. */
+    @CheckForNull
+    private LoggedFailure _firstFailure;
+
+    public SectorSweep(@Nonnull CdFileSectorReader cd) {
+        _cd = cd;
+    }
+
+    /** The saver's disc item must be from the same disc as the sweep. */
+    public void add(@Nonnull IDiscItemSaver saver) {
+        if (saver instanceof ISectorSweepSaver)
+            _sweepSavers.add((ISectorSweepSaver)saver);
+        else
+            _otherSavers.add(saver);
+    }
+
+    /** Number of savers that will share the sweep. */
+    public int getSweepSaverCount() {
+        return _sweepSavers.size();
+    }
+
+    /** Saves everything added.
+     * If a saver fails, it is closed and the other savers continue. Once
+     * they are done, the first failure is thrown.
+     * If the disc can't be read, all savers still open are closed and
+     * the failure is thrown right away. */
+    public void save(@Nonnull ProgressLogger pl, @Nonnull Listener listener)
+            throws LoggedFailure, TaskCanceledException
+    {
+        _firstFailure = null;
+        sweep(pl, listener);
+
+        for (IDiscItemSaver saver : _otherSavers) {
+            try {
+                saver.startSave(pl);
+            } catch (LoggedFailure ex) {
+                failed(ex, pl);
+                continue;
+            }
+            listener.saverComplete(saver);
+        }
+
+        if (_firstFailure != null)
+            throw _firstFailure;
+    }
+
+    private void sweep(@Nonnull ProgressLogger pl, @Nonnull Listener listener)
+            throws LoggedFailure, TaskCanceledException
+    {
+        if (_sweepSavers.isEmpty())
+            return;
+
+        ArrayList<ISectorSweepSaver> pending = new ArrayList<ISectorSweepSaver>(_sweepSavers);
+        Collections.sort(pending, SECTOR_ORDER);
+
+        int iFirstSector = pending.get(0).getSweepStartSector();
+        int iLastSector = iFirstSector;
+        for (ISectorSweepSaver saver : pending)
+            iLastSector = Math.max(iLastSector, saver.getSweepEndSector());
+
+        // savers that have been started but not finished
+        List<ISectorSweepSaver> active = new ArrayList<ISectorSweepSaver>();
+        int iNextPending = 0;
+        try {
+            pl.progressStart(iFirstSector, iLastSector);
+
+            while (iNextPending < pending.size()) {
+                // find how far the next run of overlapping savers goes
+                int iRunStart = pending.get(iNextPending).getSweepStartSector();
+                int iRunEnd = iRunStart;
+                for (int i = iNextPending; i < pending.size(); i++) {
+                    ISectorSweepSaver saver = pending.get(i);
+                    if (saver.getSweepStartSector() > iRunEnd + 1)
+                        break;
+                    iRunEnd = Math.max(iRunEnd, saver.getSweepEndSector());
+                }
+
+                IdentifiedSectorIterator it = IdentifiedSectorIterator.create(_cd, iRunStart, iRunEnd);
+                try {
+                    while (it.hasNext()) {
+                        IdentifiedSector idSector;
+                        try {
+                            idSector = it.next();
+                        } catch (IOException ex) {
+                            throw new LoggedFailure(pl, Level.SEVERE,
+                                    I.IO_READING_FROM_FILE_ERROR_NAME(it.getSourceCdFile().toString()), ex);
+                        }
+                        CdSector cdSector = it.currentCd();
+                        int iSector = cdSector.getSectorNumberFromStart();
+
+                        while (iNextPending < pending.size() &&
+                               pending.get(iNextPending).getSweepStartSector() <= iSector)
+                        {
+                            ISectorSweepSaver saver = pending.get(iNextPending++);
+                            active.add(saver);
+                            try {
+                                saver.sweepStart(pl);
+                            } catch (LoggedFailure ex) {
+                                active.remove(active.size() - 1);
+                                saver.sweepClose();
+                                failed(ex, pl);
+                            }
+                        }
+
+                        for (Iterator<ISectorSweepSaver> activeIt = active.iterator(); activeIt.hasNext();) {
+                            ISectorSweepSaver saver = activeIt.next();
+                            boolean blnDone;
+                            try {
+                                blnDone = saver.sweepSector(cdSector, idSector, pl);
+                            } catch (LoggedFailure ex) {
+                                activeIt.remove();
+                                saver.sweepClose();
+                                failed(ex, pl);
+                                continue;
+                            }
+                            if (blnDone || iSector >= saver.getSweepEndSector()) {
+                                activeIt.remove();
+                                finish(saver, pl, listener);
+                            }
+                        }
+
+                        pl.progressUpdate(iSector);
+
+                        // every saver in this run may have finished early
+                        if (active.isEmpty() && (iNextPending == pending.size() ||
+                            pending.get(iNextPending).getSweepStartSector() > iSector + 1))
+                            break;
+                    }
+                } finally {
+                    it.close();
+                }
+
+                // any savers left didn't get all their sectors
+                // (the disc is probably shorter than the index says)
+                for (ISectorSweepSaver saver : active)
+                    finish(saver, pl, listener);
+                active.clear();
+            }
+
+            pl.progressEnd();
+        } finally {
+            for (ISectorSweepSaver saver : active)
+                saver.sweepClose();
+        }
+    }
+
+    private void finish(@Nonnull ISectorSweepSaver saver, @Nonnull ProgressLogger pl,
+                        @Nonnull Listener listener)
+    {
+        try {
+            saver.sweepEnd(pl);
+        } catch (LoggedFailure ex) {
+            failed(ex, pl);
+            return;
+        } finally {
+            saver.sweepClose();
+        }
+        listener.saverComplete(saver);
+    }
+
+    /** Remembers the first failure, making sure every failure is logged. */
+    private void failed(@Nonnull LoggedFailure ex, @Nonnull ProgressLogger pl) {
+        if (!ex.wasLogged())
+            ex.log(pl);
+        if (_firstFailure == null)
+            _firstFailure = ex;
+    }
+
+}
@@ -47,6 +47,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -62,6 +69,7 @@ import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.LocalizedFileNotFoundException;
 import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.psxvideo.mdec.Calc;
 import jpsxdec.psxvideo.mdec.MdecDecoder;
 import jpsxdec.psxvideo.mdec.MdecDecoder_double;
@@ -69,6 +77,7 @@ import jpsxdec.psxvideo.mdec.MdecException;
 import jpsxdec.psxvideo.mdec.MdecInputStream;
 import jpsxdec.psxvideo.mdec.MdecInputStreamReader;
 import jpsxdec.util.BinaryDataNotRecognized;
+import jpsxdec.util.DaemonThreadFactory;
 import jpsxdec.util.ExposedBAOS;
 import jpsxdec.util.Fraction;
 import jpsxdec.util.ILocalizedLogger;
@@ -95,6 +104,10 @@ import jpsxdec.util.aviwriter.AviWriterYV12;
  *                                                                    |
  *                                                                    +-> RgbAvi, YuvAvi, JYuvAvi (Decoded2...)
  *</pre>
+ * {@link Bitstream2DecodedParallel} combines Bitstream2Mdec and Mdec2Decoded,
+ * decoding several frames at once on worker threads.
+ * {@link Mdec2Jpeg} and {@link Mdec2MjpegAvi} can also encode several
+ * frames at once, see {@link JpegEncodeQueue}.
  */
 public class VDP {
 
@@ -158,50 +171,47 @@ public class VDP {
 
         @Nonnull
         private final ILocalizedLogger _log;
+        @Nonnull
+        private final BitStreamUncompressorPool _uncompressorPool;
+        /** Bitstream type of the last frame, only logged when it changes. */
         @CheckForNull
-        private BitStreamUncompressor _uncompressor;
+        private String _sLastTypeName;
         @Nonnull
         private final IMdecListener _listener;
 
         public Bitstream2Mdec(@Nonnull IMdecListener mdecListener) {
-            _listener = mdecListener;
-            _log = _listener.getLog();
+            this(mdecListener, null);
         }
 
-        private @CheckForNull BitStreamUncompressor identify(@Nonnull byte[] abBitstream, int iBitstreamSize) {
-            BitStreamUncompressor uncompressor;
-            try {
-                uncompressor = BitStreamUncompressor.identifyUncompressor(abBitstream, iBitstreamSize);
-                _log.log(Level.INFO, I.VIDEO_FMT_IDENTIFIED(uncompressor.getName()));
-            } catch (BinaryDataNotRecognized ex) {
-                uncompressor = null;
-            }
-            return uncompressor;
-        }
-        private @CheckForNull BitStreamUncompressor resetUncompressor(@Nonnull byte[] abBitstream, int iBitstreamSize) {
-            if (_uncompressor == null) {
-                _uncompressor = identify(abBitstream, iBitstreamSize);
-            } else {
-                try {
-                    _uncompressor.reset(abBitstream, iBitstreamSize);
-                } catch (BinaryDataNotRecognized ex) {
-                    _uncompressor = identify(abBitstream, iBitstreamSize);
-                }
-            }
-            return _uncompressor;
+        /** @param sBitstreamType Bitstream type to try first, usually
+         *                       {@link jpsxdec.discitems.DiscItemVideoStream#getBitstreamType()}.
+         *                       May be null if unknown. */
+        public Bitstream2Mdec(@Nonnull IMdecListener mdecListener,
+                              @CheckForNull String sBitstreamType)
+        {
+            _listener = mdecListener;
+            _log = _listener.getLog();
+            _uncompressorPool = new BitStreamUncompressorPool(sBitstreamType);
         }
 
         public void bitstream(@Nonnull byte[] abBitstream, int iBitstreamSize, 
                               @Nonnull FrameNumber frameNumber, int iFrameEndSector)
                 throws LoggedFailure
         {
-            resetUncompressor(abBitstream, iBitstreamSize);
-            if (_uncompressor == null) {
+            BitStreamUncompressor uncompressor;
+            try {
+                uncompressor = _uncompressorPool.reset(abBitstream, iBitstreamSize);
+            } catch (BinaryDataNotRecognized ex) {
                 ILocalizedMessage msg = I.UNABLE_TO_DETERMINE_FRAME_TYPE_FRM(frameNumber.toString());
                 _log.log(Level.SEVERE, msg);
                 _listener.error(msg, frameNumber, iFrameEndSector);
-            } else
-                _listener.mdec(_uncompressor, frameNumber, iFrameEndSector);
+                return;
+            }
+            if (!uncompressor.getName().equals(_sLastTypeName)) {
+                _sLastTypeName = uncompressor.getName();
+                _log.log(Level.INFO, I.VIDEO_FMT_IDENTIFIED(_sLastTypeName));
+            }
+            _listener.mdec(uncompressor, frameNumber, iFrameEndSector);
         }
 
     }
@@ -279,54 +289,221 @@ public class VDP {
     }
 
     
-    public static class Mdec2Jpeg implements IMdecListener {
+    /** Translates MDEC frames to JPEG, optionally on a pool of worker threads.
+     * The MDEC is read on the calling thread (the caller reuses the stream),
+     * but the JPEG encoding is done by the workers, each frame in flight
+     * with its own translator. Finished JPEGs are passed to
+     * {@link #jpegDone(ExposedBAOS, FrameNumber, int)} in the order the
+     * frames were received, on the thread that passed in the frames.
+     * <p>
+     * Anything else that must be written in order with the frames can be
+     * queued with {@link #add(OrderedWrite)}.
+     * {@link #flush()} must be called after the last frame. */
+    static abstract class JpegEncodeQueue implements Closeable {
+
+        /** Something written after all the frames received before it. */
+        protected interface OrderedWrite {
+            void write() throws LoggedFailure;
+        }
+
+        /** Holds everything needed to encode one frame. Only used by one
+         * thread at a time. */
+        private static class JpegSlot implements Callable<JpegSlot> {
+            @Nonnull
+            private final jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg _translator;
+            @Nonnull
+            private final ExposedBAOS _buffer = new ExposedBAOS();
+
+            public JpegSlot(int iWidth, int iHeight) {
+                _translator = new jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg(iWidth, iHeight);
+            }
+
+            public @Nonnull JpegSlot call() {
+                _buffer.reset();
+                try {
+                    _translator.writeJpeg(_buffer);
+                } catch (IOException ex) {
+                    throw new RuntimeException("Should not happen", ex);
+                }
+                return this;
+            }
+        }
+
+        private class JpegWrite implements OrderedWrite {
+            @Nonnull
+            private final Future<JpegSlot> _encoded;
+            @Nonnull
+            private final FrameNumber _frameNumber;
+            private final int _iFrameEndSector;
+
+            public JpegWrite(@Nonnull Future<JpegSlot> encoded,
+                             @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+            {
+                _encoded = encoded;
+                _frameNumber = frameNumber;
+                _iFrameEndSector = iFrameEndSector;
+            }
+
+            public void write() throws LoggedFailure {
+                JpegSlot slot;
+                try {
+                    slot = _encoded.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new RuntimeException(cause);
+                }
+                try {
+                    jpegDone(slot._buffer, _frameNumber, _iFrameEndSector);
+                } finally {
+                    _freeSlots.add(slot);
+                }
+            }
+        }
+
+        /** Null when encoding on the calling thread. */
+        @CheckForNull
+        private final ExecutorService _pool;
+        /** Slots not being used by any frame. */
+        private final LinkedList<JpegSlot> _freeSlots = new LinkedList<JpegSlot>();
+        /** Writes waiting on earlier frames, in the order they were received. */
+        private final LinkedList<OrderedWrite> _pending = new LinkedList<OrderedWrite>();
+
+        /** @param iThreads 1 to encode every frame immediately on the
+         *                  calling thread. */
+        public JpegEncodeQueue(int iWidth, int iHeight, int iThreads) {
+            if (iThreads > 1) {
+                // 2 frames per thread so the workers can keep encoding
+                // while the oldest frame is being written
+                for (int i = 0; i < iThreads * 2; i++) {
+                    _freeSlots.add(new JpegSlot(iWidth, iHeight));
+                }
+                _pool = Executors.newFixedThreadPool(iThreads,
+                                                     new DaemonThreadFactory("jPSXdec-jpeg"));
+            } else {
+                _freeSlots.add(new JpegSlot(iWidth, iHeight));
+                _pool = null;
+            }
+        }
+
+        /** Reads the frame and queues it to be encoded.
+         * If reading fails, nothing is queued. */
+        public void mdec(@Nonnull MdecInputStream mdecIn, @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws MdecException.TooMuchEnergy, MdecException.ReadCorruption,
+                       MdecException.EndOfStream, LoggedFailure
+        {
+            // wait for the oldest frame to free its translator
+            while (_freeSlots.isEmpty())
+                _pending.removeFirst().write();
+            JpegSlot slot = _freeSlots.getFirst();
+            slot._translator.readMdec(mdecIn);
+            _freeSlots.removeFirst();
+
+            if (_pool == null) {
+                try {
+                    jpegDone(slot.call()._buffer, frameNumber, iFrameEndSector);
+                } finally {
+                    _freeSlots.add(slot);
+                }
+            } else {
+                _pending.add(new JpegWrite(_pool.submit(slot), frameNumber, iFrameEndSector));
+            }
+        }
+
+        /** Writes immediately if no frames are waiting to be written,
+         * otherwise writes after them. */
+        public void add(@Nonnull OrderedWrite write) throws LoggedFailure {
+            if (_pending.isEmpty())
+                write.write();
+            else
+                _pending.add(write);
+        }
+
+        /** If there are writes waiting on frames still being encoded. */
+        public boolean hasPending() {
+            return !_pending.isEmpty();
+        }
+
+        /** Waits for all the frames still being encoded and writes
+         * everything still waiting. */
+        public void flush() throws LoggedFailure {
+            while (!_pending.isEmpty())
+                _pending.removeFirst().write();
+        }
+
+        /** Receives each encoded JPEG, in order. The buffer is reused
+         * after this returns. */
+        abstract protected void jpegDone(@Nonnull ExposedBAOS jpeg, @Nonnull FrameNumber frameNumber,
+                                         int iFrameEndSector) throws LoggedFailure;
+
+        /** Stops the worker threads. Frames that haven't been flushed are lost. */
+        public void close() {
+            if (_pool != null)
+                _pool.shutdownNow();
+            _pending.clear();
+        }
+    }
+
+    /** Writes each frame to a JPEG file.
+     * {@link #flush()} must be called after the last frame. */
+    public static class Mdec2Jpeg implements IMdecListener, Closeable {
 
         @Nonnull
         private final FrameFileFormatter _formatter;
         @Nonnull
-        private final jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg _jpegTranslator;
-        @Nonnull
-        private final ExposedBAOS _buffer = new ExposedBAOS();
+        private final JpegEncodeQueue _encodeQueue;
         @Nonnull
         private final ILocalizedLogger _log;
         @CheckForNull
         private GeneratedFileListener _fileGenListener;
 
         public Mdec2Jpeg(@Nonnull FrameFileFormatter formatter, int iWidth, int iHeight, @Nonnull ILocalizedLogger log) {
+            this(formatter, iWidth, iHeight, 1, log);
+        }
+
+        /** @param iThreads Number of threads to encode the JPEGs. */
+        public Mdec2Jpeg(@Nonnull FrameFileFormatter formatter, int iWidth, int iHeight, int iThreads,
+                         @Nonnull ILocalizedLogger log)
+        {
             _formatter = formatter;
-            _jpegTranslator = new jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg(iWidth, iHeight);
+            _encodeQueue = new JpegEncodeQueue(iWidth, iHeight, iThreads) {
+                protected void jpegDone(@Nonnull ExposedBAOS jpeg, @Nonnull FrameNumber frameNumber, int iFrameEndSector) {
+                    writeFile(jpeg, frameNumber);
+                }
+            };
             _log = log;
         }
 
-        public void mdec(@Nonnull MdecInputStream mdecIn, @Nonnull FrameNumber frameNumber, int iFrameEndSector) 
+        public void mdec(@Nonnull MdecInputStream mdecIn, @Nonnull FrameNumber frameNumber, int iFrameEndSector)
                 throws LoggedFailure
         {
-            File f = _formatter.format(frameNumber, _log);
             try {
-                IO.makeDirsForFile(f);
-            } catch (LocalizedFileNotFoundException ex) {
-                _log.log(Level.SEVERE, ex.getSourceMessage(), ex);
-                return; // just skip the file without failing
-            }
-
-            try {
-                _jpegTranslator.readMdec(mdecIn);
+                _encodeQueue.mdec(mdecIn, frameNumber, iFrameEndSector);
             } catch (MdecException.TooMuchEnergy ex) {
                 _log.log(Level.WARNING, I.JPEG_ENCODER_FRAME_FAIL(frameNumber), ex);
-                return; // just skip the file without failing
+                // just skip the file without failing
             } catch (MdecException.ReadCorruption ex) {
                 _log.log(Level.WARNING, I.FRAME_NUM_CORRUPTED(frameNumber.toString()), ex);
-                return; // just skip the file without failing
+                // just skip the file without failing
             } catch (MdecException.EndOfStream ex) {
                 _log.log(Level.WARNING, I.FRAME_NUM_INCOMPLETE(frameNumber.toString()), ex);
-                return; // just skip the file without failing
+                // just skip the file without failing
             }
+        }
 
-            _buffer.reset();
+        private void writeFile(@Nonnull ExposedBAOS jpeg, @Nonnull FrameNumber frameNumber) {
+            File f = _formatter.format(frameNumber, _log);
             try {
-                _jpegTranslator.writeJpeg(_buffer);
-            } catch (IOException ex) {
-                throw new RuntimeException("Should not happen", ex);
+                IO.makeDirsForFile(f);
+            } catch (LocalizedFileNotFoundException ex) {
+                _log.log(Level.SEVERE, ex.getSourceMessage(), ex);
+                return; // just skip the file without failing
             }
 
             FileOutputStream fos = null;
@@ -334,7 +511,7 @@ public class VDP {
                 fos = new FileOutputStream(f);
                 if (_fileGenListener != null)
                     _fileGenListener.fileGenerated(f);
-                fos.write(_buffer.getBuffer(), 0, _buffer.size());
+                fos.write(jpeg.getBuffer(), 0, jpeg.size());
             } catch (FileNotFoundException ex) {
                 _log.log(Level.SEVERE, I.IO_OPENING_FILE_ERROR_NAME(f.toString()), ex);
             } catch (IOException ex) {
@@ -348,6 +525,16 @@ public class VDP {
             // error frames are simply not written
         }
 
+        /** Writes the frames still being encoded. */
+        public void flush() throws LoggedFailure {
+            _encodeQueue.flush();
+        }
+
+        /** Stops the encoding threads. Frames that haven't been flushed are lost. */
+        public void close() {
+            _encodeQueue.close();
+        }
+
         public @Nonnull ILocalizedLogger getLog() {
             return _log;
         }
@@ -404,6 +591,201 @@ public class VDP {
 
     }
 
+    /** Does the work of {@link Bitstream2Mdec} and {@link Mdec2Decoded}
+     * on a pool of worker threads. Each frame in flight gets its own
+     * {@link MdecDecoder}, and the {@link IDecodedListener} still receives
+     * every frame in the order it was demuxed, on the thread that
+     * passed in the bitstream. So the listener doesn't need to be
+     * thread-safe, and the output is identical to the single threaded
+     * pipeline.
+     * <p>
+     * {@link #flush()} must be called after the last frame to pass along
+     * the frames that are still being decoded. */
+    public static class Bitstream2DecodedParallel implements IBitstreamListener, Closeable {
+
+        /** Holds everything needed to decode one frame. Only used by one
+         * thread at a time. */
+        private static class DecodeSlot implements Callable<DecodeSlot> {
+            @Nonnull
+            private final MdecDecoder _decoder;
+            @Nonnull
+            private final BitStreamUncompressorPool _uncompressorPool;
+            @Nonnull
+            private byte[] _abBitstream = new byte[0];
+            private int _iBitstreamSize;
+            @CheckForNull
+            private FrameNumber _frameNumber;
+            private int _iFrameEndSector;
+
+            // results of decoding, logged by the listener thread
+            /** Bitstream type of the frame, if it was identified. */
+            @CheckForNull
+            private String _sIdentifiedName;
+            /** Set when the frame type couldn't be identified. */
+            @CheckForNull
+            private ILocalizedMessage _unidentifiedMsg;
+            /** Set when the frame was only partially decoded. */
+            @CheckForNull
+            private ILocalizedMessage _decodeErrMsg;
+            @CheckForNull
+            private Exception _decodeErr;
+
+            public DecodeSlot(@Nonnull MdecDecoder decoder, @CheckForNull String sBitstreamType) {
+                _decoder = decoder;
+                _uncompressorPool = new BitStreamUncompressorPool(sBitstreamType);
+            }
+
+            public void setFrame(@Nonnull byte[] abBitstream, int iSize,
+                                 @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+            {
+                // the caller reuses its buffer, so keep a copy
+                if (_abBitstream.length < iSize)
+                    _abBitstream = new byte[iSize];
+                System.arraycopy(abBitstream, 0, _abBitstream, 0, iSize);
+                _iBitstreamSize = iSize;
+                _frameNumber = frameNumber;
+                _iFrameEndSector = iFrameEndSector;
+            }
+
+            public @Nonnull DecodeSlot call() {
+                _sIdentifiedName = null;
+                _unidentifiedMsg = null;
+                _decodeErrMsg = null;
+                _decodeErr = null;
+
+                BitStreamUncompressor uncompressor;
+                try {
+                    uncompressor = _uncompressorPool.reset(_abBitstream, _iBitstreamSize);
+                    _sIdentifiedName = uncompressor.getName();
+                } catch (BinaryDataNotRecognized ex) {
+                    _unidentifiedMsg = I.UNABLE_TO_DETERMINE_FRAME_TYPE_FRM(_frameNumber.toString());
+                    return this;
+                }
+
+                try {
+                    _decoder.decode(uncompressor);
+                } catch (MdecException.ReadCorruption ex) {
+                    _decodeErrMsg = I.FRAME_NUM_CORRUPTED(_frameNumber.toString());
+                    _decodeErr = ex;
+                } catch (MdecException.EndOfStream ex) {
+                    _decodeErrMsg = I.FRAME_NUM_INCOMPLETE(_frameNumber.toString());
+                    _decodeErr = ex;
+                }
+                return this;
+            }
+        }
+
+        @Nonnull
+        private final ILocalizedLogger _log;
+        @Nonnull
+        private final ExecutorService _pool;
+        /** Slots not being used by any frame. */
+        private final LinkedList<DecodeSlot> _freeSlots = new LinkedList<DecodeSlot>();
+        /** Frames being decoded, in the order they were received. */
+        private final LinkedList<Future<DecodeSlot>> _pending = new LinkedList<Future<DecodeSlot>>();
+        @CheckForNull
+        private IDecodedListener _listener;
+        /** Each slot has its own uncompressors, but the bitstream type
+         * only needs to be logged when it changes. */
+        @CheckForNull
+        private String _sLastIdentifiedName;
+
+        /** @param decoders One decoder for each frame that can be in flight
+         *                  at once, which should be a few more than
+         *                  the number of threads so the workers are never
+         *                  waiting on the listener.
+         *                  All must be configured identically. */
+        public Bitstream2DecodedParallel(@Nonnull List<? extends MdecDecoder> decoders, int iThreads,
+                                         @Nonnull ILocalizedLogger log)
+        {
+            this(decoders, iThreads, null, log);
+        }
+
+        /** @param sBitstreamType Bitstream type to try first.
+         * @see Bitstream2Mdec#Bitstream2Mdec(IMdecListener, String) */
+        public Bitstream2DecodedParallel(@Nonnull List<? extends MdecDecoder> decoders, int iThreads,
+                                         @CheckForNull String sBitstreamType,
+                                         @Nonnull ILocalizedLogger log)
+        {
+            if (decoders.isEmpty())
+                throw new IllegalArgumentException("Need at least one decoder");
+            for (MdecDecoder decoder : decoders) {
+                _freeSlots.add(new DecodeSlot(decoder, sBitstreamType));
+            }
+            _pool = Executors.newFixedThreadPool(Math.max(1, iThreads),
+                                                 new DaemonThreadFactory("jPSXdec-decode"));
+            _log = log;
+        }
+
+        public void setDecoded(@CheckForNull IDecodedListener decoded) {
+            if (decoded == null)
+                return;
+            decoded.assertAcceptsDecoded(_freeSlots.getFirst()._decoder);
+            _listener = decoded;
+        }
+
+        public void bitstream(@Nonnull byte[] abBitstream, int iBitstreamSize,
+                              @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure
+        {
+            if (_listener == null)
+                throw new IllegalStateException("IDecodedListener must be set");
+            // wait for the oldest frame to free its decoder
+            if (_freeSlots.isEmpty())
+                passOldestFrame();
+            DecodeSlot slot = _freeSlots.removeFirst();
+            slot.setFrame(abBitstream, iBitstreamSize, frameNumber, iFrameEndSector);
+            _pending.add(_pool.submit(slot));
+        }
+
+        /** Waits for all the frames still being decoded and passes them
+         * along to the listener. */
+        public void flush() throws LoggedFailure {
+            while (!_pending.isEmpty())
+                passOldestFrame();
+        }
+
+        private void passOldestFrame() throws LoggedFailure {
+            DecodeSlot slot;
+            try {
+                slot = _pending.removeFirst().get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new RuntimeException(cause);
+            }
+
+            try {
+                if (slot._sIdentifiedName != null && !slot._sIdentifiedName.equals(_sLastIdentifiedName)) {
+                    _log.log(Level.INFO, I.VIDEO_FMT_IDENTIFIED(slot._sIdentifiedName));
+                    _sLastIdentifiedName = slot._sIdentifiedName;
+                }
+                if (slot._unidentifiedMsg != null) {
+                    _log.log(Level.SEVERE, slot._unidentifiedMsg);
+                    _listener.error(slot._unidentifiedMsg, slot._frameNumber, slot._iFrameEndSector);
+                } else {
+                    if (slot._decodeErrMsg != null)
+                        _log.log(Level.SEVERE, slot._decodeErrMsg, slot._decodeErr);
+                    _listener.decoded(slot._decoder, slot._frameNumber, slot._iFrameEndSector);
+                }
+            } finally {
+                _freeSlots.add(slot);
+            }
+        }
+
+        /** Stops the worker threads. Frames that haven't been flushed are lost. */
+        public void close() {
+            _pool.shutdownNow();
+            _pending.clear();
+        }
+    }
+
     public interface IDecodedListener {
         void decoded(@Nonnull MdecDecoder decoder, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure;
         void error(@Nonnull ILocalizedMessage errMsg, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure;
@@ -558,7 +940,7 @@ public class VDP {
         }
 
         /** Writes audio. */
-        final public void write(@Nonnull AudioFormat format, @Nonnull byte[] abData, int iStart, int iLen, @Nonnull Fraction presentationSector) throws LoggedFailure {
+        public void write(@Nonnull AudioFormat format, @Nonnull byte[] abData, int iStart, int iLen, @Nonnull Fraction presentationSector) throws LoggedFailure {
             if (_writer == null)
                 throw new IllegalStateException("Avi writer is not open");
 
@@ -582,6 +964,11 @@ public class VDP {
             }
         }
 
+        /** Writes anything still waiting to be written.
+         * Called after the last frame and audio. */
+        public void flush() throws LoggedFailure {
+        }
+
         public void close() throws IOException {
             if (_writer != null) {
                 _writer.close();
@@ -752,23 +1139,52 @@ public class VDP {
         
     }
 
-    /** This Avi output is unique in that it takes Mdec as input instead of Decoded. */
+    /** This Avi output is unique in that it takes Mdec as input instead of Decoded.
+     * {@link #flush()} must be called after the last frame. */
     public static class Mdec2MjpegAvi extends ToAvi implements IMdecListener {
         @Nonnull
-        private final jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg _jpegTranslator;
-        @Nonnull
-        private final ExposedBAOS _buffer = new ExposedBAOS();
+        private final JpegEncodeQueue _encodeQueue;
         @CheckForNull
         private AviWriterMJPG _mjpegWriter;
 
         public Mdec2MjpegAvi(@Nonnull File outputFile, int iWidth, int iHeight, @Nonnull VideoSync vidSync, @Nonnull ILocalizedLogger log) {
+            this(outputFile, iWidth, iHeight, vidSync, 1, log);
+        }
+
+        /** @param iThreads Number of threads to encode the JPEGs. */
+        public Mdec2MjpegAvi(@Nonnull File outputFile, int iWidth, int iHeight, @Nonnull VideoSync vidSync,
+                             int iThreads, @Nonnull ILocalizedLogger log)
+        {
             super(outputFile, iWidth, iHeight, vidSync, log);
-            _jpegTranslator = new jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg(iWidth, iHeight);
+            _encodeQueue = makeEncodeQueue(iWidth, iHeight, iThreads);
         }
 
         public Mdec2MjpegAvi(@Nonnull File outputFile, int iWidth, int iHeight, @Nonnull AudioVideoSync avSync, @Nonnull AudioFormat af, @Nonnull ILocalizedLogger log) {
+            this(outputFile, iWidth, iHeight, avSync, af, 1, log);
+        }
+
+        /** @param iThreads Number of threads to encode the JPEGs. */
+        public Mdec2MjpegAvi(@Nonnull File outputFile, int iWidth, int iHeight, @Nonnull AudioVideoSync avSync,
+                             @Nonnull AudioFormat af, int iThreads, @Nonnull ILocalizedLogger log)
+        {
             super(outputFile, iWidth, iHeight, avSync, af, log);
-            _jpegTranslator = new jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg(iWidth, iHeight);
+            _encodeQueue = makeEncodeQueue(iWidth, iHeight, iThreads);
+        }
+
+        private @Nonnull JpegEncodeQueue makeEncodeQueue(int iWidth, int iHeight, int iThreads) {
+            return new JpegEncodeQueue(iWidth, iHeight, iThreads) {
+                protected void jpegDone(@Nonnull ExposedBAOS jpeg, @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                        throws LoggedFailure
+                {
+                    try {
+                        prepForFrame(frameNumber, iFrameEndSector);
+                        _mjpegWriter.writeFrame(jpeg.getBuffer(), 0, jpeg.size());
+                    } catch (IOException ex) {
+                        throw new LoggedFailure(_log, Level.SEVERE,
+                                I.IO_WRITING_TO_FILE_ERROR_NAME(_writer.getFile().toString()), ex);
+                    }
+                }
+            };
         }
 
         public void open()
@@ -788,21 +1204,7 @@ public class VDP {
             ILocalizedMessage err;
             Exception fail;
             try {
-                _jpegTranslator.readMdec(mdecIn);
-                _buffer.reset();
-                try {
-                    _jpegTranslator.writeJpeg(_buffer);
-                } catch (IOException ex) {
-                    throw new RuntimeException("Should not happen", ex);
-                }
-
-                try {
-                    prepForFrame(frameNumber, iFrameEndSector);
-                    _mjpegWriter.writeFrame(_buffer.getBuffer(), 0, _buffer.size());
-                } catch (IOException ex) {
-                    throw new LoggedFailure(_log, Level.SEVERE,
-                            I.IO_WRITING_TO_FILE_ERROR_NAME(_writer.getFile().toString()), ex);
-                }
+                _encodeQueue.mdec(mdecIn, frameNumber, iFrameEndSector);
                 return;
                 // kinda icky way to do this
             } catch (MdecException.ReadCorruption ex) {
@@ -819,9 +1221,22 @@ public class VDP {
             error(err, frameNumber, iFrameEndSector);
         }
 
-        public void error(@Nonnull ILocalizedMessage errMsg, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
+        public void error(@Nonnull final ILocalizedMessage errMsg, @Nonnull final FrameNumber frameNumber,
+                          final int iFrameEndSector)
+                throws LoggedFailure
+        {
             if (_mjpegWriter == null)
                 throw new IllegalStateException("AVI not open.");
+            _encodeQueue.add(new JpegEncodeQueue.OrderedWrite() {
+                public void write() throws LoggedFailure {
+                    writeErrorFrame(errMsg, frameNumber, iFrameEndSector);
+                }
+            });
+        }
+
+        private void writeErrorFrame(@Nonnull ILocalizedMessage errMsg, @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure
+        {
             try {
                 prepForFrame(frameNumber, iFrameEndSector);
                 _mjpegWriter.writeFrame(makeErrorImage(errMsg, _iWidth, _iHeight));
@@ -831,6 +1246,39 @@ public class VDP {
             }
         }
 
+        /** Audio is written after the frames that came before it
+         * are encoded, so the interleaving is the same no matter how
+         * many threads are used. */
+        @Override
+        public void write(@Nonnull final AudioFormat format, @Nonnull byte[] abData, int iStart, int iLen,
+                          @Nonnull final Fraction presentationSector)
+                throws LoggedFailure
+        {
+            if (!_encodeQueue.hasPending()) {
+                super.write(format, abData, iStart, iLen, presentationSector);
+                return;
+            }
+            // the caller reuses its buffer, so keep a copy
+            final byte[] abCopy = new byte[iLen];
+            System.arraycopy(abData, iStart, abCopy, 0, iLen);
+            _encodeQueue.add(new JpegEncodeQueue.OrderedWrite() {
+                public void write() throws LoggedFailure {
+                    Mdec2MjpegAvi.super.write(format, abCopy, 0, abCopy.length, presentationSector);
+                }
+            });
+        }
+
+        @Override
+        public void flush() throws LoggedFailure {
+            _encodeQueue.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            _encodeQueue.close();
+            super.close();
+        }
+
         public @Nonnull ILocalizedLogger getLog() {
             return _log;
         }
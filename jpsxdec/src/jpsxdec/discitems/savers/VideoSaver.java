@@ -42,18 +42,20 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.sound.sampled.AudioFormat;
+import jpsxdec.cdreaders.CdSector;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.DiscItemVideoStream;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.FrameNumberFormatter;
 import jpsxdec.discitems.IDemuxedFrame;
-import jpsxdec.discitems.IDiscItemSaver;
 import jpsxdec.discitems.ISectorFrameDemuxer;
+import jpsxdec.discitems.ISectorSweepSaver;
 import jpsxdec.discitems.savers.VideoSaverBuilder.SectorFeeder;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
@@ -73,7 +75,7 @@ import jpsxdec.util.TaskCanceledException;
 
 /** Classes to perform the actual saving of video disc items. */
 public abstract class VideoSaver 
-        implements IDiscItemSaver,
+        implements ISectorSweepSaver,
                    ISectorFrameDemuxer.ICompletedFrameListener,
                    VDP.GeneratedFileListener
 {
@@ -85,6 +87,13 @@ public abstract class VideoSaver
     protected final VideoFormat _vidFmt;
     @CheckForNull
     protected final MdecDecoder _decoder;
+    protected final int _iDecodeThreads;
+    /** Decoders for {@link VDP.Bitstream2DecodedParallel}, or null when
+     * decoding on a single thread, or not decoding at all. */
+    @CheckForNull
+    private final List<MdecDecoder> _parallelDecoders;
+    @CheckForNull
+    private VDP.Bitstream2DecodedParallel _parallelPipeline;
     @CheckForNull
     protected final FrameLookup _startFrame, _endFrame;
     @Nonnull
@@ -132,6 +141,25 @@ public abstract class VideoSaver
                 throw new UnsupportedOperationException(_vidFmt + " not implemented yet.");
         }
 
+        if (vsb.getDecodeThreads_enabled() && vsb.getDecodeThreads() > 1) {
+            _iDecodeThreads = vsb.getDecodeThreads();
+            _selectedOptions.add(I.CMD_DECODE_THREADS(_iDecodeThreads));
+            if (_decoder != null) {
+                // 2 frames per thread so the workers can keep decoding
+                // while the oldest frame is being written
+                _parallelDecoders = new ArrayList<MdecDecoder>(_iDecodeThreads * 2);
+                _parallelDecoders.add(_decoder);
+                while (_parallelDecoders.size() < _iDecodeThreads * 2)
+                    _parallelDecoders.add(createVideoDecoder(vsb));
+            } else {
+                // JPEG formats encode on the threads instead
+                _parallelDecoders = null;
+            }
+        } else {
+            _iDecodeThreads = 1;
+            _parallelDecoders = null;
+        }
+
         _startFrame = vsb.getSaveStartFrame();
         _endFrame = vsb.getSaveEndFrame();
 
@@ -193,18 +221,123 @@ public abstract class VideoSaver
 
     /** Call only when the target video format has decoders. */
     final protected @Nonnull MdecDecoder makeVideoDecoder(@Nonnull VideoSaverBuilder vsb) {
+        MdecDecoder vidDecoder = createVideoDecoder(vsb);
+        _selectedOptions.add(I.CMD_DECODE_QUALITY(vsb.getDecodeQuality()));
+        if (vidDecoder instanceof MdecDecoder_double_interpolate)
+            _selectedOptions.add(I.CMD_UPSAMPLE_QUALITY(vsb.getChromaInterpolation()));
+        return vidDecoder;
+    }
+
+    private @Nonnull MdecDecoder createVideoDecoder(@Nonnull VideoSaverBuilder vsb) {
         // quality should != null for the target format
         MdecDecodeQuality quality = vsb.getDecodeQuality();
-        _selectedOptions.add(I.CMD_DECODE_QUALITY(quality));
         MdecDecoder vidDecoder = quality.makeDecoder(_videoItem.getWidth(), _videoItem.getHeight());
-        if (vidDecoder instanceof MdecDecoder_double_interpolate) {
-            Upsampler chroma = vsb.getChromaInterpolation();
-            _selectedOptions.add(I.CMD_UPSAMPLE_QUALITY(chroma));
-            ((MdecDecoder_double_interpolate)vidDecoder).setResampler(chroma);
-        }
+        if (vidDecoder instanceof MdecDecoder_double_interpolate)
+            ((MdecDecoder_double_interpolate)vidDecoder).setResampler(vsb.getChromaInterpolation());
         return vidDecoder;
     }
 
+    /** Creates the pipeline from bitstream to the {@link VDP.IDecodedListener}.
+     * Decodes on multiple threads if more than 1 decode thread was chosen. */
+    final protected @Nonnull VDP.IBitstreamListener makeDecodePipeline(
+            @Nonnull VDP.IDecodedListener decoded, @Nonnull ProgressLogger pll)
+    {
+        if (_parallelDecoders == null) {
+            VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(_decoder, pll);
+            mdec2decode.setDecoded(decoded);
+            return new VDP.Bitstream2Mdec(mdec2decode, _videoItem.getBitstreamType());
+        } else {
+            _parallelPipeline = new VDP.Bitstream2DecodedParallel(_parallelDecoders, _iDecodeThreads,
+                    _videoItem.getBitstreamType(), pll);
+            _parallelPipeline.setDecoded(decoded);
+            return _parallelPipeline;
+        }
+    }
+
+    /** Passes along any frames still being decoded. */
+    final protected void flushDecodePipeline() throws LoggedFailure {
+        if (_parallelPipeline != null)
+            _parallelPipeline.flush();
+    }
+
+    final protected void closeDecodePipeline() {
+        if (_parallelPipeline != null) {
+            _parallelPipeline.close();
+            _parallelPipeline = null;
+        }
+    }
+
+    /** Reads the sectors and feeds them to the saver the same way
+     * {@link SectorSweep} does. */
+    public void startSave(@Nonnull ProgressLogger pll) throws LoggedFailure, TaskCanceledException {
+        try {
+            sweepStart(pll);
+
+            final int iStartSector = getSweepStartSector(), iEndSector = getSweepEndSector();
+            pll.progressStart(iEndSector - iStartSector + 1);
+
+            IdentifiedSectorIterator it = IdentifiedSectorIterator.create(_videoItem.getSourceCd(), iStartSector, iEndSector);
+            for (int iSector = 0; it.hasNext(); iSector++) {
+                IdentifiedSector identifiedSector;
+                try {
+                    identifiedSector = it.next();
+                } catch (IOException ex) {
+                    throw new LoggedFailure(pll, Level.SEVERE,
+                            I.IO_READING_FROM_FILE_ERROR_NAME(it.getSourceCdFile().toString()), ex);
+                }
+
+                boolean blnDone = sweepSector(it.currentCd(), identifiedSector, pll);
+
+                if (pll.isSeekingEvent() && _currentFrame != null)
+                    pll.event(_numberFormatter.getDescription(_currentFrame));
+                pll.progressUpdate(iSector);
+
+                if (blnDone)
+                    break;
+            }
+
+            sweepEnd(pll);
+            if (pll.isSeekingEvent() && _currentFrame != null)
+                pll.event(_numberFormatter.getDescription(_currentFrame));
+            pll.progressEnd();
+        } finally {
+            sweepClose();
+        }
+    }
+
+    public int getSweepStartSector() {
+        if (_sectorFeeder.videoSeekPoint != null)
+            return _sectorFeeder.videoSeekPoint.getSector();
+        return _videoItem.getStartSector();
+    }
+
+    public int getSweepEndSector() {
+        return _videoItem.getEndSector();
+    }
+
+    final public boolean sweepSector(@Nonnull CdSector cdSector,
+                                     @CheckForNull IdentifiedSector identifiedSector,
+                                     @Nonnull ProgressLogger pll)
+            throws LoggedFailure
+    {
+        if (identifiedSector != null)
+            _sectorFeeder.feedSector(identifiedSector, pll);
+
+        // if we've already handled the frames we want to save
+        // we're done early
+        return !savingAudio() &&
+               _endFrame != null && _currentFrame != null && _endFrame.compareTo(_currentFrame) < 0;
+    }
+
+    public void sweepEnd(@Nonnull ProgressLogger pll) throws LoggedFailure {
+        _sectorFeeder.flush(pll);
+        flushDecodePipeline();
+    }
+
+    public void sweepClose() {
+        closeDecodePipeline();
+    }
+
     final protected void addSkipFrameSelectedOptions() {
         if (_startFrame != null)
             _selectedOptions.add(I.CMD_FRAME_RANGE_BEFORE(_startFrame));
@@ -221,6 +354,9 @@ public abstract class VideoSaver
         private final File[] _aoOutRng;
         @Nonnull
         private final FrameFileFormatter _outFileFormat;
+        @CheckForNull
+        private VDP.Mdec2Jpeg _mdec2jpeg;
+
         public Sequence(@Nonnull DiscItemVideoStream videoItem, @Nonnull File directory,
                         @Nonnull SectorFeeder fdr, @Nonnull VideoSaverBuilder vsb)
         {
@@ -247,7 +383,7 @@ public abstract class VideoSaver
             return false;
         }
 
-        public void startSave(@Nonnull ProgressLogger pll) throws LoggedFailure, TaskCanceledException {
+        public void sweepStart(@Nonnull ProgressLogger pll) {
 
             switch (_vidFmt) {
                 case IMGSEQ_BITSTREAM:
@@ -261,62 +397,46 @@ public abstract class VideoSaver
                     VDP.Mdec2File mdec2file = new VDP.Mdec2File(_outFileFormat,
                             _videoItem.getWidth(), _videoItem.getHeight(), pll);
                     mdec2file.setGenFileListener(this);
-                    _bsListener = new VDP.Bitstream2Mdec(mdec2file);
+                    _bsListener = new VDP.Bitstream2Mdec(mdec2file, _videoItem.getBitstreamType());
                 } break;
                 case IMGSEQ_JPG:
                 {
                     VDP.Mdec2Jpeg mdec2jpeg = new VDP.Mdec2Jpeg(_outFileFormat,
-                            _videoItem.getWidth(), _videoItem.getHeight(), pll);
+                            _videoItem.getWidth(), _videoItem.getHeight(), _iDecodeThreads, pll);
                     mdec2jpeg.setGenFileListener(this);
-                    _bsListener = new VDP.Bitstream2Mdec(mdec2jpeg);
+                    _bsListener = new VDP.Bitstream2Mdec(mdec2jpeg, _videoItem.getBitstreamType());
+                    _mdec2jpeg = mdec2jpeg;
                 } break;
                 case IMGSEQ_BMP:
                 case IMGSEQ_PNG:
                 {
                     // vf.getImgFmt() should != null for these image formats
-                    VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(_decoder, pll);
                     VDP.Decoded2JavaImage decode2img = new VDP.Decoded2JavaImage(
                             _outFileFormat, _vidFmt.getImgFmt(), _iCroppedWidth, _iCroppedHeight, pll);
                     decode2img.setGenFileListener(this);
-                    mdec2decode.setDecoded(decode2img);
-                    _bsListener = new VDP.Bitstream2Mdec(mdec2decode);
+                    _bsListener = makeDecodePipeline(decode2img, pll);
                 } break;
                 default:
                     throw new UnsupportedOperationException(_vidFmt + " not implemented yet.");
             }
 
-            pll.progressStart(_videoItem.getSectorLength());
-            IdentifiedSectorIterator it = _videoItem.identifiedSectorIterator();
-
             _generatedFiles = new ArrayList<File>();
-            for (int iSector = 0; it.hasNext(); iSector++) {
-
-                IdentifiedSector identifiedSector;
-                try {
-                    identifiedSector = it.next();
-                } catch (IOException ex) {
-                    throw new LoggedFailure(pll, Level.SEVERE,
-                            I.IO_READING_FROM_FILE_ERROR_NAME(it.getSourceCdFile().toString()), ex);
-                }
-                
-                if (identifiedSector != null) {
-                    _sectorFeeder.feedSector(identifiedSector, pll);
-                }
-
-                if (pll.isSeekingEvent() && _currentFrame != null)
-                    pll.event(_numberFormatter.getDescription(_currentFrame));
+        }
 
-                pll.progressUpdate(iSector);
+        @Override
+        public void sweepEnd(@Nonnull ProgressLogger pll) throws LoggedFailure {
+            super.sweepEnd(pll);
+            if (_mdec2jpeg != null)
+                _mdec2jpeg.flush();
+        }
 
-                // if we've already handled the frames we want to save
-                // break early
-                if (_endFrame != null && _currentFrame != null && _endFrame.compareTo(_currentFrame) < 0)
-                    break;
+        @Override
+        public void sweepClose() {
+            super.sweepClose();
+            if (_mdec2jpeg != null) {
+                _mdec2jpeg.close();
+                _mdec2jpeg = null;
             }
-            _sectorFeeder.flush(pll);
-            if (pll.isSeekingEvent() && _currentFrame != null)
-                pll.event(_numberFormatter.getDescription(_currentFrame));
-            pll.progressEnd();
         }
 
     }
@@ -328,6 +448,8 @@ public abstract class VideoSaver
         private final boolean _blnEmulatePsxAvSync;
         @Nonnull
         private final File _outFile;
+        @CheckForNull
+        private VDP.ToAvi _toAvi;
 
         public Avi(@Nonnull DiscItemVideoStream videoItem, @CheckForNull File directory,
                    @Nonnull SectorFeeder fdr, @Nonnull VideoSaverBuilder vsb)
@@ -362,7 +484,25 @@ public abstract class VideoSaver
             return _sectorFeeder.audioDecoder != null;
         }
 
-        public void startSave(@Nonnull ProgressLogger pll) throws LoggedFailure, TaskCanceledException {
+        @Override
+        public int getSweepStartSector() {
+            if (_sectorFeeder.audioDecoder == null)
+                return super.getSweepStartSector();
+            else
+                return Math.min(_videoItem.getStartSector(),
+                                _sectorFeeder.audioDecoder.getStartSector());
+        }
+
+        @Override
+        public int getSweepEndSector() {
+            if (_sectorFeeder.audioDecoder == null)
+                return _videoItem.getEndSector();
+            else
+                return Math.max(_videoItem.getEndSector(),
+                                _sectorFeeder.audioDecoder.getEndSector());
+        }
+
+        public void sweepStart(@Nonnull ProgressLogger pll) throws LoggedFailure {
             final VDP.ToAvi toAvi;
             if (_sectorFeeder.audioDecoder == null) {
                 VideoSync vidSync = new VideoSync(_videoItem.getPresentationStartSector(),
@@ -380,7 +520,7 @@ public abstract class VideoSaver
                         toAvi = new VDP.Decoded2RgbAvi(_outFile, _iCroppedWidth, _iCroppedHeight, vidSync, pll);
                         break;
                     case AVI_MJPG:
-                        toAvi = new VDP.Mdec2MjpegAvi(_outFile, _iCroppedWidth, _iCroppedHeight, vidSync, pll);
+                        toAvi = new VDP.Mdec2MjpegAvi(_outFile, _iCroppedWidth, _iCroppedHeight, vidSync, _iDecodeThreads, pll);
                         break;
                     default: throw new UnsupportedOperationException(_vidFmt + " not implemented yet.");
                 }
@@ -405,7 +545,7 @@ public abstract class VideoSaver
                         toAvi = new VDP.Decoded2RgbAvi(_outFile, _iCroppedWidth, _iCroppedHeight, avSync, af, pll);
                         break;
                     case AVI_MJPG:
-                        toAvi = new VDP.Mdec2MjpegAvi(_outFile, _iCroppedWidth, _iCroppedHeight, avSync, af, pll);
+                        toAvi = new VDP.Mdec2MjpegAvi(_outFile, _iCroppedWidth, _iCroppedHeight, avSync, af, _iDecodeThreads, pll);
                         break;
                     default: throw new UnsupportedOperationException(_vidFmt + " not implemented yet.");
                 }
@@ -415,24 +555,10 @@ public abstract class VideoSaver
             toAvi.setGenFileListener(this);
 
             if (toAvi instanceof VDP.IMdecListener) {
-                _bsListener = new VDP.Bitstream2Mdec((VDP.IMdecListener)toAvi);
+                _bsListener = new VDP.Bitstream2Mdec((VDP.IMdecListener)toAvi, _videoItem.getBitstreamType());
             } else if (toAvi instanceof VDP.IDecodedListener) {
-                VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(_decoder, pll);
-                _bsListener = new VDP.Bitstream2Mdec(mdec2decode);
-                mdec2decode.setDecoded((VDP.IDecodedListener)toAvi);
-            }
-            addSkipFrameSelectedOptions();
-            final int iStartSector, iEndSector;
-            if (_sectorFeeder.audioDecoder == null) {
-                iStartSector = _videoItem.getStartSector();
-                iEndSector = _videoItem.getEndSector();
-            } else {
-                iStartSector = Math.min(_videoItem.getStartSector(),
-                                        _sectorFeeder.audioDecoder.getStartSector());
-                iEndSector   = Math.max(_videoItem.getEndSector(),
-                                        _sectorFeeder.audioDecoder.getEndSector());
+                _bsListener = makeDecodePipeline((VDP.IDecodedListener)toAvi, pll);
             }
-
             _generatedFiles = new ArrayList<File>(1);
             try {
                 toAvi.open();
@@ -443,43 +569,23 @@ public abstract class VideoSaver
             } catch (IOException ex) {
                 throw new LoggedFailure(pll, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(toAvi.getOutputFile().toString()), ex);
             }
-            
-            try {
+            _toAvi = toAvi;
+        }
 
-                pll.progressStart(iEndSector - iStartSector + 1);
-
-                IdentifiedSectorIterator it = IdentifiedSectorIterator.create(_videoItem.getSourceCd(), iStartSector, iEndSector);
-                for (int iSector = 0; it.hasNext(); iSector++) {
-                    IdentifiedSector identifiedSector;
-                    try {
-                        identifiedSector = it.next();
-                    } catch (IOException ex) {
-                        throw new LoggedFailure(pll, Level.SEVERE,
-                                I.IO_READING_FROM_FILE_ERROR_NAME(it.getSourceCdFile().toString()), ex);
-                    }
-
-                    if (identifiedSector != null)
-                        _sectorFeeder.feedSector(identifiedSector, pll);
-                    
-                    if (pll.isSeekingEvent() && _currentFrame != null)
-                        pll.event(_numberFormatter.getDescription(_currentFrame));
-                    pll.progressUpdate(iSector);
-
-                    // if we've already handled the frames we want to save
-                    // break early
-                    if (_sectorFeeder.audioDecoder == null &&
-                        _endFrame != null && _currentFrame != null && _endFrame.compareTo(_currentFrame) < 0)
-                        break;
-                }
+        @Override
+        public void sweepEnd(@Nonnull ProgressLogger pll) throws LoggedFailure {
+            super.sweepEnd(pll);
+            if (_toAvi != null)
+                _toAvi.flush();
+        }
 
-                _sectorFeeder.flush(pll);
-                if (pll.isSeekingEvent() && _currentFrame != null)
-                    pll.event(_numberFormatter.getDescription(_currentFrame));
-                pll.progressEnd();
-            } finally {
-                IO.closeSilently(toAvi, LOG);
+        @Override
+        public void sweepClose() {
+            super.sweepClose();
+            if (_toAvi != null) {
+                IO.closeSilently(_toAvi, LOG);
+                _toAvi = null;
             }
-
         }
 
     }
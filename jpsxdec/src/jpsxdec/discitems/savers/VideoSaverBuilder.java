@@ -49,6 +49,7 @@ import jpsxdec.discitems.DiscItemSaverBuilder;
 import jpsxdec.discitems.DiscItemVideoStream;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.FrameNumberFormat;
+import jpsxdec.discitems.FrameSeekTable;
 import jpsxdec.discitems.IDiscItemSaver;
 import jpsxdec.discitems.ISectorAudioDecoder;
 import jpsxdec.discitems.ISectorFrameDemuxer;
@@ -88,6 +89,7 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         setSaveEndFrame(null);
         setSingleSpeed(false);
         setAudioVolume(1.0);
+        setDecodeThreads(1);
     }
 
     public boolean copySettingsTo(@Nonnull DiscItemSaverBuilder otherBuilder) {
@@ -106,6 +108,7 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
                 other.setSingleSpeed(getSingleSpeed());
             if (getAudioVolume_enabled())
                 other.setAudioVolume(getAudioVolume());
+            other.setDecodeThreads(getDecodeThreads());
             return true;
         }
         return false;
@@ -274,6 +277,25 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
 
     // .........................................................................
 
+    private int _iDecodeThreads = 1;
+    /** Number of threads that uncompress and decode frames, or that
+     * encode the JPEG formats.
+     * Other formats only use 1 thread. */
+    public int getDecodeThreads() {
+        return _iDecodeThreads;
+    }
+    public void setDecodeThreads(int val) {
+        _iDecodeThreads = Math.max(1, val);
+        firePossibleChange();
+    }
+    public boolean getDecodeThreads_enabled() {
+        VideoFormat fmt = getVideoFormat();
+        return fmt.getDecodeQualityCount() > 0 ||
+               fmt == VideoFormat.IMGSEQ_JPG || fmt == VideoFormat.AVI_MJPG;
+    }
+
+    // .........................................................................
+
     public boolean getFileNumberType_enabled() {
         return !getVideoFormat().isAvi();
     }
@@ -341,6 +363,7 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         StringHolder discSpeed = ap.addStringOption("-ds");
         StringHolder frames = ap.addStringOption("-frame","-frames");
         StringHolder num = ap.addStringOption("-num");
+        StringHolder threads = ap.addStringOption("-threads");
 
         //BooleanHolder emulatefps = ap.addBoolOption(false, "-psxfps"); // Mutually excusive with fps...
 
@@ -400,6 +423,17 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
                 fbs.printlnWarn(I.CMD_FRAME_NUMBER_TYPE_INVALID(num.value));
         }
 
+        if (threads.value != null) {
+            try {
+                int iThreads = Integer.parseInt(threads.value);
+                if (iThreads < 1)
+                    throw new NumberFormatException();
+                setDecodeThreads(iThreads);
+            } catch (NumberFormatException ex) {
+                fbs.printlnWarn(I.CMD_VIDEO_THREADS_INVALID(threads.value));
+            }
+        }
+
         if (discSpeed.value != null) {
             if ("1".equals(discSpeed.value)) {
                 setSingleSpeed(true);
@@ -462,6 +496,9 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
             tfb.addCell(I.CMD_VIDEO_NOCROP()).addCell(I.CMD_VIDEO_NOCROP_HELP());
         }
 
+        tfb.newRow();
+        tfb.addCell(I.CMD_VIDEO_THREADS()).addCell(I.CMD_VIDEO_THREADS_HELP());
+
         tfb.newRow();
         
         tfb.addCell(I.CMD_VIDEO_NUM());
@@ -480,10 +517,21 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         public final ISectorFrameDemuxer videoDemuxer;
         @CheckForNull 
         public final ISectorAudioDecoder audioDecoder;
+        /** If not null, where the video demuxer was primed to start
+         * instead of the start of the video. */
+        @CheckForNull
+        public final FrameSeekTable.SeekPoint videoSeekPoint;
 
         public SectorFeeder(@Nonnull ISectorFrameDemuxer v, @CheckForNull ISectorAudioDecoder a) {
+            this(v, a, null);
+        }
+
+        public SectorFeeder(@Nonnull ISectorFrameDemuxer v, @CheckForNull ISectorAudioDecoder a,
+                            @CheckForNull FrameSeekTable.SeekPoint seek)
+        {
             videoDemuxer = v;
             audioDecoder = a;
+            videoSeekPoint = seek;
         }
         
         public void flush(@Nonnull ILocalizedLogger log) throws LoggedFailure {
@@ -47,6 +47,7 @@ import jpsxdec.discitems.DiscItemAudioStream;
 import jpsxdec.discitems.DiscItemSaverBuilder;
 import jpsxdec.discitems.DiscItemSaverBuilderGui;
 import jpsxdec.discitems.DiscItemStrVideoStream;
+import jpsxdec.discitems.FrameSeekTable;
 import jpsxdec.discitems.ISectorAudioDecoder;
 import jpsxdec.discitems.ISectorFrameDemuxer;
 import jpsxdec.i18n.I;
@@ -267,15 +268,29 @@ public class VideoSaverBuilderStr extends VideoSaverBuilder {
             audDecoder = null;
         }
 
-        return new StrSectorFeeder(_sourceVidItem.makeDemuxer(), audDecoder);
+        // when only saving some of the frames, skip right to the first frame
+        // or the closest point before it instead of demuxing everything before it
+        FrameSeekTable.SeekPoint seekPoint = null;
+        FrameLookup startFrame = getSaveStartFrame();
+        if (audDecoder == null && startFrame != null)
+            seekPoint = _sourceVidItem.findSeekPoint(startFrame);
+
+        ISectorFrameDemuxer demuxer;
+        if (seekPoint == null)
+            demuxer = _sourceVidItem.makeDemuxer();
+        else
+            demuxer = _sourceVidItem.makeDemuxer(seekPoint.getFrame());
+
+        return new StrSectorFeeder(demuxer, audDecoder, seekPoint);
     }
 
     private static class StrSectorFeeder extends SectorFeeder {
 
         public StrSectorFeeder(@Nonnull ISectorFrameDemuxer vidDemuxer,
-                               @CheckForNull ISectorAudioDecoder audDecoder)
+                               @CheckForNull ISectorAudioDecoder audDecoder,
+                               @CheckForNull FrameSeekTable.SeekPoint seekPoint)
         {
-            super(vidDemuxer, audDecoder);
+            super(vidDemuxer, audDecoder, seekPoint);
         }
 
         @Override
@@ -72,6 +72,7 @@ import jpsxdec.gui.GuiTree.TreeItem;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.UnlocalizedMessage;
+import jpsxdec.indexing.BinaryIndexFile;
 import jpsxdec.indexing.DiscIndex;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.IO;
@@ -359,7 +360,10 @@ public class Gui extends javax.swing.JFrame {
         try {
 
             File selection = fc.getSelectedFile();
-            _index.serializeIndex(selection);
+            if (selection.getName().toLowerCase().endsWith(BinaryIndexFile.EXTENSION))
+                _index.serializeIndexBinary(selection);
+            else
+                _index.serializeIndex(selection);
 
             _settings.addPreviousIndex(selection.getAbsolutePath());
 
@@ -42,13 +42,18 @@ import javax.annotation.Nonnull;
 import javax.swing.filechooser.FileFilter;
 import jpsxdec.gui.BetterFileChooser.SaveFileFilter;
 import jpsxdec.i18n.I;
+import jpsxdec.indexing.BinaryIndexFile;
 
 
 public class GuiFileFilters {
 
     public static final SaveFileFilter INDEX_FILE_FILTER = new SaveFileFilter() {
         public boolean accept(@Nonnull File f) {
-            return f.isFile() ? f.getName().toLowerCase().endsWith(getExtension().toLowerCase()) : true;
+            if (!f.isFile())
+                return true;
+            String s = f.getName().toLowerCase();
+            return s.endsWith(getExtension().toLowerCase()) ||
+                   s.endsWith(BinaryIndexFile.EXTENSION);
         }
         public @Nonnull String getDescription() {
             return I.GUI_INDEX_EXTENSION().getLocalizedMessage();
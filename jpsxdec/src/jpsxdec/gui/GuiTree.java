@@ -62,8 +62,11 @@ import javax.swing.tree.TreePath;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.DiscItemAudioStream;
 import jpsxdec.discitems.DiscItemSaverBuilder;
+import jpsxdec.discitems.DiscItemStrVideoStream;
 import jpsxdec.discitems.DiscItemVideoStream;
 import jpsxdec.discitems.IDiscItemSaver;
+import jpsxdec.discitems.savers.FrameLookup;
+import jpsxdec.discitems.savers.VideoSaverBuilder;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.indexing.DiscIndex;
@@ -430,7 +433,14 @@ public class GuiTree extends JXTreeTable {
 
         @Override
         public @CheckForNull PlayController getPlayer() {
-            if (_item instanceof DiscItemVideoStream) {
+            if (_item instanceof DiscItemStrVideoStream) {
+                // start where the video would be saved from
+                FrameLookup startFrame = null;
+                DiscItemSaverBuilder builder = getBuilder();
+                if (builder instanceof VideoSaverBuilder)
+                    startFrame = ((VideoSaverBuilder)builder).getSaveStartFrame();
+                return ((DiscItemStrVideoStream)_item).makePlayController(startFrame);
+            } else if (_item instanceof DiscItemVideoStream) {
                 return ((DiscItemVideoStream)_item).makePlayController();
             } else if (_item instanceof DiscItemAudioStream) {
                 return ((DiscItemAudioStream)_item).makePlayController();
@@ -223,6 +223,18 @@ public class I {
         return inter("AVI_FILE_IS_CLOSED", "Avi file is closed");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>AVI file is too large</pre>
+    </td></tr></table>
+    <ul>
+       <li>AviWriter.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage AVI_FILE_TOO_LARGE() {
+        return inter("AVI_FILE_TOO_LARGE", "AVI file is too large");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>JFIF header not found in jpeg data, unable to write frame to AVI.</pre>
@@ -488,6 +500,42 @@ Do you want to replace it?</pre>
         return inter("FAILED_TO_READ_1_SECTOR", "Failed to read at least 1 entire sector.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Restored the disc image from unfinished patch journal {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CdFileSectorReader.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage PATCH_JOURNAL_ROLLED_BACK(@Nonnull java.io.File journalFile) {
+        return inter("PATCH_JOURNAL_ROLLED_BACK", "Restored the disc image from unfinished patch journal {0}", journalFile);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0} is not a valid patch journal</pre>
+    </td></tr></table>
+    <ul>
+       <li>SectorWriteSession.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage PATCH_JOURNAL_INVALID(@Nonnull java.io.File journalFile) {
+        return inter("PATCH_JOURNAL_INVALID", "{0} is not a valid patch journal", journalFile);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>The disc image may be partially patched. Open it with write access to restore it from unfinished patch journal {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CdFileSectorReader.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage PATCH_JOURNAL_NEEDS_WRITE_ACCESS(@Nonnull java.io.File journalFile) {
+        return inter("PATCH_JOURNAL_NEEDS_WRITE_ACCESS", "The disc image may be partially patched. Open it with write access to restore it from unfinished patch journal {0}", journalFile);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Invalid sector range: {0}</pre>
@@ -643,6 +691,270 @@ Do you want to replace it?</pre>
         return inter("CMD_ALL_ITEMS_COMPLETE", "All index items complete.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Invalid number of threads: {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_THREADS_INVALID(@Nonnull String threads) {
+        return inter("CMD_BATCH_THREADS_INVALID", "Invalid number of threads: {0}", threads);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>No disc images found in {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_NO_DISCS(@Nonnull java.io.File listOrDirectory) {
+        return inter("CMD_BATCH_NO_DISCS", "No disc images found in {0}", listOrDirectory);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Converting {0,number,#} disc images using {1,number,#} threads</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_STARTING(int discCount, int threadCount) {
+        return inter("CMD_BATCH_STARTING", "Converting {0,number,#} disc images using {1,number,#} threads", discCount, threadCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Started {0} (output and logs in {1})</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_DISC_STARTED(@Nonnull java.io.File discFile, @Nonnull java.io.File outputDirectory) {
+        return inter("CMD_BATCH_DISC_STARTED", "Started {0} (output and logs in {1})", discFile, outputDirectory);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Finished {0}: {1,number,#} items, {2,choice,0#no files created|1#1 file created|2#{2} files created} ({3,number,#.##} sec)</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_DISC_DONE(@Nonnull java.io.File discFile, int itemCount, int fileCount, double durationInSeconds) {
+        return inter("CMD_BATCH_DISC_DONE", "Finished {0}: {1,number,#} items, {2,choice,0#no files created|1#1 file created|2#{2} files created} ({3,number,#.##} sec)", discFile, itemCount, fileCount, durationInSeconds);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Failed {0}: {1}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_DISC_FAILED(@Nonnull java.io.File discFile, @Nonnull jpsxdec.i18n.ILocalizedMessage errorMessage) {
+        return inter("CMD_BATCH_DISC_FAILED", "Failed {0}: {1}", discFile, errorMessage);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Batch complete: {0,number,#} of {1,number,#} disc images converted ({2,number,#.##} sec)</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_SUMMARY(int convertedCount, int discCount, double durationInSeconds) {
+        return inter("CMD_BATCH_SUMMARY", "Batch complete: {0,number,#} of {1,number,#} disc images converted ({2,number,#.##} sec)", convertedCount, discCount, durationInSeconds);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0,number,#} disc images failed to convert</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_BATCH_DISCS_FAILED(int failedCount) {
+        return inter("CMD_BATCH_DISCS_FAILED", "{0,number,#} disc images failed to convert", failedCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Invalid number of -errorscan threads: {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_THREADS_INVALID(@Nonnull String threads) {
+        return inter("CMD_ERRORSCAN_THREADS_INVALID", "Invalid number of -errorscan threads: {0}", threads);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Only raw disc images (2352 or 2448 bytes per sector) have EDC/ECC to verify: {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_NOT_RAW(@Nonnull jpsxdec.i18n.ILocalizedMessage discType) {
+        return inter("CMD_ERRORSCAN_NOT_RAW", "Only raw disc images (2352 or 2448 bytes per sector) have EDC/ECC to verify: {0}", discType);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Verifying EDC/ECC of {0,number,#} sectors using {1,number,#} threads</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_STARTING(int sectorCount, int threadCount) {
+        return inter("CMD_ERRORSCAN_STARTING", "Verifying EDC/ECC of {0,number,#} sectors using {1,number,#} threads", sectorCount, threadCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Sector {0,number,#}: {1}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_SECTOR(int sector, @Nonnull String errors) {
+        return inter("CMD_ERRORSCAN_SECTOR", "Sector {0,number,#}: {1}", sector, errors);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0,number,#} sectors verified, {1,number,#} with errors (EDC {2,number,#}, ECC P {3,number,#}, ECC Q {4,number,#}) ({5,number,#.##} sec)</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_SUMMARY(int checkedCount, int errorCount, int edcCount, int eccPCount, int eccQCount, double durationInSeconds) {
+        return inter("CMD_ERRORSCAN_SUMMARY", "{0,number,#} sectors verified, {1,number,#} with errors (EDC {2,number,#}, ECC P {3,number,#}, ECC Q {4,number,#}) ({5,number,#.##} sec)", checkedCount, errorCount, edcCount, eccPCount, eccQCount, durationInSeconds);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0,number,#} of the sectors have a matching EDC and only the ECC is wrong, so their data is probably intact</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_REPAIRABLE(int repairableCount) {
+        return inter("CMD_ERRORSCAN_REPAIRABLE", "{0,number,#} of the sectors have a matching EDC and only the ECC is wrong, so their data is probably intact", repairableCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Saving error map {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_SAVING(@Nonnull String errorMapFile) {
+        return inter("CMD_ERRORSCAN_SAVING", "Saving error map {0}", errorMapFile);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Error verifying sectors</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERRORSCAN_FAILED() {
+        return inter("CMD_ERRORSCAN_FAILED", "Error verifying sectors");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Error loading error map {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERROR_MAP_LOAD_FAILED(@Nonnull String errorMapFile) {
+        return inter("CMD_ERROR_MAP_LOAD_FAILED", "Error loading error map {0}", errorMapFile);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Error map {0} is for a disc with {1,number,#} sectors, not {2,number,#}, ignoring it</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ERROR_MAP_MISMATCH(@Nonnull String errorMapFile, int mapSectorCount, int discSectorCount) {
+        return inter("CMD_ERROR_MAP_MISMATCH", "Error map {0} is for a disc with {1,number,#} sectors, not {2,number,#}, ignoring it", errorMapFile, mapSectorCount, discSectorCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0} has {1,number,#} sectors with EDC/ECC errors</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ITEM_SECTOR_ERRORS(@Nonnull jpsxdec.discitems.DiscItem item, int errorSectorCount) {
+        return inter("CMD_ITEM_SECTOR_ERRORS", "{0} has {1,number,#} sectors with EDC/ECC errors", item, errorSectorCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Invalid number of -indexthreads: {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_INDEX_THREADS_INVALID(@Nonnull String threads) {
+        return inter("CMD_INDEX_THREADS_INVALID", "Invalid number of -indexthreads: {0}", threads);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Saving {0,number,#} items in one pass over the disc</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Items.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ALL_SAVING_IN_ONE_PASS(int itemCount) {
+        return inter("CMD_ALL_SAVING_IN_ONE_PASS", "Saving {0,number,#} items in one pass over the disc", itemCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0} complete: {1,choice,0#No files created|1#1 file created|2#{1} files created}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Items.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ALL_ITEM_SAVED(@Nonnull jpsxdec.discitems.DiscItem discItem, int fileCount) {
+        return inter("CMD_ALL_ITEM_SAVED", "{0} complete: {1,choice,0#No files created|1#1 file created|2#{1} files created}", discItem, fileCount);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Invalid item identifier: {0}</pre>
@@ -797,6 +1109,7 @@ Do you want to replace it?</pre>
     </td></tr></table>
     <p>The base name of the log file that will be created, e.g. &quot;save.log&quot;</p>
     <ul>
+       <li>Command_Batch.java</li>
        <li>Command_Items.java</li>
     </ul>
     */
@@ -812,6 +1125,7 @@ Do you want to replace it?</pre>
     <ul>
        <li>Command.java</li>
        <li>CommandLine.java</li>
+       <li>Command_Batch.java</li>
        <li>Gui.java</li>
     </ul>
     */
@@ -832,6 +1146,32 @@ Do you want to replace it?</pre>
         return inter("REPLACE_LOG_FILE_BASE_NAME", "replace");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>errorscan</pre>
+    </td></tr></table>
+    <p>The base name of the log file that will be created, e.g. &quot;errorscan.log&quot;</p>
+    <ul>
+       <li>Command_ErrorScan.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage ERRORSCAN_LOG_FILE_BASE_NAME() {
+        return inter("ERRORSCAN_LOG_FILE_BASE_NAME", "errorscan");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>console</pre>
+    </td></tr></table>
+    <p>The base name of the file where the console output of each disc in a batch will be written, e.g. &quot;console.txt&quot;</p>
+    <ul>
+       <li>Command_Batch.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage BATCH_OUTPUT_FILE_BASE_NAME() {
+        return inter("BATCH_OUTPUT_FILE_BASE_NAME", "console");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Play</pre>
@@ -1306,6 +1646,18 @@ Do you want to replace it?</pre>
         return inter("CMD_DISC_IDENTIFIED", "Identified as {0}", discFormatDescription);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Unable to memory-map the disc image, using normal reading instead.</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_MEMORY_MAP_FAILED() {
+        return inter("CMD_MEMORY_MAP_FAILED", "Unable to memory-map the disc image, using normal reading instead.");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Command needs disc file</pre>
@@ -1576,6 +1928,66 @@ Do you want to replace it?</pre>
         return inter("INDEX_HEADER_MISSING", "Missing proper index header.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Missing proper error map header.</pre>
+    </td></tr></table>
+    <ul>
+       <li>SectorErrorMap.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage ERROR_MAP_HEADER_MISSING() {
+        return inter("ERROR_MAP_HEADER_MISSING", "Missing proper error map header.");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Invalid error map line: {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>SectorErrorMap.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage ERROR_MAP_INVALID_LINE(@Nonnull String line) {
+        return inter("ERROR_MAP_INVALID_LINE", "Invalid error map line: {0}", line);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Binary index file is corrupted.</pre>
+    </td></tr></table>
+    <ul>
+       <li>BinaryIndexFile.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_BINARY_CORRUPTED() {
+        return inter("INDEX_BINARY_CORRUPTED", "Binary index file is corrupted.");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Skipping corrupted item {0} in binary index file.</pre>
+    </td></tr></table>
+    <ul>
+       <li>BinaryIndexFile.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_BINARY_ITEM_CORRUPTED(@Nonnull String indexId) {
+        return inter("INDEX_BINARY_ITEM_CORRUPTED", "Skipping corrupted item {0} in binary index file.", indexId);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Unsupported binary index file version {0,number,#}.</pre>
+    </td></tr></table>
+    <ul>
+       <li>BinaryIndexFile.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_BINARY_UNSUPPORTED_VERSION(int version) {
+        return inter("INDEX_BINARY_UNSUPPORTED_VERSION", "Unsupported binary index file version {0,number,#}.", version);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Error while indexing disc</pre>
@@ -4401,6 +4813,18 @@ Do you want to replace it?</pre>
         return inter("CMD_DECODE_QUALITY", "Decode quality: {0}", qualityDescription);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Decode threads: {0,number,#}</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaver.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_DECODE_THREADS(int threadCount) {
+        return inter("CMD_DECODE_THREADS", "Decode threads: {0,number,#}", threadCount);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Output files: {0}-{1}</pre>
@@ -4674,6 +5098,42 @@ Do you want to replace it?</pre>
         return inter("CMD_VIDEO_NOCROP_HELP", "Don't crop data around unused frame edges.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>-threads &lt;#&gt;</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_THREADS() {
+        return inter("CMD_VIDEO_THREADS", "-threads <#>");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Number of threads used to decode frames, or to encode jpg and mjpg (default 1).</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_THREADS_HELP() {
+        return inter("CMD_VIDEO_THREADS_HELP", "Number of threads used to decode frames, or to encode jpg and mjpg (default 1).");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Invalid number of threads {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_THREADS_INVALID(@Nonnull String badThreadCount) {
+        return inter("CMD_VIDEO_THREADS_INVALID", "Invalid number of threads {0}", badThreadCount);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Invalid frame number type {0}</pre>
@@ -5133,6 +5593,18 @@ to: {1}</pre>
         return inter("IO_OPENING_FILE_ERROR_NAME", "Failed to open file {0}", fileName);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Failed to delete file {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>*</li>
+    </ul>
+    */
+    public static ILocalizedMessage IO_DELETING_FILE_ERROR_NAME(@Nonnull String fileName) {
+        return inter("IO_DELETING_FILE_ERROR_NAME", "Failed to delete file {0}", fileName);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Error reading file</pre>
@@ -5241,4 +5713,4 @@ to: {1}</pre>
         return inter("IO_WRITING_TO_FILE_ERROR_NAME", "Error writing to file {0}", fileName);
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,406 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.Version;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.I;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.ExposedBAOS;
+import jpsxdec.util.ILocalizedLogger;
+import jpsxdec.util.IO;
+
+/** Binary form of a {@link DiscIndex} that is much faster to load.
+ * <p>
+ * All values are big-endian, as written by {@link DataOutputStream}.
+ * <pre>
+ * 8 bytes  magic "jPSXidxB"
+ * int      binary format version
+ * UTF      {@link Version#IndexHeader}
+ * UTF      source CD serialization
+ * int      number of items
+ * long     offset of the table of contents
+ * ...      item blocks, written by {@link SerializedDiscItem#writeBinary(java.io.DataOutputStream)}
+ * ...      table of contents, one entry per item:
+ *          int index, UTF id, UTF type, int start sector, int end sector,
+ *          long block offset, int block length, int block CRC32
+ * int      CRC32 of the header and table of contents
+ * </pre>
+ * The header and table of contents are verified when the file is opened.
+ * The table of contents is enough to find items by index, id or sector
+ * range, so single items can be read without reading the rest of the file.
+ * Each item block has its own checksum, so a corrupted item can be skipped
+ * without losing the rest of the index. */
+public class BinaryIndexFile implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(BinaryIndexFile.class.getName());
+
+    /** File extension that selects the binary format when saving an index. */
+    public static final String EXTENSION = ".idxb";
+
+    private static final byte[] MAGIC = {'j', 'P', 'S', 'X', 'i', 'd', 'x', 'B'};
+    private static final int FORMAT_VERSION = 3;
+
+    /** Returns if the file starts with the binary index magic bytes. */
+    public static boolean isBinaryIndex(@Nonnull File file) throws FileNotFoundException, IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] abMagic = new byte[MAGIC.length];
+            int iRead = IO.readByteArrayMax(raf, abMagic, 0, abMagic.length);
+            return iRead == MAGIC.length && Arrays.equals(abMagic, MAGIC);
+        } catch (EOFException ex) {
+            // empty file
+            return false;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** Writes the items in the binary format. */
+    public static void write(@Nonnull CdFileSectorReader sourceCd,
+                             @Nonnull List<DiscItem> items,
+                             @Nonnull File file)
+            throws FileNotFoundException, IOException
+    {
+        ExposedBAOS header = new ExposedBAOS();
+        DataOutputStream headerDos = new DataOutputStream(header);
+        headerDos.write(MAGIC);
+        headerDos.writeInt(FORMAT_VERSION);
+        headerDos.writeUTF(Version.IndexHeader);
+        headerDos.writeUTF(sourceCd.serialize());
+        headerDos.writeInt(items.size());
+        // the toc offset is filled in below once the item blocks are known
+        int iTocOffsetPos = headerDos.size();
+        headerDos.writeLong(0);
+        headerDos.flush();
+
+        ExposedBAOS blocks = new ExposedBAOS();
+        DataOutputStream blocksDos = new DataOutputStream(blocks);
+        ExposedBAOS toc = new ExposedBAOS();
+        DataOutputStream tocDos = new DataOutputStream(toc);
+        CRC32 crc = new CRC32();
+        for (DiscItem item : items) {
+            SerializedDiscItem serial = item.serialize();
+            int iBlockStart = blocksDos.size();
+            serial.writeBinary(blocksDos);
+            blocksDos.flush();
+            int iBlockLength = blocksDos.size() - iBlockStart;
+            crc.reset();
+            crc.update(blocks.getBuffer(), iBlockStart, iBlockLength);
+
+            tocDos.writeInt(item.getIndex());
+            tocDos.writeUTF(item.getIndexId().serialize());
+            tocDos.writeUTF(serial.getType());
+            tocDos.writeInt(item.getStartSector());
+            tocDos.writeInt(item.getEndSector());
+            tocDos.writeLong(header.size() + (long)iBlockStart);
+            tocDos.writeInt(iBlockLength);
+            tocDos.writeInt((int)crc.getValue());
+        }
+        tocDos.flush();
+
+        long lngTocOffset = header.size() + (long)blocks.size();
+        byte[] abHeader = header.getBuffer();
+        for (int i = 0; i < 8; i++)
+            abHeader[iTocOffsetPos + i] = (byte)(lngTocOffset >>> (56 - i * 8));
+
+        crc.reset();
+        crc.update(abHeader, 0, header.size());
+        crc.update(toc.getBuffer(), 0, toc.size());
+
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            DataOutputStream dos = new DataOutputStream(fos);
+            dos.write(abHeader, 0, header.size());
+            dos.write(blocks.getBuffer(), 0, blocks.size());
+            dos.write(toc.getBuffer(), 0, toc.size());
+            dos.writeInt((int)crc.getValue());
+            dos.flush();
+        } finally {
+            fos.close();
+        }
+    }
+
+    /** Table of contents entry for a single item. */
+    public static class Entry {
+        private final int _iIndex;
+        @Nonnull
+        private final String _sId;
+        @Nonnull
+        private final String _sType;
+        private final int _iStartSector;
+        private final int _iEndSector;
+        private final long _lngOffset;
+        private final int _iLength;
+        private final int _iCrc32;
+
+        private Entry(@Nonnull DataInputStream dis) throws IOException {
+            _iIndex = dis.readInt();
+            _sId = dis.readUTF();
+            _sType = dis.readUTF();
+            _iStartSector = dis.readInt();
+            _iEndSector = dis.readInt();
+            _lngOffset = dis.readLong();
+            _iLength = dis.readInt();
+            _iCrc32 = dis.readInt();
+        }
+
+        public int getIndex() {
+            return _iIndex;
+        }
+        /** The serialized {@link jpsxdec.discitems.IndexId} of the item. */
+        public @Nonnull String getId() {
+            return _sId;
+        }
+        public @Nonnull String getType() {
+            return _sType;
+        }
+        public int getStartSector() {
+            return _iStartSector;
+        }
+        public int getEndSector() {
+            return _iEndSector;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("#%d %s %s %d-%d @%d+%d", _iIndex, _sId, _sType,
+                                 _iStartSector, _iEndSector, _lngOffset, _iLength);
+        }
+    }
+
+    @Nonnull
+    private final RandomAccessFile _raf;
+    @Nonnull
+    private final String _sCdSerialization;
+    /** Offset of the first item block. */
+    private final long _lngBlocksStart;
+    /** Offset of the table of contents, also the end of the item blocks. */
+    private final long _lngTocOffset;
+    @Nonnull
+    private final List<Entry> _entries;
+    /** Entries by Integer index and by String id, like {@link DiscIndex}. */
+    private final HashMap<Object, Entry> _lookup = new HashMap<Object, Entry>();
+
+    /** Opens a binary index file, reading only the header and
+     * table of contents. */
+    public BinaryIndexFile(@Nonnull File file)
+            throws FileNotFoundException, IOException, DeserializationFail
+    {
+        _raf = new RandomAccessFile(file, "r");
+        boolean blnExceptionThrown = true;
+        try {
+            byte[] abMagic = new byte[MAGIC.length];
+            _raf.readFully(abMagic);
+            if (!Arrays.equals(abMagic, MAGIC))
+                throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED());
+            int iVersion = _raf.readInt();
+            if (iVersion != FORMAT_VERSION)
+                throw new DeserializationFail(I.INDEX_BINARY_UNSUPPORTED_VERSION(iVersion));
+            if (!Version.IndexHeader.equals(_raf.readUTF()))
+                throw new DeserializationFail(I.INDEX_HEADER_MISSING());
+            _sCdSerialization = _raf.readUTF();
+            int iItemCount = _raf.readInt();
+            _lngTocOffset = _raf.readLong();
+            _lngBlocksStart = _raf.getFilePointer();
+
+            long lngTocLength = _raf.length() - 4 - _lngTocOffset;
+            if (iItemCount < 0 || _lngTocOffset < _lngBlocksStart ||
+                lngTocLength < 0 || lngTocLength > Integer.MAX_VALUE)
+                throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED());
+
+            byte[] abHeader = new byte[(int)_lngBlocksStart];
+            _raf.seek(0);
+            _raf.readFully(abHeader);
+            byte[] abToc = new byte[(int)lngTocLength];
+            _raf.seek(_lngTocOffset);
+            _raf.readFully(abToc);
+            int iStoredCrc = _raf.readInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(abHeader);
+            crc.update(abToc);
+            if ((int)crc.getValue() != iStoredCrc)
+                throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED());
+
+            DataInputStream tocDis = new DataInputStream(new ByteArrayInputStream(abToc));
+            ArrayList<Entry> entries = new ArrayList<Entry>(iItemCount);
+            for (int i = 0; i < iItemCount; i++) {
+                Entry entry = new Entry(tocDis);
+                if (entry._lngOffset < _lngBlocksStart || entry._iLength < 0 ||
+                    entry._lngOffset + entry._iLength > _lngTocOffset)
+                    throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED());
+                entries.add(entry);
+                _lookup.put(Integer.valueOf(entry._iIndex), entry);
+                _lookup.put(entry._sId, entry);
+            }
+            _entries = entries;
+            blnExceptionThrown = false;
+        } catch (EOFException ex) {
+            throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED(), ex);
+        } catch (UTFDataFormatException ex) {
+            throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED(), ex);
+        } finally {
+            if (blnExceptionThrown)
+                IO.closeSilently(_raf, LOG);
+        }
+    }
+
+    /** The serialization of the CD this index was generated from.
+     * @see CdFileSectorReader#CdFileSectorReader(java.lang.String, boolean) */
+    public @Nonnull String getCdSerialization() {
+        return _sCdSerialization;
+    }
+
+    public int getItemCount() {
+        return _entries.size();
+    }
+
+    /** @return null if there is no item with that {@link DiscItem#getIndex()}. */
+    public @CheckForNull Entry getEntry(int iIndex) {
+        return _lookup.get(Integer.valueOf(iIndex));
+    }
+
+    /** @param sId serialized {@link jpsxdec.discitems.IndexId}.
+     * @return null if there is no item with that id. */
+    public @CheckForNull Entry getEntry(@Nonnull String sId) {
+        return _lookup.get(sId);
+    }
+
+    /** Entries of the items that include any sector in the range,
+     * in index order. */
+    public @Nonnull List<Entry> getEntriesInSectorRange(int iStartSector, int iEndSector) {
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        for (Entry entry : _entries) {
+            if (entry._iEndSector >= iStartSector && entry._iStartSector <= iEndSector)
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    /** Reads only the block of one item. */
+    public @Nonnull SerializedDiscItem readItem(@Nonnull Entry entry)
+            throws IOException, DeserializationFail
+    {
+        byte[] abBlock = new byte[entry._iLength];
+        _raf.seek(entry._lngOffset);
+        _raf.readFully(abBlock);
+        return parseBlock(entry, abBlock, 0);
+    }
+
+    /** Reads the blocks of the given items, one at a time.
+     * Items whose block is corrupted are logged and skipped. */
+    public @Nonnull List<SerializedDiscItem> readItems(@Nonnull List<Entry> entries,
+                                                      @Nonnull ILocalizedLogger log)
+            throws IOException
+    {
+        ArrayList<SerializedDiscItem> items = new ArrayList<SerializedDiscItem>(entries.size());
+        for (Entry entry : entries) {
+            try {
+                items.add(readItem(entry));
+            } catch (DeserializationFail ex) {
+                log.log(Level.WARNING, I.INDEX_BINARY_ITEM_CORRUPTED(entry._sId), ex);
+            }
+        }
+        return items;
+    }
+
+    /** Reads the fields of every item, in index order, with a single read
+     * of the file. Items whose block is corrupted are logged and skipped. */
+    public @Nonnull List<SerializedDiscItem> readAllItems(@Nonnull ILocalizedLogger log)
+            throws IOException
+    {
+        byte[] abBlocks = new byte[(int)(_lngTocOffset - _lngBlocksStart)];
+        _raf.seek(_lngBlocksStart);
+        _raf.readFully(abBlocks);
+        ArrayList<SerializedDiscItem> items = new ArrayList<SerializedDiscItem>(_entries.size());
+        for (Entry entry : _entries) {
+            try {
+                items.add(parseBlock(entry, abBlocks, (int)(entry._lngOffset - _lngBlocksStart)));
+            } catch (DeserializationFail ex) {
+                log.log(Level.WARNING, I.INDEX_BINARY_ITEM_CORRUPTED(entry._sId), ex);
+            }
+        }
+        return items;
+    }
+
+    /** Checks the block checksum and reads the item fields from it. */
+    private static @Nonnull SerializedDiscItem parseBlock(@Nonnull Entry entry,
+                                                          @Nonnull byte[] abBuffer,
+                                                          int iOffset)
+            throws DeserializationFail
+    {
+        CRC32 crc = new CRC32();
+        crc.update(abBuffer, iOffset, entry._iLength);
+        if ((int)crc.getValue() != entry._iCrc32)
+            throw new DeserializationFail(I.INDEX_BINARY_ITEM_CORRUPTED(entry._sId));
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(abBuffer, iOffset, entry._iLength));
+        try {
+            return SerializedDiscItem.readBinary(dis);
+        } catch (IOException ex) {
+            // only reading from memory, so it must be a bad block
+            throw new DeserializationFail(I.INDEX_BINARY_ITEM_CORRUPTED(entry._sId), ex);
+        }
+    }
+
+    public void close() throws IOException {
+        _raf.close();
+    }
+}
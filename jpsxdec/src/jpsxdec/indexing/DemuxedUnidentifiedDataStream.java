@@ -43,6 +43,8 @@ import java.util.NoSuchElementException;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdSector;
+import jpsxdec.util.IO;
+import jpsxdec.util.TaskCanceledException;
 
 /** Demuxes a sequence of unidentified sectors together into an
  * {@link InputStream}. Class dies at the end of a sequence and a new class
@@ -55,7 +57,11 @@ import jpsxdec.cdreaders.CdSector;
  * Calling {@link #resetSkipMark(int)} will reset to the mark,
  * skip the indicated bytes, and mark again.
  * <p>
- * Do not use object anymore after {@link #resetSkipMark(int)} returns false.
+ * Calling {@link #skipMarkToSignature(long[], long[])} will scan ahead from
+ * the mark for the next offset that could be interesting and mark it.
+ * <p>
+ * Do not use object anymore after {@link #resetSkipMark(int)} or
+ * {@link #skipMarkToSignature(long[], long[])} returns false.
  */
 public class DemuxedUnidentifiedDataStream extends InputStream {
 
@@ -167,6 +173,10 @@ public class DemuxedUnidentifiedDataStream extends InputStream {
             _buffer.dequeue();
             _iReadPos--;
         }
+
+        public void checkTaskCanceled() throws TaskCanceledException {
+            _sectorIter.checkTaskCanceled();
+        }
     }
 
 
@@ -189,6 +199,11 @@ public class DemuxedUnidentifiedDataStream extends InputStream {
     @CheckForNull
     private CdSector _current;
 
+    /** Holds a sector's user data followed by the start of the next
+     * sectors while scanning in {@link #skipMarkToSignature(long[], long[])}. */
+    @CheckForNull
+    private byte[] _abScan;
+
     /** {@link UnidentifiedSectorIterator} must be at the start of an
      * unidentified sequence, otherwise throws {@link IllegalStateException}.
      * @throws IllegalStateException */
@@ -256,6 +271,67 @@ public class DemuxedUnidentifiedDataStream extends InputStream {
     }
 
 
+    /** Scans ahead from the mark, 4 bytes at a time like
+     * {@link #resetSkipMark(int)}, for the next offset where the next 8 bytes,
+     * read as a little-endian long, match one of the signatures
+     * ({@code (data & alngMasks[i]) == alngValues[i]}), then marks there.
+     * The mark itself is checked too.
+     * <p>
+     * Works directly on a copy of each sector's user data instead of reading
+     * the stream a byte at a time. Offsets with fewer than 8 bytes left in
+     * the sequence never match.
+     * @return false at the end of the unidentified sequence, same as
+     *         {@link #resetSkipMark(int)}. */
+    public boolean skipMarkToSignature(@Nonnull long[] alngMasks, @Nonnull long[] alngValues)
+            throws IOException, TaskCanceledException
+    {
+        _readBuffer.reset();
+        _current = _readBuffer.nextUnidentified();
+        while (_current != null) {
+            final int iSize = _current.getCdUserDataSize();
+            final int iScanSize = iSize + 7;
+            if (_abScan == null || _abScan.length < iScanSize)
+                _abScan = new byte[iScanSize];
+            _current.getCdUserDataCopy(0, _abScan, 0, iSize);
+            // the last few offsets also need the start of the following sectors
+            int iAvailable = iSize;
+            CdSector following;
+            while (iAvailable < iScanSize && (following = _readBuffer.nextUnidentified()) != null) {
+                int iCopy = Math.min(following.getCdUserDataSize(), iScanSize - iAvailable);
+                following.getCdUserDataCopy(0, _abScan, iAvailable, iCopy);
+                iAvailable += iCopy;
+            }
+
+            int iOffset = _iStartingOffset;
+            for (; iOffset < iSize && iOffset + 8 <= iAvailable; iOffset += 4) {
+                long lngData = (IO.readSInt32LE(_abScan, iOffset) & 0xffffffffL) |
+                               ((long)IO.readSInt32LE(_abScan, iOffset + 4) << 32);
+                for (int i = 0; i < alngMasks.length; i++) {
+                    if ((lngData & alngMasks[i]) == alngValues[i]) {
+                        _iStartingOffset = iOffset;
+                        resetMark();
+                        return true;
+                    }
+                }
+            }
+
+            if (iOffset < iSize) // hit the end of the sequence
+                break;
+
+            // move the mark to the next sector
+            _iStartingOffset = iOffset - iSize;
+            _readBuffer.reset();
+            _readBuffer.nextUnidentified();
+            _readBuffer.dropHead();
+            _current = _readBuffer.nextUnidentified();
+            _readBuffer.checkTaskCanceled();
+        }
+        _current = null;
+        _iCurrentOffset = -1;
+        _iStartingOffset = -1;
+        return false;
+    }
+
     /** Do not call after {@link #resetSkipMark(int)} returns false.
      * @throws IllegalStateException */
     @Override
@@ -47,7 +47,6 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -97,9 +96,24 @@ public class DiscIndex implements Iterable<DiscItem> {
 
     private final LinkedHashMap<Object, DiscItem> _lookup = new LinkedHashMap<Object, DiscItem>();
 
-    /** Finds all the interesting items on the CD. */
+    /** Finds all the interesting items on the CD, identifying sectors
+     * on this thread. */
     public DiscIndex(@Nonnull CdFileSectorReader cdReader, @Nonnull final ProgressLogger pl) 
             throws TaskCanceledException
+    {
+        this(cdReader, 1, pl);
+    }
+
+    /** Finds all the interesting items on the CD.
+     * Sectors are identified in ranges across {@code iThreads} threads,
+     * but all identified sectors are still passed to the indexers in sector
+     * order on this thread, so the resulting index is identical no matter
+     * how many threads are used.
+     * @param iThreads Number of sector identification threads,
+     *                 less than 2 to identify sectors on this thread. */
+    public DiscIndex(@Nonnull CdFileSectorReader cdReader, int iThreads,
+                     @Nonnull final ProgressLogger pl)
+            throws TaskCanceledException
     {
         _sourceCD = cdReader;
         
@@ -117,10 +131,17 @@ public class DiscIndex implements Iterable<DiscItem> {
                 staticIndexers.add((DiscIndexer.Static) indexer);
         }
 
+        final long[] alngSignatureMasks = new long[staticIndexers.size()];
+        final long[] alngSignatureValues = new long[staticIndexers.size()];
+        for (int i = 0; i < staticIndexers.size(); i++) {
+            alngSignatureMasks[i] = staticIndexers.get(i).getSignatureMask();
+            alngSignatureValues[i] = staticIndexers.get(i).getSignatureValue();
+        }
+
         pl.progressStart(cdReader.getLength());
         
         UnidentifiedSectorIteratorListener iterListener =
-                new UnidentifiedSectorIteratorListener(cdReader, pl, identifiedIndexers);
+                new UnidentifiedSectorIteratorListener(cdReader, iThreads, pl, identifiedIndexers);
 
         long lngStart, lngEnd;
         lngStart = System.currentTimeMillis();
@@ -129,7 +150,8 @@ public class DiscIndex implements Iterable<DiscItem> {
             while (iterListener.seekToNextUnidentified()) {
                 DemuxedUnidentifiedDataStream staticStream = new DemuxedUnidentifiedDataStream(iterListener);
 
-                do {
+                // only stop at offsets that could be something
+                while (staticStream.skipMarkToSignature(alngSignatureMasks, alngSignatureValues)) {
                     // do the first static indexer first
                     staticIndexers.get(0).staticRead(staticStream);
                     iterListener.checkTaskCanceled();
@@ -144,14 +166,20 @@ public class DiscIndex implements Iterable<DiscItem> {
                         iterListener.checkTaskCanceled();
                     }
 
-                } while (staticStream.resetSkipMark(4));
+                    if (!staticStream.resetSkipMark(4))
+                        break;
+                }
                 iterListener.checkTaskCanceled();
             }
 
         } catch (IOException ex) {
             pl.log(Level.SEVERE, I.INDEXING_ERROR(), ex);
+        } finally {
+            iterListener.close();
         }
 
+        iterListener.getClassifier().logHitCounts(Level.INFO);
+
         // notify indexers that the disc is finished
         for (DiscIndexer indexer : aoIndexers) {
             indexer.indexingEndOfDisc();
@@ -189,26 +217,9 @@ public class DiscIndex implements Iterable<DiscItem> {
     }
 
 
-    private @Nonnull ArrayList<DiscItem> buildTree(@Nonnull Collection<DiscItem> allItems) {
+    private @Nonnull ArrayList<DiscItem> buildTree(@Nonnull List<DiscItem> allItems) {
 
-        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
-
-        for (DiscItem child : allItems) {
-            DiscItem bestParent = null;
-            int iBestParentRating = 0;
-            for (DiscItem parent : allItems) {
-                int iRating = parent.getParentRating(child);
-                if (iRating > iBestParentRating) {
-                    bestParent = parent;
-                    iBestParentRating = iRating;
-                }
-            }
-            if (bestParent == null)
-                rootItems.add(child);
-            else
-                if (!bestParent.addChild(child))
-                    throw new RuntimeException(bestParent + " should have accepted " + child);
-        }
+        ArrayList<DiscItem> rootItems = DiscItemTree.buildTree(allItems);
 
         IndexId id = new IndexId(0);
         for (DiscItem item : rootItems) {
@@ -266,68 +277,81 @@ public class DiscIndex implements Iterable<DiscItem> {
     public DiscIndex(@Nonnull String sIndexFile, boolean blnAllowWrites, @Nonnull ILocalizedLogger errLog)
             throws CdFileNotFoundException, IOException, DeserializationFail
     {
-        this(sIndexFile, null, blnAllowWrites, errLog);
+        this(sIndexFile, null, blnAllowWrites, null, errLog);
     }
 
     /** Deserializes the CD index file, and creates a list of items on the CD */
     public DiscIndex(@Nonnull String sIndexFile, @CheckForNull CdFileSectorReader cdReader, @Nonnull ILocalizedLogger errLog)
             throws CdFileNotFoundException, IOException, DeserializationFail
     {
-        this(sIndexFile, cdReader, false, errLog);
+        this(sIndexFile, cdReader, false, null, errLog);
+    }
+
+    /** Deserializes only the items needed for one item. If the index file is
+     * binary, only the item and the items that share its sectors (its parent
+     * items and children, such as a video's audio) are read, so the rest of
+     * the index is never loaded. A text index is read in full.
+     * @param itemKey Integer {@link DiscItem#getIndex()}
+     *                or serialized {@link IndexId} String of the item.
+     * @see #getById(java.lang.String)
+     * @see #getByIndex(int) */
+    public DiscIndex(@Nonnull String sIndexFile, @CheckForNull CdFileSectorReader cdReader,
+                     @Nonnull Object itemKey, @Nonnull ILocalizedLogger errLog)
+            throws CdFileNotFoundException, IOException, DeserializationFail
+    {
+        this(sIndexFile, cdReader, false, itemKey, errLog);
     }
 
     private DiscIndex(@Nonnull String sIndexFile, @CheckForNull CdFileSectorReader cdReader,
-                      boolean blnAllowWrites, @Nonnull ILocalizedLogger errLog)
+                      boolean blnAllowWrites, @CheckForNull Object itemKey,
+                      @Nonnull ILocalizedLogger errLog)
             throws CdFileNotFoundException, FileNotFoundException, IOException, DeserializationFail
     { // TODO: IOException could be becauze of index file or cd, caller doesn't know
         File indexFile = new File(sIndexFile);
 
-        CdFileSectorReader sourceCd = null;
-        FileInputStream fis = new FileInputStream(indexFile);
-        Closeable streamToClose = fis;
-        boolean blnExceptionThrown = true; // only way to catch all exceptions using finally block
-        try {
-            BufferedReader reader;
+        String sCdSerialization = null;
+        // text index: lines that still need to be parsed
+        ArrayList<String> readLines = null;
+        // binary index: already read items
+        List<SerializedDiscItem> readItems = null;
+
+        if (BinaryIndexFile.isBinaryIndex(indexFile)) {
+            BinaryIndexFile binIndex = new BinaryIndexFile(indexFile);
             try {
-                reader = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
-            } catch (UnsupportedEncodingException ex) {
-                // Every implementation of the Java platform is required to support UTF-8
-                throw new RuntimeException(ex);
-            }
-            streamToClose = reader;
-            
-            // make sure the first line matches the current version
-            String sLine = reader.readLine();
-            if (!Version.IndexHeader.equals(sLine)) {
-                throw new DeserializationFail(I.INDEX_HEADER_MISSING());
+                sCdSerialization = binIndex.getCdSerialization();
+                if (itemKey == null) {
+                    readItems = binIndex.readAllItems(errLog);
+                } else {
+                    BinaryIndexFile.Entry entry;
+                    if (itemKey instanceof Integer)
+                        entry = binIndex.getEntry(((Integer)itemKey).intValue());
+                    else
+                        entry = binIndex.getEntry((String)itemKey);
+                    if (entry == null)
+                        readItems = new ArrayList<SerializedDiscItem>();
+                    else
+                        readItems = binIndex.readItems(binIndex.getEntriesInSectorRange(
+                                entry.getStartSector(), entry.getEndSector()), errLog);
+                }
+            } finally {
+                binIndex.close();
             }
+        } else {
+            readLines = new ArrayList<String>();
+            sCdSerialization = readTextIndex(indexFile, readLines);
+        }
 
-            ArrayList<String> readLines = new ArrayList<String>();
-
-            // read all the lines, searching for the source CD
-            while ((sLine = reader.readLine()) != null) {
-
-                // comments
-                if (sLine.startsWith(COMMENT_LINE_START))
-                    continue;
-
-                // blank lines
-                if (sLine.matches("^\\s*$"))
-                    continue;
-                
-                // source file
-                if (sLine.startsWith(CdFileSectorReader.SERIALIZATION_START)) {
-                    if (cdReader != null) {
-                        // verify that the source file matches
-                        if (!cdReader.matchesSerialization(sLine)) {
-                            errLog.log(Level.WARNING, I.CD_FORMAT_MISMATCH(cdReader, sLine));
-                        }
-                    } else {
-                        sourceCd = new CdFileSectorReader(sLine, blnAllowWrites);
+        CdFileSectorReader sourceCd = null;
+        boolean blnExceptionThrown = true; // only way to catch all exceptions using finally block
+        try {
+            if (sCdSerialization != null) {
+                if (cdReader != null) {
+                    // verify that the source file matches
+                    if (!cdReader.matchesSerialization(sCdSerialization)) {
+                        errLog.log(Level.WARNING, I.CD_FORMAT_MISMATCH(cdReader, sCdSerialization));
                     }
                 } else {
-                    // save the line for deserializing later
-                    readLines.add(sLine);
+                    sourceCd = new CdFileSectorReader(sCdSerialization, blnAllowWrites);
                 }
             }
             
@@ -340,41 +364,43 @@ public class DiscIndex implements Iterable<DiscItem> {
             }
 
             // setup indexers
-            DiscIndexer[] aoIndexers = DiscIndexer.createIndexers(errLog);
-
-            for (DiscIndexer indexer : aoIndexers) {
-                indexer.indexInit(_iterate, _sourceCD);
-            }
+            DiscItemDeserializer deserializer = new DiscItemDeserializer(_iterate, _sourceCD, errLog);
 
             // now create the disc items
-            for (String sItemLine : readLines) {
-
-                boolean blnLineHandled = false;
-                for (DiscIndexer indexer : aoIndexers) {
+            if (readLines != null) {
+                for (String sItemLine : readLines) {
                     try {
-                        SerializedDiscItem deserializedLine = new SerializedDiscItem(sItemLine);
-                        DiscItem item = indexer.deserializeLineRead(deserializedLine);
-                        if (item != null) {
-                            blnLineHandled = true;
+                        DiscItem item = deserializer.deserialize(new SerializedDiscItem(sItemLine));
+                        if (item != null)
                             _iterate.add(item);
-                        }
+                        else
+                            errLog.log(Level.WARNING, I.INDEX_UNHANDLED_LINE(sItemLine));
                     } catch (DeserializationFail ex) {
                         errLog.log(Level.WARNING, I.INDEX_PARSE_LINE_FAIL(sItemLine), ex);
-                        blnLineHandled = true;
                     }
                 }
-                if (!blnLineHandled)
-                    errLog.log(Level.WARNING, I.INDEX_UNHANDLED_LINE(sItemLine));
+            } else {
+                for (SerializedDiscItem serial : readItems) {
+                    try {
+                        DiscItem item = deserializer.deserialize(serial);
+                        if (item != null)
+                            _iterate.add(item);
+                        else
+                            errLog.log(Level.WARNING, I.INDEX_UNHANDLED_LINE(serial.serialize()));
+                    } catch (DeserializationFail ex) {
+                        errLog.log(Level.WARNING, I.INDEX_PARSE_LINE_FAIL(serial.serialize()), ex);
+                    }
+                }
             }
 
-            _root = recreateTree(_iterate, errLog);
+            _root = DiscItemTree.recreateTree(_iterate, errLog);
 
             // copy the items to this class
             for (DiscItem item : _iterate) {
                 addLookupItem(item);
             }
             // notify the indexers that the list has been generated
-            for (DiscIndexer indexer : aoIndexers) {
+            for (DiscIndexer indexer : deserializer.getIndexers()) {
                 indexer.indexGenerated(this);
             }
 
@@ -387,47 +413,69 @@ public class DiscIndex implements Iterable<DiscItem> {
             // no exception thrown, don't close the CD in finally block
             blnExceptionThrown = false;
         } finally {
-            if (blnExceptionThrown) {
-                // something bad happened? close CD reader only if we opened it
-                if (cdReader == null && sourceCd != null)
-                    IO.closeSilently(sourceCd, LOG);
-                IO.closeSilently(streamToClose, LOG);
-            } else {
-                streamToClose.close(); // expose close exception
-            }
-
+            // something bad happened? close CD reader only if we opened it
+            if (blnExceptionThrown && cdReader == null && sourceCd != null)
+                IO.closeSilently(sourceCd, LOG);
         }
 
     }
 
-    private @Nonnull ArrayList<DiscItem> recreateTree(@Nonnull Collection<DiscItem> allItems, @Nonnull ILocalizedLogger log) {
-        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
-
-        Outside:
-        for (DiscItem child : allItems) {
-            IndexId itemId = child.getIndexId();
-            if (itemId.isRoot()) {
-                rootItems.add(child);
-                continue;
+    /** Reads the lines of a text index file.
+     * @param itemLines Receives the disc item lines.
+     * @return the source CD serialization line, or null if there is none. */
+    private static @CheckForNull String readTextIndex(@Nonnull File indexFile,
+                                                      @Nonnull List<String> itemLines)
+            throws FileNotFoundException, IOException, DeserializationFail
+    {
+        String sCdSerialization = null;
+        FileInputStream fis = new FileInputStream(indexFile);
+        Closeable streamToClose = fis;
+        boolean blnExceptionThrown = true; // only way to catch all exceptions using finally block
+        try {
+            BufferedReader reader;
+            try {
+                reader = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
+            } catch (UnsupportedEncodingException ex) {
+                // Every implementation of the Java platform is required to support UTF-8
+                throw new RuntimeException(ex);
             }
+            streamToClose = reader;
             
-            for (DiscItem possibleParent : allItems) {
-                if (possibleParent == child)
+            // make sure the first line matches the current version
+            String sLine = reader.readLine();
+            if (!Version.IndexHeader.equals(sLine)) {
+                throw new DeserializationFail(I.INDEX_HEADER_MISSING());
+            }
+
+            // read all the lines, searching for the source CD
+            while ((sLine = reader.readLine()) != null) {
+
+                // comments
+                if (sLine.startsWith(COMMENT_LINE_START))
                     continue;
-                if (itemId.isParent(possibleParent.getIndexId())) {
-                    if (!possibleParent.addChild(child)) {
-                        log.log(Level.WARNING, I.INDEX_REBUILD_PARENT_REJECTED_CHILD(possibleParent, child));
-                    }
-                    continue Outside;
+
+                // blank lines
+                if (sLine.trim().length() == 0)
+                    continue;
+                
+                // source file
+                if (sLine.startsWith(CdFileSectorReader.SERIALIZATION_START)) {
+                    sCdSerialization = sLine;
+                } else {
+                    // save the line for deserializing later
+                    itemLines.add(sLine);
                 }
             }
-            rootItems.add(child);
+            blnExceptionThrown = false;
+        } finally {
+            if (blnExceptionThrown)
+                IO.closeSilently(streamToClose, LOG);
+            else
+                streamToClose.close(); // expose close exception
         }
-
-        return rootItems;
+        return sCdSerialization;
     }
 
-
     /** Adds item to the internal hash. */
     private void addLookupItem(@Nonnull DiscItem item) {
         _lookup.put(Integer.valueOf(item.getIndex()), item);
@@ -453,6 +501,15 @@ public class DiscIndex implements Iterable<DiscItem> {
         }
     }
     
+    /** Serializes the list of disc items to a file in the compact binary
+     * format.
+     * @see BinaryIndexFile */
+    public void serializeIndexBinary(@Nonnull File file)
+            throws FileNotFoundException, IOException
+    {
+        BinaryIndexFile.write(_sourceCD, _iterate, file);
+    }
+    
     /** Serializes the list of disc items to a stream. */
     private void serializeIndex(@Nonnull PrintStream ps) {
         ps.println(Version.IndexHeader);
@@ -513,10 +570,11 @@ public class DiscIndex implements Iterable<DiscItem> {
         private int iMode2Count = 0;
 
         public UnidentifiedSectorIteratorListener(@Nonnull CdFileSectorReader cd,
+                                                  int iThreads,
                                                   @Nonnull ProgressLogger pl,
                                                   @Nonnull List<DiscIndexer.Identified> identifiedIndexers)
         {
-            super(cd);
+            super(cd, iThreads);
             _pl = pl;
             _identifiedIndexers = identifiedIndexers;
         }
@@ -70,6 +70,13 @@ public abstract class DiscIndexer {
     public interface Static {
         /** Process a stream of data. */
         public void staticRead(@Nonnull DemuxedUnidentifiedDataStream is) throws IOException;
+        /** The stream is only passed to {@link #staticRead(DemuxedUnidentifiedDataStream)}
+         * at offsets where the next 8 bytes, read as a little-endian long,
+         * equal {@link #getSignatureValue()} after masking with this.
+         * Return 0 for the mask and value to be passed every offset. */
+        public long getSignatureMask();
+        /** @see #getSignatureMask() */
+        public long getSignatureValue();
     }
 
     public static @Nonnull DiscIndexer[] createIndexers(@Nonnull ILocalizedLogger log) {
@@ -51,6 +51,7 @@ import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.DiscItemAceCombat3VideoStream;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.SectorAceCombat3Video;
 import jpsxdec.util.DeserializationFail;
@@ -74,8 +75,13 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
         private final int _iChannel;
         @Nonnull
         private int _iLastInvertedFrameNumber;
+        /** Bitstream type of the first frame, saved in the index. */
+        @CheckForNull
+        private final String _sBitstreamType;
 
         public VidBuilder(@Nonnull Ac3Demuxer.DemuxedAc3Frame firstFrame) {
+            _sBitstreamType = BitStreamUncompressorPool.identifyTypeName(
+                    firstFrame.copyDemuxData(null), firstFrame.getDemuxSize());
             _iEndFrame = _iLastInvertedFrameNumber = firstFrame.getInvertedHeaderFrameNumber();
             _frameTracker = new FullFrameTracker(
                     firstFrame.getWidth(), firstFrame.getHeight(),
@@ -103,7 +109,7 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
 
         public @Nonnull DiscItemAceCombat3VideoStream endOfMovie(@Nonnull CdFileSectorReader cd) {
             int[] aiSectorsPerFrame = _frameTracker.getSectorsPerFrame();
-            return new DiscItemAceCombat3VideoStream(cd,
+            DiscItemAceCombat3VideoStream video = new DiscItemAceCombat3VideoStream(cd,
                     _frameTracker.getStartSector(), _frameTracker.getEndSector(),
                     _frameTracker.getWidth(), _frameTracker.getHeight(),
                     _frameTracker.getFrameCount(),
@@ -112,6 +118,9 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
                     _frameTracker.getFrame1PresentationSector(),
                     _frameTracker.getStartFrame(), _frameTracker.getEndFrame(),
                     _iChannel);
+            video.setBitstreamType(_sBitstreamType);
+            video.setSeekTable(_frameTracker.getSeekTable());
+            return video;
         }
 
     }
@@ -49,6 +49,7 @@ import jpsxdec.discitems.DiscItemCrusader;
 import jpsxdec.discitems.IDemuxedFrame;
 import jpsxdec.discitems.ISectorFrameDemuxer;
 import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.SectorCrusader;
 import jpsxdec.util.DeserializationFail;
@@ -72,6 +73,9 @@ public class DiscIndexerCrusader extends DiscIndexer implements DiscIndexer.Iden
         @CheckForNull
         private MiniFrameTracker _frameTracker;
         private final CrusaderDemuxer _demuxer = new CrusaderDemuxer();
+        /** Bitstream type of the first frame, saved in the index. */
+        @CheckForNull
+        private String _sBitstreamType;
 
 
         public VidBuilder(@Nonnull ILocalizedLogger errLog,
@@ -106,9 +110,11 @@ public class DiscIndexerCrusader extends DiscIndexer implements DiscIndexer.Iden
 
         // [implements ICompletedFrameListener]
         public void frameComplete(@Nonnull IDemuxedFrame frame) {
-            if (_frameTracker == null)
+            if (_frameTracker == null) {
                 _frameTracker = new MiniFrameTracker(frame.getFrame());
-            else
+                _sBitstreamType = BitStreamUncompressorPool.identifyTypeName(
+                        frame.copyDemuxData(null), frame.getDemuxSize());
+            } else
                 _frameTracker.next(frame.getFrame());
         }
 
@@ -124,13 +130,15 @@ public class DiscIndexerCrusader extends DiscIndexer implements DiscIndexer.Iden
             if (_frameTracker == null)
                 return null;
 
-            return new DiscItemCrusader(cd, 
+            DiscItemCrusader video = new DiscItemCrusader(cd, 
                     _demuxer.getStartSector(), _demuxer.getEndSector(),
                     _demuxer.getWidth(), _demuxer.getHeight(),
                     _frameTracker.getFrameCount(),
                     _frameTracker.getFormat(),
                     _frameTracker.getStartFrame(),
                     _frameTracker.getEndFrame());
+            video.setBitstreamType(_sBitstreamType);
+            return video;
         }
     }
     
@@ -49,6 +49,7 @@ import jpsxdec.discitems.DiscItemDreddVideo;
 import jpsxdec.discitems.DreddDemuxer;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.ILocalizedLogger;
@@ -66,8 +67,13 @@ public class DiscIndexerDredd extends DiscIndexer
         private final FrameNumber.FactoryNoHeader _frameNumberFactory = new FrameNumber.FactoryNoHeader();
         @Nonnull
         private final FullFrameTracker _frameTracker;
+        /** Bitstream type of the first frame, saved in the index. */
+        @CheckForNull
+        private final String _sBitstreamType;
 
         public VidBuilder(@Nonnull DreddDemuxer.DemuxedDreddFrame firstFrame) {
+            _sBitstreamType = BitStreamUncompressorPool.identifyTypeName(
+                    firstFrame.copyDemuxData(null), firstFrame.getDemuxSize());
             _frameTracker = new FullFrameTracker(
                     firstFrame.getWidth(), firstFrame.getHeight(),
                     _frameNumberFactory.next(firstFrame.getStartSector()),
@@ -90,7 +96,7 @@ public class DiscIndexerDredd extends DiscIndexer
         public @Nonnull DiscItemDreddVideo endOfMovie(@Nonnull CdFileSectorReader cd) {
             int[] aiSectorsPerFrame = _frameTracker.getSectorsPerFrame();
 
-            return new DiscItemDreddVideo(cd,
+            DiscItemDreddVideo video = new DiscItemDreddVideo(cd,
                     _frameTracker.getStartSector(), _frameTracker.getEndSector(),
                     _frameTracker.getWidth(), _frameTracker.getHeight(),
                     _frameTracker.getFrameCount(),
@@ -98,6 +104,9 @@ public class DiscIndexerDredd extends DiscIndexer
                     _frameTracker.getStartFrame(), _frameTracker.getEndFrame(),
                     aiSectorsPerFrame[0], aiSectorsPerFrame[1],
                     _frameTracker.getFrame1PresentationSector());
+            video.setBitstreamType(_sBitstreamType);
+            video.setSeekTable(_frameTracker.getSeekTable());
+            return video;
         }
 
     }
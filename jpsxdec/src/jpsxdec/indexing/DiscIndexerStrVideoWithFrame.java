@@ -54,6 +54,7 @@ import jpsxdec.discitems.DiscItemXaAudioStream;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.SerializedDiscItem;
 import jpsxdec.discitems.StrDemuxer;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.ILocalizedLogger;
@@ -73,8 +74,13 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
         @Nonnull
         private final FullFrameTracker _frameTracker;
         private int _iLastFrameNumber;
+        /** Bitstream type of the first frame, saved in the index. */
+        @CheckForNull
+        private final String _sBitstreamType;
 
         public VidBuilder(@Nonnull StrDemuxer.DemuxedStrFrame firstFrame) {
+            _sBitstreamType = BitStreamUncompressorPool.identifyTypeName(
+                    firstFrame.copyDemuxData(null), firstFrame.getDemuxSize());
             _iLastFrameNumber = firstFrame.getHeaderFrameNumber();
             _frameTracker = new FullFrameTracker(
                     firstFrame.getWidth(), firstFrame.getHeight(),
@@ -106,7 +112,7 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
         public @Nonnull DiscItemStrVideoStream endOfMovie(@Nonnull CdFileSectorReader cd) {
             int[] aiSectorsPerFrame = _frameTracker.getSectorsPerFrame();
 
-            return new DiscItemStrVideoWithFrame(cd,
+            DiscItemStrVideoStream video = new DiscItemStrVideoWithFrame(cd,
                     _frameTracker.getStartSector(), _frameTracker.getEndSector(),
                     _frameTracker.getWidth(), _frameTracker.getHeight(),
                     _frameTracker.getFrameCount(),
@@ -114,6 +120,9 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
                     _frameTracker.getStartFrame(), _frameTracker.getEndFrame(),
                     aiSectorsPerFrame[0], aiSectorsPerFrame[1],
                     _frameTracker.getFrame1PresentationSector());
+            video.setBitstreamType(_sBitstreamType);
+            video.setSeekTable(_frameTracker.getSeekTable());
+            return video;
         }
 
     }
@@ -86,6 +86,14 @@ public class DiscIndexerTim extends DiscIndexer implements DiscIndexer.Static {
         }
     }
 
+    public long getSignatureMask() {
+        return Tim.HEADER_SIGNATURE_MASK;
+    }
+
+    public long getSignatureValue() {
+        return Tim.HEADER_SIGNATURE_VALUE;
+    }
+
     @Override
     public void indexingEndOfDisc() {
     }
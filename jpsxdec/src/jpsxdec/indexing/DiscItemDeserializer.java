@@ -0,0 +1,98 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.ILocalizedLogger;
+
+/** Hands {@link SerializedDiscItem}s to the {@link DiscIndexer} that handles
+ * their type. The first time a type is seen every indexer is asked, after
+ * that only the indexer that accepted it. */
+class DiscItemDeserializer {
+
+    @Nonnull
+    private final DiscIndexer[] _aoIndexers;
+    private final HashMap<String, DiscIndexer> _typeToIndexer = new HashMap<String, DiscIndexer>();
+
+    public DiscItemDeserializer(@Nonnull Collection<DiscItem> items,
+                                @Nonnull CdFileSectorReader cd,
+                                @Nonnull ILocalizedLogger log)
+    {
+        _aoIndexers = DiscIndexer.createIndexers(log);
+        for (DiscIndexer indexer : _aoIndexers) {
+            indexer.indexInit(items, cd);
+        }
+    }
+
+    public @Nonnull DiscIndexer[] getIndexers() {
+        return _aoIndexers;
+    }
+
+    /** @return null if no indexer handles the item type. */
+    public @CheckForNull DiscItem deserialize(@Nonnull SerializedDiscItem serial)
+            throws DeserializationFail
+    {
+        String sType = serial.getType();
+        DiscIndexer indexer = _typeToIndexer.get(sType);
+        if (indexer != null)
+            return indexer.deserializeLineRead(serial);
+
+        for (DiscIndexer possibleIndexer : _aoIndexers) {
+            DiscItem item;
+            try {
+                item = possibleIndexer.deserializeLineRead(serial);
+            } catch (DeserializationFail ex) {
+                // the indexer recognized the type, it just failed to parse it
+                _typeToIndexer.put(sType, possibleIndexer);
+                throw ex;
+            }
+            if (item != null) {
+                _typeToIndexer.put(sType, possibleIndexer);
+                return item;
+            }
+        }
+        return null;
+    }
+}
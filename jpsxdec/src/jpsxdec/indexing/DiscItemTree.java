@@ -0,0 +1,192 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.IndexId;
+import jpsxdec.i18n.I;
+import jpsxdec.util.ILocalizedLogger;
+
+/** Builds the parent/child hierarchy of {@link DiscItem}s.
+ * <p>
+ * Instead of asking every item if it is the parent of every other item,
+ * only items whose sectors overlap are compared. Those are found with an
+ * interval tree, so the time is O(n log n) plus the number of
+ * overlapping pairs, instead of O(n^2). */
+class DiscItemTree {
+
+    /** Adds every item to the parent with the highest
+     * {@link DiscItem#getParentRating(DiscItem)}. Ties go to the parent that
+     * comes first in the list.
+     * @return the items without a parent, in list order. */
+    public static @Nonnull ArrayList<DiscItem> buildTree(@Nonnull List<DiscItem> allItems) {
+        SectorRangeLookup lookup = new SectorRangeLookup(allItems);
+
+        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
+        for (DiscItem child : allItems) {
+            DiscItem bestParent = lookup.findBestParent(child);
+            if (bestParent == null)
+                rootItems.add(child);
+            else
+                if (!bestParent.addChild(child))
+                    throw new RuntimeException(bestParent + " should have accepted " + child);
+        }
+        return rootItems;
+    }
+
+    /** Rebuilds the hierarchy from the {@link IndexId}s of deserialized items.
+     * @return the items without a parent, in list order. */
+    public static @Nonnull ArrayList<DiscItem> recreateTree(@Nonnull Collection<DiscItem> allItems,
+                                                          @Nonnull ILocalizedLogger log)
+    {
+        HashMap<IndexId, DiscItem> idLookup = new HashMap<IndexId, DiscItem>(allItems.size() * 2);
+        for (DiscItem item : allItems) {
+            // the first item with an id is the parent
+            if (!idLookup.containsKey(item.getIndexId()))
+                idLookup.put(item.getIndexId(), item);
+        }
+
+        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
+        for (DiscItem child : allItems) {
+            IndexId parentId = child.getIndexId().getParentId();
+            DiscItem parent = parentId == null ? null : idLookup.get(parentId);
+            if (parent == null) {
+                rootItems.add(child);
+            } else if (!parent.addChild(child)) {
+                log.log(Level.WARNING, I.INDEX_REBUILD_PARENT_REJECTED_CHILD(parent, child));
+            }
+        }
+        return rootItems;
+    }
+
+    /** Implicit interval tree over the items sorted by start sector.
+     * The root of any range [lo, hi] is the middle element, and
+     * {@link #_aiMaxEnd} holds the largest end sector in that subtree. */
+    private static class SectorRangeLookup {
+        @Nonnull
+        private final DiscItem[] _aoByStart;
+        /** Position of each item in the original list, to break ties. */
+        @Nonnull
+        private final int[] _aiListPos;
+        @Nonnull
+        private final int[] _aiMaxEnd;
+
+        @CheckForNull
+        private DiscItem _bestParent;
+        private int _iBestRating;
+        private int _iBestListPos;
+
+        public SectorRangeLookup(@Nonnull List<DiscItem> items) {
+            final DiscItem[] aoItems = items.toArray(new DiscItem[items.size()]);
+            Integer[] aiSorted = new Integer[aoItems.length];
+            for (int i = 0; i < aiSorted.length; i++)
+                aiSorted[i] = Integer.valueOf(i);
+            Arrays.sort(aiSorted, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    int i1 = aoItems[o1.intValue()].getStartSector();
+                    int i2 = aoItems[o2.intValue()].getStartSector();
+                    return i1 < i2 ? -1 : (i1 > i2 ? 1 : 0);
+                }
+            });
+
+            _aoByStart = new DiscItem[aoItems.length];
+            _aiListPos = new int[aoItems.length];
+            for (int i = 0; i < aiSorted.length; i++) {
+                _aiListPos[i] = aiSorted[i].intValue();
+                _aoByStart[i] = aoItems[_aiListPos[i]];
+            }
+            _aiMaxEnd = new int[aoItems.length];
+            fillMaxEnd(0, aoItems.length - 1);
+        }
+
+        private int fillMaxEnd(int iLo, int iHi) {
+            if (iLo > iHi)
+                return Integer.MIN_VALUE;
+            int iMid = (iLo + iHi) >>> 1;
+            int iMax = _aoByStart[iMid].getEndSector();
+            iMax = Math.max(iMax, fillMaxEnd(iLo, iMid - 1));
+            iMax = Math.max(iMax, fillMaxEnd(iMid + 1, iHi));
+            _aiMaxEnd[iMid] = iMax;
+            return iMax;
+        }
+
+        public @CheckForNull DiscItem findBestParent(@Nonnull DiscItem child) {
+            _bestParent = null;
+            _iBestRating = 0;
+            _iBestListPos = Integer.MAX_VALUE;
+            search(0, _aoByStart.length - 1, child);
+            DiscItem bestParent = _bestParent;
+            _bestParent = null;
+            return bestParent;
+        }
+
+        private void search(int iLo, int iHi, @Nonnull DiscItem child) {
+            while (iLo <= iHi) {
+                int iMid = (iLo + iHi) >>> 1;
+                // nothing in this subtree reaches the child
+                if (_aiMaxEnd[iMid] < child.getStartSector())
+                    return;
+                search(iLo, iMid - 1, child);
+                DiscItem parent = _aoByStart[iMid];
+                // this and everything to the right starts after the child
+                if (parent.getStartSector() > child.getEndSector())
+                    return;
+                if (parent.getEndSector() >= child.getStartSector()) {
+                    int iRating = parent.getParentRating(child);
+                    if (iRating > _iBestRating ||
+                        (iRating == _iBestRating && iRating > 0 && _aiListPos[iMid] < _iBestListPos))
+                    {
+                        _bestParent = parent;
+                        _iBestRating = iRating;
+                        _iBestListPos = _aiListPos[iMid];
+                    }
+                }
+                iLo = iMid + 1;
+            }
+        }
+    }
+}
@@ -39,9 +39,11 @@ package jpsxdec.indexing;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.FrameNumberFormat;
+import jpsxdec.discitems.FrameSeekTable;
 import jpsxdec.indexing.psxvideofps.StrFrameRateCalc;
 import jpsxdec.util.Fraction;
 
@@ -61,9 +63,11 @@ public class FullFrameTracker {
     /** Delegates some tracking to {@link MiniFrameTracker}. */
     @Nonnull
     private final MiniFrameTracker _miniTracker;
+    private final FrameSeekTable.Builder _seekTable = new FrameSeekTable.Builder();
 
     public FullFrameTracker(int iWidth, int iHeight, @Nonnull FrameNumber frameNum, int iEndSector) {
         _miniTracker = new MiniFrameTracker(frameNum);
+        _seekTable.addFrame(frameNum, iEndSector);
         _iWidth = iWidth;
         _iHeight = iHeight;
         _iStartSector = frameNum.getSector();
@@ -77,6 +81,7 @@ public class FullFrameTracker {
         _miniTracker.next(frameNum);
         if (frameNum.getSector() < _iStartSector || iEndSector < _iEndSector)
             throw new IllegalArgumentException("Adding frame with strange sector range");
+        _seekTable.addFrame(frameNum, iEndSector);
         _iEndSector = iEndSector;
         _fpsCalc.nextVideo(frameNum.getSector() - _iStartSector,
                            iEndSector - _iStartSector);
@@ -122,6 +127,12 @@ public class FullFrameTracker {
         return _miniTracker.getFrameCount();
     }
 
+    /** @return null if the video is too short or its frames are too
+     *          irregular to seek. */
+    public @CheckForNull FrameSeekTable getSeekTable() {
+        return _seekTable.build();
+    }
+
     /** Watch out, once this is called, this object cannot accept any more frames. */
     public @Nonnull int[] getSectorsPerFrame() {
         Fraction sectorsPerFrame;
@@ -44,6 +44,7 @@ import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.cdreaders.CdSector;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.IdentifiedSectorIterator;
+import jpsxdec.sectors.SectorClassifier;
 import jpsxdec.util.TaskCanceledException;
 
 /** Individually iterates over {@link CdSector}s that cannot be identified
@@ -69,6 +70,12 @@ public abstract class UnidentifiedSectorIterator {
         _sectorIter = IdentifiedSectorIterator.create(cd);
     }
 
+    /** @param iThreads Number of threads to use for sector identification.
+     * @see IdentifiedSectorIterator#create(jpsxdec.cdreaders.CdFileSectorReader, int, int, int) */
+    public UnidentifiedSectorIterator(@Nonnull CdFileSectorReader cd, int iThreads) {
+        _sectorIter = IdentifiedSectorIterator.create(cd, 0, cd.getLength()-1, iThreads);
+    }
+
     abstract protected void sectorRead(@Nonnull CdSector cdSector,
                                        @CheckForNull IdentifiedSector idSector)
             throws TaskCanceledException;
@@ -117,6 +124,16 @@ public abstract class UnidentifiedSectorIterator {
         return _nextUnidentified == null && !_sectorIter.hasNext();
     }
 
+    /** Classifier used to identify the sectors, with the identification counts. */
+    public @Nonnull SectorClassifier getClassifier() {
+        return _sectorIter.getClassifier();
+    }
+
+    /** Stops any sector identification still happening in the background. */
+    public void close() {
+        _sectorIter.close();
+    }
+
     public void checkTaskCanceled() throws TaskCanceledException {
         if (_taskCanceled != null)
             throw _taskCanceled;
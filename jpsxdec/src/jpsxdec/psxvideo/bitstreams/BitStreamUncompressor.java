@@ -65,23 +65,7 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
             @Nonnull byte[] abBitstream, int iBitstreamSize)
             throws BinaryDataNotRecognized
     {
-        BitStreamUncompressor bsu;
-        bsu = new BitStreamUncompressor_STRv2();
-        if (bsu.resetNoThrow(abBitstream, iBitstreamSize))
-            return bsu;
-        bsu = new BitStreamUncompressor_STRv3();
-        if (bsu.resetNoThrow(abBitstream, iBitstreamSize))
-            return bsu;
-        bsu = new BitStreamUncompressor_STRv1();
-        if (bsu.resetNoThrow(abBitstream, iBitstreamSize))
-            return bsu;
-        bsu = new BitStreamUncompressor_Iki();
-        if (bsu.resetNoThrow(abBitstream, iBitstreamSize))
-            return bsu;
-        bsu = new BitStreamUncompressor_Lain();
-        if (bsu.resetNoThrow(abBitstream, iBitstreamSize))
-            return bsu;
-        throw new BinaryDataNotRecognized();
+        return new BitStreamUncompressorPool().reset(abBitstream, iBitstreamSize);
     }
 
     /** Longest AC variable-length (Huffman) bit code, in bits. */
@@ -207,7 +191,26 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
         /** Holds all the codes for references and compression. */
         private final AcBitCode[] _aoAcBitCodes = new AcBitCode[111];
 
+        /** Packed code entries in {@link #_aiPackedTable1} and
+         * {@link #_aiPackedTable2}. Bits 0-4 hold the code bit length
+         * (0 if the code is invalid), bits 5-6 the kind of code,
+         * bits 7-12 the zero-run, and bits 16-31 the signed AC coefficient. */
+        static final int PACKED_LENGTH_MASK = 0x1F,
+                         PACKED_KIND_MASK   = 3 << 5,
+                         PACKED_AC          = 0 << 5,
+                         PACKED_EOB         = 1 << 5,
+                         PACKED_ESCAPE      = 2 << 5,
+                         PACKED_SUBTABLE    = 3 << 5;
+        /** Single-probe table for every code that doesn't start with 7 zero bits,
+         * indexed by the first 11 bits. Entries for codes that start with
+         * 7 zero bits are {@link #PACKED_SUBTABLE}. */
+        private final int[] _aiPackedTable1 = new int[1 << 11];
+        /** Table for the remaining codes, indexed by the 10 bits after the first 7. */
+        private final int[] _aiPackedTable2 = new int[1 << 10];
+
         public AcLookup() {
+            for (int i = 0; i < (1 << 4); i++)
+                _aiPackedTable1[i] = PACKED_SUBTABLE;
             // initialize the two codes we know about
             setBits(END_OF_BLOCK);
             setBits(ESCAPE_CODE);
@@ -380,6 +383,39 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
                     throw new RuntimeException("Resetting an existing bitstream lookup probably means some code is wrong.");
                 aoTable[iTableStart + i] = lu;
             }
+
+            setPacked(lu);
+        }
+
+        /** Adds the bit code to the packed lookup tables. */
+        private void setPacked(AcBitCode lu) {
+            final int iPacked;
+            if (lu == END_OF_BLOCK)
+                iPacked = PACKED_EOB | lu.BitLength;
+            else if (lu == ESCAPE_CODE)
+                iPacked = PACKED_ESCAPE | lu.BitLength;
+            else
+                iPacked = (lu.AcCoefficient << 16) | (lu.ZeroRun << 7) | PACKED_AC | lu.BitLength;
+
+            final int[] aiTable;
+            final int iBitsRemain;
+            final int iTableStart;
+            if (lu.BitString.startsWith("0000000")) {
+                aiTable = _aiPackedTable2;
+                iBitsRemain = AC_LONGEST_VARIABLE_LENGTH_CODE - lu.BitLength;
+                iTableStart = Integer.parseInt(lu.BitString.substring(7), 2) << iBitsRemain;
+            } else {
+                aiTable = _aiPackedTable1;
+                iBitsRemain = 11 - lu.BitLength;
+                iTableStart = Integer.parseInt(lu.BitString, 2) << iBitsRemain;
+            }
+
+            final int iTableEntriesToAssociate = (1 << iBitsRemain);
+            for (int i = 0; i < iTableEntriesToAssociate; i++) {
+                if (aiTable[iTableStart + i] != 0)
+                    throw new RuntimeException("Resetting an existing bitstream lookup probably means some code is wrong.");
+                aiTable[iTableStart + i] = iPacked;
+            }
         }
 
         public @Nonnull Iterable<AcBitCode> getCodeList() {
@@ -422,6 +458,22 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
                 throw new MdecException.ReadCorruption(UNMATCHED_AC_VLC(i17bits));
             }
         }
+
+        /** Converts bits to the equivalent packed code
+         * (see {@link #PACKED_LENGTH_MASK}) with at most two table reads
+         * and no searching. Takes the same bits as {@link #lookup(int)}.
+         *
+         * @param i17bits  Integer containing 17 bits to decode.
+         */
+        private int lookupPacked(final int i17bits) throws MdecException.ReadCorruption {
+            int iPacked = _aiPackedTable1[(i17bits >> 6) & 0x7FF];
+            if ((iPacked & PACKED_KIND_MASK) == PACKED_SUBTABLE)
+                iPacked = _aiPackedTable2[i17bits & 0x3FF];
+            if (iPacked == 0)
+                throw new MdecException.ReadCorruption(UNMATCHED_AC_VLC(i17bits));
+            return iPacked;
+        }
+
         private static String UNMATCHED_AC_VLC(int i17bits) {
             return "Unmatched AC variable length code: " +
                    Misc.bitsToString(i17bits, AC_LONGEST_VARIABLE_LENGTH_CODE);
@@ -661,7 +713,7 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
     @Nonnull
     private final AcLookup _lookupTable;
     /** Binary input stream being read. */
-    protected final ArrayBitReader _bitReader = new ArrayBitReader();
+    protected final BufferedBitReader _bitReader = new BufferedBitReader();
 
     /** Holds the debugger when debugging is enabled. */
     @CheckForNull
@@ -708,7 +760,8 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
             throw new BinaryDataNotRecognized();
     }
 
-    private boolean resetNoThrow(@Nonnull byte[] abBitstream, int iBitstreamSize)
+    /** @return if the bitstream header is recognized by this uncompressor. */
+    boolean resetNoThrow(@Nonnull byte[] abBitstream, int iBitstreamSize)
             throws BinaryDataNotRecognized
     {
         if (!readHeader(abBitstream, iBitstreamSize, _bitReader))
@@ -734,10 +787,12 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
             _blnBlockStart = false;
         } else {
             int i17bits = _bitReader.peekUnsignedBits(AC_LONGEST_VARIABLE_LENGTH_CODE);
-            AcBitCode bitCode = _lookupTable.lookup(i17bits);
-            _bitReader.skipBits(bitCode.BitLength);
+            int iPacked = _lookupTable.lookupPacked(i17bits);
+            int iBitLength = iPacked & AcLookup.PACKED_LENGTH_MASK;
+            _bitReader.skipBits(iBitLength);
+            int iKind = iPacked & AcLookup.PACKED_KIND_MASK;
 
-            if (bitCode == AcLookup.END_OF_BLOCK) {
+            if (iKind == AcLookup.PACKED_EOB) {
                 // end of block
                 code.setToEndOfData();
                 _blnBlockStart = true;
@@ -750,11 +805,12 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
                 assert !DEBUG || _debug.append(AcLookup.END_OF_BLOCK.BitString);
             } else {
                 // block continues
-                assert !DEBUG || _debug.append(bitCode.BitString);
-                if (bitCode == AcLookup.ESCAPE_CODE) {
+                assert !DEBUG || _debug.append(Misc.bitsToString(
+                        i17bits >> (AC_LONGEST_VARIABLE_LENGTH_CODE - iBitLength), iBitLength));
+                if (iKind == AcLookup.PACKED_ESCAPE) {
                     readEscapeAcCode(code);
                 } else {
-                    code.setBits(bitCode.ZeroRun, bitCode.AcCoefficient);
+                    code.setBits((iPacked >> 7) & 63, iPacked >> 16);
                 }
 
                 _iCurrentBlockVectorPos += code.getTop6Bits() + 1;
@@ -792,7 +848,7 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
     /** Validates the frame header and initializes for reading
      * (including resetting the bit reader to the proper start byte and endian). */
     abstract protected boolean readHeader(@Nonnull byte[] abFrameData, int iDataSize,
-                                          @Nonnull ArrayBitReader bitReader);
+                                          @Nonnull BufferedBitReader bitReader);
 
     /** Read the quantization scale and DC coefficient from the bitstream. */
     abstract protected void readQscaleAndDC(@Nonnull MdecCode code)
@@ -0,0 +1,165 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.util.BinaryDataNotRecognized;
+
+/** Keeps one reusable uncompressor of each bitstream type for a stream of
+ * frames.
+ * <p>
+ * Nearly every video uses the same bitstream type for every frame, so
+ * {@link #reset(byte[], int)} first tries the type that matched the last
+ * frame (or the type hinted when created, usually from the index). Only when
+ * that fails are the other types probed, in the same order as
+ * {@link BitStreamUncompressor#identifyUncompressor(byte[], int)}.
+ * Uncompressors are only created the first time they are needed, and then
+ * reused for every following frame.
+ * <p>
+ * Not thread safe: each thread should have its own pool. */
+public class BitStreamUncompressorPool {
+
+    /** Names of the bitstream types in the order they are probed.
+     * Must match the {@link BitStreamUncompressor#getName()} of each type. */
+    private static final String[] TYPE_NAMES = {
+        "STRv2", "STRv3", "STRv1", "Iki", "Lain"
+    };
+
+    private static @Nonnull BitStreamUncompressor create(int iType) {
+        switch (iType) {
+            case 0: return new BitStreamUncompressor_STRv2();
+            case 1: return new BitStreamUncompressor_STRv3();
+            case 2: return new BitStreamUncompressor_STRv1();
+            case 3: return new BitStreamUncompressor_Iki();
+            case 4: return new BitStreamUncompressor_Lain();
+            default: throw new IllegalArgumentException();
+        }
+    }
+
+    /** @return the type index of the name, or -1 if not a known type. */
+    private static int typeIndex(@CheckForNull String sTypeName) {
+        if (sTypeName != null) {
+            for (int i = 0; i < TYPE_NAMES.length; i++) {
+                if (TYPE_NAMES[i].equals(sTypeName))
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns if the name is one of the known bitstream types,
+     * i.e. the {@link BitStreamUncompressor#getName()} of an uncompressor. */
+    public static boolean isTypeName(@CheckForNull String sTypeName) {
+        return typeIndex(sTypeName) >= 0;
+    }
+
+    /** Identifies the bitstream type without keeping the uncompressor.
+     * @return the {@link BitStreamUncompressor#getName()} of the matching
+     *         type, or null if the bitstream isn't recognized. */
+    public static @CheckForNull String identifyTypeName(@Nonnull byte[] abBitstream,
+                                                        int iBitstreamSize)
+    {
+        BitStreamUncompressorPool pool = new BitStreamUncompressorPool();
+        try {
+            pool.reset(abBitstream, iBitstreamSize);
+            return pool.getTypeName();
+        } catch (BinaryDataNotRecognized ex) {
+            return null;
+        }
+    }
+
+    private final BitStreamUncompressor[] _aoUncompressors =
+            new BitStreamUncompressor[TYPE_NAMES.length];
+    /** Type tried first, or -1 if none yet. */
+    private int _iLastType = -1;
+
+    public BitStreamUncompressorPool() {
+    }
+
+    /** @param sTypeHint Name of the type to try first, usually saved in the
+     *                   index. Ignored if null or not a known type. */
+    public BitStreamUncompressorPool(@CheckForNull String sTypeHint) {
+        _iLastType = typeIndex(sTypeHint);
+    }
+
+    /** Resets the uncompressor that recognizes the bitstream and returns it.
+     * The returned instance is reused by later calls, so it is only valid
+     * until the next call. */
+    public @Nonnull BitStreamUncompressor reset(@Nonnull byte[] abBitstream)
+            throws BinaryDataNotRecognized
+    {
+        return reset(abBitstream, abBitstream.length);
+    }
+
+    /** @see #reset(byte[]) */
+    public @Nonnull BitStreamUncompressor reset(@Nonnull byte[] abBitstream,
+                                                int iBitstreamSize)
+            throws BinaryDataNotRecognized
+    {
+        if (_iLastType >= 0) {
+            BitStreamUncompressor bsu = get(_iLastType);
+            if (bsu.resetNoThrow(abBitstream, iBitstreamSize))
+                return bsu;
+        }
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (i == _iLastType)
+                continue;
+            BitStreamUncompressor bsu = get(i);
+            if (bsu.resetNoThrow(abBitstream, iBitstreamSize)) {
+                _iLastType = i;
+                return bsu;
+            }
+        }
+        throw new BinaryDataNotRecognized();
+    }
+
+    private @Nonnull BitStreamUncompressor get(int iType) {
+        BitStreamUncompressor bsu = _aoUncompressors[iType];
+        if (bsu == null)
+            _aoUncompressors[iType] = bsu = create(iType);
+        return bsu;
+    }
+
+    /** Name of the type that recognized the last bitstream (or the hinted
+     * type if no bitstream has been recognized yet), or null if none. */
+    public @CheckForNull String getTypeName() {
+        return _iLastType < 0 ? null : TYPE_NAMES[_iLastType];
+    }
+
+}
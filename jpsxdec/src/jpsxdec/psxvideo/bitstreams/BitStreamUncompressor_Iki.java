@@ -116,7 +116,7 @@ public class BitStreamUncompressor_Iki extends BitStreamUncompressor {
 
     @Override
     protected boolean readHeader(@Nonnull byte[] abFrameData, int iDataSize,
-                                 @Nonnull ArrayBitReader bitReader)
+                                 @Nonnull BufferedBitReader bitReader)
     {
         if (!_header.readHeader(abFrameData, iDataSize))
             return false;
@@ -393,32 +393,12 @@ public class BitStreamUncompressor_Iki extends BitStreamUncompressor {
             // TODO: verify original bitstream is iki?
             
             // STEP 1: Find the minimum Qscale for all blocks that will fit frame
-            byte[] abNewDemux = null;
-            int iQscale;
-            for (iQscale = 1; iQscale < 64; iQscale++) {
-                log.log(Level.INFO, I.TRYING_QSCALE(iQscale));
-
-                int[] aiNewQscale = { iQscale, iQscale, iQscale,
-                                      iQscale, iQscale, iQscale };
-
-                for (MacroBlockEncoder macblk : encoder) {
-                    macblk.setToFullEncode(aiNewQscale);
-                }
-
-                try {
-                    abNewDemux = compress(encoder.getStream(), encoder.getPixelWidth(), encoder.getPixelHeight());
-                } catch (IncompatibleException ex) {
-                    throw new RuntimeException("The encoder should be compatible here", ex);
-                }
-                int iNewDemuxSize = abNewDemux.length;
-                if (iNewDemuxSize <= abOriginal.length) {
-                    log.log(Level.INFO, I.NEW_FRAME_FITS(frameNum, iNewDemuxSize, abOriginal.length));
-                    break;
-                } else {
-                    log.log(Level.INFO, I.NEW_FRAME_DOES_NOT_FIT(frameNum, iNewDemuxSize, abOriginal.length));
-                    abNewDemux = null;
-                }
-            }
+            QscaleSearch search = new QscaleSearch(this, encoder, null,
+                    QscaleSearch.singleQscaleCandidates(1), abOriginal.length, false);
+            QscaleSearch.Result found = search.search(frameNum, log);
+            // also sets every macroblock to the qscale found, where step 2 starts
+            byte[] abNewDemux = useSearchResult(found, search, encoder, null);
+            int iQscale = found == null ? 64 : search.getCandidate(found.iCandidate)[0];
 
             if (abNewDemux != null && abNewDemux.length < abOriginal.length && iQscale > 1) {
                 // STEP 2: decrease the qscale of blocks with high energy
@@ -495,6 +475,11 @@ public class BitStreamUncompressor_Iki extends BitStreamUncompressor {
             return abLastGoodDemux;
         }
         
+        @Override
+        protected @Nonnull BitStreamCompressor_Iki makeCopy() {
+            return new BitStreamCompressor_Iki();
+        }
+
         @Override
         public @CheckForNull byte[] compressPartial(@Nonnull byte[] abOriginal,
                                                     @Nonnull String frameNum,
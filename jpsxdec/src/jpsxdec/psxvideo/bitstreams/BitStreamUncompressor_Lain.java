@@ -37,12 +37,11 @@
 
 package jpsxdec.psxvideo.bitstreams;
 
-import java.util.logging.Level;
+import java.util.ArrayList;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.i18n.I;
 import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2;
-import jpsxdec.psxvideo.encode.MacroBlockEncoder;
 import jpsxdec.psxvideo.encode.MdecEncoder;
 import jpsxdec.psxvideo.mdec.MdecException;
 import jpsxdec.psxvideo.mdec.MdecInputStream;
@@ -193,7 +192,7 @@ public class BitStreamUncompressor_Lain extends BitStreamUncompressor {
 
     @Override
     protected boolean readHeader(@Nonnull byte[] abFrameData, int iDataSize,
-                                 @Nonnull ArrayBitReader bitReader)
+                                 @Nonnull BufferedBitReader bitReader)
     {
         if (iDataSize < 8)
             return false;
@@ -385,43 +384,9 @@ public class BitStreamUncompressor_Lain extends BitStreamUncompressor {
                                                  @Nonnull ILocalizedLogger log)
                 throws MdecException.EndOfStream, MdecException.ReadCorruption
         {
-            int iLQscale = 1, iCQscale = 1;
-            while (iLQscale < 64 && iCQscale < 64) {
-                log.log(Level.INFO, I.TRYING_LUMA_CHROMA(iLQscale, iCQscale));
-
-                int[] aiNewQscale = { iCQscale, iCQscale,
-                                      iLQscale, iLQscale, iLQscale, iLQscale };
-
-                for (MacroBlockEncoder macblk : encoder) {
-                    macblk.setToFullEncode(aiNewQscale);
-                }
-
-                try {
-                    byte[] abNewDemux;
-                    try {
-                        abNewDemux = compress(encoder.getStream(), encoder.getPixelWidth(), encoder.getPixelHeight());
-                    } catch (IncompatibleException ex) {
-                        throw new RuntimeException("The encoder should be compatible here", ex);
-                    }
-
-                    int iNewDemuxSize = abNewDemux.length;
-                    if (iNewDemuxSize <= abOriginal.length) {
-                        log.log(Level.INFO, I.NEW_FRAME_FITS(frameNum, iNewDemuxSize, abOriginal.length));
-                        return abNewDemux;
-                    } else {
-                        log.log(Level.INFO, I.NEW_FRAME_DOES_NOT_FIT(frameNum, iNewDemuxSize, abOriginal.length));
-                    }
-                } catch (MdecException.TooMuchEnergy ex) {
-                    log.log(Level.INFO, I.COMPRESS_TOO_MUCH_ENERGY(frameNum), ex);
-                }
-
-                if ((iLQscale / (double)iCQscale) < LUMA_TO_CHROMA_RATIO)
-                    iLQscale++;
-                else
-                    iCQscale++;
-            }
-
-            return null;
+            QscaleSearch search = new QscaleSearch(this, encoder, null,
+                    lumaChromaCandidates(1, 1), abOriginal.length, true);
+            return useSearchResult(search.search(frameNum, log), search, encoder, null);
         }
 
         @Override
@@ -441,41 +406,31 @@ public class BitStreamUncompressor_Lain extends BitStreamUncompressor {
             final int iFrameCQscale = aiFrameQscale[1];
             final int[] aiOriginalQscale = { iFrameCQscale, iFrameCQscale, iFrameLQscale,
                                              iFrameLQscale, iFrameLQscale, iFrameLQscale };
-            int iLQscale = iFrameLQscale, iCQscale = iFrameCQscale;
-            while (iLQscale < 64 && iCQscale < 64) {
-                log.log(Level.INFO, I.TRYING_LUMA_CHROMA(iLQscale, iCQscale));
 
-                int[] aiNewQscale = { iCQscale, iCQscale,
-                                      iLQscale, iLQscale, iLQscale, iLQscale };
-
-                for (MacroBlockEncoder macblk : encoder) {
-                    macblk.setToPartialEncode(aiOriginalQscale, aiNewQscale);
-                }
+            QscaleSearch search = new QscaleSearch(this, encoder, aiOriginalQscale,
+                    lumaChromaCandidates(iFrameLQscale, iFrameCQscale), abOriginal.length, true);
+            return useSearchResult(search.search(frameNum, log), search, encoder, aiOriginalQscale);
+        }
 
-                try {
-                    byte[] abNewDemux;
-                    try {
-                        abNewDemux = compress(encoder.getStream(), encoder.getPixelWidth(), encoder.getPixelHeight());
-                    } catch (IncompatibleException ex) {
-                        throw new RuntimeException("The encoder should be compatible here", ex);
-                    }
-
-                    if (abNewDemux.length <= abOriginal.length) {
-                        log.log(Level.INFO, I.NEW_FRAME_FITS(frameNum, abNewDemux.length, abOriginal.length));
-                        return abNewDemux;
-                    } else {
-                        log.log(Level.INFO, I.NEW_FRAME_DOES_NOT_FIT(frameNum, abNewDemux.length, abOriginal.length));
-                    }
-                } catch (MdecException.TooMuchEnergy ex) {
-                    log.log(Level.INFO, I.COMPRESS_TOO_MUCH_ENERGY(frameNum), ex);
-                }
+        /** The sequence of luma and chroma qscales to try, keeping near
+         * the luma to chroma ratio. */
+        private static @Nonnull int[][] lumaChromaCandidates(int iLQscale, int iCQscale) {
+            ArrayList<int[]> candidates = new ArrayList<int[]>();
+            while (iLQscale < 64 && iCQscale < 64) {
+                candidates.add(new int[] { iCQscale, iCQscale,
+                                           iLQscale, iLQscale, iLQscale, iLQscale });
 
                 if ((iLQscale / (double)iCQscale) < LUMA_TO_CHROMA_RATIO)
                     iLQscale++;
                 else
                     iCQscale++;
             }
-            return null;
+            return candidates.toArray(new int[candidates.size()][]);
+        }
+
+        @Override
+        protected @Nonnull BitStreamCompressor_Lain makeCopy() {
+            return new BitStreamCompressor_Lain();
         }
 
 
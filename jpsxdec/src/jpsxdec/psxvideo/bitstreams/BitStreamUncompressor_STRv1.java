@@ -61,7 +61,7 @@ public class BitStreamUncompressor_STRv1 extends BitStreamUncompressor_STRv2 {
 
     @Override
     protected boolean readHeader(@Nonnull byte[] abFrameData, int iDataSize,
-                                 @Nonnull ArrayBitReader bitReader)
+                                 @Nonnull BufferedBitReader bitReader)
     {
         if (!_header.readHeader(abFrameData, iDataSize, 1))
             return false;
@@ -97,6 +97,11 @@ public class BitStreamUncompressor_STRv1 extends BitStreamUncompressor_STRv2 {
         @Override
         protected int getHeaderVersion() { return 1; }
 
+        @Override
+        protected @Nonnull BitStreamCompressor_STRv1 makeCopy() {
+            return new BitStreamCompressor_STRv1();
+        }
+
         @Override
         protected int getFrameQscale(@Nonnull byte[] abFrameData) throws LocalizedIncompatibleException {
             try {
@@ -225,7 +225,7 @@ public class BitStreamUncompressor_STRv2 extends BitStreamUncompressor {
     }
 
     protected boolean readHeader(@Nonnull byte[] abFrameData, int iDataSize,
-                                 @Nonnull ArrayBitReader bitReader)
+                                 @Nonnull BufferedBitReader bitReader)
     {
         if (!_header.readHeader(abFrameData, iDataSize, 2))
             return false;
@@ -261,7 +261,7 @@ public class BitStreamUncompressor_STRv2 extends BitStreamUncompressor {
         readEscapeAcCode(_bitReader, code, _debug, LOG);
     }
 
-    static void readEscapeAcCode(@Nonnull ArrayBitReader bitReader, 
+    static void readEscapeAcCode(@Nonnull BufferedBitReader bitReader, 
                                  @Nonnull MdecCode code,
                                  @CheckForNull MdecDebugger debug,
                                  @Nonnull Logger log)
@@ -325,32 +325,9 @@ public class BitStreamUncompressor_STRv2 extends BitStreamUncompressor {
                                                  @Nonnull ILocalizedLogger log)
                 throws MdecException.EndOfStream, MdecException.ReadCorruption
         {
-            for (int iQscale = 1; iQscale < 64; iQscale++) {
-                log.log(Level.INFO, I.TRYING_QSCALE(iQscale));
-
-                int[] aiNewQscale = { iQscale, iQscale, iQscale,
-                                      iQscale, iQscale, iQscale };
-
-                for (MacroBlockEncoder macblk : encoder) {
-                    macblk.setToFullEncode(aiNewQscale);
-                }
-
-                byte[] abNewDemux;
-                try {
-                    abNewDemux = compress(encoder.getStream(), encoder.getPixelWidth(), encoder.getPixelHeight());
-                } catch (IncompatibleException ex) {
-                    throw new RuntimeException("The encoder should be compatible here", ex);
-                } catch (MdecException.TooMuchEnergy ex) {
-                    throw new RuntimeException("This should not happen with STRv2", ex);
-                }
-                if (abNewDemux.length <= abOriginal.length) {
-                    log.log(Level.INFO, I.NEW_FRAME_FITS(frameNum, abNewDemux.length, abOriginal.length));
-                    return abNewDemux;
-                } else {
-                    log.log(Level.INFO, I.NEW_FRAME_DOES_NOT_FIT(frameNum, abNewDemux.length, abOriginal.length));
-                }
-            }
-            return null;
+            QscaleSearch search = new QscaleSearch(this, encoder, null,
+                    QscaleSearch.singleQscaleCandidates(1), abOriginal.length, false);
+            return useSearchResult(search.search(frameNum, log), search, encoder, null);
         }
 
         public @CheckForNull byte[] compressPartial(@Nonnull byte[] abOriginal,
@@ -362,33 +339,37 @@ public class BitStreamUncompressor_STRv2 extends BitStreamUncompressor {
             final int iFrameQscale = getFrameQscale(abOriginal);
             int[] aiOriginalQscale = { iFrameQscale, iFrameQscale, iFrameQscale,
                                        iFrameQscale, iFrameQscale, iFrameQscale };
-            
-            for (int iNewQscale = iFrameQscale; iNewQscale < 64; iNewQscale++) {
-                log.log(Level.INFO, I.TRYING_QSCALE(iNewQscale));
-
-                int[] aiNewQscale = { iNewQscale, iNewQscale, iNewQscale,
-                                      iNewQscale, iNewQscale, iNewQscale };
 
-                for (MacroBlockEncoder macblk : encoder) {
-                    macblk.setToPartialEncode(aiOriginalQscale, aiNewQscale);
-                }
+            QscaleSearch search = new QscaleSearch(this, encoder, aiOriginalQscale,
+                    QscaleSearch.singleQscaleCandidates(iFrameQscale), abOriginal.length, false);
+            return useSearchResult(search.search(frameNum, log), search, encoder, aiOriginalQscale);
+        }
 
-                byte[] abNewDemux;
-                try {
-                    abNewDemux = compress(encoder.getStream(), encoder.getPixelWidth(), encoder.getPixelHeight());
-                } catch (IncompatibleException ex) {
-                    throw new RuntimeException("The encoder should be compatible here", ex);
-                } catch (MdecException.TooMuchEnergy ex) {
-                    throw new RuntimeException("This should not happen with STRv2", ex);
-                }
-                if (abNewDemux.length <= abOriginal.length) {
-                    log.log(Level.INFO, I.NEW_FRAME_FITS(frameNum, abNewDemux.length, abOriginal.length));
-                    return abNewDemux;
-                } else {
-                    log.log(Level.INFO, I.NEW_FRAME_DOES_NOT_FIT(frameNum, abNewDemux.length, abOriginal.length));
-                }
+        /** Leaves this compressor and the encoder as if the found candidate
+         * was the last one compressed.
+         * @return the compressed frame, or null if nothing fit. */
+        @CheckForNull byte[] useSearchResult(@CheckForNull QscaleSearch.Result result,
+                                             @Nonnull QscaleSearch search,
+                                             @Nonnull MdecEncoder encoder,
+                                             @CheckForNull int[] aiOriginalQscales)
+        {
+            if (result == null)
+                return null;
+            int[] aiNewQscales = search.getCandidate(result.iCandidate);
+            for (MacroBlockEncoder macblk : encoder) {
+                if (aiOriginalQscales == null)
+                    macblk.setToFullEncode(aiNewQscales);
+                else
+                    macblk.setToPartialEncode(aiOriginalQscales, aiNewQscales);
             }
-            return null;
+            _iMdecCodeCount = result.iMdecCodeCount;
+            return result.abDemux;
+        }
+
+        /** Creates a new compressor of the same kind. Used to compress on
+         * several threads at once. */
+        protected @Nonnull BitStreamCompressor_STRv2 makeCopy() {
+            return new BitStreamCompressor_STRv2();
         }
 
         public @Nonnull byte[] compress(@Nonnull MdecInputStream inStream,
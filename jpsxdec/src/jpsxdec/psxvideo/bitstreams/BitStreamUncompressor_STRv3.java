@@ -86,7 +86,7 @@ public class BitStreamUncompressor_STRv3 extends BitStreamUncompressor_STRv2 {
             }
         }
 
-        abstract public int readDc(@Nonnull ArrayBitReader bitReader, 
+        abstract public int readDc(@Nonnull BufferedBitReader bitReader, 
                                    @CheckForNull MdecDebugger debug)
                 throws MdecException.EndOfStream;
         /** Attempts to encode a DC value that has already been diff'ed from
@@ -107,7 +107,7 @@ public class BitStreamUncompressor_STRv3 extends BitStreamUncompressor_STRv2 {
         }
 
         @Override
-        public int readDc(@Nonnull ArrayBitReader bitReader, @CheckForNull MdecDebugger debug) {
+        public int readDc(@Nonnull BufferedBitReader bitReader, @CheckForNull MdecDebugger debug) {
             return _iDifferential;
         }
 
@@ -143,7 +143,7 @@ public class BitStreamUncompressor_STRv3 extends BitStreamUncompressor_STRv2 {
         }
 
         @Override
-        public int readDc(@Nonnull ArrayBitReader bitReader, @CheckForNull MdecDebugger debug)
+        public int readDc(@Nonnull BufferedBitReader bitReader, @CheckForNull MdecDebugger debug)
                 throws MdecException.EndOfStream
         {
             int iDC_Differential = bitReader.readUnsignedBits(_iDifferentialBitLen);
@@ -261,7 +261,7 @@ public class BitStreamUncompressor_STRv3 extends BitStreamUncompressor_STRv2 {
 
     @Override
     protected boolean readHeader(@Nonnull byte[] abFrameData, int iDataSize,
-                                 @Nonnull ArrayBitReader bitReader)
+                                 @Nonnull BufferedBitReader bitReader)
     {
         if (!_header.readHeader(abFrameData, iDataSize, 3))
             return false;
@@ -388,6 +388,11 @@ public class BitStreamUncompressor_STRv3 extends BitStreamUncompressor_STRv2 {
         @Override
         protected int getHeaderVersion() { return 3; }
 
+        @Override
+        protected @Nonnull BitStreamCompressor_STRv3 makeCopy() {
+            return new BitStreamCompressor_STRv3();
+        }
+
         @Override
         protected int getFrameQscale(@Nonnull byte[] abFrameData) throws LocalizedIncompatibleException {
             try {
@@ -0,0 +1,257 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nonnull;
+import jpsxdec.psxvideo.mdec.MdecException;
+import jpsxdec.util.Misc;
+
+/** A faster bit reader for the bitstream uncompressors.
+ * <p>
+ * Reads the same bits as {@link ArrayBitReader}, but instead of pulling in
+ * one 16-bit word at a time, it keeps up to 64 bits of upcoming data in a
+ * {@code long}, already put in the right endian order and aligned to the
+ * most-significant bit. Reading, peeking, and skipping are then usually just
+ * a shift of the cache, and words are only pulled from the array when the
+ * cache runs low (two at a time when there are enough left).
+ * <p>
+ * Bits beyond the end of the data always read as 0, so peeking past the end
+ * of the stream returns the remaining bits padded with zeros. */
+public class BufferedBitReader {
+
+    private static final Logger LOG = Logger.getLogger(BufferedBitReader.class.getName());
+
+    /** Data to be read as a binary stream. */
+    @Nonnull
+    private byte[] _abData;
+    /** Size of the data (ignores data array size). Always even. */
+    private int _iDataSize;
+    /** Offset of the most significant byte in each 16-bit word (0 or 1). */
+    private int _iHighByte;
+    /** Offset of the least significant byte in each 16-bit word (1 or 0). */
+    private int _iLowByte;
+    /** Offset of the next word to pull into the cache. */
+    private int _iNextWordOffset;
+    /** Upcoming bits, starting at the most significant bit.
+     * Bits after the first {@link #_iCacheBits} are always 0. */
+    private long _lngCache;
+    /** Number of valid bits in {@link #_lngCache}. */
+    private int _iCacheBits;
+
+    /** Performs no initialization. {@link #reset(byte[], int, boolean, int)}
+     * needs to be called before using this class. */
+    public BufferedBitReader() {
+    }
+
+    /** Start reading from a requested point in the array with the requested
+     *  endian-ness.
+     *  @param iReadStart  Position in array to start reading. Must be an even number. */
+    public BufferedBitReader(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian, int iReadStart)
+    {
+        reset(abData, iDataSize, blnLittleEndian, iReadStart);
+    }
+
+    /** Re-constructs this reader so there is no need to create a new one.
+     *  @param iReadStart  Position in array to start reading. Must be an even number. */
+    public final void reset(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian, int iReadStart) {
+        if (iReadStart < 0 || iReadStart > abData.length)
+            throw new IllegalArgumentException("Read start out of array bounds.");
+        if ((iReadStart & 1) != 0)
+            throw new IllegalArgumentException("Data start must be on word boundary.");
+        if (iDataSize < 0 || iDataSize > abData.length)
+            throw new IllegalArgumentException("Invalid data size " + iDataSize);
+        _iDataSize = iDataSize & ~1; // trim off an extra byte if the size is not an even value
+        if (_iDataSize != iDataSize)
+            LOG.log(Level.WARNING, "Bitstream length is an odd number {0}, rounding to even number", iDataSize);
+        _abData = abData;
+        if (blnLittleEndian) {
+            _iHighByte = 1;
+            _iLowByte = 0;
+        } else {
+            _iHighByte = 0;
+            _iLowByte = 1;
+        }
+        _iNextWordOffset = iReadStart;
+        _lngCache = 0;
+        _iCacheBits = 0;
+    }
+
+    /** Pulls as many words into the cache as will fit, or as are left. */
+    private void refill() {
+        final byte[] abData = _abData;
+        if (_iCacheBits <= 32 && _iNextWordOffset + 4 <= _iDataSize) {
+            // common case: pull in 2 words at once without checking each
+            int i = _iNextWordOffset;
+            long lngWords = ((abData[i   + _iHighByte] & 0xFFL) << 24) |
+                            ((abData[i   + _iLowByte ] & 0xFF ) << 16) |
+                            ((abData[i+2 + _iHighByte] & 0xFF ) <<  8) |
+                             (abData[i+2 + _iLowByte ] & 0xFF );
+            _lngCache |= lngWords << (32 - _iCacheBits);
+            _iCacheBits += 32;
+            _iNextWordOffset = i + 4;
+        }
+        while (_iCacheBits <= 48 && _iNextWordOffset + 2 <= _iDataSize) {
+            int i = _iNextWordOffset;
+            long lngWord = ((abData[i + _iHighByte] & 0xFF) << 8) |
+                            (abData[i + _iLowByte ] & 0xFF);
+            _lngCache |= lngWord << (48 - _iCacheBits);
+            _iCacheBits += 16;
+            _iNextWordOffset = i + 2;
+        }
+    }
+
+    /** Returns the offset to the word holding the next bit to be read. */
+    public int getWordPosition() {
+        return (getBitsRead() >> 4) << 1;
+    }
+
+    public int getBitsRead() {
+        return _iNextWordOffset * 8 - _iCacheBits;
+    }
+
+    /** Returns the number of bits remaining in the source data. */
+    public int getBitsRemaining() {
+        return (_iDataSize - _iNextWordOffset) * 8 + _iCacheBits;
+    }
+
+    /** Reads the requested number of bits.
+     * If there are fewer bits left, the remaining bits are read and
+     * padded with zeros.
+     * @param iCount  expected to be from 0 to 31
+     * @throws MdecException.EndOfStream if no bits are left to read. */
+    public int readUnsignedBits(int iCount) throws MdecException.EndOfStream {
+        if (iCount == 0)
+            return 0;
+        if (_iCacheBits < iCount) {
+            refill();
+            if (_iCacheBits < iCount) {
+                if (_iCacheBits == 0)
+                    throw new MdecException.EndOfStream(MdecException.END_OF_BITSTREAM(_iNextWordOffset));
+                LOG.log(Level.INFO, "Bitstream is about to end");
+                int iRet = (int)(_lngCache >>> (64 - iCount));
+                _lngCache = 0;
+                _iCacheBits = 0;
+                return iRet;
+            }
+        }
+        int iRet = (int)(_lngCache >>> (64 - iCount));
+        _lngCache <<= iCount;
+        _iCacheBits -= iCount;
+        return iRet;
+    }
+
+    /** Reads the requested number of bits then sets the sign
+     *  according to the highest bit.
+     * @param iCount  expected to be from 0 to 31  */
+    public int readSignedBits(int iCount) throws MdecException.EndOfStream {
+        return (readUnsignedBits(iCount) << (32 - iCount)) >> (32 - iCount); // extend sign bit
+    }
+
+    /** Returns the next bits without reading them.
+     * If there are fewer bits left, the remaining bits are returned
+     * padded with zeros.
+     * @param iCount  expected to be from 0 to 31
+     * @throws MdecException.EndOfStream if no bits are left to read. */
+    public int peekUnsignedBits(int iCount) throws MdecException.EndOfStream {
+        if (iCount == 0)
+            return 0;
+        if (_iCacheBits < iCount) {
+            refill();
+            if (_iCacheBits == 0)
+                throw new MdecException.EndOfStream(MdecException.END_OF_BITSTREAM(_iNextWordOffset));
+        }
+        return (int)(_lngCache >>> (64 - iCount));
+    }
+
+    /** @param iCount  expected to be from 0 to 31  */
+    public int peekSignedBits(int iCount) throws MdecException.EndOfStream {
+        return (peekUnsignedBits(iCount) << (32 - iCount)) >> (32 - iCount); // extend sign bit
+    }
+
+    /** @throws MdecException.EndOfStream if there are fewer bits left
+     *          than requested. All the remaining bits are skipped. */
+    public void skipBits(int iCount) throws MdecException.EndOfStream {
+        if (iCount < _iCacheBits) {
+            _lngCache <<= iCount;
+            _iCacheBits -= iCount;
+            return;
+        }
+
+        // skipping the whole cache and maybe more
+        iCount -= _iCacheBits;
+        _lngCache = 0;
+        _iCacheBits = 0;
+        if (iCount == 0)
+            return;
+
+        _iNextWordOffset += (iCount >> 4) << 1;
+        int iBitsIntoWord = iCount & 0xf;
+        if (_iNextWordOffset > _iDataSize || (_iNextWordOffset == _iDataSize && iBitsIntoWord > 0)) {
+            _iNextWordOffset = _iDataSize;
+            throw new MdecException.EndOfStream(MdecException.END_OF_BITSTREAM(_iNextWordOffset));
+        }
+        if (iBitsIntoWord > 0) {
+            refill();
+            _lngCache <<= iBitsIntoWord;
+            _iCacheBits -= iBitsIntoWord;
+        }
+    }
+
+    /** Returns a String of 1 and 0 unless at the end of the stream, then
+     * returns only the remaining bits. */
+    public @Nonnull String peekBitsToString(int iCount) throws MdecException.EndOfStream {
+        int iBitsRemaining = getBitsRemaining();
+        if (iBitsRemaining < iCount)
+            return Misc.bitsToString(peekUnsignedBits(iBitsRemaining), iBitsRemaining);
+        else
+            return Misc.bitsToString(peekUnsignedBits(iCount), iCount);
+    }
+
+    /** Returns a String of 1 and 0 unless at the end of the stream, then
+     * returns only the remaining bits. */
+    public @Nonnull String readBitsToString(int iCount) throws MdecException.EndOfStream {
+        int iBitsRemaining = getBitsRemaining();
+        if (iBitsRemaining < iCount)
+            return Misc.bitsToString(readUnsignedBits(iBitsRemaining), iBitsRemaining);
+        else
+            return Misc.bitsToString(readUnsignedBits(iCount), iCount);
+    }
+
+}
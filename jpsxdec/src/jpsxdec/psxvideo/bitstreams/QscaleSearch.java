@@ -0,0 +1,447 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.i18n.I;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor.AcBitCode;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2;
+import jpsxdec.psxvideo.encode.MdecEncoder;
+import jpsxdec.psxvideo.mdec.MdecException;
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import jpsxdec.psxvideo.mdec.MdecInputStream.MdecCode;
+import jpsxdec.util.DaemonThreadFactory;
+import jpsxdec.util.ILocalizedLogger;
+import jpsxdec.util.IncompatibleException;
+
+/** Finds the first of a list of quantization scale candidates that
+ * compresses a new frame small enough to fit in the original frame's space.
+ * <p>
+ * Candidates are ordered from best quality to worst, so the compressed size
+ * is expected to shrink with each candidate. Instead of compressing every
+ * candidate in order, the size of a candidate is first estimated from the
+ * lengths of the variable-length codes of its MDEC codes. The estimate picks
+ * which candidates to actually compress, and is scaled by how far off it was
+ * from the real sizes found so far. Each round compresses several candidates
+ * at once on a pool of daemon threads shared by every search (each candidate
+ * with its own compressor), and narrows the range of candidates left like a
+ * bisection.
+ * <p>
+ * If the sizes do shrink with each candidate, the result is the same as
+ * trying every candidate in order. */
+class QscaleSearch {
+
+    private static ExecutorService _pool;
+
+    private static synchronized ExecutorService getPool() {
+        if (_pool == null) {
+            _pool = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new DaemonThreadFactory("QscaleSearch"));
+        }
+        return _pool;
+    }
+
+    /** The result of compressing one candidate. */
+    static class Result {
+        public final int iCandidate;
+        /** Null if it didn't compress. */
+        @CheckForNull
+        public final byte[] abDemux;
+        public final int iMdecCodeCount;
+        /** If it didn't compress because the encoder wasn't compatible. */
+        @CheckForNull
+        private final IncompatibleException _incompatible;
+        /** If it didn't compress because there was too much energy. */
+        @CheckForNull
+        private final MdecException.TooMuchEnergy _tooMuchEnergy;
+
+        private Result(int iCandidate, @CheckForNull byte[] abDemux, int iMdecCodeCount,
+                       @CheckForNull IncompatibleException incompatible,
+                       @CheckForNull MdecException.TooMuchEnergy tooMuchEnergy)
+        {
+            this.iCandidate = iCandidate;
+            this.abDemux = abDemux;
+            this.iMdecCodeCount = iMdecCodeCount;
+            _incompatible = incompatible;
+            _tooMuchEnergy = tooMuchEnergy;
+        }
+    }
+
+    /** Bits assumed for codes without a variable-length code. */
+    private static final int ESCAPE_BITS = 6 + 6 + 10;
+    /** Bits assumed for DC coefficients. */
+    private static final int DC_BITS = 10;
+    /** Bytes assumed for the frame header. */
+    private static final int HEADER_BYTES = 8;
+
+    @Nonnull
+    private final BitStreamCompressor_STRv2 _compressor;
+    @Nonnull
+    private final MdecEncoder _encoder;
+    /** Qscales of the original frame for partial replace, or null for
+     * full replace. */
+    @CheckForNull
+    private final int[] _aiOriginalQscales;
+    /** Qscale of each block (Cr, Cb, Y1, Y2, Y3, Y4) for each candidate. */
+    @Nonnull
+    private final int[][] _aaiCandidates;
+    private final int _iMaxSize;
+    /** If a candidate with too much energy is skipped, otherwise it's a bug
+     * in the compressor. */
+    private final boolean _blnSkipTooMuchEnergy;
+    private final int _iThreads;
+
+    /** Bit length of AC codes, indexed by [zero run][absolute AC coefficient].
+     * 0 if there is no code for it. */
+    private final int[][] _aaiAcCodeBits = new int[64][64];
+    /** Estimated size of each candidate, or 0 if not calculated yet. */
+    @Nonnull
+    private final int[] _aiEstimatedSize;
+    /** Real size over estimated size of the candidates compressed so far. */
+    private double _dblEstimateScaleSum = 0;
+    private int _iEstimateScaleCount = 0;
+
+    public QscaleSearch(@Nonnull BitStreamCompressor_STRv2 compressor,
+                        @Nonnull MdecEncoder encoder,
+                        @CheckForNull int[] aiOriginalQscales,
+                        @Nonnull int[][] aaiCandidates,
+                        int iMaxSize,
+                        boolean blnSkipTooMuchEnergy)
+    {
+        _compressor = compressor;
+        _encoder = encoder;
+        _aiOriginalQscales = aiOriginalQscales;
+        _aaiCandidates = aaiCandidates;
+        _iMaxSize = iMaxSize;
+        _blnSkipTooMuchEnergy = blnSkipTooMuchEnergy;
+        _iThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        _aiEstimatedSize = new int[aaiCandidates.length];
+
+        for (AcBitCode vlc : compressor.getAcVaribleLengthCodeList().getCodeList()) {
+            if (vlc.ZeroRun >= 0 && vlc.ZeroRun < 64 && vlc.AcCoefficient >= 0 && vlc.AcCoefficient < 64)
+                _aaiAcCodeBits[vlc.ZeroRun][vlc.AcCoefficient] = vlc.BitLength;
+        }
+    }
+
+    /** Qscales for a frame where every block uses the same qscale,
+     * starting with {@code iStartQscale} up to 63. */
+    public static @Nonnull int[][] singleQscaleCandidates(int iStartQscale) {
+        int[][] aai = new int[Math.max(0, 64 - iStartQscale)][];
+        for (int i = 0; i < aai.length; i++) {
+            aai[i] = new int[6];
+            Arrays.fill(aai[i], iStartQscale + i);
+        }
+        return aai;
+    }
+
+    public @Nonnull int[] getCandidate(int iCandidate) {
+        return _aaiCandidates[iCandidate].clone();
+    }
+
+    /** @return the first candidate that fits, or null if none do.
+     * @throws RuntimeException if the encoder wasn't compatible, or there was
+     *         too much energy when that isn't skipped, for a candidate
+     *         before the one found. */
+    public @CheckForNull Result search(@Nonnull String sFrameNum, @Nonnull ILocalizedLogger log)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        // every candidate before this doesn't fit
+        int iLow = 0;
+        // the first candidate known to fit
+        Result best = null;
+        // the first candidate the encoder couldn't compress
+        Result incompatible = null;
+        // the first candidate with too much energy, if that isn't skipped
+        Result tooMuchEnergy = null;
+
+        for (int iRound = 0; ; iRound++) {
+            final int iHigh = (best == null ? _aaiCandidates.length : best.iCandidate) - 1;
+            if (iLow > iHigh)
+                break;
+
+            int iGuess = estimateFirstFit(iLow, iHigh);
+            if (iRound > 0) {
+                // the estimate was wrong before, so make sure the range
+                // shrinks by at least a quarter this round
+                int iQuarter = (iHigh - iLow) / 4;
+                iGuess = Math.min(Math.max(iGuess, iLow + iQuarter), iHigh - iQuarter);
+            }
+
+            Result[] aoResults = compressAround(iGuess, iLow, iHigh);
+
+            for (Result result : aoResults) {
+                logTrying(result.iCandidate, log);
+                if (result._incompatible != null) {
+                    if (incompatible == null || result.iCandidate < incompatible.iCandidate)
+                        incompatible = result;
+                    iLow = Math.max(iLow, result.iCandidate + 1);
+                } else if (result._tooMuchEnergy != null) {
+                    if (_blnSkipTooMuchEnergy)
+                        log.log(Level.INFO, I.COMPRESS_TOO_MUCH_ENERGY(sFrameNum), result._tooMuchEnergy);
+                    else if (tooMuchEnergy == null || result.iCandidate < tooMuchEnergy.iCandidate)
+                        tooMuchEnergy = result;
+                    iLow = Math.max(iLow, result.iCandidate + 1);
+                } else if (result.abDemux.length <= _iMaxSize) {
+                    log.log(Level.INFO, I.NEW_FRAME_FITS(sFrameNum, result.abDemux.length, _iMaxSize));
+                    if (best == null || result.iCandidate < best.iCandidate)
+                        best = result;
+                } else {
+                    log.log(Level.INFO, I.NEW_FRAME_DOES_NOT_FIT(sFrameNum, result.abDemux.length, _iMaxSize));
+                    iLow = Math.max(iLow, result.iCandidate + 1);
+                }
+                if (result.abDemux != null) {
+                    _dblEstimateScaleSum += result.abDemux.length / (double)_aiEstimatedSize[result.iCandidate];
+                    _iEstimateScaleCount++;
+                }
+            }
+        }
+
+        // trying every candidate in order would have failed before
+        // getting to the one found
+        if (incompatible != null && (best == null || incompatible.iCandidate < best.iCandidate))
+            throw new RuntimeException("The encoder should be compatible here", incompatible._incompatible);
+        if (tooMuchEnergy != null && (best == null || tooMuchEnergy.iCandidate < best.iCandidate))
+            throw new RuntimeException("This should not happen with " +
+                    _compressor.getClass().getSimpleName(), tooMuchEnergy._tooMuchEnergy);
+
+        return best;
+    }
+
+    private void logTrying(int iCandidate, @Nonnull ILocalizedLogger log) {
+        int[] aiQscales = _aaiCandidates[iCandidate];
+        boolean blnAllSame = true;
+        for (int iQscale : aiQscales) {
+            if (iQscale != aiQscales[0])
+                blnAllSame = false;
+        }
+        if (blnAllSame)
+            log.log(Level.INFO, I.TRYING_QSCALE(aiQscales[0]));
+        else
+            log.log(Level.INFO, I.TRYING_LUMA_CHROMA(aiQscales[2], aiQscales[0]));
+    }
+
+    /** Bisection over the (scaled) estimated sizes.
+     * @return the first candidate estimated to fit, or {@code iHigh}. */
+    private int estimateFirstFit(int iLow, int iHigh)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        double dblScale = _iEstimateScaleCount == 0 ? 1.0 : _dblEstimateScaleSum / _iEstimateScaleCount;
+        while (iLow < iHigh) {
+            int iMid = (iLow + iHigh) >>> 1;
+            if (getEstimatedSize(iMid) * dblScale <= _iMaxSize)
+                iHigh = iMid;
+            else
+                iLow = iMid + 1;
+        }
+        return iHigh;
+    }
+
+    private int getEstimatedSize(int iCandidate)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        if (_aiEstimatedSize[iCandidate] == 0)
+            _aiEstimatedSize[iCandidate] = estimateSize(makeStream(iCandidate));
+        return _aiEstimatedSize[iCandidate];
+    }
+
+    private @Nonnull MdecInputStream makeStream(int iCandidate) {
+        int[] aiQscales = _aaiCandidates[iCandidate];
+        if (_aiOriginalQscales == null)
+            return _encoder.getStream(aiQscales, aiQscales);
+        else
+            return _encoder.getStream(_aiOriginalQscales, aiQscales);
+    }
+
+    /** Adds up the code lengths without building the bitstream. */
+    private int estimateSize(@Nonnull MdecInputStream mdecIn)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        final int iMacroBlockCount = _encoder.getMacroBlockCount();
+        final int iEndOfBlockBits = BitStreamUncompressor.AcLookup.END_OF_BLOCK.BitLength;
+        MdecCode code = new MdecCode();
+        long lngBits = 0;
+        boolean blnNewBlk = true;
+        int iBlock = 0;
+        for (int iMacroBlock = 0; iMacroBlock < iMacroBlockCount;) {
+            if (mdecIn.readMdecCode(code)) {
+                lngBits += iEndOfBlockBits;
+                blnNewBlk = true;
+                iBlock = (iBlock + 1) % 6;
+                if (iBlock == 0)
+                    iMacroBlock++;
+            } else if (blnNewBlk) {
+                lngBits += DC_BITS;
+                blnNewBlk = false;
+            } else {
+                int iZeroRun = code.getTop6Bits();
+                int iAc = Math.abs(code.getBottom10Bits());
+                int iBits = iAc < 64 ? _aaiAcCodeBits[iZeroRun][iAc] : 0;
+                lngBits += iBits > 0 ? iBits : ESCAPE_BITS;
+            }
+        }
+        return HEADER_BYTES + (int)((lngBits + 7) / 8);
+    }
+
+    /** Compresses {@code iGuess} and the candidates around it, up to the
+     * number of threads.
+     * @return the results sorted by candidate. */
+    private @Nonnull Result[] compressAround(int iGuess, int iLow, int iHigh)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        int iCount = Math.min(_iThreads, iHigh - iLow + 1);
+        int[] aiCandidates = new int[iCount];
+        int iFound = 0;
+        for (int iDist = 0; iFound < iCount; iDist++) {
+            if (iGuess - iDist >= iLow)
+                aiCandidates[iFound++] = iGuess - iDist;
+            if (iDist > 0 && iFound < iCount && iGuess + iDist <= iHigh)
+                aiCandidates[iFound++] = iGuess + iDist;
+        }
+        Arrays.sort(aiCandidates);
+
+        CompressTask[] aoTasks = new CompressTask[iCount];
+        for (int i = 0; i < iCount; i++)
+            aoTasks[i] = new CompressTask(aiCandidates[i]);
+
+        // do the first on this thread
+        List<Future<?>> futures = new ArrayList<Future<?>>(iCount - 1);
+        if (iCount > 1) {
+            ExecutorService pool = getPool();
+            for (int i = 1; i < iCount; i++)
+                futures.add(pool.submit(aoTasks[i]));
+        }
+
+        Throwable error = null;
+        try {
+            aoTasks[0].run();
+        } catch (RuntimeException ex) {
+            error = ex;
+        } catch (Error ex) {
+            error = ex;
+        }
+
+        // always wait for every candidate so none is still using the encoder
+        boolean blnInterrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    blnInterrupted = true;
+                } catch (ExecutionException ex) {
+                    if (error == null)
+                        error = ex.getCause();
+                    break;
+                }
+            }
+        }
+        if (blnInterrupted)
+            Thread.currentThread().interrupt();
+
+        if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        if (error instanceof Error)
+            throw (Error)error;
+        if (error != null)
+            throw new RuntimeException(error);
+
+        Result[] aoResults = new Result[iCount];
+        for (int i = 0; i < iCount; i++)
+            aoResults[i] = aoTasks[i].getResult();
+        return aoResults;
+    }
+
+    /** Estimates and compresses a candidate with its own compressor. */
+    private class CompressTask implements Runnable {
+        private final int _iCandidate;
+        @CheckForNull
+        private Result _result;
+        @CheckForNull
+        private MdecException.EndOfStream _endOfStream;
+        @CheckForNull
+        private MdecException.ReadCorruption _readCorruption;
+
+        public CompressTask(int iCandidate) {
+            _iCandidate = iCandidate;
+        }
+
+        public void run() {
+            try {
+                // each candidate is only compressed once, so only this
+                // thread touches its estimate
+                if (_aiEstimatedSize[_iCandidate] == 0)
+                    _aiEstimatedSize[_iCandidate] = estimateSize(makeStream(_iCandidate));
+                BitStreamCompressor_STRv2 compressor = _compressor.makeCopy();
+                try {
+                    byte[] abDemux = compressor.compress(makeStream(_iCandidate),
+                            _encoder.getPixelWidth(), _encoder.getPixelHeight());
+                    _result = new Result(_iCandidate, abDemux, compressor.getMdecCodesFromLastCompress(), null, null);
+                } catch (MdecException.TooMuchEnergy ex) {
+                    _result = new Result(_iCandidate, null, -1, null, ex);
+                } catch (IncompatibleException ex) {
+                    _result = new Result(_iCandidate, null, -1, ex, null);
+                }
+            } catch (MdecException.EndOfStream ex) {
+                _endOfStream = ex;
+            } catch (MdecException.ReadCorruption ex) {
+                _readCorruption = ex;
+            }
+        }
+
+        public @Nonnull Result getResult()
+                throws MdecException.EndOfStream, MdecException.ReadCorruption
+        {
+            if (_endOfStream != null)
+                throw _endOfStream;
+            if (_readCorruption != null)
+                throw _readCorruption;
+            return _result;
+        }
+    }
+}
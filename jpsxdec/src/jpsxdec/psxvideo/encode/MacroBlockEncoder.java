@@ -180,13 +180,23 @@ public class MacroBlockEncoder implements Iterable<MdecInputStream.MdecCode> {
     public Iterator<MdecCode> iterator() {
         if (_aiQscales == null || _aiSquashQscales == null)
             throw new IllegalStateException();
+        return iterator(_aiQscales, _aiSquashQscales);
+    }
+
+    /** Encodes with the given qscales instead of those set by
+     * {@link #setToFullEncode(int[])} or {@link #setToPartialEncode(int[], int[])}.
+     * Doesn't change the state of the encoder, so can be called from
+     * several threads at once. */
+    public Iterator<MdecCode> iterator(int[] aiQscales, int[] aiSquashQscales) {
+        if (aiQscales.length != 6 || aiSquashQscales.length != 6)
+            throw new IllegalArgumentException();
         ArrayList<MdecInputStream.MdecCode> codes = new ArrayList<MdecInputStream.MdecCode>();
-        encodeBlock(_adblCrBlockVector, codes, _aiQscales[0], _aiSquashQscales[0]);
-        encodeBlock(_adblCbBlockVector, codes, _aiQscales[1], _aiSquashQscales[1]);
-        encodeBlock(_aadblYBlockVectors[0], codes, _aiQscales[2], _aiSquashQscales[2]);
-        encodeBlock(_aadblYBlockVectors[1], codes, _aiQscales[3], _aiSquashQscales[3]);
-        encodeBlock(_aadblYBlockVectors[2], codes, _aiQscales[4], _aiSquashQscales[4]);
-        encodeBlock(_aadblYBlockVectors[3], codes, _aiQscales[5], _aiSquashQscales[5]);
+        encodeBlock(_adblCrBlockVector, codes, aiQscales[0], aiSquashQscales[0]);
+        encodeBlock(_adblCbBlockVector, codes, aiQscales[1], aiSquashQscales[1]);
+        encodeBlock(_aadblYBlockVectors[0], codes, aiQscales[2], aiSquashQscales[2]);
+        encodeBlock(_aadblYBlockVectors[1], codes, aiQscales[3], aiSquashQscales[3]);
+        encodeBlock(_aadblYBlockVectors[2], codes, aiQscales[4], aiSquashQscales[4]);
+        encodeBlock(_aadblYBlockVectors[3], codes, aiQscales[5], aiSquashQscales[5]);
         return codes.iterator();
     }
 
@@ -41,6 +41,7 @@ import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.psxvideo.mdec.Calc;
 import jpsxdec.psxvideo.mdec.MdecException;
@@ -121,7 +122,17 @@ public class MdecEncoder implements Iterable<MacroBlockEncoder> {
     }
 
     public @Nonnull MdecInputStream getStream() {
-        return new EncodedMdecInputStream();
+        return new EncodedMdecInputStream(null, null);
+    }
+
+    /** Stream where the macro blocks being replaced are encoded with the
+     * given qscales instead of their own. The encoder isn't changed, so
+     * several of these streams can be read at once from different threads.
+     * @see MacroBlockEncoder#iterator(int[], int[]) */
+    public @Nonnull MdecInputStream getStream(@Nonnull int[] aiQscales,
+                                              @Nonnull int[] aiSquashQscales)
+    {
+        return new EncodedMdecInputStream(aiQscales, aiSquashQscales);
     }
 
     public int getMacroBlockCount() {
@@ -146,11 +157,24 @@ public class MdecEncoder implements Iterable<MacroBlockEncoder> {
 
     private class EncodedMdecInputStream extends MdecInputStream {
 
+        @CheckForNull
+        private final int[] __aiQscales, __aiSquashQscales;
         private int __iCurMacBlk = 0;
         private Iterator<MdecCode> __curMb;
 
-        public EncodedMdecInputStream() {
-            __curMb = _aoMacroBlocks[__iCurMacBlk].iterator();
+        public EncodedMdecInputStream(@CheckForNull int[] aiQscales,
+                                      @CheckForNull int[] aiSquashQscales)
+        {
+            __aiQscales = aiQscales;
+            __aiSquashQscales = aiSquashQscales;
+            __curMb = macroBlockIterator(__iCurMacBlk);
+        }
+
+        private @Nonnull Iterator<MdecCode> macroBlockIterator(int iMacBlk) {
+            Iterable<MdecCode> mb = _aoMacroBlocks[iMacBlk];
+            if (__aiQscales != null && __aiSquashQscales != null && mb instanceof MacroBlockEncoder)
+                return ((MacroBlockEncoder)mb).iterator(__aiQscales, __aiSquashQscales);
+            return mb.iterator();
         }
 
         public boolean readMdecCode(@Nonnull MdecCode code) throws MdecException.EndOfStream {
@@ -159,7 +183,7 @@ public class MdecEncoder implements Iterable<MacroBlockEncoder> {
                 if (__iCurMacBlk >= _aoMacroBlocks.length)
                     throw new MdecException.EndOfStream("Read beyond EncodedMdecInputStream");
                 __iCurMacBlk++;
-                __curMb = _aoMacroBlocks[__iCurMacBlk].iterator();
+                __curMb = macroBlockIterator(__iCurMacBlk);
             }
             code.set(__curMb.next());
             return code.isEOD(); // hopefully no bad EOD codes are part of the list
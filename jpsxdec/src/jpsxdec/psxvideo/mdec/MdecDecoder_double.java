@@ -79,6 +79,7 @@ public class MdecDecoder_double extends MdecDecoder {
         int iCurrentBlockQscale;
         int iCurrentBlockVectorPosition;
         int iCurrentBlockNonZeroCount;
+        // zig-zag position of the last non-zero coefficient
         int iCurrentBlockLastNonZeroPosition;
 
         int iMacBlk = 0, iBlock = 0;
@@ -144,7 +145,7 @@ public class MdecDecoder_double extends MdecDecoder {
                                           * _aiQuantizationTable[iRevZigZagMatrixPos]
                                           * iCurrentBlockQscale) / 8.0;
                                 iCurrentBlockNonZeroCount++;
-                                iCurrentBlockLastNonZeroPosition = iRevZigZagMatrixPos;
+                                iCurrentBlockLastNonZeroPosition = iCurrentBlockVectorPosition;
 
                             }
                             ////////////////////////////////////////////////////////
@@ -188,7 +189,7 @@ public class MdecDecoder_double extends MdecDecoder {
     }
 
     private void writeEndOfBlock(int iMacroBlock, int iBlock,
-                                 int iNonZeroCount, int iNonZeroPos)
+                                 int iNonZeroCount, int iLastNonZeroZigZagPos)
     {
         assert !DEBUG || debugPrintPrequantBlock();
         assert !DEBUG || debugPrintBlock("Pre-IDCT block");
@@ -215,18 +216,8 @@ public class MdecDecoder_double extends MdecDecoder {
             for (int i=0; i < 8; i++, iOutOffset += iOutWidth)
                 Arrays.fill(outputBuffer, iOutOffset, iOutOffset + 8, 0);
         } else {
-            if (iNonZeroCount == 1) {
-                _idct.IDCT_1NonZero(_CurrentBlock, iNonZeroPos, 0, _CurrentBlock);
-            } else {
-                _idct.IDCT(_CurrentBlock, 0, _CurrentBlock);
-            }
-            // TODO: have IDCT write to the destination location directly
-            for (int i=0, iSrcOfs=0; i < 8; i++, iSrcOfs+=8, iOutOffset += iOutWidth)
-                System.arraycopy(_CurrentBlock, iSrcOfs, outputBuffer, iOutOffset, 8);
+            _idct.IDCT(_CurrentBlock, iLastNonZeroZigZagPos, outputBuffer, iOutOffset, iOutWidth);
         }
-
-        assert !DEBUG || debugPrintBlock("Post-IDCT block");
-
     }
 
     final static boolean YUV_TESTS = false;
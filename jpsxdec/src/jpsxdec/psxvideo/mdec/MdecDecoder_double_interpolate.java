@@ -152,6 +152,7 @@ public class MdecDecoder_double_interpolate extends MdecDecoder_double {
         _adblUpCr = new double[W * H];
 
         _resampler = new ResampleOp();
+        // frames are already decoded in parallel when using more threads
         _resampler.setNumberOfThreads(1);
     }
 
@@ -174,8 +175,7 @@ public class MdecDecoder_double_interpolate extends MdecDecoder_double {
                 break;
             default:
                 _resampler.setFilter(_upsampler._filter);
-                _resampler.doFilter(_CrBuffer, CW, CH, _adblUpCr);
-                _resampler.doFilter(_CbBuffer, CW, CH, _adblUpCb);
+                _resampler.doFilter(_CrBuffer, _adblUpCr, _CbBuffer, _adblUpCb, CW, CH);
         }
 
         RGB rgb = new RGB();
@@ -77,6 +77,7 @@ public class MdecDecoder_int extends MdecDecoder {
         int iCurrentBlockQscale;
         int iCurrentBlockVectorPosition;
         int iCurrentBlockNonZeroCount;
+        // zig-zag position of the last non-zero coefficient
         int iCurrentBlockLastNonZeroPosition;
 
         int iMacBlk = 0, iBlock = 0;
@@ -144,7 +145,7 @@ public class MdecDecoder_int extends MdecDecoder {
                                 //  i      >> 3  ==  (int)Math.floor(i / 8.0)
                                 // (i + 4) >> 3  ==  (int)Math.round(i / 8.0)
                                 iCurrentBlockNonZeroCount++;
-                                iCurrentBlockLastNonZeroPosition = iRevZigZagMatrixPos;
+                                iCurrentBlockLastNonZeroPosition = iCurrentBlockVectorPosition;
 
                             }
                             ////////////////////////////////////////////////////////
@@ -187,12 +188,26 @@ public class MdecDecoder_int extends MdecDecoder {
         return true;
     }
 
-    private void writeEndOfBlock(int iMacroBlock, int iBlock,
-                                 int iNonZeroCount, int iNonZeroPos)
+    /** Called after every block is read from the stream (and for every
+     *  block that could not be read due to an error) with the dequantized
+     *  coefficients in {@link #_CurrentBlock}. */
+    protected void writeEndOfBlock(int iMacroBlock, int iBlock,
+                                   int iNonZeroCount, int iLastNonZeroZigZagPos)
     {
         assert !DEBUG || debugPrintPrequantBlock();
         assert !DEBUG || debugPrintBlock("Pre-IDCT block");
 
+        writeBlock(_idct, _CurrentBlock, iMacroBlock, iBlock,
+                   iNonZeroCount, iLastNonZeroZigZagPos);
+    }
+
+    /** Performs the IDCT on the coefficients in the 64 value block,
+     *  writing the result to the macro block's position in the
+     *  appropriate plane buffer. The block contents are destroyed. */
+    protected final void writeBlock(IDCT_int idct, int[] aiBlock,
+                                    int iMacroBlock, int iBlock,
+                                    int iNonZeroCount, int iLastNonZeroZigZagPos)
+    {
         int[] outputBuffer;
         int iOutOffset, iOutWidth;
         switch (iBlock) {
@@ -215,18 +230,8 @@ public class MdecDecoder_int extends MdecDecoder {
             for (int i=0; i < 8; i++, iOutOffset += iOutWidth)
                 Arrays.fill(outputBuffer, iOutOffset, iOutOffset + 8, 0);
         } else {
-            if (iNonZeroCount == 1) {
-                _idct.IDCT_1NonZero(_CurrentBlock, iNonZeroPos, 0, _CurrentBlock);
-            } else {
-                _idct.IDCT(_CurrentBlock, 0, _CurrentBlock);
-            }
-            // TODO: have IDCT write to the destination location directly
-            for (int i=0, iSrcOfs=0; i < 8; i++, iSrcOfs+=8, iOutOffset += iOutWidth)
-                System.arraycopy(_CurrentBlock, iSrcOfs, outputBuffer, iOutOffset, 8);
+            idct.IDCT(aiBlock, iLastNonZeroZigZagPos, outputBuffer, iOutOffset, iOutWidth);
         }
-
-        assert !DEBUG || debugPrintBlock("Post-IDCT block");
-
     }
 
     public void readDecodedRgb(int iDestWidth, int iDestHeight, int[] aiDest,
@@ -237,14 +242,24 @@ public class MdecDecoder_int extends MdecDecoder {
         if ((iDestHeight % 2) != 0)
             throw new IllegalArgumentException("Image height must be multiple of 2.");
 
+        readDecodedRgbLines(iDestWidth, 0, iDestHeight, aiDest, iOutStart, iOutStride);
+    }
+
+    /** Converts the lines [iStartY, iEndY) of the decoded image to RGB.
+     *  Both lines must be a multiple of 2. Lines written by separate calls
+     *  do not overlap, so different line ranges may be converted at the
+     *  same time. */
+    protected void readDecodedRgbLines(int iDestWidth, int iStartY, int iEndY,
+                                       int[] aiDest, int iOutStart, int iOutStride)
+    {
         final PsxYCbCr_int psxycc = new PsxYCbCr_int();
         final RGB rgb1 = new RGB(), rgb2 = new RGB(), rgb3 = new RGB(), rgb4 = new RGB();
 
         final int W_x2 = W*2, iOutStride_x2 = iOutStride*2;
         
-        int iLumaLineOfsStart = 0, iChromaLineOfsStart = 0,
-            iDestLineOfsStart = iOutStart;
-        for (int iY=0; iY < iDestHeight;
+        int iLumaLineOfsStart = iStartY * W, iChromaLineOfsStart = iStartY / 2 * CW,
+            iDestLineOfsStart = iOutStart + iStartY * iOutStride;
+        for (int iY=iStartY; iY < iEndY;
              iY+=2,
              iLumaLineOfsStart+=W_x2, iChromaLineOfsStart+=CW,
              iDestLineOfsStart+=iOutStride_x2)
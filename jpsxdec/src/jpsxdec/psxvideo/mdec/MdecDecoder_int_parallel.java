@@ -0,0 +1,225 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jpsxdec.psxvideo.mdec.idct.IDCT_int;
+import jpsxdec.util.DaemonThreadFactory;
+
+/** Variant of {@link MdecDecoder_int} that splits decoding into two stages.
+ * The MDEC stream is first read (and dequantized) on the calling thread into
+ * a buffer of coefficients for the whole frame. Then the IDCT of every block,
+ * and later the conversion to RGB, are performed on bands of macro block rows
+ * in parallel. Output is identical to {@link MdecDecoder_int} using the same
+ * IDCT.
+ *<p>
+ * One IDCT is needed for each band since IDCTs may keep internal state.
+ * The work of all instances is shared on a single pool of daemon threads.
+ *<p>
+ * WARNING: Like the other decoders, this class is not thread safe. */
+public class MdecDecoder_int_parallel extends MdecDecoder_int {
+
+    private static ExecutorService _pool;
+
+    private static synchronized ExecutorService getPool() {
+        if (_pool == null) {
+            _pool = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new DaemonThreadFactory("MdecDecoder"));
+        }
+        return _pool;
+    }
+
+    /** IDCT for each band. */
+    private final IDCT_int[] _aoIdcts;
+    /** Dequantized coefficients of every block, 64 per block, in the order
+     * the blocks appear in the stream. Only valid for blocks that have
+     * non-zero coefficients. */
+    private final int[] _aiCoefficients;
+    /** Number of non-zero coefficients in every block. */
+    private final int[] _aiNonZeroCount;
+    /** Zig-zag position of the last non-zero coefficient in every block. */
+    private final int[] _aiLastNonZeroZigZagPos;
+
+    /** @param aoIdcts One IDCT for each band that will be processed in
+     *                 parallel. */
+    public MdecDecoder_int_parallel(IDCT_int[] aoIdcts, int iWidth, int iHeight) {
+        super(aoIdcts[0], iWidth, iHeight);
+        _aoIdcts = aoIdcts.clone();
+
+        int iBlockCount = _iMacBlockWidth * _iMacBlockHeight * 6;
+        _aiCoefficients = new int[iBlockCount * 64];
+        _aiNonZeroCount = new int[iBlockCount];
+        _aiLastNonZeroZigZagPos = new int[iBlockCount];
+    }
+
+    @Override
+    public void decode(MdecInputStream mdecInStream)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        try {
+            super.decode(mdecInStream);
+        } finally {
+            // super fills any blocks that were not read with zeros,
+            // so the whole frame is always reconstructed
+            final int iBands = Math.min(_aoIdcts.length, _iMacBlockHeight);
+            runBands(iBands, new Band() {
+                public void run(int iBand) {
+                    reconstructMacroBlockRows(_aoIdcts[iBand],
+                            _iMacBlockHeight *  iBand      / iBands,
+                            _iMacBlockHeight * (iBand + 1) / iBands);
+                }
+            });
+        }
+    }
+
+    /** Saves the block's coefficients instead of performing the IDCT. */
+    @Override
+    protected void writeEndOfBlock(int iMacroBlock, int iBlock,
+                                   int iNonZeroCount, int iLastNonZeroZigZagPos)
+    {
+        int iBlockIdx = iMacroBlock * 6 + iBlock;
+        _aiNonZeroCount[iBlockIdx] = iNonZeroCount;
+        _aiLastNonZeroZigZagPos[iBlockIdx] = iLastNonZeroZigZagPos;
+        if (iNonZeroCount != 0)
+            System.arraycopy(_CurrentBlock, 0, _aiCoefficients, iBlockIdx * 64, 64);
+    }
+
+    /** Performs the IDCT of all macro blocks in rows [iStartMbY, iEndMbY). */
+    private void reconstructMacroBlockRows(IDCT_int idct, int iStartMbY, int iEndMbY) {
+        int[] aiBlock = new int[64];
+        for (int iMacBlkX = 0; iMacBlkX < _iMacBlockWidth; iMacBlkX++) {
+            for (int iMacBlkY = iStartMbY; iMacBlkY < iEndMbY; iMacBlkY++) {
+                // macro blocks are in column order
+                int iMacBlk = iMacBlkX * _iMacBlockHeight + iMacBlkY;
+                for (int iBlock = 0; iBlock < 6; iBlock++) {
+                    int iBlockIdx = iMacBlk * 6 + iBlock;
+                    if (_aiNonZeroCount[iBlockIdx] != 0)
+                        System.arraycopy(_aiCoefficients, iBlockIdx * 64, aiBlock, 0, 64);
+                    writeBlock(idct, aiBlock, iMacBlk, iBlock,
+                               _aiNonZeroCount[iBlockIdx], _aiLastNonZeroZigZagPos[iBlockIdx]);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void readDecodedRgbLines(final int iDestWidth, final int iStartY, int iEndY,
+                                       final int[] aiDest, final int iOutStart, final int iOutStride)
+    {
+        // bands are made of pairs of lines
+        final int iPairs = (iEndY - iStartY) / 2;
+        final int iBands = Math.min(_aoIdcts.length, iPairs);
+        if (iBands <= 1) {
+            super.readDecodedRgbLines(iDestWidth, iStartY, iEndY, aiDest, iOutStart, iOutStride);
+            return;
+        }
+        runBands(iBands, new Band() {
+            public void run(int iBand) {
+                MdecDecoder_int_parallel.super.readDecodedRgbLines(iDestWidth,
+                        iStartY + iPairs *  iBand      / iBands * 2,
+                        iStartY + iPairs * (iBand + 1) / iBands * 2,
+                        aiDest, iOutStart, iOutStride);
+            }
+        });
+    }
+
+    private interface Band {
+        void run(int iBand);
+    }
+
+    /** Runs bands 1 to iBands-1 on the pool and band 0 on the calling
+     *  thread, and waits for all of them to finish. */
+    private static void runBands(int iBands, final Band band) {
+        List<Future<?>> futures = new ArrayList<Future<?>>(iBands - 1);
+        if (iBands > 1) {
+            ExecutorService pool = getPool();
+            for (int i = 1; i < iBands; i++) {
+                final int iBand = i;
+                futures.add(pool.submit(new Callable<Void>() {
+                    public Void call() {
+                        band.run(iBand);
+                        return null;
+                    }
+                }));
+            }
+        }
+
+        Throwable error = null;
+        try {
+            band.run(0);
+        } catch (RuntimeException ex) {
+            error = ex;
+        } catch (Error ex) {
+            error = ex;
+        }
+
+        // always wait for every band so no worker is still using the buffers
+        boolean blnInterrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    blnInterrupted = true;
+                } catch (ExecutionException ex) {
+                    if (error == null)
+                        error = ex.getCause();
+                    break;
+                }
+            }
+        }
+        if (blnInterrupted)
+            Thread.currentThread().interrupt();
+
+        if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        if (error instanceof Error)
+            throw (Error)error;
+        if (error != null)
+            throw new RuntimeException(error);
+    }
+
+}
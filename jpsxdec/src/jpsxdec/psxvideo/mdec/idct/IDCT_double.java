@@ -43,4 +43,7 @@ public interface IDCT_double {
               int iOutputOffset, double[] output);
     void IDCT_1NonZero(double[] idctMatrix, int iNonZeroPos,
               int iOutputOffset, double[] output);
+    /** @see IDCT_int#IDCT(int[], int, int[], int, int) */
+    void IDCT(double[] idctMatrix, int iLastNonZeroZigZagPos,
+              double[] output, int iOutputOffset, int iOutputStride);
 }
@@ -47,4 +47,14 @@ public interface IDCT_int {
     /** Special optimization of the IDCT when there is only 1 non-zero coefficient. */
     void IDCT_1NonZero(int[] aiIdctMatrix, int iNonZeroPos,
                        int iOutputOffset, int[] aiOutput);
+
+    /** Inverse Discrete Cosine Transform that writes the 8x8 result directly
+     * to a destination buffer. Only the coefficients up to the last non-zero
+     * zig-zag position are processed, so sparse blocks skip most of the work.
+     * The contents of the coefficient matrix are destroyed.
+     * @param iLastNonZeroZigZagPos Zig-zag position (0 to 63) of the last
+     *                              coefficient that may be non-zero.
+     * @param iOutputStride Distance between rows in the output buffer. */
+    void IDCT(int[] aiIdctMatrix, int iLastNonZeroZigZagPos,
+              int[] aiOutput, int iOutputOffset, int iOutputStride);
 }
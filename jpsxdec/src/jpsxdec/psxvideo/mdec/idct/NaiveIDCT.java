@@ -101,4 +101,12 @@ public class NaiveIDCT implements IDCT_double {
         IDCT(adblOutput, iOutputOffset, adblOutput);
     }
 
+    public void IDCT(double[] adblIdctMatrix, int iLastNonZeroZigZagPos,
+                     double[] adblOutput, int iOutputOffset, int iOutputStride)
+    {
+        IDCT(adblIdctMatrix, 0, adblIdctMatrix);
+        for (int i=0; i < 8; i++, iOutputOffset+=iOutputStride)
+            System.arraycopy(adblIdctMatrix, i*8, adblOutput, iOutputOffset, 8);
+    }
+
 }
@@ -37,6 +37,8 @@
 
 package jpsxdec.psxvideo.mdec.idct;
 
+import java.util.Arrays;
+
 /** Based on the actual values that the MDEC chip uses, but using
  * floating point math for better precision. */
 public class PsxMdecIDCT_double implements IDCT_double {
@@ -124,4 +126,59 @@ public class PsxMdecIDCT_double implements IDCT_double {
         IDCT(idctMatrix, iOutputOffset, output);
     }
 
+    /** Same math as {@link #IDCT(double[], int, double[])}, but blocks that
+     * only have non-zero coefficients in the top-left corner skip the
+     * multiplications by the rows and columns that are all zero. */
+    public void IDCT(double[] idctMatrix, int iLastNonZeroZigZagPos,
+                     double[] output, int iOutputOffset, int iOutputStride)
+    {
+        if (iLastNonZeroZigZagPos == 0) {
+            // only DC: every output value is the same
+            double dblVal = (idctMatrix[0] * PSX_DEFAULT_COSINE_MATRIX[0]) * PSX_DEFAULT_COSINE_MATRIX[0];
+            for (int y=0; y<8; y++, iOutputOffset+=iOutputStride)
+                Arrays.fill(output, iOutputOffset, iOutputOffset + 8, dblVal);
+        } else if (ZigZagBounds.MAX_ROW[iLastNonZeroZigZagPos] < 4 &&
+                   ZigZagBounds.MAX_COL[iLastNonZeroZigZagPos] < 4)
+        {
+            IDCT_4x4(idctMatrix, output, iOutputOffset, iOutputStride);
+        } else {
+            IDCT(idctMatrix, 0, idctMatrix);
+            for (int y=0; y<8; y++, iOutputOffset+=iOutputStride)
+                System.arraycopy(idctMatrix, y*8, output, iOutputOffset, 8);
+        }
+    }
+
+    /** Only the top-left 4x4 coefficients are non-zero. */
+    private void IDCT_4x4(double[] idctMatrix, double[] output, int iOutputOffset, int iOutputStride) {
+        double tempSum;
+        int x;
+        int y;
+        int i;
+
+        for (x=0; x<4; x++) {
+            for (y=0; y<8; y++) {
+                tempSum = 0;
+
+                for (i=0; i<4; i++) {
+                    tempSum += (idctMatrix[x + i*8] * PSX_DEFAULT_COSINE_MATRIX[i*8 + y]);
+                }
+
+                _aTemp[x + y*8] = tempSum;
+            }
+        }
+
+        for (x=0; x<8; x++) {
+            for (y=0; y<8; y++) {
+                tempSum = 0;
+
+                for (i=0; i<4; i++) {
+                    tempSum += (PSX_DEFAULT_COSINE_MATRIX[x + i*8] *
+                                   _aTemp[i + y*8]);
+                }
+
+                output[iOutputOffset + x + y*iOutputStride] = tempSum;
+            }
+        }
+    }
+
 }
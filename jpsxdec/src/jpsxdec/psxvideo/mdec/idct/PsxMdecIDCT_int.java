@@ -37,6 +37,7 @@
 
 package jpsxdec.psxvideo.mdec.idct;
 
+import java.util.Arrays;
 import jpsxdec.util.Maths;
 
 /** An attempt to create an IDCT that produces the same output as the
@@ -130,6 +131,61 @@ public class PsxMdecIDCT_int implements IDCT_int {
         IDCT(idctMatrix, iOutputOffset, output);
     }
 
+    /** Same math as {@link #IDCT(int[], int, int[])}, but blocks that only
+     * have non-zero coefficients in the top-left corner skip the
+     * multiplications by the rows and columns that are all zero. */
+    public void IDCT(int[] idctMatrix, int iLastNonZeroZigZagPos,
+                     int[] output, int iOutputOffset, int iOutputStride)
+    {
+        if (iLastNonZeroZigZagPos == 0) {
+            // only DC: every output value is the same
+            long lngVal = Maths.shrRound((long)(PSX_DEFAULT_COSINE_MATRIX[0] * idctMatrix[0])
+                                         * PSX_DEFAULT_COSINE_MATRIX[0], 32);
+            for (int y=0; y<8; y++, iOutputOffset+=iOutputStride)
+                Arrays.fill(output, iOutputOffset, iOutputOffset + 8, (int)lngVal);
+        } else if (ZigZagBounds.MAX_ROW[iLastNonZeroZigZagPos] < 4 &&
+                   ZigZagBounds.MAX_COL[iLastNonZeroZigZagPos] < 4)
+        {
+            IDCT_4x4(idctMatrix, output, iOutputOffset, iOutputStride);
+        } else {
+            IDCT(idctMatrix, 0, idctMatrix);
+            for (int y=0; y<8; y++, iOutputOffset+=iOutputStride)
+                System.arraycopy(idctMatrix, y*8, output, iOutputOffset, 8);
+        }
+    }
+
+    /** Only the top-left 4x4 coefficients are non-zero. */
+    private void IDCT_4x4(int[] idctMatrix, int[] output, int iOutputOffset, int iOutputStride) {
+        long tempSum;
+        int x;
+        int y;
+        int i;
+
+        for (x=0; x<4; x++) {
+            for (y=0; y<8; y++) {
+                tempSum = 0;
+
+                for (i=0; i<4; i++) {
+                    tempSum += (PSX_DEFAULT_COSINE_MATRIX[i*8 + y] * idctMatrix[x + i*8]);
+                }
+
+                _aTemp[x + y*8] = tempSum;
+            }
+        }
+
+        for (x=0; x<8; x++) {
+            for (y=0; y<8; y++) {
+                tempSum = 0;
+
+                for (i=0; i<4; i++) {
+                    tempSum += _aTemp[i + y*8] * PSX_DEFAULT_COSINE_MATRIX[x + i*8];
+                }
+
+                output[iOutputOffset + x + y*iOutputStride] = (int)Maths.shrRound(tempSum, 32);
+            }
+        }
+    }
+
     
     public static void main(String[] args) {
 
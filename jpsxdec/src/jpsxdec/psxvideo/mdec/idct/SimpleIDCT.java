@@ -46,4 +46,14 @@ public class SimpleIDCT extends simple_idct implements IDCT_int {
     public void IDCT_1NonZero(int[] aiIdctMatrix, int iNonZeroPos, int iOutputOffset, int[] aiOutput) {
         invers_dct_special(aiIdctMatrix, iNonZeroPos, iOutputOffset, aiOutput);
     }
+
+    public void IDCT(int[] aiIdctMatrix, int iLastNonZeroZigZagPos,
+                     int[] aiOutput, int iOutputOffset, int iOutputStride)
+    {
+        if (iLastNonZeroZigZagPos == 0)
+            invers_dct_dc(aiIdctMatrix[0], iOutputOffset, iOutputStride, aiOutput);
+        else
+            invers_dct_rows(aiIdctMatrix, ZigZagBounds.MAX_ROW[iLastNonZeroZigZagPos],
+                            iOutputOffset, iOutputStride, aiOutput);
+    }
 }
@@ -6,6 +6,7 @@
 
 package jpsxdec.psxvideo.mdec.idct;
 
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -137,6 +138,58 @@ public class StephensIDCT implements IDCT_double {
         IDCT(adblIdctMatrix, iOutputOffset, adblOutput);
     }
 
+    /** Same as {@link #IDCT(double[], int, double[])}, but blocks that
+     * only have non-zero coefficients in the top-left corner skip the
+     * rows and columns that are all zero. */
+    public void IDCT(double[] input, int iLastNonZeroZigZagPos,
+                     double[] out, int iOutputOffset, int iOutputStride)
+    {
+        if (iLastNonZeroZigZagPos == 0) {
+            // only DC: every output value is the same
+            double dblVal = cT[0][0] * (input[0] * c[0][0]);
+            for (int j=0; j<N; j++, iOutputOffset+=iOutputStride)
+                Arrays.fill(out, iOutputOffset, iOutputOffset + N, dblVal);
+        } else if (ZigZagBounds.MAX_ROW[iLastNonZeroZigZagPos] < 4 &&
+                   ZigZagBounds.MAX_COL[iLastNonZeroZigZagPos] < 4)
+        {
+            IDCT_4x4(input, out, iOutputOffset, iOutputStride);
+        } else {
+            IDCT(input, 0, input);
+            for (int j=0; j<N; j++, iOutputOffset+=iOutputStride)
+                System.arraycopy(input, j*N, out, iOutputOffset, N);
+        }
+    }
+
+    /** Only the top-left 4x4 coefficients are non-zero. */
+    private void IDCT_4x4(double[] input, double[] out, int iOutputOffset, int iOutputStride) {
+        double temp1;
+        int i;
+        int j;
+        int k;
+
+        for (i=0; i<4; i++) {
+            for (j=0; j<N; j++) {
+                temp[i + j*N] = 0;
+
+                for (k=0; k<4; k++) {
+                    temp[i + j*N] += input[i + k*N] * c[k][j];
+                }
+            }
+        }
+
+        for (i=0; i<N; i++) {
+            for (j=0; j<N; j++) {
+                temp1 = 0.0;
+
+                for (k=0; k<4; k++) {
+                    temp1 += cT[i][k] * temp[k + j*N];
+                }
+
+                out[iOutputOffset + i + j*iOutputStride] = temp1;
+            }
+        }
+    }
+
 
 
     /**
@@ -0,0 +1,66 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec.idct;
+
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+
+/** Area of an 8x8 coefficient matrix that can hold non-zero values when
+ * the last non-zero coefficient is at a given zig-zag position.
+ * Used by the IDCTs to skip rows and columns that are all zero. */
+final class ZigZagBounds {
+
+    /** Highest row that may hold a non-zero coefficient,
+     * indexed by zig-zag position. */
+    public static final int[] MAX_ROW = new int[64];
+    /** Highest column that may hold a non-zero coefficient,
+     * indexed by zig-zag position. */
+    public static final int[] MAX_COL = new int[64];
+
+    static {
+        int iMaxRow = 0, iMaxCol = 0;
+        for (int i = 0; i < 64; i++) {
+            int iMatrixPos = MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i];
+            iMaxRow = Math.max(iMaxRow, iMatrixPos / 8);
+            iMaxCol = Math.max(iMaxCol, iMatrixPos % 8);
+            MAX_ROW[i] = iMaxRow;
+            MAX_COL[i] = iMaxCol;
+        }
+    }
+
+    private ZigZagBounds() {}
+}
@@ -41,39 +41,77 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 
+/** Writes JPEG entropy coded bits, stuffing a 0 after every 0xff byte.
+ * Bits are collected in a 64-bit accumulator and written 32 at a time into
+ * a buffer, which is copied to {@link #innerStream} when flushed. */
 class JpegBitOutputStream extends OutputStream {
 
-    private int _iIndex;
-    private int _iNextWrite;
     public OutputStream innerStream;
 
-    private static final int BITS_PER_WRITE = 8;
+    /** Bits waiting to be written, in the lowest {@link #_iBitCount} bits. */
+    private long _lngBits;
+    private int _iBitCount;
+
+    /** Bytes written but not yet flushed to {@link #innerStream}.
+     * Extra room for the 4 bytes (plus stuffing) written at once. */
+    private byte[] _abBuffer = new byte[1024 * 16];
+    private int _iBufferSize;
 
     public void write(int iValue, int iBits) throws IOException {
         assert iBits != 0;
         assert (iValue & ~((1 << iBits) - 1)) == 0;
 
-        _iNextWrite <<= iBits;
-        _iNextWrite |= iValue;
-        _iIndex += iBits;
-        while (_iIndex > BITS_PER_WRITE) {
-            write((_iNextWrite >> _iIndex - BITS_PER_WRITE) & 0xff);
-            _iIndex -= BITS_PER_WRITE;
+        _lngBits = (_lngBits << iBits) | iValue;
+        _iBitCount += iBits;
+        if (_iBitCount >= 32) {
+            _iBitCount -= 32;
+            writeWord((int)(_lngBits >>> _iBitCount));
+        }
+    }
+
+    /** Writes the 4 bytes of the word, big-endian. */
+    private void writeWord(int iWord) {
+        if (_iBufferSize + 8 > _abBuffer.length) {
+            byte[] ab = new byte[_abBuffer.length * 2];
+            System.arraycopy(_abBuffer, 0, ab, 0, _iBufferSize);
+            _abBuffer = ab;
+        }
+        // a 0xff byte in the word is a 0 byte in the inverted word
+        int iInverted = ~iWord;
+        if (((iInverted - 0x01010101) & ~iInverted & 0x80808080) == 0) {
+            _abBuffer[_iBufferSize++] = (byte)(iWord >> 24);
+            _abBuffer[_iBufferSize++] = (byte)(iWord >> 16);
+            _abBuffer[_iBufferSize++] = (byte)(iWord >>  8);
+            _abBuffer[_iBufferSize++] = (byte)(iWord      );
+        } else {
+            for (int iShift = 24; iShift >= 0; iShift -= 8) {
+                byte b = (byte)(iWord >> iShift);
+                _abBuffer[_iBufferSize++] = b;
+                if (b == (byte)0xff)
+                    _abBuffer[_iBufferSize++] = 0;
+            }
         }
     }
 
     public void reset() {
-        _iIndex = 0;
-        _iNextWrite = 0;
+        _lngBits = 0;
+        _iBitCount = 0;
+        _iBufferSize = 0;
     }
 
     /** If there are bits remaining to write, writes them, filling
      *  the remaining bits with zeros. */
     @Override
     public void flush() throws IOException {
-        if (_iIndex != 0) {
-            _iNextWrite <<= BITS_PER_WRITE - _iIndex;
-            write(_iNextWrite);
+        innerStream.write(_abBuffer, 0, _iBufferSize);
+        while (_iBitCount > 0) {
+            if (_iBitCount >= 8) {
+                _iBitCount -= 8;
+                write((int)(_lngBits >>> _iBitCount));
+            } else {
+                write((int)(_lngBits << (8 - _iBitCount)));
+                _iBitCount = 0;
+            }
         }
         reset();
     }
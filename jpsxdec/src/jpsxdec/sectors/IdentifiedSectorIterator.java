@@ -66,14 +66,45 @@ public abstract class IdentifiedSectorIterator {
                                                   int iStartSector,
                                                   int iEndSectorInclusive)
     {
-        return new Dredd(cd, iStartSector, iEndSectorInclusive);
+        SectorClassifier classifier = new SectorClassifier();
+        return new Dredd(cd, classifier,
+                new SequentialPreIdentifier(cd, classifier, iStartSector, iEndSectorInclusive));
+    }
+
+    /** Creates an iterator that performs the context-free part of sector
+     * identification on {@code iThreads} worker threads, in ranges of sectors
+     * ahead of where the iterator is reading. The sectors and their
+     * identification are identical to the sequential iterator.
+     * {@link #close()} should be called if the iterator isn't read to the end.
+     * @param iThreads If less than 2, identification happens sequentially. */
+    public static IdentifiedSectorIterator create(@Nonnull CdFileSectorReader cd,
+                                                  int iStartSector,
+                                                  int iEndSectorInclusive,
+                                                  int iThreads)
+    {
+        if (iThreads < 2)
+            return create(cd, iStartSector, iEndSectorInclusive);
+        SectorClassifier classifier = new SectorClassifier();
+        return new Dredd(cd, classifier,
+                new ParallelPreIdentifier(cd, classifier, iStartSector, iEndSectorInclusive, iThreads));
     }
 
     @Nonnull
     private final CdFileSectorReader _cd;
+    @Nonnull
+    private final SectorClassifier _classifier;
 
-    protected IdentifiedSectorIterator(@Nonnull CdFileSectorReader cd) {
+    protected IdentifiedSectorIterator(@Nonnull CdFileSectorReader cd,
+                                       @Nonnull SectorClassifier classifier)
+    {
         _cd = cd;
+        _classifier = classifier;
+    }
+
+    /** The classifier used for context-free identification, which keeps
+     * count of the sector types identified. */
+    public @Nonnull SectorClassifier getClassifier() {
+        return _classifier;
     }
 
     public @Nonnull File getSourceCdFile() {
@@ -90,6 +121,78 @@ public abstract class IdentifiedSectorIterator {
     /** Moves to the next sector and tries to identify it.
      * @return null if sector could not be identified. */
     public abstract @CheckForNull IdentifiedSector next() throws IOException;
+    /** Releases any resources (i.e. worker threads) used by the iterator.
+     * Unnecessary if the iterator was read to the end. */
+    public void close() {
+    }
+
+    /** A sector with its context-free identification already performed. */
+    static class PreIdentified {
+        @Nonnull
+        public final CdSector cdSector;
+        /** Result of {@link SectorClassifier#hitBeforeGT(jpsxdec.cdreaders.CdSector)}. */
+        @CheckForNull
+        public final SectorClassifier.Hit contextFree;
+        /** Result of {@link SectorClassifier#hitAfterGT(jpsxdec.cdreaders.CdSector)},
+         * only performed if {@link #contextFree} is null. */
+        @CheckForNull
+        public final SectorClassifier.Hit afterGT;
+
+        /** Performs the context-free identification of the sector. Since
+         * it doesn't depend on any other sectors, it can happen in any
+         * order (or in parallel). Nothing is counted until the iterator
+         * decides which identification to use. */
+        public PreIdentified(@Nonnull CdSector cdSector, @Nonnull SectorClassifier classifier) {
+            this.cdSector = cdSector;
+            contextFree = classifier.hitBeforeGT(cdSector);
+            if (contextFree == null)
+                afterGT = classifier.hitAfterGT(cdSector);
+            else
+                afterGT = null;
+        }
+    }
+
+    /** Source of {@link PreIdentified} sectors, in sector order. */
+    interface PreIdentifier {
+        boolean hasNext();
+        @Nonnull PreIdentified next() throws IOException;
+        void close();
+    }
+
+    /** Reads and pre-identifies each sector as it is requested. */
+    private static class SequentialPreIdentifier implements PreIdentifier {
+        @Nonnull
+        private final CdFileSectorReader _cd;
+        @Nonnull
+        private final SectorClassifier _classifier;
+        private int _iCurrentSector;
+        private final int _iEndSectorInclusive;
+
+        public SequentialPreIdentifier(@Nonnull CdFileSectorReader cd,
+                                       @Nonnull SectorClassifier classifier,
+                                       int iStartSector, int iEndSectorInclusive)
+        {
+            _cd = cd;
+            _classifier = classifier;
+            _iCurrentSector = iStartSector;
+            _iEndSectorInclusive = iEndSectorInclusive;
+        }
+
+        public boolean hasNext() {
+            return _iCurrentSector <= _iEndSectorInclusive;
+        }
+
+        public @Nonnull PreIdentified next() throws IOException {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            PreIdentified pre = new PreIdentified(_cd.getSector(_iCurrentSector), _classifier);
+            _iCurrentSector++;
+            return pre;
+        }
+
+        public void close() {
+        }
+    }
 
 
     /** Wraps {@link BaseWithGT} and adds contextual Dredd identification. */
@@ -130,9 +233,16 @@ public abstract class IdentifiedSectorIterator {
         @CheckForNull
         private SectorDreddVideo _remainingDredd;
 
-        private Dredd(@Nonnull CdFileSectorReader cd, int iStartSector, int iEndSectorInclusive) {
-            super(cd);
-            _it = new BaseWithGT(cd, iStartSector, iEndSectorInclusive);
+        private Dredd(@Nonnull CdFileSectorReader cd, @Nonnull SectorClassifier classifier,
+                      @Nonnull PreIdentifier source)
+        {
+            super(cd, classifier);
+            _it = new BaseWithGT(cd, classifier, source);
+        }
+
+        @Override
+        public void close() {
+            _it.close();
         }
 
         public @CheckForNull IdentifiedSector current() {
@@ -263,9 +373,7 @@ public abstract class IdentifiedSectorIterator {
     private static class BaseWithGT extends IdentifiedSectorIterator {
 
         @Nonnull
-        private final CdFileSectorReader _cd;
-        private int _iCurrentSector;
-        private final int _iEndSectorInclusive;
+        private final PreIdentifier _source;
 
         @CheckForNull
         private IdentifiedSector _currentId;
@@ -278,43 +386,29 @@ public abstract class IdentifiedSectorIterator {
         private SectorGTVideo _lastGtChunk0;
 
         private BaseWithGT(@Nonnull CdFileSectorReader cd,
-                            int iStartSector, int iEndSectorInclusive)
+                           @Nonnull SectorClassifier classifier,
+                           @Nonnull PreIdentifier source)
         {
-            super(cd);
-            _cd = cd;
-            _iCurrentSector = iStartSector;
-            _iEndSectorInclusive = iEndSectorInclusive;
+            super(cd, classifier);
+            _source = source;
         }
 
         public boolean hasNext() {
-            return _iCurrentSector <= _iEndSectorInclusive;
+            return _source.hasNext();
         }
 
         public @CheckForNull IdentifiedSector next() throws IOException {
             if (!hasNext())
                 throw new NoSuchElementException();
 
-            _currentCd = _cd.getSector(_iCurrentSector);
-            _iCurrentSector++;
+            PreIdentified pre = _source.next();
+            _currentCd = pre.cdSector;
 
-            // sorted in order of likelyhood of encountering (my best guess)
-            if ((_currentId = new SectorXaAudio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorXaNull(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorStrVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorISO9660DirectoryRecords(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorISO9660VolumePrimaryDescriptor(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorCdAudio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF8.SectorFF8Video(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF8.SectorFF8Audio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF9.SectorFF9Video(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF9.SectorFF9Audio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorIkiVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorChronoXAudio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorChronoXVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorChronoXVideoNull(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorAceCombat3Video(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorLainVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorCrusader(_currentCd)).getProbability() > 0) return _currentId;
+            if (pre.contextFree != null) {
+                getClassifier().countHit(pre.contextFree);
+                _currentId = pre.contextFree.sector;
+                return _currentId;
+            }
 
             // contextual GT
             SectorGTVideo gt2Vid = new SectorGTVideo(_currentCd, _lastGtChunk0);
@@ -325,21 +419,14 @@ public abstract class IdentifiedSectorIterator {
                 return _currentId;
             }
 
-            // FF7 has such a vague header, it can easily be falsely identified
-            // when it should be one of the headers above
-            if ((_currentId = new SectorFF7Video(_currentCd)).getProbability() > 0) return _currentId;
-
-            // special handling for Alice
-            SectorAliceNullVideo nullAlice = new SectorAliceNullVideo(_currentCd);
-            if (nullAlice.getProbability() > 0) {
-                _currentId = new SectorAliceVideo(_currentCd);
-                if (_currentId.getProbability() == 0)
-                    _currentId = nullAlice;
-                return _currentId;
+            // only now is it known the context-free result is used
+            if (pre.afterGT == null) {
+                _currentId = null;
+            } else {
+                getClassifier().countHit(pre.afterGT);
+                _currentId = pre.afterGT.sector;
             }
-
-            _currentId = null;
-            return null;
+            return _currentId;
         }
 
         public @CheckForNull IdentifiedSector current() {
@@ -352,5 +439,10 @@ public abstract class IdentifiedSectorIterator {
             return _currentCd;
         }
 
+        @Override
+        public void close() {
+            _source.close();
+        }
+
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.sectors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.util.DaemonThreadFactory;
+import jpsxdec.util.IOException6;
+
+/** Performs the context-free part of sector identification on a pool of
+ * worker threads. The disc is split into fixed size ranges of sectors which
+ * are each read with a single read and identified ahead of the reader,
+ * then handed out in sector order.
+ * Only a bounded number of ranges are in flight at once to limit memory use.
+ * <p>
+ * Everything that depends on neighboring sectors is still performed
+ * sequentially by the consumer, so the results are always identical to
+ * sequential identification regardless of the number of threads. */
+class ParallelPreIdentifier implements IdentifiedSectorIterator.PreIdentifier {
+
+    /** Number of sectors each worker identifies at a time. */
+    private static final int SECTORS_PER_RANGE = 256;
+    /** How many ranges per thread to keep queued ahead of the reader. */
+    private static final int RANGES_AHEAD_PER_THREAD = 2;
+
+    @Nonnull
+    private final CdFileSectorReader _cd;
+    @Nonnull
+    private final SectorClassifier _classifier;
+    private final int _iEndSectorInclusive;
+    private final int _iMaxRangesInFlight;
+    @Nonnull
+    private final ExecutorService _pool;
+
+    /** Ranges submitted to the pool, in sector order. */
+    private final LinkedList<Future<IdentifiedSectorIterator.PreIdentified[]>> _pending =
+            new LinkedList<Future<IdentifiedSectorIterator.PreIdentified[]>>();
+    /** Start of the next range to submit. */
+    private int _iNextRangeStart;
+    /** Range currently being handed out. */
+    @CheckForNull
+    private IdentifiedSectorIterator.PreIdentified[] _aoCurrentRange;
+    private int _iCurrentRangePos;
+
+    public ParallelPreIdentifier(@Nonnull CdFileSectorReader cd,
+                                 @Nonnull SectorClassifier classifier,
+                                 int iStartSector, int iEndSectorInclusive,
+                                 int iThreads)
+    {
+        _cd = cd;
+        _classifier = classifier;
+        _iNextRangeStart = iStartSector;
+        _iEndSectorInclusive = iEndSectorInclusive;
+        _iMaxRangesInFlight = iThreads * RANGES_AHEAD_PER_THREAD;
+        _pool = Executors.newFixedThreadPool(iThreads, new DaemonThreadFactory("SectorIdentifier"));
+        submitRanges();
+    }
+
+    private void submitRanges() {
+        while (_pending.size() < _iMaxRangesInFlight && _iNextRangeStart <= _iEndSectorInclusive) {
+            final int iStart = _iNextRangeStart;
+            final int iEnd = Math.min(iStart + SECTORS_PER_RANGE - 1, _iEndSectorInclusive);
+            _pending.add(_pool.submit(new Callable<IdentifiedSectorIterator.PreIdentified[]>() {
+                public IdentifiedSectorIterator.PreIdentified[] call() throws IOException {
+                    // each range is read at once into its own buffer, so the
+                    // workers don't contend over the reader's shared cache
+                    IdentifiedSectorIterator.PreIdentified[] aoRange =
+                            new IdentifiedSectorIterator.PreIdentified[iEnd - iStart + 1];
+                    int iRead = 0;
+                    while (iRead < aoRange.length) {
+                        CdSector[] aoSectors = _cd.getSectors(iStart + iRead, aoRange.length - iRead);
+                        for (CdSector sector : aoSectors) {
+                            aoRange[iRead] = new IdentifiedSectorIterator.PreIdentified(sector, _classifier);
+                            iRead++;
+                        }
+                    }
+                    return aoRange;
+                }
+            }));
+            _iNextRangeStart = iEnd + 1;
+        }
+        if (_pending.isEmpty())
+            _pool.shutdown();
+    }
+
+    public boolean hasNext() {
+        return (_aoCurrentRange != null && _iCurrentRangePos < _aoCurrentRange.length) ||
+               !_pending.isEmpty();
+    }
+
+    public @Nonnull IdentifiedSectorIterator.PreIdentified next() throws IOException {
+        if (_aoCurrentRange == null || _iCurrentRangePos >= _aoCurrentRange.length) {
+            if (_pending.isEmpty())
+                throw new NoSuchElementException();
+            Future<IdentifiedSectorIterator.PreIdentified[]> nextRange = _pending.removeFirst();
+            _aoCurrentRange = null;
+            try {
+                _aoCurrentRange = nextRange.get();
+            } catch (InterruptedException ex) {
+                close();
+                InterruptedIOException iioe = new InterruptedIOException();
+                iioe.initCause(ex);
+                throw iioe;
+            } catch (ExecutionException ex) {
+                close();
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException)cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                if (cause instanceof Error)
+                    throw (Error)cause;
+                throw new IOException6(cause);
+            }
+            _iCurrentRangePos = 0;
+            submitRanges();
+        }
+        return _aoCurrentRange[_iCurrentRangePos++];
+    }
+
+    public void close() {
+        _pool.shutdownNow();
+        _pending.clear();
+    }
+
+}
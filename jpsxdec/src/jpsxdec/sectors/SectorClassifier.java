@@ -0,0 +1,417 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.sectors;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
+
+/** Table driven dispatch of context-free sector identification.
+ * <p>
+ * Rather than constructing every sector type in turn, the CD-XA sub-header
+ * and the first 4 bytes of user data are read once, and only the sector
+ * types that could possibly match those values are constructed. The
+ * candidate types are always tested in the same order as before, and a type
+ * is only skipped when its constructor would definitely reject the sector,
+ * so the identification is exactly the same. To keep it that way, each
+ * filter only repeats checks its type's constructor (or super-class
+ * constructor) makes unconditionally, and may be looser, but never stricter.
+ * <p>
+ * Also keeps count of how many sectors were identified as each type.
+ * Safe to use from multiple threads. */
+public class SectorClassifier {
+
+    private static final Logger LOG = Logger.getLogger(SectorClassifier.class.getName());
+
+    private static final int DATA_OR_VIDEO = SubMode.MASK_DATA | SubMode.MASK_VIDEO;
+
+    /** The context-free sector types, in the order they should be tested.
+     * Sorted in order of likelyhood of encountering (my best guess). */
+    private static enum Type {
+        XA_AUDIO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio && iSubMode >= 0 &&
+                       (iSubMode & (SubMode.MASK_FORM | SubMode.MASK_AUDIO)) == (SubMode.MASK_FORM | SubMode.MASK_AUDIO);
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorXaAudio(cdSector); }
+        },
+        XA_NULL(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio && iSubMode >= 0 && (iSubMode & SubMode.MASK_FORM) != 0;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorXaNull(cdSector); }
+        },
+        STR_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return videoHeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorStrVideo.VIDEO_SECTOR_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorStrVideo(cdSector); }
+        },
+        ISO9660_DIRECTORY_RECORDS(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorISO9660DirectoryRecords(cdSector); }
+        },
+        ISO9660_PRIMARY_DESCRIPTOR(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio;
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                int iSectNum = cdSector.getSectorNumberFromStart();
+                return iSectNum < 0 || iSectNum == 16;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorISO9660VolumePrimaryDescriptor(cdSector); }
+        },
+        CD_AUDIO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return blnCdAudio;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorCdAudio(cdSector); }
+        },
+        FF8_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return ff8HeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return ff8DataCanMatch(lngMagic);
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorFF8.SectorFF8Video(cdSector); }
+        },
+        FF8_AUDIO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return ff8HeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return ff8DataCanMatch(lngMagic);
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorFF8.SectorFF8Audio(cdSector); }
+        },
+        FF9_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio && iSubMode >= 0;
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorFF9.SectorFF9Video.VIDEO_CHUNK_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorFF9.SectorFF9Video(cdSector); }
+        },
+        FF9_AUDIO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio;
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorFF9.SectorFF9Audio.FF9_AUDIO_CHUNK_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorFF9.SectorFF9Audio(cdSector); }
+        },
+        IKI_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return videoHeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorStrVideo.VIDEO_SECTOR_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorIkiVideo(cdSector); }
+        },
+        CHRONO_X_AUDIO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio && (iSubMode < 0 ||
+                       (iSubMode & (SubMode.MASK_DATA | SubMode.MASK_FORM)) == SubMode.MASK_DATA);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorChronoXAudio.AUDIO_CHUNK_MAGIC1 ||
+                       lngMagic == SectorChronoXAudio.AUDIO_CHUNK_MAGIC2 ||
+                       lngMagic == SectorChronoXAudio.AUDIO_CHUNK_MAGIC3 ||
+                       lngMagic == SectorChronoXAudio.AUDIO_CHUNK_MAGIC4;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorChronoXAudio(cdSector); }
+        },
+        CHRONO_X_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return videoHeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return chronoXVideoDataCanMatch(lngMagic);
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorChronoXVideo(cdSector); }
+        },
+        CHRONO_X_VIDEO_NULL(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return videoHeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return chronoXVideoDataCanMatch(lngMagic);
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorChronoXVideoNull(cdSector); }
+        },
+        ACE_COMBAT_3_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio && iSubMode >= 0;
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return (lngMagic & 0xff) == 0x01;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorAceCombat3Video(cdSector); }
+        },
+        LAIN_VIDEO(false) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return videoHeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorStrVideo.VIDEO_SECTOR_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorLainVideo(cdSector); }
+        },
+        CRUSADER(false) {
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                // Crusader magic is big-endian 0xAABBCCDD
+                return lngMagic == 0xDDCCBBAAL;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorCrusader(cdSector); }
+        },
+
+        // these are tested after contextual Gran Turismo identification
+
+        /** FF7 has such a vague header, it can easily be falsely identified
+         * when it should be one of the headers above. */
+        FF7_VIDEO(true) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return !blnCdAudio;
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorStrVideo.VIDEO_SECTOR_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) { return new SectorFF7Video(cdSector); }
+        },
+        /** Special handling for Alice: null video sectors are only used
+         * if the sector isn't a real video sector. */
+        ALICE_VIDEO(true) {
+            boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+                return videoHeaderCanMatch(blnCdAudio, iSubMode);
+            }
+            boolean dataCanMatch(long lngMagic, CdSector cdSector) {
+                return lngMagic == SectorAliceNullVideo.ALICE_VIDEO_SECTOR_MAGIC;
+            }
+            IdentifiedSector create(CdSector cdSector) {
+                SectorAliceNullVideo nullAlice = new SectorAliceNullVideo(cdSector);
+                if (nullAlice.getProbability() == 0)
+                    return nullAlice;
+                IdentifiedSector alice = new SectorAliceVideo(cdSector);
+                if (alice.getProbability() == 0)
+                    return nullAlice;
+                return alice;
+            }
+        };
+
+        /** If this type is tested after contextual Gran Turismo identification. */
+        final boolean blnAfterGT;
+
+        private Type(boolean blnAfterGT) {
+            this.blnAfterGT = blnAfterGT;
+        }
+
+        /** If the type could match a sector with this header information.
+         * @param iSubMode The sub-header sub-mode byte, or -1 if the
+         *                 sector doesn't have a sub-header. */
+        boolean headerCanMatch(boolean blnCdAudio, int iSubMode) {
+            return true;
+        }
+
+        /** If the type could match the sector with these first 4 bytes
+         * of user data (read as a little-endian 32 bit value). */
+        boolean dataCanMatch(long lngMagic, @Nonnull CdSector cdSector) {
+            return true;
+        }
+
+        abstract @Nonnull IdentifiedSector create(@Nonnull CdSector cdSector);
+    }
+
+    /** Most video sector types reject CD audio sectors, and, only if the
+     * sector has a sub-header, sectors not flagged as data or video. */
+    private static boolean videoHeaderCanMatch(boolean blnCdAudio, int iSubMode) {
+        return !blnCdAudio && (iSubMode < 0 || (iSubMode & DATA_OR_VIDEO) != 0);
+    }
+
+    private static boolean ff8HeaderCanMatch(boolean blnCdAudio, int iSubMode) {
+        // both audio and video sectors are flagged as data
+        return !blnCdAudio && (iSubMode < 0 || (iSubMode & SubMode.MASK_DATA) != 0);
+    }
+
+    private static boolean ff8DataCanMatch(long lngMagic) {
+        // 'S' 'M' ? '\1'
+        return (lngMagic & 0xff00ffffL) == 0x01004d53L;
+    }
+
+    private static boolean chronoXVideoDataCanMatch(long lngMagic) {
+        return lngMagic == SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC1 ||
+               lngMagic == SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC2;
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    /** Header classes: CD audio, no sub-header, then one for every
+     * combination of the sub-mode bits that the types care about. */
+    private static final int HEADER_CLASS_CD_AUDIO = 0;
+    private static final int HEADER_CLASS_NO_SUBHEADER = 1;
+    private static final int HEADER_CLASS_SUBMODE_START = 2;
+    private static final int RELEVANT_SUBMODE_BITS =
+            SubMode.MASK_FORM | SubMode.MASK_DATA | SubMode.MASK_AUDIO | SubMode.MASK_VIDEO;
+
+    /** For each header class, a bit mask of the {@link Type#ordinal()}s
+     * that could match the header. */
+    private static final int[] HEADER_CLASS_CANDIDATES =
+            new int[HEADER_CLASS_SUBMODE_START + RELEVANT_SUBMODE_BITS + 1];
+    static {
+        for (Type type : TYPES) {
+            int iBit = 1 << type.ordinal();
+            if (type.headerCanMatch(true, -1))
+                HEADER_CLASS_CANDIDATES[HEADER_CLASS_CD_AUDIO] |= iBit;
+            if (type.headerCanMatch(false, -1))
+                HEADER_CLASS_CANDIDATES[HEADER_CLASS_NO_SUBHEADER] |= iBit;
+            for (int iSubMode = 0; iSubMode <= RELEVANT_SUBMODE_BITS; iSubMode++) {
+                if ((iSubMode & ~RELEVANT_SUBMODE_BITS) == 0 && type.headerCanMatch(false, iSubMode))
+                    HEADER_CLASS_CANDIDATES[HEADER_CLASS_SUBMODE_START + iSubMode] |= iBit;
+            }
+        }
+    }
+
+    private static int headerClass(@Nonnull CdSector cdSector) {
+        if (cdSector.isCdAudioSector())
+            return HEADER_CLASS_CD_AUDIO;
+        if (!cdSector.hasSubHeader())
+            return HEADER_CLASS_NO_SUBHEADER;
+        return HEADER_CLASS_SUBMODE_START + cdSector.subModeMask(RELEVANT_SUBMODE_BITS);
+    }
+
+    // -------------------------------------------------------------------------
+
+    /** How many sectors were identified as each {@link Type}. */
+    private final AtomicIntegerArray _hitCounts = new AtomicIntegerArray(TYPES.length);
+
+    /** A context-free identification along with the type that matched,
+     * so it can be counted with {@link #countHit(Hit)} once it is used. */
+    static class Hit {
+        @Nonnull
+        public final IdentifiedSector sector;
+        @Nonnull
+        private final Type _type;
+
+        private Hit(@Nonnull IdentifiedSector sector, @Nonnull Type type) {
+            this.sector = sector;
+            _type = type;
+        }
+    }
+
+    /** Identifies the sector using the context-free types that are tested
+     * before contextual Gran Turismo identification. Not counted.
+     * @return null if the sector doesn't match any of them. */
+    public @CheckForNull IdentifiedSector identifyBeforeGT(@Nonnull CdSector cdSector) {
+        Hit hit = identify(cdSector, false);
+        return hit == null ? null : hit.sector;
+    }
+
+    /** Identifies the sector using the context-free types that are tested
+     * after contextual Gran Turismo identification. Not counted.
+     * @return null if the sector doesn't match any of them. */
+    public @CheckForNull IdentifiedSector identifyAfterGT(@Nonnull CdSector cdSector) {
+        Hit hit = identify(cdSector, true);
+        return hit == null ? null : hit.sector;
+    }
+
+    /** Same as {@link #identifyBeforeGT(jpsxdec.cdreaders.CdSector)}. */
+    @CheckForNull Hit hitBeforeGT(@Nonnull CdSector cdSector) {
+        return identify(cdSector, false);
+    }
+
+    /** Same as {@link #identifyAfterGT(jpsxdec.cdreaders.CdSector)}. */
+    @CheckForNull Hit hitAfterGT(@Nonnull CdSector cdSector) {
+        return identify(cdSector, true);
+    }
+
+    /** Counts the identification in the hit counts. Only call this for
+     * the identification that is actually used for the sector. */
+    void countHit(@Nonnull Hit hit) {
+        _hitCounts.incrementAndGet(hit._type.ordinal());
+    }
+
+    private @CheckForNull Hit identify(@Nonnull CdSector cdSector, boolean blnAfterGT) {
+        int iCandidates = HEADER_CLASS_CANDIDATES[headerClass(cdSector)];
+        if (iCandidates == 0)
+            return null;
+        long lngMagic = cdSector.readUInt32LE(0);
+        for (Type type : TYPES) {
+            if (type.blnAfterGT != blnAfterGT || (iCandidates & (1 << type.ordinal())) == 0)
+                continue;
+            if (!type.dataCanMatch(lngMagic, cdSector))
+                continue;
+            IdentifiedSector id = type.create(cdSector);
+            if (id.getProbability() > 0)
+                return new Hit(id, type);
+        }
+        return null;
+    }
+
+    /** Logs how many sectors were identified as each type. */
+    public void logHitCounts(@Nonnull Level level) {
+        if (!LOG.isLoggable(level))
+            return;
+        StringBuilder sb = new StringBuilder("Context-free sector identification counts:");
+        for (Type type : TYPES) {
+            int iCount = _hitCounts.get(type.ordinal());
+            if (iCount > 0)
+                sb.append(' ').append(type.name()).append('=').append(iCount);
+        }
+        LOG.log(level, sb.toString());
+    }
+
+    /** @return how many sectors have been identified by this classifier. */
+    public int getTotalHitCount() {
+        int iTotal = 0;
+        for (int i = 0; i < _hitCounts.length(); i++)
+            iTotal += _hitCounts.get(i);
+        return iTotal;
+    }
+}
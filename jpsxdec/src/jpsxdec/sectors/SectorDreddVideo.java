@@ -41,6 +41,7 @@ import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdSector;
 import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
 import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPool;
 import jpsxdec.psxvideo.mdec.MdecException;
 import jpsxdec.util.BinaryDataNotRecognized;
 
@@ -57,11 +58,22 @@ public class SectorDreddVideo extends SectorAbstractVideo {
     /** All Dredd frames are 320 pixels wide. */
     private static final int FRAME_WIDTH = 320;
 
+    /** Every frame of a Dredd video is checked as it is identified, and
+     * there is no video to hold the uncompressors, so each thread
+     * identifying sectors keeps its own. */
+    private static final ThreadLocal<BitStreamUncompressorPool> UNCOMPRESSORS =
+            new ThreadLocal<BitStreamUncompressorPool>() {
+        @Override
+        protected BitStreamUncompressorPool initialValue() {
+            return new BitStreamUncompressorPool();
+        }
+    };
+
     /** Uncompresses the bitstream a line of macroblocks at a time until failure
      * to determine the frame height.
      * @return height of the frame in pixels. */
     static int getHeight(byte[] abBitstream) throws BinaryDataNotRecognized {
-        BitStreamUncompressor bs = BitStreamUncompressor.identifyUncompressor(abBitstream);
+        BitStreamUncompressor bs = UNCOMPRESSORS.get().reset(abBitstream);
         int iFrameHeightMB = 0;
         try {
             // keep reading lines until the stream ends
@@ -171,6 +171,14 @@ public class Tim {
     static final int TAG_MAGIC = 0x10;
     /** All Tims are version 0. */
     static final int VERSION_0 = 0;
+
+    /** The first 8 bytes of every Tim, read as a little-endian long,
+     * will equal {@link #HEADER_SIGNATURE_VALUE} after masking with this.
+     * Covers the tag, version, bits-per-pixel flags, and the unknown
+     * fields that must be 0. */
+    public static final long HEADER_SIGNATURE_MASK = 0xFFFFFFF4FFFFFFFFL;
+    /** @see #HEADER_SIGNATURE_MASK */
+    public static final long HEADER_SIGNATURE_VALUE = TAG_MAGIC | (VERSION_0 << 8);
     
     /** The color lookup table for the TIM. null if none. */
     @CheckForNull
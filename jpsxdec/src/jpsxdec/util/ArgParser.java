@@ -133,4 +133,15 @@ public class ArgParser {
         return new ArgParser(_asArgs);
     }
 
+    /** Make a copy of this {@link ArgParser} with more arguments added
+     * to the end. */
+    public @Nonnull ArgParser copyAppend(@Nonnull String ... asMoreArgs) {
+        if (_asArgs == null)
+            return new ArgParser(asMoreArgs.clone());
+        String[] asArgs = new String[_asArgs.length + asMoreArgs.length];
+        System.arraycopy(_asArgs, 0, asArgs, 0, _asArgs.length);
+        System.arraycopy(asMoreArgs, 0, asArgs, _asArgs.length, asMoreArgs.length);
+        return new ArgParser(asArgs);
+    }
+
 }
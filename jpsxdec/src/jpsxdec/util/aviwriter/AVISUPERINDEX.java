@@ -0,0 +1,108 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util.aviwriter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import javax.annotation.Nonnull;
+import jpsxdec.util.IO;
+
+/** Represents the OpenDML
+ * <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/ff625871(v=vs.85).aspx">AVISUPERINDEX</a>
+ * C structure, written in each stream's 'strl' list.
+ * <p>
+ * The space is always reserved in the header since it is not known if the
+ * AVI will need OpenDML extensions until it is finished. If the AVI
+ * remains a simple AVI 1.0 file, the structure is written as a 'JUNK' chunk
+ * of the same size so it is ignored by readers.
+ */
+class AVISUPERINDEX extends AVIstruct {
+
+    /** Number of standard indexes (i.e. RIFF segments) that can be referenced.
+     * At 1GB per segment, that is 256GB. */
+    public static final int MAX_ENTRIES = 256;
+
+    public static final byte AVI_INDEX_OF_INDEXES = 0x00;
+
+    public       /*FOURCC*/ int   fcc            = string2int("JUNK");
+    public final /*DWORD */ int   cb             = sizeof() - 8;
+    public final /*WORD  */ short wLongsPerEntry = 4;
+    public final /*BYTE  */ byte  bIndexSubType  = 0;
+    public final /*BYTE  */ byte  bIndexType     = AVI_INDEX_OF_INDEXES;
+    public       /*DWORD */ int   nEntriesInUse  = 0;
+    public       /*DWORD */ int   dwChunkId      = 0;
+    //public     /*DWORD */ int   dwReserved[3];
+    //struct {
+        public final /*QWORD*/ long[] qwOffset   = new long[MAX_ENTRIES];
+        public final /*DWORD*/ int[]  dwSize     = new int[MAX_ENTRIES];
+        public final /*DWORD*/ int[]  dwDuration = new int[MAX_ENTRIES];
+    //} aIndex[MAX_ENTRIES];
+
+    /** Switches the structure from a 'JUNK' placeholder to a real 'indx'. */
+    public void makeIndex() {
+        fcc = string2int("indx");
+    }
+
+    @Override
+    public void write(@Nonnull RandomAccessFile raf) throws IOException {
+        // build the whole structure first to avoid thousands of tiny writes
+        byte[] ab = new byte[sizeof()];
+        IO.writeInt32LE(ab, 0, fcc);
+        IO.writeInt32LE(ab, 4, cb);
+        IO.writeInt16LE(ab, 8, wLongsPerEntry);
+        ab[10] = bIndexSubType;
+        ab[11] = bIndexType;
+        IO.writeInt32LE(ab, 12, nEntriesInUse);
+        IO.writeInt32LE(ab, 16, dwChunkId);
+        // dwReserved[3] left 0
+        int iPos = 32;
+        for (int i = 0; i < MAX_ENTRIES; i++, iPos += 16) {
+            IO.writeInt32LE(ab, iPos     , qwOffset[i]);
+            IO.writeInt32LE(ab, iPos +  4, qwOffset[i] >>> 32);
+            IO.writeInt32LE(ab, iPos +  8, dwSize[i]);
+            IO.writeInt32LE(ab, iPos + 12, dwDuration[i]);
+        }
+        raf.write(ab);
+    }
+
+    @Override
+    public int sizeof() {
+        return 32 + MAX_ENTRIES * 16;
+    }
+
+}
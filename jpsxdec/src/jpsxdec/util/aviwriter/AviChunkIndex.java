@@ -0,0 +1,97 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util.aviwriter;
+
+/** Compact store of the location of every chunk written to the 'movi' lists,
+ * used to generate the 'idx1' and OpenDML 'ix##' indexes when each RIFF
+ * segment is finished. Long videos can have hundreds of thousands of chunks,
+ * so entries are kept in parallel primitive arrays instead of one object
+ * each. */
+class AviChunkIndex {
+
+    /** Set in the 'idx1' flags for every video chunk (all frames are key frames). */
+    public static final int AVIIF_KEYFRAME = 0x10;
+
+    private int[] _aiChunkIds = new int[1024];
+    /** File position of the chunk header (the chunk id). */
+    private long[] _alngPositions = new long[1024];
+    /** Size of the chunk data, not including the header. */
+    private int[] _aiSizes = new int[1024];
+    private int _iCount = 0;
+
+    public void add(int iChunkId, long lngPosition, int iSize) {
+        if (_iCount == _aiChunkIds.length) {
+            int iNewLength = _iCount * 2;
+            int[] aiChunkIds = new int[iNewLength];
+            System.arraycopy(_aiChunkIds, 0, aiChunkIds, 0, _iCount);
+            _aiChunkIds = aiChunkIds;
+            long[] alngPositions = new long[iNewLength];
+            System.arraycopy(_alngPositions, 0, alngPositions, 0, _iCount);
+            _alngPositions = alngPositions;
+            int[] aiSizes = new int[iNewLength];
+            System.arraycopy(_aiSizes, 0, aiSizes, 0, _iCount);
+            _aiSizes = aiSizes;
+        }
+        _aiChunkIds[_iCount] = iChunkId;
+        _alngPositions[_iCount] = lngPosition;
+        _aiSizes[_iCount] = iSize;
+        _iCount++;
+    }
+
+    /** Adds a copy of an existing entry. */
+    public void addCopy(int iEntry) {
+        add(_aiChunkIds[iEntry], _alngPositions[iEntry], _aiSizes[iEntry]);
+    }
+
+    public int size() {
+        return _iCount;
+    }
+
+    public int getChunkId(int iEntry) {
+        return _aiChunkIds[iEntry];
+    }
+
+    public long getPosition(int iEntry) {
+        return _alngPositions[iEntry];
+    }
+
+    public int getSize(int iEntry) {
+        return _aiSizes[iEntry];
+    }
+
+}
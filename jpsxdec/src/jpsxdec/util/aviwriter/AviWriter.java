@@ -43,7 +43,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
-import java.util.ArrayList;
 import java.util.Arrays;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -53,13 +52,25 @@ import javax.sound.sampled.AudioSystem;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.LocalizedIOException;
 import jpsxdec.Version;
+import jpsxdec.util.ExposedBAOS;
 import jpsxdec.util.IO;
-import jpsxdec.util.aviwriter.AVIOLDINDEX.AVIOLDINDEXENTRY;
 
 /**
  * Creates AVI files with audio and video without the need for JMF.
- * Subclasses should take care of codec handling. Note that this cannot
- * create AVI files larger than 4GB.
+ * Subclasses should take care of codec handling.
+ * <p>
+ * AVI 1.0 files are limited to 1GB (most players), 2GB, or 4GB (the RIFF
+ * size field) depending on who reads them. To write longer videos, the
+ * OpenDML (AVI 2.0) extensions are used automatically once the first RIFF
+ * segment fills up: the data continues in additional 'RIFF AVIX' segments,
+ * each with its own 'ix##' standard index per stream, referenced by an 'indx'
+ * super index in each stream header. The first segment keeps its 'idx1'
+ * index so old players can still play the start of the video. AVI files that
+ * never fill the first segment are plain AVI 1.0 files.
+ * <p>
+ * All chunk data is collected in a large write-behind buffer so the
+ * {@link RandomAccessFile} only sees a few big writes instead of several
+ * small ones for every chunk.
  * <p> 
  * This code is originally based on (but now hardly resembles) the 
  * <a href="http://rsb.info.nih.gov/ij">ImageJ</a> program.
@@ -175,9 +186,29 @@ public abstract class AviWriter implements Closeable {
     // -- AVI Structure Fields -------------------------------------------------
     // -------------------------------------------------------------------------
 
+    /** Most players can handle RIFF segments up to 1GB. */
+    static final long DEFAULT_MAX_RIFF_SIZE = 1024 * 1024 * 1024;
+    /** Size of the write-behind buffer for the 'movi' data. */
+    private static final int WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int AUDIO_CHUNK_ID = AVIstruct.string2int("01wb");
+    private static final int AVI_INDEX_OF_CHUNKS = 0x01;
+    private static final byte[] ZEROES3 = new byte[3];
+
     @CheckForNull
     private RandomAccessFile _aviFile;
-    
+
+    /** Data waiting to be written to the end of {@link #_aviFile}. */
+    @Nonnull
+    private final byte[] _abFileBuffer = new byte[WRITE_BUFFER_SIZE];
+    private int _iFileBufferLength = 0;
+
+    /** A new RIFF segment is started before one grows beyond this size.
+     * Only changed for testing. */
+    private long _lngMaxRiffSize = DEFAULT_MAX_RIFF_SIZE;
+
+    private final int _iVideoChunkId;
+
+    /** Current RIFF segment. */
     private Chunk _RIFF_chunk;
     private     Chunk _LIST_hdr1;
     private         AVIMAINHEADER _avih;
@@ -186,6 +217,7 @@ public abstract class AviWriter implements Closeable {
     private                 AVISTREAMHEADER _strh_vid;
     private                 BITMAPINFOHEADER _bif;
                         //strf_vid
+    private             AVISUPERINDEX _indx_vid;
     private             Chunk _strn_vid;
                     //LIST_strl_vid
     private         Chunk _LIST_strl_aud;
@@ -193,18 +225,32 @@ public abstract class AviWriter implements Closeable {
     private                 AVISTREAMHEADER _strh_aud;
     private                 WAVEFORMATEX _wavfmt;
                         //strf_aud
+    private             AVISUPERINDEX _indx_aud;
                     //LIST_strl_aud
+    private         ODMLEXTENDEDAVIHEADER _odml;
                 //LIST_hdr1
                     //JUNK_writerId;
     private     Chunk LIST_movi;
                     /* image and audio chunk data go here */
+                    /* OpenDML: ix00 and ix01 standard indexes go here */
                 //LIST_movi
-    private     AVIOLDINDEX avioldidx;
+                /* first RIFF only: idx1 */
             //RIFF_chunk
-    
-    /** Holds the 'idx' section index data. */
+            /* OpenDML: RIFF AVIX segments with LIST movi follow */
+
+    /** Position of the 'movi' id of the first segment, which
+     * 'idx1' offsets are relative to. */
+    private long _lngFirstMoviPos;
+    /** Number of RIFF segments started. */
+    private int _iSegmentCount;
+    /** Index of the first entry in {@link #_chunkIndex} of the current segment. */
+    private int _iSegmentStartEntry;
+    /** Number of frames in the first RIFF segment. */
+    private long _lngFirstSegmentFrameCount = -1;
+
+    /** Every chunk written to all 'movi' lists. */
     @Nonnull
-    private ArrayList<AVIOLDINDEXENTRY> _indexList;
+    private final AviChunkIndex _chunkIndex = new AviChunkIndex();
     
     
     // -------------------------------------------------------------------------
@@ -226,6 +272,10 @@ public abstract class AviWriter implements Closeable {
         _blnCompressedVideo = blnCompressedVideo;
         _sFourCCcodec = sFourCCcodec;
         _iCompression = iBytes;
+        if (_blnCompressedVideo)
+            _iVideoChunkId = AVIstruct.string2int("00dc");  // dc for compressed frame
+        else
+            _iVideoChunkId = AVIstruct.string2int("00db");  // db for uncompressed frame
 
         _iWidth = iWidth;
         _iHeight = iHeight;
@@ -283,6 +333,9 @@ public abstract class AviWriter implements Closeable {
 
                     _strf_vid.endChunk(_aviFile);
                     
+                    _indx_vid = new AVISUPERINDEX();
+                    _indx_vid.makePlaceholder(_aviFile);
+
                     _strn_vid = new Chunk(_aviFile, "strn");
                     _aviFile.writeBytes("jPSXdec AVI    \0");
                     _strn_vid.endChunk(_aviFile);
@@ -302,9 +355,15 @@ public abstract class AviWriter implements Closeable {
 
                     _strf_aud.endChunk(_aviFile);
 
+                    _indx_aud = new AVISUPERINDEX();
+                    _indx_aud.makePlaceholder(_aviFile);
+
                 _LIST_strl_aud.endChunk(_aviFile);
                 }
 
+                _odml = new ODMLEXTENDEDAVIHEADER();
+                _odml.makePlaceholder(_aviFile);
+
             _LIST_hdr1.endChunk(_aviFile);
             
             // some programs will use this to identify the program that wrote the avi
@@ -314,11 +373,22 @@ public abstract class AviWriter implements Closeable {
             JUNK_writerId.endChunk(_aviFile);
 
             LIST_movi = new Chunk(_aviFile, "LIST", "movi");
+            _lngFirstMoviPos = LIST_movi.getStart() + 4;
+            _iSegmentCount = 1;
+            _iSegmentStartEntry = 0;
 
             // now we're ready to start accepting video/audio data
-            
-            // generate an index as we write 'movi' section
-            _indexList = new ArrayList<AVIOLDINDEXENTRY>();
+    }
+
+    /** Only for testing multiple RIFF segments without writing gigabytes. */
+    void setMaxRiffSize(long lngMaxRiffSize) {
+        _lngMaxRiffSize = lngMaxRiffSize;
+    }
+
+    /** Returns if the AVI has grown beyond the first RIFF segment and will
+     * be written with OpenDML extensions. */
+    public boolean isOpenDml() {
+        return _iSegmentCount > 1;
     }
 
     // -------------------------------------------------------------------------
@@ -332,20 +402,13 @@ public abstract class AviWriter implements Closeable {
         if (_lngFrameCount < 1)
             throw new IllegalStateException("Unable to repeat a previous frame that doesn't exist.");
 
-        int iIndex = _indexList.size() - 1;
+        int iIndex = _chunkIndex.size() - 1;
 
         // find the previous chunk that is a frame
-        final int VID_CHUNK_ID = AVIstruct.string2int("00d_") & 0x00FFFFFF;
-        while (true) {
-            int iChunkId = _indexList.get(iIndex).dwChunkId;
-            // does it start with '00d'?
-            if ((iChunkId & 0x00FFFFFF) == VID_CHUNK_ID)
-                break;
-            else
-                iIndex--;
-        }
-        // add the same reference in the list
-        _indexList.add(_indexList.get(iIndex));
+        while (_chunkIndex.getChunkId(iIndex) != _iVideoChunkId)
+            iIndex--;
+        // add the same reference in the index
+        _chunkIndex.addCopy(iIndex);
         _lngFrameCount++;
     }
 
@@ -358,36 +421,20 @@ public abstract class AviWriter implements Closeable {
         AudioFormat fmt = audStream.getFormat();
         if (!fmt.matches(_audioFormat))
             throw new IllegalArgumentException("Audio stream format does not match.");
-        
-        Chunk data_size;
-
-        AVIOLDINDEXENTRY idxentry = new AVIOLDINDEXENTRY();
-        idxentry.dwOffset = (int)(_aviFile.getFilePointer() - (LIST_movi.getStart() + 4));
-        
-        idxentry.dwChunkId = AVIstruct.string2int("01wb");
-        idxentry.dwFlags = 0;
-        
-        data_size = new Chunk(_aviFile, "01wb");
 
-            if (_abWriteBuffer == null || _abWriteBuffer.length < _audioFormat.getFrameSize() * 1024)
-                _abWriteBuffer = new byte[_audioFormat.getFrameSize() * 1024];
+        if (_abWriteBuffer == null || _abWriteBuffer.length < _audioFormat.getFrameSize() * 1024)
+            _abWriteBuffer = new byte[_audioFormat.getFrameSize() * 1024];
 
-            // write the data then pad the data to 4 byte boundary
-            int i, iTotal = 0;
-            while ((i = audStream.read(_abWriteBuffer)) > 0) {
-                iTotal += i;
-                _lngSampleCount += i / _audioFormat.getFrameSize();
-                _aviFile.write(_abWriteBuffer, 0, i);
-            }
-            if (iTotal % _audioFormat.getFrameSize() != 0)
-                throw new RuntimeException("Read and wrote partial sample.");
+        // the chunk size is needed up front, so read it all first
+        ExposedBAOS audio = new ExposedBAOS();
+        int i;
+        while ((i = audStream.read(_abWriteBuffer)) > 0)
+            audio.write(_abWriteBuffer, 0, i);
+        if (audio.size() % _audioFormat.getFrameSize() != 0)
+            throw new RuntimeException("Read and wrote partial sample.");
 
-        // end the chunk
-        data_size.endChunk(_aviFile);
-        
-        // add this item to the index
-        idxentry.dwSize = data_size.getSize();
-        _indexList.add(idxentry);
+        writeMoviChunk(AUDIO_CHUNK_ID, audio.getBuffer(), 0, audio.size());
+        _lngSampleCount += audio.size() / _audioFormat.getFrameSize();
     }
 
     /** Audio data must be signed 16-bit PCM in little-endian order. */
@@ -405,24 +452,9 @@ public abstract class AviWriter implements Closeable {
         if (iLen % _audioFormat.getFrameSize() != 0)
             throw new IllegalArgumentException("Half an audio sample can't be processed.");
 
-        AVIOLDINDEXENTRY idxentry = new AVIOLDINDEXENTRY();
-        idxentry.dwOffset = (int)(_aviFile.getFilePointer() - (LIST_movi.getStart() + 4));
-        idxentry.dwChunkId = AVIstruct.string2int("01wb");
-        idxentry.dwFlags = 0;
-
-        Chunk data_size = new Chunk(_aviFile, "01wb");
-
-            // write the data
-            _aviFile.write(abData, iOfs, iLen);
-
-        // end the chunk
-        data_size.endChunk(_aviFile);
+        writeMoviChunk(AUDIO_CHUNK_ID, abData, iOfs, iLen);
 
         _lngSampleCount += iLen / _audioFormat.getFrameSize();
-
-        // add the index to the list
-        idxentry.dwSize = data_size.getSize();
-        _indexList.add(idxentry);
     }
 
     private static class ZeroInputStream extends InputStream {
@@ -454,30 +486,178 @@ public abstract class AviWriter implements Closeable {
     protected void writeFrameChunk(@Nonnull byte[] abData, int iOfs, int iLen) throws IOException {
         if (_aviFile == null) throw new LocalizedIOException(I.AVI_FILE_IS_CLOSED());
 
-        AVIOLDINDEXENTRY idxentry = new AVIOLDINDEXENTRY();
-        idxentry.dwOffset = (int)(_aviFile.getFilePointer() - (LIST_movi.getStart() + 4));
-        String sChunkId;
-        if (_blnCompressedVideo)
-            sChunkId = "00dc";  // dc for compressed frame
-        else
-            sChunkId = "00db";  // db for uncompressed frame
-        idxentry.dwChunkId = AVIstruct.string2int(sChunkId);
-        idxentry.dwFlags = AVIOLDINDEX.AVIIF_KEYFRAME; // Write the flags - select AVIIF_KEYFRAME
-                                                       // AVIIF_KEYFRAME 0x00000010L
-                                                       // The flag indicates key frames in the video sequence.
-        Chunk data_size = new Chunk(_aviFile, sChunkId);
-
-            // write the data
-            _aviFile.write(abData, iOfs, iLen);
-
-        // end the chunk
-        data_size.endChunk(_aviFile);
+        writeMoviChunk(_iVideoChunkId, abData, iOfs, iLen);
         
         _lngFrameCount++;
+    }
 
-        // add the index to the list
-        idxentry.dwSize = data_size.getSize();
-        _indexList.add(idxentry);
+    /** Writes a chunk to the current 'movi' list (padded to a 4 byte
+     * boundary) and adds it to the index. Starts a new RIFF segment first
+     * if the chunk would make the current one too big. */
+    private void writeMoviChunk(int iChunkId, @Nonnull byte[] abData, int iOfs, int iLen)
+            throws IOException
+    {
+        int iPaddedLen = (iLen + 3) & ~3;
+
+        // the size of the segment if this chunk and the segment's indexes are added
+        int iSegmentEntries = _chunkIndex.size() - _iSegmentStartEntry + 1;
+        long lngSegmentSize = getFilePosition() - _RIFF_chunk.getStart()
+                              + 8 + iPaddedLen + standardIndexesSize(iSegmentEntries);
+        if (_iSegmentCount == 1)
+            lngSegmentSize += 8 + iSegmentEntries * 16; // idx1
+        if (lngSegmentSize > _lngMaxRiffSize && iSegmentEntries > 1)
+            startNewSegment();
+
+        _chunkIndex.add(iChunkId, getFilePosition(), iPaddedLen);
+
+        bufferInt32LE(iChunkId);
+        bufferInt32LE(iPaddedLen);
+        bufferWrite(abData, iOfs, iLen);
+        bufferWrite(ZEROES3, 0, iPaddedLen - iLen);
+    }
+
+    /** Size of the 'ix##' chunks for all streams holding the given total
+     * number of entries. */
+    private int standardIndexesSize(int iEntries) {
+        int iStreams = _audioFormat == null ? 1 : 2;
+        return iStreams * 32 + iEntries * 8;
+    }
+
+    /** Closes the current RIFF segment and starts a new 'RIFF AVIX' one. */
+    private void startNewSegment() throws IOException {
+        if (_iSegmentCount >= AVISUPERINDEX.MAX_ENTRIES)
+            throw new LocalizedIOException(I.AVI_FILE_TOO_LARGE());
+
+        if (_iSegmentCount == 1)
+            _lngFirstSegmentFrameCount = _lngFrameCount;
+        endSegment(true);
+
+        _RIFF_chunk = new Chunk(_aviFile, "RIFF", "AVIX");
+            LIST_movi = new Chunk(_aviFile, "LIST", "movi");
+        _iSegmentStartEntry = _chunkIndex.size();
+        _iSegmentCount++;
+    }
+
+    /** Finishes the 'movi' list and RIFF of the current segment, with its
+     * indexes.
+     * @param blnOpenDml If the file uses OpenDML and so needs the 'ix##'
+     *                   standard indexes. */
+    private void endSegment(boolean blnOpenDml) throws IOException {
+        if (blnOpenDml) {
+            writeStandardIndex(_iVideoChunkId, "ix00", _indx_vid, 0);
+            if (_audioFormat != null)
+                writeStandardIndex(AUDIO_CHUNK_ID, "ix01", _indx_aud, _audioFormat.getFrameSize());
+        }
+        flushBuffer();
+        LIST_movi.endChunk(_aviFile);
+
+        if (_iSegmentCount == 1) {
+            writeOldIndex();
+            flushBuffer();
+        }
+        _RIFF_chunk.endChunk(_aviFile);
+    }
+
+    /** Writes the 'idx1' index of the chunks in the first segment. */
+    private void writeOldIndex() throws IOException {
+        int iEntries = _chunkIndex.size();
+        bufferInt32LE(AVIstruct.string2int("idx1"));
+        bufferInt32LE(iEntries * 16);
+        for (int i = 0; i < iEntries; i++) {
+            int iChunkId = _chunkIndex.getChunkId(i);
+            bufferInt32LE(iChunkId);
+            // all frames are key frames
+            bufferInt32LE(iChunkId == _iVideoChunkId ? AviChunkIndex.AVIIF_KEYFRAME : 0);
+            bufferInt32LE((int)(_chunkIndex.getPosition(i) - _lngFirstMoviPos));
+            bufferInt32LE(_chunkIndex.getSize(i));
+        }
+    }
+
+    /** Writes the 'ix##' index of one stream's chunks in the current segment
+     * and adds it to the stream's super index.
+     * @param iSampleSize Size of an audio sample, or 0 for video, to calculate
+     *                    the duration of the chunks. */
+    private void writeStandardIndex(int iChunkId, @Nonnull String sIxId,
+                                    @Nonnull AVISUPERINDEX superIndex,
+                                    int iSampleSize)
+            throws IOException
+    {
+        int iSegmentEnd = _chunkIndex.size();
+        int iEntries = 0;
+        long lngDuration = 0;
+        // repeated frames may point to an earlier position than the
+        // start of this segment, so the base is the lowest position
+        long lngBaseOffset = Long.MAX_VALUE;
+        for (int i = _iSegmentStartEntry; i < iSegmentEnd; i++) {
+            if (_chunkIndex.getChunkId(i) != iChunkId)
+                continue;
+            iEntries++;
+            if (iSampleSize == 0)
+                lngDuration++;
+            else
+                lngDuration += _chunkIndex.getSize(i) / iSampleSize;
+            // offsets in the standard index point to the chunk data
+            lngBaseOffset = Math.min(lngBaseOffset, _chunkIndex.getPosition(i) + 8);
+        }
+        if (iEntries == 0)
+            lngBaseOffset = 0;
+
+        int iEntry = superIndex.nEntriesInUse;
+        superIndex.dwChunkId = iChunkId;
+        superIndex.qwOffset[iEntry] = getFilePosition();
+        superIndex.dwSize[iEntry] = 32 + iEntries * 8;
+        superIndex.dwDuration[iEntry] = (int)lngDuration;
+        superIndex.nEntriesInUse++;
+
+        bufferInt32LE(AVIstruct.string2int(sIxId));
+        bufferInt32LE(24 + iEntries * 8);
+        bufferInt32LE(2 | (0 << 16) | (AVI_INDEX_OF_CHUNKS << 24)); // wLongsPerEntry, bIndexSubType, bIndexType
+        bufferInt32LE(iEntries);  // nEntriesInUse
+        bufferInt32LE(iChunkId);
+        bufferInt32LE((int)lngBaseOffset);
+        bufferInt32LE((int)(lngBaseOffset >>> 32));
+        bufferInt32LE(0);        // dwReserved3
+        for (int i = _iSegmentStartEntry; i < iSegmentEnd; i++) {
+            if (_chunkIndex.getChunkId(i) != iChunkId)
+                continue;
+            // all chunks are key frames, so the high bit is never set
+            bufferInt32LE((int)(_chunkIndex.getPosition(i) + 8 - lngBaseOffset));
+            bufferInt32LE(_chunkIndex.getSize(i));
+        }
+    }
+
+    // -- Write-behind buffer --------------------------------------------------
+
+    /** Position in the file of the next byte to be written. */
+    private long getFilePosition() throws IOException {
+        return _aviFile.getFilePointer() + _iFileBufferLength;
+    }
+
+    private void bufferWrite(@Nonnull byte[] ab, int iOfs, int iLen) throws IOException {
+        if (iLen > _abFileBuffer.length - _iFileBufferLength) {
+            flushBuffer();
+            if (iLen > _abFileBuffer.length) {
+                // too big to bother buffering
+                _aviFile.write(ab, iOfs, iLen);
+                return;
+            }
+        }
+        System.arraycopy(ab, iOfs, _abFileBuffer, _iFileBufferLength, iLen);
+        _iFileBufferLength += iLen;
+    }
+
+    private void bufferInt32LE(int i) throws IOException {
+        if (_abFileBuffer.length - _iFileBufferLength < 4)
+            flushBuffer();
+        IO.writeInt32LE(_abFileBuffer, _iFileBufferLength, i);
+        _iFileBufferLength += 4;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (_iFileBufferLength > 0) {
+            _aviFile.write(_abFileBuffer, 0, _iFileBufferLength);
+            _iFileBufferLength = 0;
+        }
     }
 
     /** Subclasses should implement writing of a simple blank frame. */
@@ -492,15 +672,11 @@ public abstract class AviWriter implements Closeable {
      */
     public void close() throws IOException {
         if (_aviFile == null) throw new LocalizedIOException(I.AVI_FILE_IS_CLOSED());
-        
-            LIST_movi.endChunk(_aviFile);
-            
-            // write idx
-            avioldidx = new AVIOLDINDEX(_indexList.toArray(new AVIOLDINDEXENTRY[_indexList.size()]));
-            avioldidx.write(_aviFile);
-            // /write idx
-            
-        _RIFF_chunk.endChunk(_aviFile);
+
+        boolean blnOpenDml = isOpenDml();
+        endSegment(blnOpenDml);
+        if (!blnOpenDml)
+            _lngFirstSegmentFrameCount = _lngFrameCount;
         
         //######################################################################
         //## Fill the headers fields ###########################################
@@ -517,7 +693,8 @@ public abstract class AviWriter implements Closeable {
                                               // 10H AVIF_HASINDEX: The AVI file has an idx1 chunk containing
                                               // an index at the end of the file.  For good performance, all
                                               // AVI files should contain an index.                         
-        _avih.dwTotalFrames         = _lngFrameCount;  // total frame number
+        _avih.dwTotalFrames         = _lngFirstSegmentFrameCount; // total frame number
+                                              // (OpenDML: only in the first RIFF)
         _avih.dwInitialFrames       = 0;      // Initial frame for interleaved files.
                                               // Noninterleaved files should specify 0.
         if (_audioFormat == null)
@@ -652,6 +829,19 @@ public abstract class AviWriter implements Closeable {
             _strh_aud.goBackAndWrite(_aviFile);
             _wavfmt.goBackAndWrite(_aviFile);
         }
+
+        // OpenDML headers are left as JUNK unless there are multiple segments
+        if (blnOpenDml) {
+            _indx_vid.makeIndex();
+            if (_audioFormat != null)
+                _indx_aud.makeIndex();
+            _odml.makeList();
+            _odml.dwGrandFrames = _lngFrameCount;
+        }
+        _indx_vid.goBackAndWrite(_aviFile);
+        if (_audioFormat != null)
+            _indx_aud.goBackAndWrite(_aviFile);
+        _odml.goBackAndWrite(_aviFile);
         
         // and we're done
         _aviFile.close();
@@ -664,13 +854,15 @@ public abstract class AviWriter implements Closeable {
                     _strf_vid = null;
                         _strh_vid = null;
                         _bif = null;
+                    _indx_vid = null;
                     _strn_vid = null;
                 _LIST_strl_aud = null;
                     _strf_aud = null;
                         _strh_aud = null;
                         _wavfmt = null;
+                    _indx_aud = null;
+                _odml = null;
             LIST_movi = null;
-            avioldidx = null;
     }
 
     // -------------------------------------------------------------------------
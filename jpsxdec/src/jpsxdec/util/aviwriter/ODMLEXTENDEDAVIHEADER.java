@@ -42,69 +42,44 @@ import java.io.RandomAccessFile;
 import javax.annotation.Nonnull;
 import jpsxdec.util.IO;
 
-/** Represents the 
- * <a href="http://msdn2.microsoft.com/en-us/library/ms779634(VS.85).aspx">AVIOLDINDEX</a>
- * C structure. */
-class AVIOLDINDEX extends AVIstruct {
+/** Represents the OpenDML 'odml' LIST holding the
+ * <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/ff625870(v=vs.85).aspx">ODMLExtendedAVIHeader</a>
+ * C structure.
+ * <p>
+ * Like {@link AVISUPERINDEX}, the space is always reserved in the header and
+ * the list is written as a 'JUNK' chunk if the AVI doesn't need OpenDML.
+ */
+class ODMLEXTENDEDAVIHEADER extends AVIstruct {
 
-    public static int AVIIF_KEYFRAME = 0x10;
-    
-    /** Struture used for the {@link AVIOLDINDEX#aIndex} array. */
-    public static class AVIOLDINDEXENTRY extends AVIstruct {
-        public /*DWORD*/ int dwChunkId = 0;
-        public /*DWORD*/ int dwFlags   = 0;
-        public /*DWORD*/ int dwOffset  = 0;
-        public /*DWORD*/ int dwSize    = 0;
-        
-        @Override
-        public void write(@Nonnull RandomAccessFile raf) throws IOException {
-            IO.writeInt32LE(raf, dwChunkId);
-            IO.writeInt32LE(raf, dwFlags  );
-            IO.writeInt32LE(raf, dwOffset );
-            IO.writeInt32LE(raf, dwSize   );
-        }
+    public       /*FOURCC*/ int fcc           = string2int("JUNK");
+    public final /*DWORD */ int cb            = sizeof() - 8;
+    public final /*FOURCC*/ int fccListType   = string2int("odml");
+    public final /*FOURCC*/ int fccDmlh       = string2int("dmlh");
+    public final /*DWORD */ int cbDmlh        = 248;
+    /** Total number of frames in all RIFF segments, unlike
+     * {@link AVIMAINHEADER#dwTotalFrames} which only counts the first. */
+    public       /*DWORD */ long dwGrandFrames = 0;
+    //public     /*DWORD */ int  dwFuture[61];
 
-        @Override
-        public int sizeof() {
-            return 16;
-        }
-        
-        public static @Nonnull AVIOLDINDEXENTRY[] newarray(int i) {
-            AVIOLDINDEXENTRY[] a = new AVIOLDINDEXENTRY[i];
-            for (int j = 0; j < a.length; j++) {
-                a[j] = new AVIOLDINDEXENTRY();
-            }
-            return a;
-        }
-        
-    }
-    
-    
-    public /*FOURCC*/ final int fcc    = string2int("idx1");
-    public /*DWORD */ final int cb     ;
-    @Nonnull
-    public final AVIOLDINDEXENTRY aIndex[];
-    
-    public AVIOLDINDEX(@Nonnull AVIOLDINDEXENTRY[] a) {
-        aIndex = a;
-        cb = sizeof() - 8;
+    /** Switches the structure from a 'JUNK' placeholder to a real 'LIST'. */
+    public void makeList() {
+        fcc = string2int("LIST");
     }
-    
+
     @Override
     public void write(@Nonnull RandomAccessFile raf) throws IOException {
         IO.writeInt32LE(raf, fcc);
-        IO.writeInt32LE(raf, cb );
-        for (AVIOLDINDEXENTRY e : aIndex) {
-            e.write(raf);
-        }
+        IO.writeInt32LE(raf, cb);
+        IO.writeInt32LE(raf, fccListType);
+        IO.writeInt32LE(raf, fccDmlh);
+        IO.writeInt32LE(raf, cbDmlh);
+        IO.writeInt32LE(raf, (int)dwGrandFrames);
+        raf.write(new byte[cbDmlh - 4]);
     }
 
     @Override
     public int sizeof() {
-        if (aIndex.length > 0)
-            return 8 + aIndex.length * aIndex[0].sizeof();
-        else
-            return 8;
+        return 20 + 248;
     }
-    
+
 }
@@ -37,12 +37,17 @@
 
 package jpsxdec.util.player;
 
-import java.util.Arrays;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 /** Very powerful, thread-safe, blocking queue with the ability to specify 
- * behavior when taking and adding items.  */
+ * behavior when taking and adding items.
+ * <p>
+ * Only one thread may write and one thread may read at a time
+ * (single-producer/single-consumer). Items are passed through a lock-free
+ * ring buffer, so the lock is only taken to change the state, or when a
+ * thread has to wait because the queue is full, empty, or paused. Waiting
+ * threads are only woken when there is something for them to do.  */
 class ObjectPlayStream<T> {
 
     private static final boolean DEBUG = false;
@@ -64,14 +69,18 @@ class ObjectPlayStream<T> {
     private volatile READ _eReadState = READ.PAUSED;
 
     @Nonnull
-    protected final T[] _aoQueue;
-    protected int _iHeadPos;
-    protected int _iTailPos;
-    private int _iSize;
+    private final T[] _aoQueue;
+    /** Total number of items read. Only changed by the reader, or while
+     * the reader is closed. */
+    private volatile long _lngHead = 0;
+    /** Total number of items written. Only changed by the writer. */
+    private volatile long _lngTail = 0;
+
+    private volatile boolean _blnReaderWaiting = false;
+    private volatile boolean _blnWriterWaiting = false;
 
     public ObjectPlayStream(int iCapacity) {
         _aoQueue = (T[]) new Object[iCapacity];
-        _iSize = _iHeadPos = _iTailPos = 0;
     }
 
     //////////////////////////////////
@@ -82,6 +91,8 @@ class ObjectPlayStream<T> {
 
     void writerOpen() {
         synchronized (_eventSync) {
+            if (_eReadState == READ.CLOSED)
+                discard();
             _eWriteState = WRITE.OPEN;
         }
     }
@@ -95,28 +106,36 @@ class ObjectPlayStream<T> {
 
     public void readerPause() {
         synchronized (_eventSync) {
+            if (_eReadState == READ.CLOSED)
+                discard();
             _eReadState = READ.PAUSED;
         }
     }
 
     public void readerOpen() {
         synchronized (_eventSync) {
+            if (_eReadState == READ.CLOSED)
+                discard();
             _eReadState = READ.OPEN;
             _eventSync.notifyAll();
         }
     }
 
+    /** Any items in the queue are discarded. */
     public void readerClose() {
         synchronized (_eventSync) {
             _eReadState = READ.CLOSED;
-            clear();
             _eventSync.notifyAll();
         }
     }
-    
-    private void clear() {
-        Arrays.fill(_aoQueue, null);
-        _iSize = _iHeadPos = _iTailPos = 0;
+
+    /** Drops everything in the queue. Only called by the reader, or while
+     * the reader is closed. */
+    private void discard() {
+        long lngTail = _lngTail;
+        for (long lng = _lngHead; lng < lngTail; lng++)
+            _aoQueue[(int)(lng % _aoQueue.length)] = null;
+        _lngHead = lngTail;
     }
 
     public boolean isReaderOpen() {
@@ -131,6 +150,13 @@ class ObjectPlayStream<T> {
         return _eReadState == READ.CLOSED;
     }
 
+    /** Wakes the other thread. Only needed if it said it was waiting. */
+    private void wakeUp() {
+        synchronized (_eventSync) {
+            _eventSync.notifyAll();
+        }
+    }
+
     /////////////////////////////////
 
     /** Returns true if object was added, or false if it wasn't.
@@ -141,35 +167,37 @@ class ObjectPlayStream<T> {
 
         if (DEBUG) System.out.println(Thread.currentThread().getName() + " add("+o.toString()+")");
 
-        synchronized (_eventSync) {
-            while (true) {
-                if (_eWriteState == WRITE.CLOSED || _eReadState == READ.CLOSED) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " closed: returning false");
-                    return false;
-                } else if (isFull()) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " full: waiting");
-                    _eventSync.wait();
-                } else {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " writing " + o.toString());
-                    enqueue(o);
-                    _iSize++;
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " notifying other threads and returning");
-                    _eventSync.notifyAll();
-                    return true;
-                }
+        while (true) {
+            if (_eWriteState == WRITE.CLOSED || _eReadState == READ.CLOSED) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " closed: returning false");
+                return false;
             }
-        }
-    }
 
-    private boolean isFull() {
-        return _iSize >= _aoQueue.length;
-    }
+            long lngTail = _lngTail;
+            if (lngTail - _lngHead < _aoQueue.length) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " writing " + o.toString());
+                _aoQueue[(int)(lngTail % _aoQueue.length)] = o;
+                _lngTail = lngTail + 1; // publishes the item to the reader
+                if (_blnReaderWaiting)
+                    wakeUp();
+                return true;
+            }
 
-    protected void enqueue(@Nonnull T o) {
-        _aoQueue[_iTailPos] = o;
-        _iTailPos++;
-        if (_iTailPos >= _aoQueue.length) {
-            _iTailPos = 0;
+            synchronized (_eventSync) {
+                // the flag must be set before checking again so the reader
+                // either sees it or this thread sees the reader's progress
+                _blnWriterWaiting = true;
+                try {
+                    if (_lngTail - _lngHead >= _aoQueue.length &&
+                        _eWriteState == WRITE.OPEN && _eReadState != READ.CLOSED)
+                    {
+                        if (DEBUG) System.out.println(Thread.currentThread().getName() + " full: waiting");
+                        _eventSync.wait();
+                    }
+                } finally {
+                    _blnWriterWaiting = false;
+                }
+            }
         }
     }
 
@@ -178,45 +206,51 @@ class ObjectPlayStream<T> {
     public @CheckForNull T read() throws InterruptedException {
         if (DEBUG) System.out.println(Thread.currentThread().getName() + " enter take()");
         
-        synchronized (_eventSync) {
-            while (true) {
-                if (_eReadState == READ.PAUSED) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " paused: waiting");
-                    _eventSync.wait();
-                } else if (_eReadState == READ.CLOSED) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " reader closed: returning null");
-                    return null;
-                } else if (isEmpty()) {
-                    if (_eWriteState == WRITE.CLOSED) {
-                        if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty & writer closed: closing reader & returning null");
-                        _eReadState = READ.CLOSED;
-                        return null;
-                    } else {
-                        if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty: waiting");
+        while (true) {
+            READ eReadState = _eReadState;
+            if (eReadState == READ.CLOSED) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " reader closed: returning null");
+                synchronized (_eventSync) {
+                    discard();
+                }
+                return null;
+            } else if (eReadState == READ.OPEN) {
+                long lngHead = _lngHead;
+                if (lngHead != _lngTail) {
+                    int iPos = (int)(lngHead % _aoQueue.length);
+                    T o = _aoQueue[iPos];
+                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " removing object: " + o.toString());
+                    _aoQueue[iPos] = null;
+                    _lngHead = lngHead + 1; // frees the space for the writer
+                    if (_blnWriterWaiting)
+                        wakeUp();
+                    return o;
+                }
+            }
+
+            synchronized (_eventSync) {
+                // the flag must be set before checking again so the writer
+                // either sees it or this thread sees the writer's progress
+                _blnReaderWaiting = true;
+                try {
+                    if (_eReadState == READ.PAUSED) {
+                        if (DEBUG) System.out.println(Thread.currentThread().getName() + " paused: waiting");
                         _eventSync.wait();
+                    } else if (_eReadState == READ.OPEN && _lngHead == _lngTail) {
+                        if (_eWriteState == WRITE.CLOSED) {
+                            if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty & writer closed: closing reader & returning null");
+                            _eReadState = READ.CLOSED;
+                            return null;
+                        } else {
+                            if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty: waiting");
+                            _eventSync.wait();
+                        }
                     }
-                } else {
-                    return dequeue();
+                } finally {
+                    _blnReaderWaiting = false;
                 }
             }
         }
     }
 
-    private boolean isEmpty() {
-        return _iSize <= 0;
-    }
-
-    /** Always called within <code>syncronized (_eventSync)</code> */
-    private @Nonnull T dequeue() {
-        T o = _aoQueue[_iHeadPos];
-        if (DEBUG) System.out.println(Thread.currentThread().getName() + " removing object: " + o.toString());
-        _aoQueue[_iHeadPos] = null;
-        _iHeadPos++;
-        if (_iHeadPos >= _aoQueue.length)
-            _iHeadPos = 0;
-        _iSize--;
-        _eventSync.notifyAll();
-        return o;
-    }
-
 }
@@ -97,6 +97,7 @@ class VideoPlayer implements Runnable, IVideoTimer {
                 boolean blnPresent = _vidTimer.waitToPresent(frame);
                 if (!blnPresent) {
                     System.out.println("Timer says to discard frame");
+                    frame.returnToPool();
                 } else {
                     if (DEBUG) System.out.println("===Displaying frame=== @" + frame.PresentationTime);
                     _screen.updateImage(frame);
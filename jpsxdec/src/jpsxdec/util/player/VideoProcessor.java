@@ -65,9 +65,15 @@ class VideoProcessor implements Runnable {
         _framesProcessingQueue.readerClose();
     }
 
+    /** Decoded frame RGB data, kept between runs of the thread. */
+    @CheckForNull
+    private int[] _aiImage;
+
     public void run() {
         IDecodableFrame decodeFrame;
-        int[] aiImage = new int[_vidPlayer.getWidth() * _vidPlayer.getHeight()];
+        if (_aiImage == null)
+            _aiImage = new int[_vidPlayer.getWidth() * _vidPlayer.getHeight()];
+        int[] aiImage = _aiImage;
         try {
             while ((decodeFrame = _framesProcessingQueue.read()) != null) {
                 // check that we haven't passed presentation time
@@ -87,6 +93,8 @@ class VideoProcessor implements Runnable {
                 } else {
                     System.out.println("Processor skipping frame :(");
                 }
+                // done with the source data, so it can be reused
+                decodeFrame.returnToPool();
             }
         } catch (Throwable ex) {
             ex.printStackTrace();
@@ -44,21 +44,43 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    com.mortennobel.imagescaling.ResampleOpTest.class,
     jpsxdec.audio.SpuDecodeCorruption.class,
+    jpsxdec.audio.XaDecodeBlock.class,
     jpsxdec.audio.XaDecodeCorruption.class,
+    jpsxdec.cdreaders.CdFileSectorReaderTest.class,
+    jpsxdec.cmdline.Command_VisualizeTest.class,
+    jpsxdec.cdreaders.SectorErrorCorrectionTest.class,
+    jpsxdec.cdreaders.SectorErrorMapTest.class,
+    jpsxdec.cdreaders.SectorWriteSessionTest.class,
     jpsxdec.discitems.FrameNumberFormatTest.class,
     jpsxdec.discitems.FrameNumberTest.class,
+    jpsxdec.discitems.FrameSeekTableTest.class,
     jpsxdec.discitems.SerializedDiscItemTest.class,
     jpsxdec.discitems.savers.FrameLookupTest.class,
+    jpsxdec.discitems.savers.SectorSweepTest.class,
+    jpsxdec.indexing.BinaryIndexFileTest.class,
+    jpsxdec.indexing.DemuxedUnidentifiedDataStreamTest.class,
+    jpsxdec.indexing.DiscIndexTest.class,
     jpsxdec.indexing.DiscIndexerXaAudioTest.class,
+    jpsxdec.indexing.DiscItemTreeTest.class,
     jpsxdec.indexing.psxvideofps.Fps.class,
     jpsxdec.psxvideo.bitstreams.BitReader.class,
+    jpsxdec.psxvideo.bitstreams.BufferedBitReaderTest.class,
+    jpsxdec.psxvideo.bitstreams.BitStreamUncompressorPoolTest.class,
+    jpsxdec.psxvideo.bitstreams.QscaleSearchTest.class,
     jpsxdec.psxvideo.bitstreams.Iki.class,
     jpsxdec.psxvideo.bitstreams.STRv2.class,
     jpsxdec.psxvideo.bitstreams.STRv3.class,
+    jpsxdec.psxvideo.mdec.MdecDecoder_int_parallelTest.class,
+    jpsxdec.psxvideo.mdec.idct.SparseIdctTest.class,
+    jpsxdec.psxvideo.mdec.tojpeg.JpegBitOutputStreamTest.class,
     jpsxdec.psxvideo.mdec.tojpeg.Mdec2JpegTest.class,
+    jpsxdec.sectors.SectorClassifierTest.class,
     jpsxdec.util.ArgParserTest.class,
-    jpsxdec.util.MiscTest.class
+    jpsxdec.util.MiscTest.class,
+    jpsxdec.util.aviwriter.AviWriterOpenDmlTest.class,
+    jpsxdec.util.player.ObjectPlayStreamTest.class
 })
 public class AllTestsSuite {
 
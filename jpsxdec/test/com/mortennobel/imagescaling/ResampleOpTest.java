@@ -0,0 +1,116 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.mortennobel.imagescaling;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResampleOpTest {
+
+    public ResampleOpTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static double[] randomPlane(Random rand, int iWidth, int iHeight) {
+        double[] adbl = new double[iWidth * iHeight];
+        for (int i = 0; i < adbl.length; i++)
+            adbl[i] = rand.nextDouble() * 255 - 128;
+        return adbl;
+    }
+
+    /** Upsamples each plane on its own with a new single threaded op. */
+    private static double[] expected(ResampleFilter filter, double[] adblSrc,
+                                     int iWidth, int iHeight)
+    {
+        ResampleOp op = new ResampleOp();
+        op.setNumberOfThreads(1);
+        op.setFilter(filter);
+        double[] adblDest = new double[iWidth * 2 * iHeight * 2];
+        op.doFilter(adblSrc, iWidth, iHeight, adblDest);
+        return adblDest;
+    }
+
+    private static void assertSameAsSinglePlane(ResampleOp op, Random rand,
+                                                int iWidth, int iHeight)
+    {
+        double[] adblSrc1 = randomPlane(rand, iWidth, iHeight);
+        double[] adblSrc2 = randomPlane(rand, iWidth, iHeight);
+        double[] adblDest1 = new double[iWidth * 2 * iHeight * 2];
+        double[] adblDest2 = new double[adblDest1.length];
+        op.doFilter(adblSrc1, adblDest1, adblSrc2, adblDest2, iWidth, iHeight);
+
+        String sCase = iWidth + "x" + iHeight + " " + op.getFilter().getName() +
+                       " threads:" + op.getNumberOfThreads();
+        assertArrayEquals(sCase, expected(op.getFilter(), adblSrc1, iWidth, iHeight), adblDest1, 0);
+        assertArrayEquals(sCase, expected(op.getFilter(), adblSrc2, iWidth, iHeight), adblDest2, 0);
+    }
+
+    /** Filtering both chroma planes at once, with 1 or more threads and
+     * the kernels and work buffers kept between calls, must give the same
+     * result as filtering each plane on its own. */
+    @Test
+    public void twoPlanesMatchSinglePlanes() {
+        Random rand = new Random(21);
+        for (int iThreads = 1; iThreads <= 4; iThreads += 3) {
+            ResampleOp op = new ResampleOp();
+            op.setNumberOfThreads(iThreads);
+            op.setFilter(ResampleFilters.getBiCubicFilter());
+            assertSameAsSinglePlane(op, rand, 40, 30);
+            // same size again reuses everything
+            assertSameAsSinglePlane(op, rand, 40, 30);
+            // new kernels for the same size
+            op.setFilter(ResampleFilters.getLanczos3Filter());
+            assertSameAsSinglePlane(op, rand, 40, 30);
+            // new kernels and work buffers for a different size
+            assertSameAsSinglePlane(op, rand, 17, 9);
+            op.setFilter(ResampleFilters.getBellFilter());
+            assertSameAsSinglePlane(op, rand, 17, 9);
+        }
+    }
+
+}
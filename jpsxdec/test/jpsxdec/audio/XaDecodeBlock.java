@@ -0,0 +1,166 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+
+public class XaDecodeBlock {
+
+    private static final int SECTORS = 20;
+
+    public XaDecodeBlock() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** Random ADPCM sectors, including the reserved ranges 13 to 15. */
+    private static byte[] makeAdpcm(int iBitsPerSample, Random rand) {
+        byte[] ab = new byte[XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR * SECTORS];
+        for (int i = 0; i < SECTORS; i++) {
+            System.arraycopy(SyntheticDisc.makeXaAdpcm(iBitsPerSample, true, rand), 0,
+                             ab, i * XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR,
+                             XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR);
+        }
+        return ab;
+    }
+
+    @Test
+    public void blockMatchesStream() throws Exception {
+        for (int iBits = 4; iBits <= 8; iBits += 4) {
+            byte[] abAdpcm = makeAdpcm(iBits, new Random(iBits));
+            for (int iStereo = 0; iStereo < 2; iStereo++) {
+                for (int iFixed = 0; iFixed < 2; iFixed++) {
+                    blockMatchesStream(abAdpcm, iBits, iStereo == 1, iFixed == 1, 1.0);
+                    blockMatchesStream(abAdpcm, iBits, iStereo == 1, iFixed == 1, 1.7);
+                }
+            }
+        }
+    }
+
+    private static void blockMatchesStream(byte[] abAdpcm, int iBits,
+                                           boolean blnStereo, boolean blnFixed,
+                                           double dblVolume)
+            throws Exception
+    {
+        String sCase = iBits + " bits stereo:" + blnStereo + " fixed:" + blnFixed + " vol:" + dblVolume;
+
+        XaAdpcmDecoder streamDecoder = new XaAdpcmDecoder(iBits, blnStereo, dblVolume);
+        streamDecoder.setPsxFixedPoint(blnFixed);
+        ByteArrayInputStream in = new ByteArrayInputStream(abAdpcm);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < SECTORS; i++)
+            streamDecoder.decode(in, expected, i);
+
+        XaAdpcmDecoder blockDecoder = new XaAdpcmDecoder(iBits, blnStereo, dblVolume);
+        blockDecoder.setPsxFixedPoint(blnFixed);
+        int iPcmSize = XaAdpcmDecoder.bytesGeneratedFromXaAdpcmSector(iBits);
+        byte[] abPcm = new byte[iPcmSize * SECTORS];
+        for (int i = 0; i < SECTORS; i++) {
+            int iWritten = blockDecoder.decode(abAdpcm, i * XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR,
+                                               abPcm, i * iPcmSize, i);
+            assertEquals(sCase, iPcmSize, iWritten);
+        }
+
+        assertTrue(sCase, Arrays.equals(expected.toByteArray(), abPcm));
+        assertEquals(sCase, streamDecoder.getSampleFramesWritten(), blockDecoder.getSampleFramesWritten());
+    }
+
+    /** The fixed-point decoding straight from the PlayStation specs. */
+    @Test
+    public void fixedMatchesHardware() throws Exception {
+        final int[] K0 = { 0, 60, 115,  98 };
+        final int[] K1 = { 0,  0, -52, -55 };
+
+        byte[] abAdpcm = makeAdpcm(4, new Random(1234));
+        short[] asiExpected = new short[XaAdpcmDecoder.pcmSamplesGeneratedFromXaAdpcmSector(4) * SECTORS];
+        int iOld = 0, iOlder = 0, iOut = 0;
+        for (int iGroup = 0; iGroup < abAdpcm.length; iGroup += XaAdpcmDecoder.SIZEOF_SOUND_GROUP) {
+            for (int iUnit = 0; iUnit < 8; iUnit++) {
+                int iParam = abAdpcm[iGroup + (iUnit & 3) + (iUnit >> 2) * 8];
+                int iFilter = (iParam >> 4) & 3;
+                int iShift = iParam & 0xf;
+                if (iShift > 12)
+                    iShift = 9;
+                for (int i = 0; i < 28; i++) {
+                    int iByte = abAdpcm[iGroup + 16 + i * 4 + iUnit / 2] & 0xff;
+                    int iNibble = (iUnit & 1) == 0 ? iByte & 0xf : iByte >> 4;
+                    int t = (short)(iNibble << 12) >> iShift;
+                    int s = t + ((iOld * K0[iFilter] + iOlder * K1[iFilter] + 32) >> 6);
+                    s = Math.max(-0x8000, Math.min(0x7fff, s));
+                    iOlder = iOld;
+                    iOld = s;
+                    asiExpected[iOut++] = (short)s;
+                }
+            }
+        }
+
+        XaAdpcmDecoder decoder = new XaAdpcmDecoder(4, false, 1.0);
+        decoder.setPsxFixedPoint(true);
+        short[] asiPcm = new short[asiExpected.length];
+        int iSamples = XaAdpcmDecoder.pcmSamplesGeneratedFromXaAdpcmSector(4);
+        for (int i = 0; i < SECTORS; i++)
+            decoder.decode(abAdpcm, i * XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR, asiPcm, i * iSamples, i);
+        assertTrue(Arrays.equals(asiExpected, asiPcm));
+    }
+
+}
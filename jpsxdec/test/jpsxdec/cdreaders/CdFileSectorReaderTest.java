@@ -0,0 +1,155 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.cdreaders;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class CdFileSectorReaderTest {
+
+    public CdFileSectorReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    /** Not a multiple of the sectors read at a time. */
+    private static final int SECTOR_COUNT = 301;
+
+    /** Creates a disc image of mode 2 form 1 and form 2 sectors. */
+    private static File makeDisc() throws IOException {
+        File file = File.createTempFile("CdFileSectorReaderTest", ".bin");
+        file.deleteOnExit();
+        Random rand = new Random(SECTOR_COUNT);
+        byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                rand.nextBytes(abUserData);
+                int iSubMode = (i % 3 == 0) ? 0x20 | 0x04 : 0x08;
+                fos.write(SyntheticDisc.makeMode2Sector(i, 0, 0, iSubMode, 0, abUserData));
+            }
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    private static void assertSameSector(CdSector expected, CdSector actual) {
+        assertEquals(expected.getSectorNumberFromStart(), actual.getSectorNumberFromStart());
+        assertEquals(expected.getUserDataFilePointer(), actual.getUserDataFilePointer());
+        assertArrayEquals(expected.getRawSectorDataCopy(), actual.getRawSectorDataCopy());
+        assertArrayEquals(expected.getCdUserDataCopy(), actual.getCdUserDataCopy());
+    }
+
+    @Test
+    public void mappedMatchesStream() throws Exception {
+        File disc = makeDisc();
+        CdFileSectorReader stream = new CdFileSectorReader(disc);
+        CdFileSectorReader mapped = new CdFileSectorReader(disc);
+        try {
+            assertTrue(mapped.enableMemoryMapping());
+            assertFalse(stream.isMemoryMapped());
+            assertEquals(SECTOR_COUNT, mapped.getLength());
+
+            // forward, backward, and jumping around
+            for (int i = 0; i < SECTOR_COUNT; i++)
+                assertSameSector(stream.getSector(i), mapped.getSector(i));
+            for (int i = SECTOR_COUNT - 1; i >= 0; i--)
+                assertSameSector(stream.getSector(i), mapped.getSector(i));
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                int iSector = (i * 97) % SECTOR_COUNT;
+                assertSameSector(stream.getSector(iSector), mapped.getSector(iSector));
+            }
+
+            byte[] abStream = new byte[SECTOR_COUNT * CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+            byte[] abMapped = new byte[abStream.length];
+            assertEquals(SECTOR_COUNT - 5, stream.readRawSectors(5, SECTOR_COUNT, abStream));
+            assertEquals(SECTOR_COUNT - 5, mapped.readRawSectors(5, SECTOR_COUNT, abMapped));
+            assertArrayEquals(abStream, abMapped);
+        } finally {
+            stream.close();
+            mapped.close();
+        }
+    }
+
+    /** Sectors already read by the mapped reader must not hide changes
+     * written to the disc image. */
+    @Test
+    public void mappedSeesWrites() throws Exception {
+        File disc = makeDisc();
+        CdFileSectorReader mapped = new CdFileSectorReader(disc, true);
+        try {
+            assertTrue(mapped.enableMemoryMapping());
+            CdSector before = mapped.getSector(10);
+            byte[] abOriginal = before.getRawSectorDataCopy();
+            byte[] abUserData = new byte[before.getCdUserDataSize()];
+            Arrays.fill(abUserData, (byte)0x5A);
+            mapped.writeSector(10, abUserData);
+
+            assertArrayEquals(abUserData, mapped.getSector(10).getCdUserDataCopy());
+            // sectors handed out before the write are unchanged
+            assertArrayEquals(abOriginal, before.getRawSectorDataCopy());
+
+            CdFileSectorReader stream = new CdFileSectorReader(disc);
+            try {
+                for (int i = 0; i < SECTOR_COUNT; i++)
+                    assertSameSector(stream.getSector(i), mapped.getSector(i));
+            } finally {
+                stream.close();
+            }
+        } finally {
+            mapped.close();
+        }
+        assertFalse(mapped.isMemoryMapped());
+    }
+
+}
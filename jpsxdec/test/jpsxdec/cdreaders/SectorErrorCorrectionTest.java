@@ -0,0 +1,231 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.cdreaders;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class SectorErrorCorrectionTest {
+
+    public SectorErrorCorrectionTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    /** The EDC one bit at a time. */
+    private static long slowEdc(byte[] ab, int iStart, int iEnd) {
+        long lngEdc = 0;
+        for (int i = iStart; i < iEnd; i++) {
+            lngEdc ^= ab[i] & 0xff;
+            for (int iBit = 0; iBit < 8; iBit++) {
+                if ((lngEdc & 1) != 0)
+                    lngEdc = (lngEdc >>> 1) ^ 0xD8018001L;
+                else
+                    lngEdc >>>= 1;
+            }
+        }
+        return lngEdc;
+    }
+
+    @Test
+    public void edc() {
+        Random rand = new Random(2352);
+        byte[] ab = new byte[3000];
+        for (int i = 0; i < 200; i++) {
+            rand.nextBytes(ab);
+            int iStart = rand.nextInt(20);
+            int iEnd = iStart + rand.nextInt(ab.length - iStart);
+            assertEquals(slowEdc(ab, iStart, iEnd),
+                         SectorErrorCorrection.generateErrorDetectionAndCorrection(ab, iStart, iEnd));
+        }
+    }
+
+    private static byte[] randomUserData(int iSeed) {
+        byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+        new Random(iSeed).nextBytes(abUserData);
+        return abUserData;
+    }
+
+    /** ECC P followed by ECC Q of {@link #knownSector(int)}, as generated by
+     * the original byte at a time implementation. */
+    private static final String MODE1_EMPTY_PQ =
+        "00f700f500000000000000000000000000000000000000000000000000000000"
+        + "0000000000000000000000000000000000000000000000000000000000000000"
+        + "0000000000000000000000000000000000000000000000f500f4000000000000"
+        + "0000000000000000000000000000000000000000000000000000000000000000"
+        + "0000000000000000000000000000000000000000000000000000000000000000"
+        + "0000000000000000000000000041000000000000000000000000000000000000"
+        + "0000000000000000000000000000000000000000000000000000006500c200e6"
+        + "0043000000000000000000000000000000000000000000000000000000000000"
+        + "0000000000000000000000000000009000c10012";
+    private static final String PATTERN_PQ =
+        "2a0dec1fbbec21595d316760d9cdfb888e2717ae9324e608eb03af8317a1df37"
+        + "782b6e9a7ce8f0726a0ec934968af2a8deddad4432c020b550b8b9fc6244068c"
+        + "e82b363d8d2f87a39939029a4bc514a1388d53fe256161e735670b1cc1794d21"
+        + "074049dd3b489eb737ce8334c6e81bb30fe36791df37881bcefa0c58d0927a1e"
+        + "e954861ab2684ecd4d6422d04095e048595c5234068cd8dbd69d3d5fe7838929"
+        + "e2badbd554e1281d731e3571efb0f9a443d63687967218677ac0d557961cf6b2"
+        + "b2d7dcb6bdacca1ab6bbba48f31a3a091ae0b6d9d74749c3659c13d137b38d1d"
+        + "80b50025dc6e20519a06dfe75598d695052c8a7d6e2cd988454a3b9adf123960"
+        + "ab758928e99dc7137acc6bb701dbdd2741369a76";
+    private static final String RANDOM_PQ =
+        "94e1853acfd011195f18e136f94b7eb078bf26ecd8511e192a00ae21c2dfdfb2"
+        + "3980603cf7cb10aa8f04e678312038785d79dceb28823d6b209bd2b9610a40d7"
+        + "4eecc92ee86695e04924bb4de6c94f8451ec8f88dd853e3e5c32a0efb1f612ce"
+        + "e58e744d95e4d2f2093a29bba7b7e3d777b349976a00eec196772aadc9910b97"
+        + "092a0c6e84c2648af3f8cd345cac7a302ccb592aced856a9b96eb06da0fc1980"
+        + "daceba624dfc183a857e8646263021f1577add0c8b08d8e6d6d34f055570b9ac"
+        + "504b092566d2f5ba86fe1e1662f007b78c925c12232300003ee38297c0fb4453"
+        + "8becebb716b987cfb065728442ee8effbd70f074e35200ecbafa0e2b806663a7"
+        + "ecc2b9466281746b2145d5d1957c2c66480b097c";
+
+    /** 0: a mode 1 sector that's empty except for the header,
+     *  1: a byte pattern after the header,
+     *  2: random bytes everywhere. */
+    private static byte[] knownSector(int iSector) {
+        byte[] abSector = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+        switch (iSector) {
+            case 0:
+                abSector[13] = 2;
+                abSector[15] = 1;
+                break;
+            case 1:
+                for (int i = 16; i < 0x81C; i++)
+                    abSector[i] = (byte)(i * 31 + 7);
+                break;
+            default:
+                new Random(22).nextBytes(abSector);
+        }
+        return abSector;
+    }
+
+    private static void assertPQ(String sExpected, byte[] abSector, int iOffset) {
+        byte[] abBuffer = new byte[iOffset + abSector.length];
+        System.arraycopy(abSector, 0, abBuffer, iOffset, abSector.length);
+        SectorErrorCorrection.generateErrorCorrectionCode_P(abBuffer, iOffset + 12, abBuffer, iOffset + 0x81C);
+        SectorErrorCorrection.generateErrorCorrectionCode_Q(abBuffer, iOffset + 12, abBuffer, iOffset + 0x8C8);
+        StringBuilder sb = new StringBuilder();
+        for (int i = iOffset + 0x81C; i < iOffset + 0x930; i++)
+            sb.append(String.format("%02x", abBuffer[i] & 0xff));
+        assertEquals(sExpected, sb.toString());
+    }
+
+    @Test
+    public void eccKnownSectors() {
+        assertPQ(MODE1_EMPTY_PQ, knownSector(0), 0);
+        assertPQ(PATTERN_PQ, knownSector(1), 0);
+        // in the middle of a larger buffer
+        assertPQ(RANDOM_PQ, knownSector(2), 100);
+    }
+
+    @Test
+    public void verifyMode2Form1() {
+        SectorErrorCorrection.Verifier verifier = new SectorErrorCorrection.Verifier();
+        byte[] abSector = SyntheticDisc.makeMode2Sector(0, 0, 0, 0x08, 0, randomUserData(1));
+        assertEquals(0, verifier.verify(abSector, 0));
+        byte[] abOriginal = abSector.clone();
+
+        // the header isn't covered by anything in mode 2
+        abSector[12] ^= 1;
+        assertEquals(0, verifier.verify(abSector, 0));
+        System.arraycopy(abOriginal, 0, abSector, 0, abSector.length);
+
+        abSector[100] ^= 1;
+        assertEquals(SectorErrorCorrection.Verifier.EDC_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_P_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_Q_ERROR,
+                     verifier.verify(abSector, 0));
+        byte[] abBefore = abSector.clone();
+        verifier.verify(abSector, 0);
+        assertArrayEquals("Sector should not be changed", abBefore, abSector);
+        System.arraycopy(abOriginal, 0, abSector, 0, abSector.length);
+
+        abSector[0x8C8 + 10] ^= 1;
+        assertEquals(SectorErrorCorrection.Verifier.ECC_Q_ERROR, verifier.verify(abSector, 0));
+    }
+
+    @Test
+    public void verifyMode2Form2() {
+        SectorErrorCorrection.Verifier verifier = new SectorErrorCorrection.Verifier();
+        byte[] abSector = SyntheticDisc.makeMode2Sector(0, 0, 0, 0x20 | 0x04, 0, randomUserData(2));
+        // in the middle of a larger buffer
+        byte[] abBuffer = new byte[abSector.length * 2];
+        System.arraycopy(abSector, 0, abBuffer, 100, abSector.length);
+        assertEquals(0, verifier.verify(abBuffer, 100));
+
+        abBuffer[100 + 2000] ^= 1;
+        assertEquals(SectorErrorCorrection.Verifier.EDC_ERROR, verifier.verify(abBuffer, 100));
+
+        // no EDC is ok for form 2
+        Arrays.fill(abBuffer, 100 + 0x92C, 100 + 0x930, (byte)0);
+        assertEquals(0, verifier.verify(abBuffer, 100));
+    }
+
+    @Test
+    public void verifyMode1() {
+        SectorErrorCorrection.Verifier verifier = new SectorErrorCorrection.Verifier();
+        byte[] abSector = SyntheticDisc.makeMode1Sector(0, randomUserData(3));
+        assertEquals(0, verifier.verify(abSector, 0));
+
+        // the header is covered in mode 1
+        abSector[13] ^= 1;
+        assertEquals(SectorErrorCorrection.Verifier.EDC_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_P_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_Q_ERROR,
+                     verifier.verify(abSector, 0));
+        abSector[13] ^= 1;
+
+        abSector[0x81C] ^= 1;
+        // Q covers P
+        assertEquals(SectorErrorCorrection.Verifier.ECC_P_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_Q_ERROR,
+                     verifier.verify(abSector, 0));
+    }
+
+}
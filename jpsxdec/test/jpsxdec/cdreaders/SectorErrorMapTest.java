@@ -0,0 +1,149 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import jpsxdec.util.ConsoleProgressLogger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class SectorErrorMapTest {
+
+    public SectorErrorMapTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static final int SECTOR_COUNT = 1000;
+    private static final int AUDIO_SECTOR = 700;
+
+    /** Creates a disc image with a few corrupted sectors and
+     * 1 CD audio sector. */
+    private static File makeDisc() throws Exception {
+        File file = File.createTempFile("SectorErrorMapTest", ".bin");
+        file.deleteOnExit();
+        Random rand = new Random(SECTOR_COUNT);
+        byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1];
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                rand.nextBytes(abUserData);
+                byte[] abSector = SyntheticDisc.makeMode2Sector(i, 0, 0, 0x08, 0, abUserData);
+                if (i == 5)
+                    abSector[100] ^= 1; // data
+                else if (i == 300)
+                    abSector[0x81C] ^= 1; // P parity
+                else if (i == SECTOR_COUNT - 1)
+                    abSector[0x8C8] ^= 1; // Q parity
+                else if (i == AUDIO_SECTOR)
+                    rand.nextBytes(abSector);
+                fos.write(abSector);
+            }
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    private static void assertErrors(SectorErrorMap map) {
+        assertEquals(SECTOR_COUNT, map.getSectorCount());
+        assertEquals(SECTOR_COUNT - 1, map.getCheckedCount());
+        assertEquals(3, map.getErrorSectorCount());
+        assertEquals(SectorErrorCorrection.Verifier.EDC_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_P_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_Q_ERROR,
+                     map.getSectorErrors(5));
+        assertEquals(SectorErrorCorrection.Verifier.ECC_P_ERROR |
+                     SectorErrorCorrection.Verifier.ECC_Q_ERROR,
+                     map.getSectorErrors(300));
+        assertEquals(SectorErrorCorrection.Verifier.ECC_Q_ERROR,
+                     map.getSectorErrors(SECTOR_COUNT - 1));
+        assertEquals(0, map.getSectorErrors(AUDIO_SECTOR));
+        assertEquals(5, map.nextErrorSector(0));
+        assertEquals(300, map.nextErrorSector(6));
+        assertEquals(-1, map.nextErrorSector(SECTOR_COUNT));
+        assertEquals(2, map.countErrorSectors(5, 300));
+        assertEquals(0, map.countErrorSectors(6, 299));
+    }
+
+    private static SectorErrorMap scan(CdFileSectorReader cd, int iThreads) throws Exception {
+        ConsoleProgressLogger pl = new ConsoleProgressLogger("SectorErrorMapTest", System.out);
+        try {
+            return SectorErrorMap.scan(cd, iThreads, pl);
+        } finally {
+            pl.close();
+        }
+    }
+
+    @Test
+    public void scanAndSave() throws Exception {
+        File disc = makeDisc();
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            assertEquals(CdFileSectorReader.SECTOR_SIZE_2352_BIN, cd.getRawSectorSize());
+            SectorErrorMap map = scan(cd, 1);
+            assertErrors(map);
+            // same result with threads and memory-mapping
+            assertErrors(scan(cd, 3));
+            cd.enableMemoryMapping();
+            assertErrors(scan(cd, 4));
+
+            File mapFile = File.createTempFile("SectorErrorMapTest", ".txt");
+            mapFile.deleteOnExit();
+            map.write(mapFile);
+            SectorErrorMap read = SectorErrorMap.read(mapFile);
+            assertErrors(read);
+            assertTrue(read.matches(cd));
+        } finally {
+            cd.close();
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import jpsxdec.util.ConsoleProgressLogger;
+import jpsxdec.util.IO;
+import jpsxdec.util.Misc;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class SectorWriteSessionTest {
+
+    public SectorWriteSessionTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    /** More than is buffered, so the session has to write some sectors
+     * before it is committed. */
+    private static final int SECTOR_COUNT = 1200;
+
+    /** Creates a disc image of mode 2 form 1 and form 2 sectors. */
+    private static File makeDisc() throws IOException {
+        File file = File.createTempFile("SectorWriteSessionTest", ".bin");
+        file.deleteOnExit();
+        Random rand = new Random(SECTOR_COUNT);
+        byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                rand.nextBytes(abUserData);
+                int iSubMode = (i % 3 == 0) ? 0x20 | 0x04 : 0x08;
+                fos.write(SyntheticDisc.makeMode2Sector(i, 0, 0, iSubMode, 0, abUserData));
+            }
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] ab = new byte[(int)file.length()];
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            IO.readByteArray(fis, ab);
+        } finally {
+            fis.close();
+        }
+        return ab;
+    }
+
+    /** Patches sectors out of order, some more than once. */
+    private static void patch(CdFileSectorReader cd, byte[][] aabExpected) throws IOException {
+        Random rand = new Random(1);
+        for (int i = 0; i < SECTOR_COUNT * 2; i++) {
+            int iSector = (i * 7919) % SECTOR_COUNT;
+            byte[] abUserData = new byte[cd.getSector(iSector).getCdUserDataSize()];
+            rand.nextBytes(abUserData);
+            cd.writeSector(iSector, abUserData);
+            aabExpected[iSector] = abUserData;
+            assertArrayEquals(abUserData, cd.getSector(iSector).getCdUserDataCopy());
+        }
+    }
+
+    private static ConsoleProgressLogger makeLog() {
+        return new ConsoleProgressLogger("SectorWriteSessionTest", System.out);
+    }
+
+    @Test
+    public void commit() throws Exception {
+        File disc = makeDisc();
+        CdFileSectorReader cd = new CdFileSectorReader(disc, true);
+        byte[][] aabExpected = new byte[SECTOR_COUNT][];
+        try {
+            SectorWriteSession session = cd.beginWriteSession(makeLog());
+            try {
+                patch(cd, aabExpected);
+                session.commit();
+            } finally {
+                session.close();
+            }
+            assertFalse(SectorWriteSession.getJournalFile(disc).exists());
+        } finally {
+            cd.close();
+        }
+
+        cd = new CdFileSectorReader(disc);
+        try {
+            SectorErrorCorrection.Verifier verifier = new SectorErrorCorrection.Verifier();
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                CdSector sector = cd.getSector(i);
+                assertArrayEquals(aabExpected[i], sector.getCdUserDataCopy());
+                assertEquals(0, verifier.verify(sector.getRawSectorDataCopy(), 0));
+            }
+        } finally {
+            cd.close();
+        }
+    }
+
+    @Test
+    public void rollbackOnClose() throws Exception {
+        File disc = makeDisc();
+        byte[] abOriginal = readFile(disc);
+        CdFileSectorReader cd = new CdFileSectorReader(disc, true);
+        try {
+            SectorWriteSession session = cd.beginWriteSession(makeLog());
+            try {
+                patch(cd, new byte[SECTOR_COUNT][]);
+                // some sectors were already written
+                assertTrue(SectorWriteSession.getJournalFile(disc).exists());
+            } finally {
+                session.close();
+            }
+            assertFalse(SectorWriteSession.getJournalFile(disc).exists());
+            assertArrayEquals(Misc.copyOfRange(abOriginal, 0, CdFileSectorReader.SECTOR_SIZE_2352_BIN),
+                              cd.getSector(0).getRawSectorDataCopy());
+        } finally {
+            cd.close();
+        }
+        assertArrayEquals(abOriginal, readFile(disc));
+    }
+
+    @Test
+    public void rollbackInterrupted() throws Exception {
+        File disc = makeDisc();
+        byte[] abOriginal = readFile(disc);
+        File journal = SectorWriteSession.getJournalFile(disc);
+        journal.deleteOnExit();
+
+        CdFileSectorReader cd = new CdFileSectorReader(disc, true);
+        try {
+            cd.beginWriteSession(makeLog());
+            byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1];
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                CdSector sector = cd.getSector(i);
+                if (sector.getCdUserDataSize() == abUserData.length)
+                    cd.writeSector(i, abUserData);
+            }
+            // the process is killed before the session is committed or closed
+        } finally {
+            cd.close();
+        }
+        assertTrue(journal.exists());
+        assertFalse(Arrays.equals(abOriginal, readFile(disc)));
+
+        // an entry partially written to the end of the journal is ignored
+        byte[] abJournal = readFile(journal);
+        IO.writeFile(journal, abJournal, 0, abJournal.length - 10);
+
+        // opening the disc for writing restores it
+        cd = new CdFileSectorReader(disc, true);
+        try {
+            assertFalse(journal.exists());
+            assertFalse(cd.rollbackInterruptedPatch());
+        } finally {
+            cd.close();
+        }
+        // only the sector of the partial entry is still patched
+        assertEquals(1, countDifferentSectors(abOriginal, readFile(disc)));
+    }
+
+    @Test
+    public void readOnlyLeavesInterruptedPatch() throws Exception {
+        File disc = makeDisc();
+        byte[] abOriginal = readFile(disc);
+        File journal = SectorWriteSession.getJournalFile(disc);
+        journal.deleteOnExit();
+
+        CdFileSectorReader cd = new CdFileSectorReader(disc, true);
+        try {
+            cd.beginWriteSession(makeLog());
+            byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1];
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                CdSector sector = cd.getSector(i);
+                if (sector.getCdUserDataSize() == abUserData.length)
+                    cd.writeSector(i, abUserData);
+            }
+            // the process is killed before the session is committed or closed
+        } finally {
+            cd.close();
+        }
+        byte[] abPatched = readFile(disc);
+        assertFalse(Arrays.equals(abOriginal, abPatched));
+
+        cd = new CdFileSectorReader(disc);
+        cd.close();
+        assertTrue(journal.exists());
+        assertArrayEquals(abPatched, readFile(disc));
+
+        cd = new CdFileSectorReader(disc, true);
+        cd.close();
+        assertFalse(journal.exists());
+        assertArrayEquals(abOriginal, readFile(disc));
+    }
+
+    private static int countDifferentSectors(byte[] ab1, byte[] ab2) {
+        int iDiffers = 0;
+        for (int i = 0; i < SECTOR_COUNT; i++) {
+            int iStart = i * CdFileSectorReader.SECTOR_SIZE_2352_BIN;
+            int iEnd = iStart + CdFileSectorReader.SECTOR_SIZE_2352_BIN;
+            if (!Arrays.equals(Misc.copyOfRange(ab1, iStart, iEnd), Misc.copyOfRange(ab2, iStart, iEnd)))
+                iDiffers++;
+        }
+        return iDiffers;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.cmdline;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.indexing.DiscIndex;
+import jpsxdec.sectors.SectorStrVideo;
+import jpsxdec.sectors.SectorXaAudio;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.QuietLogger;
+import testutil.SyntheticDisc;
+
+public class Command_VisualizeTest {
+
+    public Command_VisualizeTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static final int SECTORS = 1500;
+
+    private static Command_Visualize.MapBox findBox(List<Command_Visualize.MapBox> boxes, int iStartSector) {
+        for (Command_Visualize.MapBox box : boxes) {
+            if (box._iStartSector == iStartSector)
+                return box;
+        }
+        fail("No box starts at sector " + iStartSector);
+        return null;
+    }
+
+    /** Runs of the same sector type are one box each, and together they
+     * cover every sector of the disc. */
+    @Test
+    public void sectorRunsCoalesced() throws Exception {
+        File disc = SyntheticDisc.write(SECTORS);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            Command_Visualize vis = new Command_Visualize();
+            ArrayList<Command_Visualize.MapBox> boxes = new ArrayList<Command_Visualize.MapBox>();
+            vis.addSectorBoxes(cd, null, boxes);
+
+            int iNextSector = 0;
+            Color lastColor = null;
+            for (Command_Visualize.MapBox box : boxes) {
+                assertEquals(0, box._iX);
+                assertNull(box._sLabel);
+                assertEquals(iNextSector, box._iStartSector);
+                assertTrue(box._iSectorCount > 0);
+                assertFalse(box._color.equals(lastColor));
+                iNextSector += box._iSectorCount;
+                lastColor = box._color;
+            }
+            assertEquals(SECTORS, iNextSector);
+
+            // the video is 7 video sectors to every XA sector
+            Color videoColor = vis.classToColor(SectorStrVideo.class);
+            Color audioColor = vis.classToColor(SectorXaAudio.class);
+            Command_Visualize.MapBox box = findBox(boxes, 376);
+            assertEquals(1, box._iSectorCount);
+            assertEquals(audioColor, box._color);
+            box = findBox(boxes, 377);
+            assertEquals(7, box._iSectorCount);
+            assertEquals(videoColor, box._color);
+            // the audio on its own is one run to the end of the disc
+            box = findBox(boxes, SECTORS * 3 / 4);
+            assertEquals(SECTORS / 4, box._iSectorCount);
+            assertEquals(audioColor, box._color);
+        } finally {
+            cd.close();
+        }
+    }
+
+    /** Every item gets a box covering its sectors, and items that overlap
+     * are in different columns. */
+    @Test
+    public void itemBoxesInFreeColumns() throws Exception {
+        File disc = SyntheticDisc.write(SECTORS);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            DiscIndex index;
+            QuietLogger log = new QuietLogger("Command_VisualizeTest");
+            try {
+                index = new DiscIndex(cd, log);
+            } finally {
+                log.close();
+            }
+
+            DiscItem[] aoItems = Command_Visualize.sortedItems(index);
+            int[] aiDataPoints = Command_Visualize.extractDataPoints(aoItems);
+            int iMaxOverlap = Command_Visualize.findMaxOverlap(aiDataPoints, aoItems);
+            // the video and its audio overlap
+            assertEquals(2, iMaxOverlap);
+
+            ArrayList<Command_Visualize.MapBox> boxes = new ArrayList<Command_Visualize.MapBox>();
+            new Command_Visualize().addItemBoxes(aoItems, aiDataPoints, iMaxOverlap, boxes);
+
+            assertEquals(aoItems.length, boxes.size());
+            for (int i = 0; i < aoItems.length; i++) {
+                Command_Visualize.MapBox box = boxes.get(i);
+                assertEquals(aoItems[i].toString(), box._sLabel);
+                assertEquals(aoItems[i].getStartSector(), box._iStartSector);
+                assertEquals(aoItems[i].getSectorLength(), box._iSectorCount);
+                for (int j = 0; j < i; j++) {
+                    if (aoItems[i].getOverlap(aoItems[j]) > 0)
+                        assertTrue(box._iX != boxes.get(j)._iX);
+                }
+            }
+        } finally {
+            cd.close();
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems;
+
+import jpsxdec.discitems.savers.FrameLookup;
+import jpsxdec.util.DeserializationFail;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FrameSeekTableTest {
+
+    public FrameSeekTableTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** 200 frames, 10 sectors each, header frame numbers starting at 1. */
+    private static FrameSeekTable makeSimpleTable() {
+        FrameNumber.FactoryWithHeader factory = new FrameNumber.FactoryWithHeader();
+        FrameSeekTable.Builder builder = new FrameSeekTable.Builder();
+        for (int i = 0; i < 200; i++) {
+            builder.addFrame(factory.next(i * 10, i + 1), i * 10 + 9);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void build() {
+        FrameSeekTable table = makeSimpleTable();
+        assertNotNull(table);
+        assertEquals("64/@640/#65>649,128/@1280/#129>1289,192/@1920/#193>1929", table.serialize());
+    }
+
+    @Test
+    public void find() throws Exception {
+        FrameSeekTable table = makeSimpleTable();
+        assertNull(table.find(FrameLookup.deserialize("0")));
+        assertNull(table.find(FrameLookup.deserialize("63")));
+        assertEquals(640, table.find(FrameLookup.deserialize("65")).getSector());
+        assertEquals(640, table.find(FrameLookup.deserialize("127")).getSector());
+        assertEquals(1280, table.find(FrameLookup.deserialize("#130")).getSector());
+        assertEquals(1920, table.find(FrameLookup.deserialize("@5000")).getSector());
+        assertNull(table.find(FrameLookup.deserialize("@639")));
+        assertEquals(new FrameNumber(64, 640, 0, 65, 0),
+                     table.find(FrameLookup.deserialize("100")).getFrame());
+        assertEquals(649, table.find(FrameLookup.deserialize("100")).getPresentationSector());
+    }
+
+    /** Looking up the frame of a seek point starts right at it. */
+    @Test
+    public void findExactSeekPoint() throws Exception {
+        FrameSeekTable table = makeSimpleTable();
+        for (String sLookup : new String[] {"64", "@640", "#65"}) {
+            FrameSeekTable.SeekPoint seekPoint = table.find(FrameLookup.deserialize(sLookup));
+            assertNotNull(seekPoint);
+            assertEquals(sLookup, new FrameNumber(64, 640, 0, 65, 0), seekPoint.getFrame());
+        }
+        assertEquals(1280, table.find(FrameLookup.deserialize("128")).getSector());
+        assertEquals(1920, table.find(FrameLookup.deserialize("@1920")).getSector());
+        assertEquals(1280, table.find(FrameLookup.deserialize("@1919")).getSector());
+    }
+
+    @Test
+    public void overlappingFrames() {
+        FrameNumber.FactoryWithHeader factory = new FrameNumber.FactoryWithHeader();
+        FrameSeekTable.Builder builder = new FrameSeekTable.Builder();
+        for (int i = 0; i < 100; i++) {
+            // frame 63 ends after 64 starts, so 64 can't be a seek point
+            int iEnd = i == 63 ? i * 10 + 15 : i * 10 + 9;
+            builder.addFrame(factory.next(i * 10, i), iEnd);
+        }
+        FrameSeekTable table = builder.build();
+        assertNotNull(table);
+        assertEquals("65/@650/#65>659", table.serialize());
+    }
+
+    @Test
+    public void outOfOrder() {
+        FrameNumber.FactoryWithHeader factory = new FrameNumber.FactoryWithHeader();
+        FrameSeekTable.Builder builder = new FrameSeekTable.Builder();
+        for (int i = 0; i < 100; i++) {
+            builder.addFrame(factory.next(i * 10, i == 80 ? 5 : i), i * 10 + 9);
+        }
+        assertNull(builder.build());
+    }
+
+    @Test
+    public void tooShort() {
+        FrameNumber.FactoryNoHeader factory = new FrameNumber.FactoryNoHeader();
+        FrameSeekTable.Builder builder = new FrameSeekTable.Builder();
+        for (int i = 0; i < FrameSeekTable.SEEK_INTERVAL; i++) {
+            builder.addFrame(factory.next(i * 10), i * 10 + 9);
+        }
+        assertNull(builder.build());
+    }
+
+    @Test
+    public void serialize() throws Exception {
+        FrameSeekTable table = makeSimpleTable();
+        assertEquals(table.serialize(), new FrameSeekTable(table.serialize()).serialize());
+        assertEquals("1/@2.3/#4.5>6", new FrameSeekTable("1/@2.3/#4.5>6").serialize());
+    }
+
+    @Test
+    public void badSerialize() {
+        String[] test = {
+            "",
+            "1/@2/#3",
+            "1/@2/#3>",
+            "1/@2/#3>a",
+            "1/@2/#3>4,",
+            ">4",
+        };
+        for (String entry : test) {
+            try {
+                new FrameSeekTable(entry);
+                fail(entry);
+            } catch (DeserializationFail ex) {
+            }
+        }
+    }
+
+    @Test
+    public void primedFactory() {
+        FrameNumber start = new FrameNumber(64, 640, 0, 65, 1);
+        FrameNumber.FactoryWithHeader factory = new FrameNumber.FactoryWithHeader(start);
+        assertEquals(start, factory.next(640, 65));
+        assertEquals(new FrameNumber(65, 650, 0, 66, 0), factory.next(650, 66));
+
+        FrameNumber.FactoryNoHeader noHeader = new FrameNumber.FactoryNoHeader(new FrameNumber(10, 100, 0, 10, 0));
+        assertEquals(new FrameNumber(10, 100, 0, 10, 0), noHeader.next(100));
+        assertEquals(new FrameNumber(11, 110, 0, 11, 0), noHeader.next(110));
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jpsxdec.discitems.savers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.IDiscItemSaver;
+import jpsxdec.discitems.ISectorSweepSaver;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.i18n.UnlocalizedMessage;
+import jpsxdec.sectors.IdentifiedSector;
+import jpsxdec.util.FeedbackStream;
+import jpsxdec.util.LoggedFailure;
+import jpsxdec.util.ProgressLogger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class SectorSweepTest {
+
+    public SectorSweepTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static final int DISC_SECTORS = 400;
+
+    /** Records which sectors the sweep read, instead of logging. */
+    private static class SweptSectors extends ProgressLogger {
+        private final int _iFirst, _iLast;
+        public final TreeSet<Integer> sectors = new TreeSet<Integer>();
+        public SweptSectors(int iFirst, int iLast) {
+            super("SectorSweepTest", new PrintStream(new ByteArrayOutputStream()));
+            _iFirst = iFirst;
+            _iLast = iLast;
+        }
+        protected void handleProgressStart() {}
+        protected void handleProgressUpdate(double dblPercentComplete) {
+            sectors.add(Integer.valueOf((int)Math.round(_iFirst + dblPercentComplete * (_iLast - _iFirst))));
+        }
+        protected void handleProgressEnd() {}
+        public boolean isSeekingEvent() { return false; }
+        public void event(ILocalizedMessage msg) {}
+    }
+
+    private static class FakeSaver implements ISectorSweepSaver {
+        private final int _iStart, _iEnd;
+        /** Sector after which no more sectors are needed, or -1. */
+        private final int _iDoneAfter;
+        /** Sector that fails, or -1. */
+        private final int _iFailAt;
+
+        public final ArrayList<Integer> sectors = new ArrayList<Integer>();
+        public boolean blnStarted, blnEnded;
+        public int iCloseCount;
+
+        public FakeSaver(int iStart, int iEnd) {
+            this(iStart, iEnd, -1, -1);
+        }
+
+        public FakeSaver(int iStart, int iEnd, int iDoneAfter, int iFailAt) {
+            _iStart = iStart;
+            _iEnd = iEnd;
+            _iDoneAfter = iDoneAfter;
+            _iFailAt = iFailAt;
+        }
+
+        public int getSweepStartSector() {
+            return _iStart;
+        }
+
+        public int getSweepEndSector() {
+            return _iEnd;
+        }
+
+        public void sweepStart(ProgressLogger log) {
+            assertFalse(blnStarted);
+            blnStarted = true;
+        }
+
+        public boolean sweepSector(CdSector cdSector, IdentifiedSector idSector, ProgressLogger log)
+                throws LoggedFailure
+        {
+            assertTrue(blnStarted);
+            assertFalse(blnEnded);
+            assertEquals(0, iCloseCount);
+            int iSector = cdSector.getSectorNumberFromStart();
+            sectors.add(Integer.valueOf(iSector));
+            if (iSector == _iFailAt)
+                throw new LoggedFailure(Level.SEVERE, new UnlocalizedMessage("Failed at " + iSector));
+            return iSector == _iDoneAfter;
+        }
+
+        public void sweepEnd(ProgressLogger log) {
+            assertTrue(blnStarted);
+            assertFalse(blnEnded);
+            blnEnded = true;
+        }
+
+        public void sweepClose() {
+            iCloseCount++;
+        }
+
+        /** Checks the saver got every sector from its start to iLast,
+         * in order, and was closed once. */
+        public void assertSwept(int iLast, boolean blnEnded) {
+            ArrayList<Integer> expected = new ArrayList<Integer>();
+            for (int i = _iStart; i <= iLast; i++)
+                expected.add(Integer.valueOf(i));
+            assertEquals(expected, sectors);
+            assertEquals(blnEnded, this.blnEnded);
+            assertEquals(1, iCloseCount);
+        }
+
+        public void startSave(ProgressLogger pl) {
+            throw new UnsupportedOperationException();
+        }
+        public String getInput() {
+            return _iStart + "-" + _iEnd;
+        }
+        public ILocalizedMessage getOutputSummary() {
+            return new UnlocalizedMessage(getInput());
+        }
+        public void printSelectedOptions(FeedbackStream fbs) {
+        }
+        public DiscItem getDiscItem() {
+            throw new UnsupportedOperationException();
+        }
+        public File[] getGeneratedFiles() {
+            return null;
+        }
+    }
+
+    private static class Completed implements SectorSweep.Listener {
+        public final List<IDiscItemSaver> savers = new ArrayList<IDiscItemSaver>();
+        public void saverComplete(IDiscItemSaver saver) {
+            savers.add(saver);
+        }
+    }
+
+    /** Sweeps the savers over a generated disc.
+     * @return the failure thrown by the sweep, or null. */
+    private static LoggedFailure sweep(SweptSectors swept, Completed completed,
+                                       FakeSaver ... aoSavers)
+            throws Exception
+    {
+        File disc = SyntheticDisc.write(DISC_SECTORS);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            SectorSweep sweep = new SectorSweep(cd);
+            for (FakeSaver saver : aoSavers)
+                sweep.add(saver);
+            assertEquals(aoSavers.length, sweep.getSweepSaverCount());
+            try {
+                sweep.save(swept, completed);
+            } catch (LoggedFailure ex) {
+                return ex;
+            } finally {
+                swept.close();
+            }
+        } finally {
+            cd.close();
+        }
+        return null;
+    }
+
+    private static TreeSet<Integer> range(int iStart, int iEnd) {
+        TreeSet<Integer> sectors = new TreeSet<Integer>();
+        for (int i = iStart; i <= iEnd; i++)
+            sectors.add(Integer.valueOf(i));
+        return sectors;
+    }
+
+    @Test
+    public void overlappingItems() throws Exception {
+        FakeSaver a = new FakeSaver(10, 50);
+        FakeSaver b = new FakeSaver(20, 30);
+        FakeSaver c = new FakeSaver(40, 80);
+        FakeSaver d = new FakeSaver(45, 45);
+        FakeSaver e = new FakeSaver(81, 90); // adjacent to c
+        SweptSectors swept = new SweptSectors(10, 90);
+        Completed completed = new Completed();
+
+        // added out of order
+        assertNull(sweep(swept, completed, c, e, a, d, b));
+
+        a.assertSwept(50, true);
+        b.assertSwept(30, true);
+        c.assertSwept(80, true);
+        d.assertSwept(45, true);
+        e.assertSwept(90, true);
+        assertEquals(range(10, 90), swept.sectors);
+        // completed as soon as the sweep passes their last sector
+        assertEquals(Arrays.asList(b, d, a, c, e), completed.savers);
+    }
+
+    @Test
+    public void gapsBetweenRuns() throws Exception {
+        FakeSaver a = new FakeSaver(0, 9);
+        FakeSaver b = new FakeSaver(5, 12);
+        FakeSaver c = new FakeSaver(100, 109);
+        FakeSaver d = new FakeSaver(250, DISC_SECTORS - 1);
+        SweptSectors swept = new SweptSectors(0, DISC_SECTORS - 1);
+        Completed completed = new Completed();
+
+        assertNull(sweep(swept, completed, d, c, b, a));
+
+        a.assertSwept(9, true);
+        b.assertSwept(12, true);
+        c.assertSwept(109, true);
+        d.assertSwept(DISC_SECTORS - 1, true);
+        // nothing in the gaps was read
+        TreeSet<Integer> expected = range(0, 12);
+        expected.addAll(range(100, 109));
+        expected.addAll(range(250, DISC_SECTORS - 1));
+        assertEquals(expected, swept.sectors);
+        assertEquals(4, completed.savers.size());
+    }
+
+    @Test
+    public void saverFinishesEarly() throws Exception {
+        FakeSaver a = new FakeSaver(10, 100, 20, -1);
+        FakeSaver b = new FakeSaver(15, 60);
+        // the only saver in its run, so the rest of the run isn't read
+        FakeSaver c = new FakeSaver(200, 300, 205, -1);
+        SweptSectors swept = new SweptSectors(10, 300);
+        Completed completed = new Completed();
+
+        assertNull(sweep(swept, completed, a, b, c));
+
+        a.assertSwept(20, true);
+        b.assertSwept(60, true);
+        c.assertSwept(205, true);
+        TreeSet<Integer> expected = range(10, 60);
+        expected.addAll(range(200, 205));
+        assertEquals(expected, swept.sectors);
+        assertEquals(Arrays.asList(a, b, c), completed.savers);
+    }
+
+    /** A saver that fails is closed, the others still get all their
+     * sectors, and the failure is thrown at the end. */
+    @Test
+    public void saverFailsMidSweep() throws Exception {
+        FakeSaver a = new FakeSaver(10, 50);
+        FakeSaver b = new FakeSaver(20, 40, -1, 30);
+        FakeSaver c = new FakeSaver(35, 70);
+        FakeSaver d = new FakeSaver(100, 120);
+        SweptSectors swept = new SweptSectors(10, 120);
+        Completed completed = new Completed();
+
+        LoggedFailure failure = sweep(swept, completed, a, b, c, d);
+        assertNotNull(failure);
+        assertEquals("Failed at 30", failure.getMessage());
+
+        a.assertSwept(50, true);
+        b.assertSwept(30, false);
+        c.assertSwept(70, true);
+        d.assertSwept(120, true);
+        assertEquals(Arrays.asList(a, c, d), completed.savers);
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jpsxdec.indexing;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.DiscItemStrVideoStream;
+import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.util.ILocalizedLogger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.QuietLogger;
+import testutil.SyntheticDisc;
+
+public class BinaryIndexFileTest {
+
+    public BinaryIndexFileTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    /** Keeps the warnings logged while loading. */
+    private static class WarningList implements ILocalizedLogger {
+        public final List<ILocalizedMessage> warnings = new ArrayList<ILocalizedMessage>();
+        public void log(Level level, ILocalizedMessage msg) {
+            log(level, msg, null);
+        }
+        public void log(Level level, ILocalizedMessage msg, Throwable debugException) {
+            if (level.intValue() >= Level.WARNING.intValue())
+                warnings.add(msg);
+        }
+    }
+
+    private static DiscIndex index(CdFileSectorReader cd) throws Exception {
+        QuietLogger log = new QuietLogger("BinaryIndexFileTest");
+        try {
+            return new DiscIndex(cd, log);
+        } finally {
+            log.close();
+        }
+    }
+
+    private static File writeBinary(DiscIndex index) throws Exception {
+        File file = File.createTempFile("BinaryIndexFileTest", BinaryIndexFile.EXTENSION);
+        file.deleteOnExit();
+        index.serializeIndexBinary(file);
+        return file;
+    }
+
+    @Test
+    public void writeThenRead() throws Exception {
+        File disc = SyntheticDisc.write(1500);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            DiscIndex index = index(cd);
+            assertTrue(index.size() >= 3);
+            File file = writeBinary(index);
+            assertTrue(BinaryIndexFile.isBinaryIndex(file));
+
+            BinaryIndexFile binIndex = new BinaryIndexFile(file);
+            try {
+                assertEquals(cd.serialize(), binIndex.getCdSerialization());
+                assertEquals(index.size(), binIndex.getItemCount());
+                WarningList log = new WarningList();
+                List<SerializedDiscItem> items = binIndex.readAllItems(log);
+                assertEquals(0, log.warnings.size());
+                assertEquals(index.size(), items.size());
+                for (int i = 0; i < index.size(); i++) {
+                    assertEquals(index.getByIndex(i).serialize().serialize(),
+                                 items.get(i).serialize());
+                }
+            } finally {
+                binIndex.close();
+            }
+
+            WarningList log = new WarningList();
+            DiscIndex loaded = new DiscIndex(file.getPath(), cd, log);
+            assertEquals(0, log.warnings.size());
+            assertEquals(index.size(), loaded.size());
+            for (int i = 0; i < index.size(); i++) {
+                assertEquals(index.getByIndex(i).serialize().serialize(),
+                             loaded.getByIndex(i).serialize().serialize());
+            }
+        } finally {
+            cd.close();
+        }
+    }
+
+    /** A damaged item is skipped with a warning, like a bad line in a
+     * text index, and the other items still load. */
+    @Test
+    public void corruptedItemSkipped() throws Exception {
+        File disc = SyntheticDisc.write(1500);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            DiscIndex index = index(cd);
+            int iCorrupt = index.size() - 1;
+            DiscItem corrupt = index.getByIndex(iCorrupt);
+            File file = writeBinary(index);
+
+            // the item blocks come before the table of contents, so the
+            // first copy of the id is in the item's own block
+            byte[] abFile = new byte[(int)file.length()];
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.readFully(abFile);
+                byte[] abId = corrupt.getIndexId().serialize().getBytes("UTF-8");
+                int iPos = indexOf(abFile, abId);
+                assertTrue(iPos > 0);
+                raf.seek(iPos);
+                raf.write(abId[0] ^ 0x20);
+            } finally {
+                raf.close();
+            }
+
+            WarningList log = new WarningList();
+            DiscIndex loaded = new DiscIndex(file.getPath(), cd, log);
+            assertEquals(1, log.warnings.size());
+            assertEquals(index.size() - 1, loaded.size());
+            for (int i = 0; i < loaded.size(); i++) {
+                assertEquals(index.getByIndex(i).serialize().serialize(),
+                             loaded.getByIndex(i).serialize().serialize());
+            }
+            assertNull(loaded.getById(corrupt.getIndexId().serialize()));
+        } finally {
+            cd.close();
+        }
+    }
+
+    /** Loading one item only reads the blocks of the items that share its
+     * sectors, so damaged blocks elsewhere in the file are never noticed. */
+    @Test
+    public void loadOneItem() throws Exception {
+        File disc = SyntheticDisc.write(1500);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            DiscIndex index = index(cd);
+            DiscItem video = null;
+            for (DiscItem item : index) {
+                if (item instanceof DiscItemStrVideoStream) {
+                    video = item;
+                    break;
+                }
+            }
+            assertNotNull(video);
+            File file = writeBinary(index);
+
+            List<DiscItem> shared = new ArrayList<DiscItem>();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                byte[] abFile = new byte[(int)file.length()];
+                raf.readFully(abFile);
+                for (DiscItem item : index) {
+                    if (item.getOverlap(video) > 0) {
+                        shared.add(item);
+                    } else {
+                        byte[] abId = item.getIndexId().serialize().getBytes("UTF-8");
+                        int iPos = indexOf(abFile, abId);
+                        assertTrue(iPos > 0);
+                        raf.seek(iPos);
+                        raf.write(abId[0] ^ 0x20);
+                    }
+                }
+            } finally {
+                raf.close();
+            }
+            assertTrue(shared.size() > 1);
+            assertTrue(shared.size() < index.size());
+
+            BinaryIndexFile binIndex = new BinaryIndexFile(file);
+            try {
+                BinaryIndexFile.Entry entry = binIndex.getEntry(video.getIndexId().serialize());
+                assertNotNull(entry);
+                assertSame(entry, binIndex.getEntry(video.getIndex()));
+                assertEquals(video.getStartSector(), entry.getStartSector());
+                assertEquals(video.getEndSector(), entry.getEndSector());
+                assertEquals(video.serialize().getType(), entry.getType());
+                assertEquals(video.serialize().serialize(),
+                             binIndex.readItem(entry).serialize());
+                assertEquals(shared.size(), binIndex.getEntriesInSectorRange(
+                        video.getStartSector(), video.getEndSector()).size());
+            } finally {
+                binIndex.close();
+            }
+
+            Object[] aoKeys = {video.getIndexId().serialize(), Integer.valueOf(video.getIndex())};
+            for (Object key : aoKeys) {
+                WarningList log = new WarningList();
+                DiscIndex loaded = new DiscIndex(file.getPath(), cd, key, log);
+                assertEquals(0, log.warnings.size());
+                assertEquals(shared.size(), loaded.size());
+                for (DiscItem item : shared) {
+                    assertEquals(item.serialize().serialize(),
+                                 loaded.getByIndex(item.getIndex()).serialize().serialize());
+                }
+                // the video's audio is a child again
+                assertEquals(((DiscItemStrVideoStream)video).hasAudio(),
+                             ((DiscItemStrVideoStream)loaded.getByIndex(video.getIndex())).hasAudio());
+            }
+
+            WarningList log = new WarningList();
+            DiscIndex loaded = new DiscIndex(file.getPath(), cd, log);
+            assertEquals(index.size() - shared.size(), log.warnings.size());
+        } finally {
+            cd.close();
+        }
+    }
+
+    private static int indexOf(byte[] ab, byte[] abFind) {
+        search:
+        for (int i = 0; i <= ab.length - abFind.length; i++) {
+            for (int j = 0; j < abFind.length; j++) {
+                if (ab[i + j] != abFind[j])
+                    continue search;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+}
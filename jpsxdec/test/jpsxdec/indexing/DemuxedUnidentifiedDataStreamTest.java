@@ -0,0 +1,262 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
+import jpsxdec.sectors.IdentifiedSector;
+import jpsxdec.tim.Tim;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class DemuxedUnidentifiedDataStreamTest {
+
+    public DemuxedUnidentifiedDataStreamTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static final int SECTOR_COUNT = 16;
+
+    /** TIM header tag, version, flags (4 bits per pixel with CLUT) and 0s. */
+    private static final byte[] TIM_HEADER = {0x10, 0, 0, 0, 0x08, 0, 0, 0};
+
+    private static final DiscIndexer.Static TIM_INDEXER = new DiscIndexerTim();
+    private static final long[] MASKS = { TIM_INDEXER.getSignatureMask() };
+    private static final long[] VALUES = { TIM_INDEXER.getSignatureValue() };
+
+    /** Every 3rd sector is form 2 so the sequence mixes user data sizes. */
+    private static int userDataSize(int iSector) {
+        return iSector % 3 == 1 ? CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2
+                                : CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1;
+    }
+
+    /** Copies the bytes into the user data, continuing into the following
+     * sectors if they don't fit. */
+    private static void put(byte[][] aabUserData, int iSector, int iOffset, byte[] ab) {
+        for (byte b : ab) {
+            if (iOffset >= aabUserData[iSector].length) {
+                iSector++;
+                iOffset = 0;
+            }
+            aabUserData[iSector][iOffset++] = b;
+        }
+    }
+
+    private static byte[] header(int iIndex, int iValue) {
+        byte[] ab = TIM_HEADER.clone();
+        ab[iIndex] = (byte)iValue;
+        return ab;
+    }
+
+    private static byte[] makeTim() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Tim.create(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), 4).write(os);
+        return os.toByteArray();
+    }
+
+    /** Writes a disc of unidentifiable data sectors with TIM headers and
+     * near matches scattered through it. */
+    private static File writeDisc() throws Exception {
+        Random rand = new Random(17);
+        byte[][] aabUserData = new byte[SECTOR_COUNT][];
+        for (int i = 0; i < SECTOR_COUNT; i++) {
+            aabUserData[i] = new byte[userDataSize(i)];
+            rand.nextBytes(aabUserData[i]);
+        }
+
+        // the very first offset is checked
+        put(aabUserData, 0, 0, TIM_HEADER);
+        // the flags the mask ignores
+        put(aabUserData, 0, 100, header(4, 0x0B));
+        put(aabUserData, 0, 108, header(4, 0x02));
+        // not on a 4 byte boundary
+        put(aabUserData, 0, 202, TIM_HEADER);
+        // straddles a form 2 sector and the form 1 sector after it
+        put(aabUserData, 1, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2 - 4, header(4, 0x09));
+        // a whole TIM straddling the boundary of two form 1 sectors
+        put(aabUserData, 2, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1 - 4, makeTim());
+        // decoys that only differ in one checked field
+        put(aabUserData, 5, 0, header(0, 0x11));
+        put(aabUserData, 5, 16, header(1, 0x01));
+        put(aabUserData, 5, 32, header(2, 0x01));
+        put(aabUserData, 5, 48, header(3, 0x80));
+        put(aabUserData, 5, 64, header(4, 0x04));
+        put(aabUserData, 5, 80, header(4, 0x10));
+        put(aabUserData, 5, 96, header(5, 0x01));
+        put(aabUserData, 5, 112, header(6, 0x01));
+        put(aabUserData, 5, 128, header(7, 0x01));
+        put(aabUserData, 6, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1 - 4, header(4, 0x0C));
+        // one right after another
+        put(aabUserData, 9, 0, TIM_HEADER);
+        put(aabUserData, 9, 8, TIM_HEADER);
+        put(aabUserData, 9, 16, TIM_HEADER);
+        // only complete headers can match at the end
+        int iLastSize = userDataSize(SECTOR_COUNT - 1);
+        put(aabUserData, SECTOR_COUNT - 1, iLastSize - 12, TIM_HEADER);
+        put(aabUserData, SECTOR_COUNT - 1, iLastSize - 4, new byte[] {0x10, 0, 0, 0});
+
+        File file = File.createTempFile("DemuxedUnidentifiedDataStreamTest", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < SECTOR_COUNT; i++) {
+                int iSubMode = userDataSize(i) == CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2
+                               ? SubMode.MASK_FORM | SubMode.MASK_DATA : SubMode.MASK_DATA;
+                fos.write(SyntheticDisc.makeMode2Sector(i, 0, 0, iSubMode, 0, aabUserData[i]));
+            }
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    private static class Iter extends UnidentifiedSectorIterator {
+        public Iter(CdFileSectorReader cd) {
+            super(cd);
+        }
+        protected void sectorRead(CdSector cdSector, IdentifiedSector idSector) {
+        }
+    }
+
+    private static boolean matches(byte[] ab) {
+        long lngData = 0;
+        for (int i = 7; i >= 0; i--)
+            lngData = (lngData << 8) | (ab[i] & 0xff);
+        for (int i = 0; i < MASKS.length; i++) {
+            if ((lngData & MASKS[i]) == VALUES[i])
+                return true;
+        }
+        return false;
+    }
+
+    /** The marks where the old indexing loop, which stopped at every 4 bytes
+     * and read the stream from there, would have seen a signature. */
+    private static List<String> scanEvery4Bytes(File disc) throws Exception {
+        List<String> found = new ArrayList<String>();
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            Iter iter = new Iter(cd);
+            while (iter.seekToNextUnidentified()) {
+                DemuxedUnidentifiedDataStream stream = new DemuxedUnidentifiedDataStream(iter);
+                do {
+                    String sMark = stream.getCurrentSector() + "@" + stream.getCurrentSectorOffset();
+                    byte[] ab = new byte[8];
+                    int iRead = 0, iByte;
+                    while (iRead < ab.length && (iByte = stream.read()) >= 0)
+                        ab[iRead++] = (byte)iByte;
+                    if (iRead == ab.length && matches(ab))
+                        found.add(sMark);
+                } while (stream.resetSkipMark(4));
+            }
+        } finally {
+            cd.close();
+        }
+        return found;
+    }
+
+    private static List<String> scanSignatures(File disc, List<Boolean> isTim) throws Exception {
+        List<String> found = new ArrayList<String>();
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            Iter iter = new Iter(cd);
+            while (iter.seekToNextUnidentified()) {
+                DemuxedUnidentifiedDataStream stream = new DemuxedUnidentifiedDataStream(iter);
+                while (stream.skipMarkToSignature(MASKS, VALUES)) {
+                    found.add(stream.getCurrentSector() + "@" + stream.getCurrentSectorOffset());
+                    try {
+                        isTim.add(Boolean.valueOf(Tim.isTim(stream) != null));
+                    } catch (EOFException ex) {
+                        isTim.add(Boolean.FALSE);
+                    }
+                    if (!stream.resetSkipMark(4))
+                        break;
+                }
+            }
+        } finally {
+            cd.close();
+        }
+        return found;
+    }
+
+    @Test
+    public void sameOffsetsAsEvery4Bytes() throws Exception {
+        File disc = writeDisc();
+        List<Boolean> isTim = new ArrayList<Boolean>();
+        List<String> found = scanSignatures(disc, isTim);
+        assertEquals(scanEvery4Bytes(disc), found);
+        int iLastSize = userDataSize(SECTOR_COUNT - 1);
+        assertEquals(Arrays.asList("0@0", "0@100", "0@108",
+                                   "1@" + (CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2 - 4),
+                                   "2@" + (CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1 - 4),
+                                   "9@0", "9@8", "9@16",
+                                   (SECTOR_COUNT - 1) + "@" + (iLastSize - 12)),
+                     found);
+        // reading from the mark gives the TIM straddling the sectors
+        assertEquals(Boolean.TRUE, isTim.get(4));
+    }
+
+    @Test
+    public void everyTimTypeMatchesSignature() throws Exception {
+        for (int iBitsPerPixel : new int[] {4, 8, 16, 24}) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            Tim.create(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), iBitsPerPixel).write(os);
+            assertTrue(String.valueOf(iBitsPerPixel), matches(os.toByteArray()));
+        }
+    }
+
+}
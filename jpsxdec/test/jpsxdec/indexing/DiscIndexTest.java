@@ -0,0 +1,100 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.io.File;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.QuietLogger;
+import testutil.SyntheticDisc;
+
+public class DiscIndexTest {
+
+    public DiscIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static DiscIndex index(CdFileSectorReader cd, int iThreads) throws Exception {
+        QuietLogger log = new QuietLogger("DiscIndexTest");
+        try {
+            return new DiscIndex(cd, iThreads, log);
+        } finally {
+            log.close();
+        }
+    }
+
+    private static void assertSameIndex(DiscIndex expected, DiscIndex actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            DiscItem expectedItem = expected.getByIndex(i);
+            DiscItem actualItem = actual.getByIndex(i);
+            assertEquals(expectedItem.serialize().serialize(), actualItem.serialize().serialize());
+        }
+    }
+
+    /** Sector identification in parallel ranges must find exactly the
+     * same items as identifying every sector in order. */
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        // several identification ranges, ending partway through one
+        File disc = SyntheticDisc.write(1500);
+        CdFileSectorReader cd = new CdFileSectorReader(disc);
+        try {
+            DiscIndex sequential = index(cd, 1);
+            assertTrue(sequential.size() >= 3);
+            assertSameIndex(sequential, index(cd, 2));
+            assertSameIndex(sequential, index(cd, 5));
+            cd.enableMemoryMapping();
+            assertSameIndex(sequential, index(cd, 3));
+        } finally {
+            cd.close();
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2014-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.Nonnull;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.DiscItemSaverBuilder;
+import jpsxdec.discitems.IndexId;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.i18n.UnlocalizedMessage;
+import jpsxdec.util.DebugLogger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class DiscItemTreeTest {
+
+    public DiscItemTreeTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** Rates parents like the real items: files are parents of anything
+     * that isn't a file, videos are parents of audio. */
+    private static class FakeItem extends DiscItem {
+        private final GeneralType _type;
+        private DiscItem _parent;
+
+        public FakeItem(GeneralType type, int iStartSector, int iEndSector) {
+            super(null, iStartSector, iEndSector);
+            _type = type;
+        }
+
+        @Override
+        public int getParentRating(@Nonnull DiscItem child) {
+            if (_type == GeneralType.File) {
+                if (((FakeItem)child)._type == GeneralType.File)
+                    return 0;
+                return getOverlap(child)*100 / child.getSectorLength();
+            } else if (_type == GeneralType.Video) {
+                if (((FakeItem)child)._type != GeneralType.Audio)
+                    return 0;
+                int iOverlapPercent = child.getOverlap(this)*100 / child.getSectorLength();
+                if (iOverlapPercent > 0)
+                    iOverlapPercent += 100;
+                return iOverlapPercent;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean addChild(@Nonnull DiscItem child) {
+            ((FakeItem)child)._parent = this;
+            return true;
+        }
+
+        public String getSerializationTypeId() {
+            return _type.name();
+        }
+
+        public GeneralType getType() {
+            return _type;
+        }
+
+        public ILocalizedMessage getInterestingDescription() {
+            return new UnlocalizedMessage(_type.name());
+        }
+
+        public DiscItemSaverBuilder makeSaverBuilder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static List<DiscItem> makeItems(int iCount, long lngSeed) {
+        Random rand = new Random(lngSeed);
+        ArrayList<DiscItem> items = new ArrayList<DiscItem>(iCount);
+        int iSector = 0;
+        while (items.size() < iCount) {
+            int iLength = 1 + rand.nextInt(2000);
+            items.add(new FakeItem(DiscItem.GeneralType.File, iSector, iSector + iLength - 1));
+            // some items inside and across the file
+            int iInside = rand.nextInt(4);
+            for (int i = 0; i < iInside && items.size() < iCount; i++) {
+                int iStart = iSector - 50 + rand.nextInt(iLength + 50);
+                int iEnd = iStart + rand.nextInt(iLength);
+                DiscItem.GeneralType type = rand.nextBoolean() ? DiscItem.GeneralType.Video : DiscItem.GeneralType.Audio;
+                items.add(new FakeItem(type, Math.max(0, iStart), iEnd));
+            }
+            iSector += iLength;
+        }
+        return items;
+    }
+
+    /** The original O(n^2) search. */
+    private static DiscItem bruteForceParent(List<DiscItem> allItems, DiscItem child) {
+        DiscItem bestParent = null;
+        int iBestParentRating = 0;
+        for (DiscItem parent : allItems) {
+            int iRating = parent.getParentRating(child);
+            if (iRating > iBestParentRating) {
+                bestParent = parent;
+                iBestParentRating = iRating;
+            }
+        }
+        return bestParent;
+    }
+
+    @Test
+    public void buildTreeMatchesBruteForce() {
+        List<DiscItem> items = makeItems(5000, 1234);
+        ArrayList<DiscItem> expectedRoots = new ArrayList<DiscItem>();
+        DiscItem[] aoExpectedParents = new DiscItem[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            aoExpectedParents[i] = bruteForceParent(items, items.get(i));
+            if (aoExpectedParents[i] == null)
+                expectedRoots.add(items.get(i));
+        }
+
+        ArrayList<DiscItem> roots = DiscItemTree.buildTree(items);
+
+        assertEquals(expectedRoots, roots);
+        for (int i = 0; i < items.size(); i++) {
+            assertSame(aoExpectedParents[i], ((FakeItem)items.get(i))._parent);
+        }
+    }
+
+    @Test
+    public void recreateTreeMatchesBruteForce() {
+        List<DiscItem> items = makeItems(5000, 5678);
+        // files are named, some items are numbered under the last file,
+        // the rest are numbered at the root
+        IndexId rootId = new IndexId(0);
+        IndexId childId = null;
+        for (DiscItem item : items) {
+            if (item.getType() == DiscItem.GeneralType.File) {
+                item.setIndexId(new IndexId(new File("FILE" + item.getStartSector())));
+                childId = item.getIndexId().createChild();
+            } else if (childId != null && item.getStartSector() % 3 != 0) {
+                item.setIndexId(childId);
+                childId = childId.createNext();
+            } else {
+                item.setIndexId(rootId);
+                rootId = rootId.createNext();
+            }
+        }
+
+        ArrayList<DiscItem> expectedRoots = new ArrayList<DiscItem>();
+        DiscItem[] aoExpectedParents = new DiscItem[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            DiscItem child = items.get(i);
+            IndexId id = child.getIndexId();
+            if (!id.isRoot()) {
+                for (DiscItem possibleParent : items) {
+                    if (possibleParent != child && id.isParent(possibleParent.getIndexId())) {
+                        aoExpectedParents[i] = possibleParent;
+                        break;
+                    }
+                }
+            }
+            if (aoExpectedParents[i] == null)
+                expectedRoots.add(child);
+        }
+
+        ArrayList<DiscItem> roots = DiscItemTree.recreateTree(items, DebugLogger.Log);
+
+        assertEquals(expectedRoots, roots);
+        for (int i = 0; i < items.size(); i++) {
+            assertSame(aoExpectedParents[i], ((FakeItem)items.get(i))._parent);
+        }
+    }
+
+    /** Longer than any item {@link #makeItems(int, long)} creates. */
+    private static final int MAX_ITEM_LENGTH = 4000;
+
+    /** A large index, checked against the brute force search. Items that
+     * don't overlap the child always rate 0, so only the items that start
+     * close enough to overlap it need to be searched. */
+    @Test
+    public void buildTreeLargeIndex() {
+        final List<DiscItem> items = makeItems(100000, 42);
+        Integer[] aiByStart = new Integer[items.size()];
+        for (int i = 0; i < aiByStart.length; i++)
+            aiByStart[i] = Integer.valueOf(i);
+        Arrays.sort(aiByStart, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return items.get(o1.intValue()).getStartSector() - items.get(o2.intValue()).getStartSector();
+            }
+        });
+        int[] aiSortedStarts = new int[aiByStart.length];
+        for (int i = 0; i < aiByStart.length; i++)
+            aiSortedStarts[i] = items.get(aiByStart[i].intValue()).getStartSector();
+
+        ArrayList<DiscItem> expectedRoots = new ArrayList<DiscItem>();
+        DiscItem[] aoExpectedParents = new DiscItem[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            DiscItem child = items.get(i);
+            // the same choice as bruteForceParent(): the first item in the
+            // list with the highest rating
+            int iBestParent = -1;
+            int iBestParentRating = 0;
+            for (int iSorted = upperBound(aiSortedStarts, child.getEndSector()) - 1;
+                 iSorted >= 0; iSorted--)
+            {
+                if (aiSortedStarts[iSorted] < child.getStartSector() - MAX_ITEM_LENGTH)
+                    break;
+                int iPossibleParent = aiByStart[iSorted].intValue();
+                int iRating = items.get(iPossibleParent).getParentRating(child);
+                if (iRating > iBestParentRating ||
+                    (iRating > 0 && iRating == iBestParentRating && iPossibleParent < iBestParent))
+                {
+                    iBestParent = iPossibleParent;
+                    iBestParentRating = iRating;
+                }
+            }
+            if (iBestParent < 0)
+                expectedRoots.add(child);
+            else
+                aoExpectedParents[i] = items.get(iBestParent);
+        }
+
+        assertTrue(expectedRoots.size() < items.size());
+
+        ArrayList<DiscItem> roots = DiscItemTree.buildTree(items);
+
+        assertEquals(expectedRoots, roots);
+        for (int i = 0; i < items.size(); i++) {
+            assertSame(aoExpectedParents[i], ((FakeItem)items.get(i))._parent);
+        }
+    }
+
+    /** Index of the first value greater than iValue. */
+    private static int upperBound(int[] ai, int iValue) {
+        int iLow = 0, iHigh = ai.length;
+        while (iLow < iHigh) {
+            int iMid = (iLow + iHigh) >>> 1;
+            if (ai[iMid] <= iValue)
+                iLow = iMid + 1;
+            else
+                iHigh = iMid;
+        }
+        return iLow;
+    }
+}
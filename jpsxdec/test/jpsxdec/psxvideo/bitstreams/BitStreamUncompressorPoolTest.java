@@ -0,0 +1,149 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import jpsxdec.psxvideo.mdec.MdecInputStream.MdecCode;
+import jpsxdec.util.BinaryDataNotRecognized;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BitStreamUncompressorPoolTest {
+
+    public BitStreamUncompressorPoolTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** A 16x16 frame where every block is just a DC of 0. */
+    private static class FlatFrame extends MdecInputStream {
+        private boolean _blnDc = true;
+        @Override
+        public boolean readMdecCode(MdecCode code) {
+            if (_blnDc)
+                code.setBits(1, 0);
+            else
+                code.setToEndOfData();
+            _blnDc = !_blnDc;
+            return code.isEOD();
+        }
+    }
+
+    private static byte[] v2Frame() throws Exception {
+        return new BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2().compress(new FlatFrame(), 16, 16);
+    }
+
+    private static byte[] v3Frame() throws Exception {
+        return new BitStreamUncompressor_STRv3.BitStreamCompressor_STRv3().compress(new FlatFrame(), 16, 16);
+    }
+
+    @Test
+    public void reusesUncompressors() throws Exception {
+        byte[] abV2 = v2Frame();
+        byte[] abV3 = v3Frame();
+
+        BitStreamUncompressorPool pool = new BitStreamUncompressorPool();
+        assertNull(pool.getTypeName());
+
+        BitStreamUncompressor v2 = pool.reset(abV2);
+        assertEquals("STRv2", v2.getName());
+        assertEquals("STRv2", pool.getTypeName());
+        assertSame(v2, pool.reset(abV2));
+        v2.skipMacroBlocks(16, 16);
+
+        BitStreamUncompressor v3 = pool.reset(abV3);
+        assertEquals("STRv3", v3.getName());
+        assertEquals("STRv3", pool.getTypeName());
+        v3.skipMacroBlocks(16, 16);
+
+        assertSame(v2, pool.reset(abV2));
+        assertEquals("STRv2", pool.getTypeName());
+    }
+
+    @Test
+    public void typeHint() throws Exception {
+        assertEquals("STRv3", new BitStreamUncompressorPool("STRv3").getTypeName());
+        assertNull(new BitStreamUncompressorPool("bogus").getTypeName());
+        assertNull(new BitStreamUncompressorPool(null).getTypeName());
+
+        // a wrong hint still finds the right type
+        BitStreamUncompressorPool pool = new BitStreamUncompressorPool("Lain");
+        assertEquals("STRv2", pool.reset(v2Frame()).getName());
+        assertEquals("STRv2", pool.getTypeName());
+    }
+
+    @Test
+    public void identifyTypeName() throws Exception {
+        byte[] abV3 = v3Frame();
+        assertEquals("STRv3", BitStreamUncompressorPool.identifyTypeName(abV3, abV3.length));
+        assertNull(BitStreamUncompressorPool.identifyTypeName(new byte[32], 32));
+        assertTrue(BitStreamUncompressorPool.isTypeName("Iki"));
+        assertFalse(BitStreamUncompressorPool.isTypeName(null));
+    }
+
+    @Test
+    public void unrecognized() throws Exception {
+        BitStreamUncompressorPool pool = new BitStreamUncompressorPool("STRv2");
+        try {
+            pool.reset(new byte[32]);
+            fail("Expected exception");
+        } catch (BinaryDataNotRecognized ex) {
+            // expected
+        }
+        assertEquals("STRv2", pool.getTypeName());
+    }
+
+}
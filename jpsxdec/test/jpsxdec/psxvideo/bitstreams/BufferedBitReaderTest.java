@@ -0,0 +1,151 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import java.util.Random;
+import jpsxdec.psxvideo.mdec.MdecException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Checks that {@link BufferedBitReader} reads exactly the same bits as
+ * {@link ArrayBitReader}, including at the end of the stream. */
+public class BufferedBitReaderTest {
+
+    public BufferedBitReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void matchesArrayBitReaderLittleEndian() {
+        matchesArrayBitReader(true);
+    }
+
+    @Test
+    public void matchesArrayBitReaderBigEndian() {
+        matchesArrayBitReader(false);
+    }
+
+    private static void matchesArrayBitReader(boolean blnLittleEndian) {
+        Random rand = new Random(1234);
+        for (int iTrial = 0; iTrial < 500; iTrial++) {
+            byte[] abData = new byte[2 + rand.nextInt(100) * 2];
+            rand.nextBytes(abData);
+            int iStart = rand.nextInt(abData.length / 2) * 2;
+            ArrayBitReader expected = new ArrayBitReader(abData, abData.length, blnLittleEndian, iStart);
+            BufferedBitReader actual = new BufferedBitReader(abData, abData.length, blnLittleEndian, iStart);
+
+            for (int iOp = 0; ; iOp++) {
+                String sOp;
+                int iExpected, iActual;
+                boolean blnExpectedEnd = false, blnActualEnd = false;
+                int iCount = rand.nextInt(32);
+                int iWhich = rand.nextInt(5);
+                if (iWhich == 4)
+                    iCount = rand.nextInt(200); // long skip
+
+                try {
+                    switch (iWhich) {
+                        case 0:  iExpected = expected.readUnsignedBits(iCount); break;
+                        case 1:  iExpected = expected.readSignedBits(iCount); break;
+                        case 2:  iExpected = expected.peekUnsignedBits(iCount); break;
+                        default: expected.skipBits(iCount); iExpected = 0; break;
+                    }
+                } catch (MdecException.EndOfStream ex) {
+                    blnExpectedEnd = true;
+                    iExpected = 0;
+                }
+                try {
+                    switch (iWhich) {
+                        case 0:  iActual = actual.readUnsignedBits(iCount); break;
+                        case 1:  iActual = actual.readSignedBits(iCount); break;
+                        case 2:  iActual = actual.peekUnsignedBits(iCount); break;
+                        default: actual.skipBits(iCount); iActual = 0; break;
+                    }
+                } catch (MdecException.EndOfStream ex) {
+                    blnActualEnd = true;
+                    iActual = 0;
+                }
+
+                sOp = "Trial " + iTrial + " op " + iOp + " (" + iWhich + ", " + iCount + ")";
+                assertEquals(sOp + " end of stream", blnExpectedEnd, blnActualEnd);
+                assertEquals(sOp + " value", iExpected, iActual);
+                assertEquals(sOp + " bits read", expected.getBitsRead(), actual.getBitsRead());
+                assertEquals(sOp + " bits remaining", expected.getBitsRemaining(), actual.getBitsRemaining());
+                if (blnExpectedEnd)
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void peekPastEnd() throws MdecException.EndOfStream {
+        byte[] abData = { (byte)0xAB, (byte)0xCD };
+        BufferedBitReader reader = new BufferedBitReader(abData, abData.length, false, 0);
+        reader.skipBits(12);
+        assertEquals(0xD0, reader.peekUnsignedBits(8));
+        assertEquals(4, reader.getBitsRemaining());
+        assertEquals(0xD, reader.readUnsignedBits(4));
+        assertEquals(0, reader.getBitsRemaining());
+        try {
+            reader.peekUnsignedBits(1);
+            fail("Expected end of stream");
+        } catch (MdecException.EndOfStream ex) {
+            // expected
+        }
+    }
+
+}
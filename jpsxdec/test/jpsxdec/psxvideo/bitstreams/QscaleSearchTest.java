@@ -0,0 +1,209 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2;
+import jpsxdec.psxvideo.encode.MdecEncoder;
+import jpsxdec.psxvideo.encode.PsxYCbCrImage;
+import jpsxdec.psxvideo.mdec.MdecException;
+import jpsxdec.util.DebugLogger;
+import jpsxdec.util.IncompatibleException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QscaleSearchTest {
+
+    public QscaleSearchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static final int WIDTH = 64, HEIGHT = 48;
+
+    /** Gradient with noise so the size changes with every qscale. */
+    private static MdecEncoder makeEncoder() {
+        BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random rand = new Random(1234);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = Math.min(255, x * 4 + rand.nextInt(32));
+                int g = Math.min(255, y * 5 + rand.nextInt(64));
+                int b = rand.nextInt(256);
+                bi.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return new MdecEncoder(new PsxYCbCrImage(bi), WIDTH, HEIGHT);
+    }
+
+    /** Same as the search should find by compressing every candidate in order. */
+    private static byte[] firstFit(BitStreamCompressor_STRv2 compressor, MdecEncoder encoder,
+                                   int[][] aaiCandidates, int iMaxSize)
+            throws Exception
+    {
+        for (int[] aiQscales : aaiCandidates) {
+            byte[] ab;
+            try {
+                ab = compressor.makeCopy().compress(encoder.getStream(aiQscales, aiQscales), WIDTH, HEIGHT);
+            } catch (MdecException.TooMuchEnergy ex) {
+                continue;
+            }
+            if (ab.length <= iMaxSize)
+                return ab;
+        }
+        return null;
+    }
+
+    private static void assertSameAsInOrder(BitStreamCompressor_STRv2 compressor,
+                                            int[][] aaiCandidates)
+            throws Exception
+    {
+        MdecEncoder encoder = makeEncoder();
+        byte[] abBest = firstFit(compressor, encoder, aaiCandidates, Integer.MAX_VALUE);
+        byte[] abWorst = firstFit(compressor, encoder, new int[][] {aaiCandidates[aaiCandidates.length-1]}, Integer.MAX_VALUE);
+        for (int iMaxSize = abWorst.length - 20; iMaxSize < abBest.length + 20; iMaxSize += 37) {
+            byte[] abExpected = firstFit(compressor, encoder, aaiCandidates, iMaxSize);
+            byte[] abActual = compressor.compressFull(new byte[iMaxSize], "0", encoder, DebugLogger.Log);
+            assertArrayEquals("Max size " + iMaxSize, abExpected, abActual);
+            if (abExpected != null)
+                assertTrue(compressor.getMdecCodesFromLastCompress() > 0);
+        }
+    }
+
+    @Test
+    public void strV2() throws Exception {
+        assertSameAsInOrder(new BitStreamCompressor_STRv2(), QscaleSearch.singleQscaleCandidates(1));
+    }
+
+    @Test
+    public void strV3() throws Exception {
+        assertSameAsInOrder(new BitStreamUncompressor_STRv3.BitStreamCompressor_STRv3(),
+                            QscaleSearch.singleQscaleCandidates(1));
+    }
+
+    /** Has too much energy to compress below or above a qscale. */
+    private static class TooMuchEnergyCompressor extends BitStreamCompressor_STRv2 {
+        private final int _iMinQscale, _iMaxQscale;
+        private int _iBlockQscale;
+
+        public TooMuchEnergyCompressor(int iMinQscale, int iMaxQscale) {
+            _iMinQscale = iMinQscale;
+            _iMaxQscale = iMaxQscale;
+        }
+
+        @Override
+        protected void setBlockQscale(int iBlock, int iQscale) throws IncompatibleException {
+            _iBlockQscale = iQscale;
+            super.setBlockQscale(iBlock, iQscale);
+        }
+
+        @Override
+        protected String encodeDC(int iDC, int iBlock) throws MdecException.TooMuchEnergy {
+            if (_iBlockQscale < _iMinQscale || _iBlockQscale > _iMaxQscale)
+                throw new MdecException.TooMuchEnergy("qscale " + _iBlockQscale);
+            return super.encodeDC(iDC, iBlock);
+        }
+
+        @Override
+        protected TooMuchEnergyCompressor makeCopy() {
+            return new TooMuchEnergyCompressor(_iMinQscale, _iMaxQscale);
+        }
+    }
+
+    private static QscaleSearch.Result search(BitStreamCompressor_STRv2 compressor,
+                                              boolean blnSkipTooMuchEnergy)
+            throws Exception
+    {
+        QscaleSearch search = new QscaleSearch(compressor, makeEncoder(), null,
+                QscaleSearch.singleQscaleCandidates(1), Integer.MAX_VALUE, blnSkipTooMuchEnergy);
+        return search.search("0", DebugLogger.Log);
+    }
+
+    @Test
+    public void tooMuchEnergySkipped() throws Exception {
+        QscaleSearch.Result result = search(new TooMuchEnergyCompressor(10, 63), true);
+        assertNotNull(result);
+        assertEquals(9, result.iCandidate);
+    }
+
+    @Test
+    public void tooMuchEnergyNotSkipped() throws Exception {
+        try {
+            search(new TooMuchEnergyCompressor(10, 63), false);
+            fail("Expected RuntimeException");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof MdecException.TooMuchEnergy);
+        }
+    }
+
+    /** Doesn't matter after the candidate found, same as trying in order. */
+    @Test
+    public void tooMuchEnergyAfterFound() throws Exception {
+        QscaleSearch.Result result = search(new TooMuchEnergyCompressor(1, 1), false);
+        assertNotNull(result);
+        assertEquals(0, result.iCandidate);
+    }
+
+    @Test
+    public void singleQscaleCandidates() {
+        int[][] aai = QscaleSearch.singleQscaleCandidates(60);
+        assertEquals(4, aai.length);
+        assertArrayEquals(new int[] {60, 60, 60, 60, 60, 60}, aai[0]);
+        assertArrayEquals(new int[] {63, 63, 63, 63, 63, 63}, aai[3]);
+    }
+
+}
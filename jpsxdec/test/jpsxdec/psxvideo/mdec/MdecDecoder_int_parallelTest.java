@@ -0,0 +1,177 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import jpsxdec.psxvideo.encode.MacroBlockEncoder;
+import jpsxdec.psxvideo.encode.MdecEncoder;
+import jpsxdec.psxvideo.encode.PsxYCbCrImage;
+import jpsxdec.psxvideo.mdec.idct.IDCT_int;
+import jpsxdec.psxvideo.mdec.idct.PsxMdecIDCT_int;
+import jpsxdec.psxvideo.mdec.idct.SimpleIDCT;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MdecDecoder_int_parallelTest {
+
+    public MdecDecoder_int_parallelTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static MdecEncoder encode(int iWidth, int iHeight, long lngSeed) {
+        Random rand = new Random(lngSeed);
+        BufferedImage bi = new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < iHeight; y++) {
+            for (int x = 0; x < iWidth; x++) {
+                bi.setRGB(x, y, rand.nextInt());
+            }
+        }
+        MdecEncoder enc = new MdecEncoder(new PsxYCbCrImage(bi), iWidth, iHeight);
+        int[] aiQscales = { 1, 1, 2, 2, 3, 3 };
+        for (MacroBlockEncoder mb : enc) {
+            mb.setToFullEncode(aiQscales);
+        }
+        return enc;
+    }
+
+    /** Ends the stream after a number of codes. */
+    private static class TruncatedStream extends MdecInputStream {
+        private final MdecInputStream _source;
+        private int _iCodesLeft;
+
+        public TruncatedStream(MdecInputStream source, int iCodes) {
+            _source = source;
+            _iCodesLeft = iCodes;
+        }
+
+        @Override
+        public boolean readMdecCode(MdecCode code) throws MdecException.EndOfStream, MdecException.ReadCorruption {
+            if (_iCodesLeft-- <= 0)
+                throw new MdecException.EndOfStream("Truncated");
+            return _source.readMdecCode(code);
+        }
+    }
+
+    private static int[] decode(MdecDecoder decoder, MdecInputStream stream,
+                                int iWidth, int iHeight)
+            throws Exception
+    {
+        try {
+            decoder.decode(stream);
+        } catch (MdecException.EndOfStream ex) {
+            // remaining blocks are filled in anyway
+        }
+        int[] aiRgb = new int[iWidth * iHeight];
+        decoder.readDecodedRgb(iWidth, iHeight, aiRgb);
+        return aiRgb;
+    }
+
+    private static void assertSameAsSerial(int iWidth, int iHeight, int iThreads,
+                                           int iTruncateCodes)
+            throws Exception
+    {
+        MdecEncoder enc = encode(iWidth, iHeight, iWidth * 31 + iHeight);
+
+        IDCT_int[] aoIdcts = new IDCT_int[iThreads];
+        for (int i = 0; i < aoIdcts.length; i++)
+            aoIdcts[i] = new PsxMdecIDCT_int();
+        MdecDecoder serial = new MdecDecoder_int(new PsxMdecIDCT_int(), iWidth, iHeight);
+        MdecDecoder parallel = new MdecDecoder_int_parallel(aoIdcts, iWidth, iHeight);
+
+        MdecInputStream serialStream = enc.getStream(), parallelStream = enc.getStream();
+        if (iTruncateCodes >= 0) {
+            serialStream = new TruncatedStream(serialStream, iTruncateCodes);
+            parallelStream = new TruncatedStream(parallelStream, iTruncateCodes);
+        }
+        int[] aiExpected = decode(serial, serialStream, iWidth, iHeight);
+        int[] aiActual = decode(parallel, parallelStream, iWidth, iHeight);
+        for (int i = 0; i < aiExpected.length; i++) {
+            if (aiExpected[i] != aiActual[i])
+                fail(iWidth + "x" + iHeight + " pixel " + i + " differs");
+        }
+    }
+
+    @Test
+    public void sameAsSerial() throws Exception {
+        assertSameAsSerial(320, 240, 4, -1);
+        assertSameAsSerial(640, 480, 3, -1);
+        assertSameAsSerial(16, 16, 4, -1);
+        assertSameAsSerial(208, 144, 7, -1);
+    }
+
+    @Test
+    public void truncatedSameAsSerial() throws Exception {
+        assertSameAsSerial(320, 240, 4, 5000);
+        assertSameAsSerial(64, 48, 2, 10);
+    }
+
+    @Test
+    public void reuseDecoder() throws Exception {
+        int iWidth = 96, iHeight = 64;
+        IDCT_int[] aoIdcts = { new SimpleIDCT(), new SimpleIDCT() };
+        MdecDecoder serial = new MdecDecoder_int(new SimpleIDCT(), iWidth, iHeight);
+        MdecDecoder parallel = new MdecDecoder_int_parallel(aoIdcts, iWidth, iHeight);
+        for (int i = 0; i < 3; i++) {
+            MdecEncoder enc = encode(iWidth, iHeight, i);
+            int[] aiExpected = decode(serial, enc.getStream(), iWidth, iHeight);
+            int[] aiActual = decode(parallel, enc.getStream(), iWidth, iHeight);
+            assertArrayEquals(aiExpected, aiActual);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec.idct;
+
+import java.util.Arrays;
+import java.util.Random;
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** The strided sparse IDCT must match the full IDCT exactly. */
+public class SparseIdctTest {
+
+    public SparseIdctTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static final int STRIDE = 13, OFFSET = 5;
+
+    /** Random block with every coefficient after the zig-zag position
+     * being zero. The coefficient at the position is non-zero. */
+    private static int[] makeBlock(Random rand, int iLastZigZagPos) {
+        int[] aiBlock = new int[64];
+        for (int i = 0; i <= iLastZigZagPos; i++) {
+            if (i == iLastZigZagPos || rand.nextInt(3) == 0)
+                aiBlock[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i]] = rand.nextInt(2047) - 1023;
+        }
+        if (aiBlock[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[iLastZigZagPos]] == 0)
+            aiBlock[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[iLastZigZagPos]] = 1;
+        return aiBlock;
+    }
+
+    private static void assertSameInt(IDCT_int full, IDCT_int sparse) {
+        Random rand = new Random(64);
+        for (int iTry = 0; iTry < 20; iTry++) {
+            for (int iPos = 0; iPos < 64; iPos++) {
+                int[] aiBlock = makeBlock(rand, iPos);
+                int[] aiExpected = new int[64];
+                full.IDCT(aiBlock.clone(), 0, aiExpected);
+
+                int[] aiOut = new int[OFFSET + STRIDE * 8];
+                Arrays.fill(aiOut, 12345);
+                sparse.IDCT(aiBlock.clone(), iPos, aiOut, OFFSET, STRIDE);
+                for (int y = 0; y < 8; y++) {
+                    for (int x = 0; x < 8; x++) {
+                        assertEquals("pos " + iPos + " " + x + "," + y,
+                                     aiExpected[x + y * 8], aiOut[OFFSET + x + y * STRIDE]);
+                    }
+                    // nothing outside of the block is touched
+                    if (y < 7)
+                        assertEquals(12345, aiOut[OFFSET + 8 + y * STRIDE]);
+                }
+            }
+        }
+    }
+
+    private static void assertSameDouble(IDCT_double full, IDCT_double sparse) {
+        Random rand = new Random(64);
+        for (int iTry = 0; iTry < 20; iTry++) {
+            for (int iPos = 0; iPos < 64; iPos++) {
+                int[] aiBlock = makeBlock(rand, iPos);
+                double[] adblBlock = new double[64];
+                for (int i = 0; i < 64; i++)
+                    adblBlock[i] = aiBlock[i] * 1.125;
+                double[] adblExpected = new double[64];
+                full.IDCT(adblBlock.clone(), 0, adblExpected);
+
+                double[] adblOut = new double[OFFSET + STRIDE * 8];
+                sparse.IDCT(adblBlock.clone(), iPos, adblOut, OFFSET, STRIDE);
+                for (int y = 0; y < 8; y++) {
+                    for (int x = 0; x < 8; x++) {
+                        assertEquals("pos " + iPos + " " + x + "," + y,
+                                     adblExpected[x + y * 8], adblOut[OFFSET + x + y * STRIDE], 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void simpleIdct() {
+        assertSameInt(new SimpleIDCT(), new SimpleIDCT());
+    }
+
+    @Test
+    public void psxMdecIdctInt() {
+        assertSameInt(new PsxMdecIDCT_int(), new PsxMdecIDCT_int());
+    }
+
+    @Test
+    public void psxMdecIdctDouble() {
+        assertSameDouble(new PsxMdecIDCT_double(), new PsxMdecIDCT_double());
+    }
+
+    @Test
+    public void stephensIdct() {
+        assertSameDouble(new StephensIDCT(), new StephensIDCT());
+    }
+
+}
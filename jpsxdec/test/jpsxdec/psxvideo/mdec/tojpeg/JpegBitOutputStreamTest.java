@@ -0,0 +1,128 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec.tojpeg;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JpegBitOutputStreamTest {
+
+    public JpegBitOutputStreamTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    /** Writes one bit at a time, the simple way. */
+    private static class SimpleBitWriter {
+        private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+        private int _iByte, _iBits;
+
+        public void write(int iValue, int iBits) {
+            for (int i = iBits - 1; i >= 0; i--) {
+                _iByte = (_iByte << 1) | ((iValue >> i) & 1);
+                _iBits++;
+                if (_iBits == 8)
+                    writeByte();
+            }
+        }
+
+        private void writeByte() {
+            _out.write(_iByte);
+            if (_iByte == 0xff)
+                _out.write(0);
+            _iByte = 0;
+            _iBits = 0;
+        }
+
+        public byte[] toByteArray() {
+            if (_iBits > 0) {
+                _iByte <<= 8 - _iBits;
+                writeByte();
+            }
+            return _out.toByteArray();
+        }
+    }
+
+    @Test
+    public void stuffing() throws Exception {
+        JpegBitOutputStream bits = new JpegBitOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bits.innerStream = out;
+        bits.write(0xff, 8);
+        bits.write(0x7f, 7);
+        bits.write(0x1, 1);
+        bits.write(0xffff, 16);
+        bits.write(0x12, 8);
+        bits.write(0x7, 3);
+        bits.flush();
+        assertArrayEquals(new byte[] {(byte)0xff, 0, (byte)0xff, 0, (byte)0xff, 0, (byte)0xff, 0, 0x12, (byte)0xe0},
+                          out.toByteArray());
+    }
+
+    @Test
+    public void randomBits() throws Exception {
+        Random rand = new Random(2017);
+        JpegBitOutputStream bits = new JpegBitOutputStream();
+        for (int iRun = 0; iRun < 50; iRun++) {
+            SimpleBitWriter expected = new SimpleBitWriter();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            bits.innerStream = out;
+            int iWrites = rand.nextInt(20000);
+            for (int i = 0; i < iWrites; i++) {
+                int iBits = rand.nextInt(16) + 1;
+                // lots of 1 bits to make lots of 0xff bytes
+                int iValue = rand.nextInt(4) == 0 ? rand.nextInt(1 << iBits) : (1 << iBits) - 1;
+                bits.write(iValue, iBits);
+                expected.write(iValue, iBits);
+            }
+            bits.flush();
+            assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        }
+    }
+
+}
@@ -0,0 +1,404 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jpsxdec.sectors;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.cdreaders.CdSector2048;
+import jpsxdec.cdreaders.CdSector2336;
+import jpsxdec.cdreaders.CdSector2352;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import testutil.SyntheticDisc;
+
+public class SectorClassifierTest {
+
+    public SectorClassifierTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    /** The chain of constructors that {@link SectorClassifier} replaced. */
+    private static IdentifiedSector identifyContextFree(CdSector cdSector) {
+        IdentifiedSector id;
+        if ((id = new SectorXaAudio(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorXaNull(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorStrVideo(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorISO9660DirectoryRecords(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorISO9660VolumePrimaryDescriptor(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorCdAudio(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorFF8.SectorFF8Video(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorFF8.SectorFF8Audio(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorFF9.SectorFF9Video(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorFF9.SectorFF9Audio(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorIkiVideo(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorChronoXAudio(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorChronoXVideo(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorChronoXVideoNull(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorAceCombat3Video(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorLainVideo(cdSector)).getProbability() > 0) return id;
+        if ((id = new SectorCrusader(cdSector)).getProbability() > 0) return id;
+        return null;
+    }
+
+    /** The old chain of types tested after Gran Turismo identification. */
+    private static IdentifiedSector identifyContextFreeAfterGT(CdSector cdSector) {
+        IdentifiedSector id;
+        if ((id = new SectorFF7Video(cdSector)).getProbability() > 0) return id;
+
+        SectorAliceNullVideo nullAlice = new SectorAliceNullVideo(cdSector);
+        if (nullAlice.getProbability() > 0) {
+            id = new SectorAliceVideo(cdSector);
+            if (id.getProbability() == 0)
+                id = nullAlice;
+            return id;
+        }
+        return null;
+    }
+
+    private static final int TEMPLATE_COUNT = 14;
+
+    private static final int[] CHECKED_FIELDS = { 0, 4, 6, 8, 12, 16, 18, 20, 22, 24, 26, 28, 34, 74 };
+
+    /** Fills the start of the user data with something close to the
+     * header of one of the sector types, then maybe breaks it a little. */
+    private static void fillUserData(byte[] abUserData, int iTemplate, Random rand) {
+        rand.nextBytes(abUserData);
+        int iFrame = 1 + rand.nextInt(300);
+        switch (iTemplate) {
+            case 0: // STR
+                videoFirst16(abUserData, SectorStrVideo.VIDEO_SECTOR_MAGIC, rand, iFrame);
+                put16(abUserData, 16, 16 + rand.nextInt(640));
+                put16(abUserData, 18, 16 + rand.nextInt(480));
+                put16(abUserData, 20, 1 + rand.nextInt(5000));
+                put16(abUserData, 22, 0x3800);
+                put16(abUserData, 24, 1 + rand.nextInt(40));
+                put16(abUserData, 26, rand.nextInt(5));
+                put32(abUserData, 28, rand.nextBoolean() ? 0 : rand.nextInt());
+                break;
+            case 1: // IKI
+                videoFirst16(abUserData, SectorStrVideo.VIDEO_SECTOR_MAGIC, rand, iFrame);
+                int iWidth = 16 + rand.nextInt(640), iHeight = 16 + rand.nextInt(480);
+                put16(abUserData, 16, iWidth);
+                put16(abUserData, 18, iHeight);
+                put16(abUserData, 20, 1 + rand.nextInt(5000));
+                put16(abUserData, 22, 0x3800);
+                put16(abUserData, 24, iWidth);
+                put16(abUserData, 26, iHeight);
+                put32(abUserData, 28, 0);
+                break;
+            case 2: // Lain
+                put32(abUserData, 0, SectorStrVideo.VIDEO_SECTOR_MAGIC);
+                put16(abUserData, 4, rand.nextInt(10));
+                put16(abUserData, 6, 9 + rand.nextInt(2));
+                put32(abUserData, 8, iFrame);
+                put32(abUserData, 12, rand.nextBoolean() ? 18144 : 20160);
+                put16(abUserData, 16, 320);
+                put16(abUserData, 18, 240);
+                abUserData[20] = (byte)rand.nextInt(64);
+                abUserData[21] = (byte)rand.nextInt(64);
+                put16(abUserData, 22, rand.nextBoolean() ? 0x3800 : 0);
+                put16(abUserData, 24, rand.nextInt(5000));
+                put16(abUserData, 26, 0);
+                put32(abUserData, 28, 0);
+                break;
+            case 3: // FF7
+                put32(abUserData, 0, SectorStrVideo.VIDEO_SECTOR_MAGIC);
+                put16(abUserData, 4, rand.nextInt(3));
+                put16(abUserData, 6, 6 + rand.nextInt(5));
+                put32(abUserData, 8, iFrame);
+                put32(abUserData, 12, 2500 + rand.nextInt(18500));
+                put16(abUserData, 16, rand.nextBoolean() ? 320 : 640);
+                put16(abUserData, 18, new int[] {224, 192, 240}[rand.nextInt(3)]);
+                if (rand.nextBoolean()) {
+                    put32(abUserData, 20, 0);
+                    put32(abUserData, 24, 0);
+                }
+                put32(abUserData, 28, 0);
+                put16(abUserData, rand.nextBoolean() ? 34 : 74, 0x3800);
+                break;
+            case 4: // Chrono Cross video
+                videoFirst16(abUserData, rand.nextBoolean() ? SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC1
+                                                             : SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC2,
+                             rand, iFrame);
+                put16(abUserData, 16, 320);
+                put16(abUserData, 18, 224);
+                put16(abUserData, 20, 1 + rand.nextInt(5000));
+                put16(abUserData, 22, 0x3800);
+                put16(abUserData, 24, 1 + rand.nextInt(40));
+                put16(abUserData, 26, 2);
+                put32(abUserData, 28, 0);
+                break;
+            case 5: // Chrono Cross null video
+                put32(abUserData, 0, rand.nextBoolean() ? SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC1
+                                                        : SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC2);
+                put16(abUserData, 4, rand.nextInt(10));
+                put16(abUserData, 6, 1 + rand.nextInt(10));
+                put16(abUserData, 8, iFrame);
+                Arrays.fill(abUserData, 10, 32, (byte)0xff);
+                break;
+            case 6: // FF8
+                abUserData[0] = 'S';
+                abUserData[1] = 'M';
+                abUserData[2] = (byte)"JNRX".charAt(rand.nextInt(4));
+                abUserData[3] = 1;
+                abUserData[4] = (byte)rand.nextInt(10);
+                abUserData[5] = 9;
+                put16(abUserData, 6, iFrame);
+                break;
+            case 7: // FF9 video
+                videoFirst16(abUserData, SectorFF9.SectorFF9Video.VIDEO_CHUNK_MAGIC, rand, iFrame);
+                put16(abUserData, 16, 320);
+                put16(abUserData, 18, 224);
+                put16(abUserData, 22, 0x3800);
+                put16(abUserData, 24, 1 + rand.nextInt(40));
+                put16(abUserData, 26, 2);
+                break;
+            case 8: // FF9 audio
+                videoFirst16(abUserData, SectorFF9.SectorFF9Audio.FF9_AUDIO_CHUNK_MAGIC, rand, iFrame);
+                break;
+            case 9: // Chrono Cross audio, which shares its magic with Alice
+                put32(abUserData, 0, new long[] {
+                    SectorChronoXAudio.AUDIO_CHUNK_MAGIC1, SectorChronoXAudio.AUDIO_CHUNK_MAGIC2,
+                    SectorChronoXAudio.AUDIO_CHUNK_MAGIC3, SectorChronoXAudio.AUDIO_CHUNK_MAGIC4,
+                }[rand.nextInt(4)]);
+                put16(abUserData, 4, rand.nextInt(2));
+                put16(abUserData, 6, 2);
+                put16(abUserData, 8, iFrame);
+                break;
+            case 10: // Ace Combat 3
+                abUserData[0] = 1;
+                abUserData[1] = (byte)rand.nextInt(10);
+                put16(abUserData, 2, 1 + rand.nextInt(10));
+                put16(abUserData, 6, 0xffff - iFrame);
+                put16(abUserData, 8, 320);
+                put16(abUserData, 10, 176);
+                put32(abUserData, 12, 0);
+                break;
+            case 11: // Crusader (big-endian)
+                abUserData[0] = (byte)0xAA;
+                abUserData[1] = (byte)0xBB;
+                abUserData[2] = (byte)0xCC;
+                abUserData[3] = (byte)0xDD;
+                Arrays.fill(abUserData, 4, 6, (byte)0);
+                put16(abUserData, 6, rand.nextInt(15000));
+                break;
+            case 12: // Alice
+                put32(abUserData, 0, SectorAliceNullVideo.ALICE_VIDEO_SECTOR_MAGIC);
+                put16(abUserData, 4, rand.nextInt(10));
+                put16(abUserData, 6, 3 + rand.nextInt(10));
+                put32(abUserData, 8, rand.nextBoolean() ? 0xFFFF : iFrame);
+                Arrays.fill(abUserData, 16, 32, (byte)0);
+                break;
+            default: // 13: just random data
+                break;
+        }
+        // break a field now and then
+        int iBreaks = rand.nextInt(4) - 1;
+        for (int i = 0; i < iBreaks; i++) {
+            int iPos = CHECKED_FIELDS[rand.nextInt(CHECKED_FIELDS.length)];
+            switch (rand.nextInt(4)) {
+                case 0: put16(abUserData, iPos, 0); break;
+                case 1: put16(abUserData, iPos, 0xffff); break;
+                case 2: abUserData[iPos] ^= 1 << rand.nextInt(8); break;
+                default: put32(abUserData, iPos & ~3, SectorStrVideo.VIDEO_SECTOR_MAGIC); break;
+            }
+        }
+    }
+
+    private static void videoFirst16(byte[] abUserData, long lngMagic, Random rand, int iFrame) {
+        put32(abUserData, 0, lngMagic);
+        int iChunks = 1 + rand.nextInt(10);
+        put16(abUserData, 4, rand.nextInt(iChunks));
+        put16(abUserData, 6, iChunks);
+        put32(abUserData, 8, iFrame);
+        put32(abUserData, 12, 1 + rand.nextInt(20000));
+    }
+
+    private static void put16(byte[] ab, int iPos, int i) {
+        ab[iPos  ] = (byte)i;
+        ab[iPos+1] = (byte)(i >> 8);
+    }
+
+    private static void put32(byte[] ab, int iPos, long lng) {
+        put16(ab, iPos, (int)lng);
+        put16(ab, iPos + 2, (int)(lng >> 16));
+    }
+
+    private static String describe(IdentifiedSector id) {
+        if (id == null)
+            return "null";
+        return id.getClass().getName() + " " + id.getProbability() + " " + id;
+    }
+
+    private static String identifyWithChain(CdSector cdSector) {
+        try {
+            IdentifiedSector id = identifyContextFree(cdSector);
+            return describe(id) + " / " + (id == null ? describe(identifyContextFreeAfterGT(cdSector)) : "");
+        } catch (RuntimeException ex) {
+            return ex.getClass().getName();
+        }
+    }
+
+    private static String identifyWithClassifier(SectorClassifier classifier, CdSector cdSector) {
+        try {
+            IdentifiedSector id = classifier.identifyBeforeGT(cdSector);
+            return describe(id) + " / " + (id == null ? describe(classifier.identifyAfterGT(cdSector)) : "");
+        } catch (RuntimeException ex) {
+            return ex.getClass().getName();
+        }
+    }
+
+    private static void assertSameIdentification(SectorClassifier classifier, CdSector cdSector,
+                                          Class<?>[] aoTypes, int[] aiHits)
+    {
+        String sExpected = identifyWithChain(cdSector);
+        assertEquals(cdSector.toString(), sExpected, identifyWithClassifier(classifier, cdSector));
+        for (int i = 0; i < aoTypes.length; i++) {
+            if (sExpected.contains(aoTypes[i].getName() + " "))
+                aiHits[i]++;
+        }
+    }
+
+    /** Every sub-mode byte, with and without a damaged sub-header copy,
+     * for raw, 2336 and 2048 byte sectors, mode 1 and CD audio, with
+     * headers of all the sector types. */
+    @Test
+    public void sameAsConstructorChain() {
+        Class<?>[] aoTypes = {
+            SectorStrVideo.class, SectorIkiVideo.class, SectorLainVideo.class,
+            SectorFF7Video.class, SectorChronoXVideo.class,
+        };
+        int[] aiHits = new int[aoTypes.length];
+
+        // most of these sectors are full of errors
+        Logger log = Logger.getLogger("jpsxdec");
+        Level oldLevel = log.getLevel();
+        log.setLevel(Level.OFF);
+        try {
+            checkAllSectors(aoTypes, aiHits);
+        } finally {
+            log.setLevel(oldLevel);
+        }
+
+        // make sure the sectors actually exercised the types in question
+        for (int i = 0; i < aoTypes.length; i++)
+            assertTrue(aoTypes[i].getName() + " never identified", aiHits[i] > 0);
+    }
+
+    /** The hit counts are the sectors the iterator actually returned,
+     * whether the sectors are identified in order or in parallel. */
+    @Test
+    public void hitCountsMatchReturnedSectors() throws Exception {
+        CdFileSectorReader cd = new CdFileSectorReader(SyntheticDisc.write(400));
+        try {
+            for (int iThreads = 1; iThreads <= 4; iThreads += 3) {
+                IdentifiedSectorIterator it = IdentifiedSectorIterator.create(
+                        cd, 0, cd.getLength() - 1, iThreads);
+                int iIdentified = 0;
+                try {
+                    while (it.hasNext()) {
+                        if (it.next() != null)
+                            iIdentified++;
+                    }
+                } finally {
+                    it.close();
+                }
+                assertTrue(iIdentified > 0);
+                assertEquals(iIdentified, it.getClassifier().getTotalHitCount());
+            }
+        } finally {
+            cd.close();
+        }
+    }
+
+    private static void checkAllSectors(Class<?>[] aoTypes, int[] aiHits) {
+        SectorClassifier classifier = new SectorClassifier();
+        Random rand = new Random(3);
+        byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+        for (int iSubMode = 0; iSubMode < 256; iSubMode++) {
+            for (int iTemplate = 0; iTemplate < TEMPLATE_COUNT; iTemplate++) {
+                for (int iVariant = 0; iVariant < 4; iVariant++) {
+                    fillUserData(abUserData, iTemplate, rand);
+                    byte[] abSector = SyntheticDisc.makeMode2Sector(iVariant, 1, rand.nextInt(40),
+                                                                    iSubMode, rand.nextInt(256), abUserData);
+                    if (iVariant == 3) // disagreeing sub-header copies
+                        abSector[16 + 4 * rand.nextInt(2) + rand.nextInt(4)] ^= 1 << rand.nextInt(8);
+
+                    assertSameIdentification(classifier,
+                            new CdSector2352(abSector, 0, iVariant, 0), aoTypes, aiHits);
+                    assertSameIdentification(classifier,
+                            new CdSector2336(abSector, 16, iVariant, 0), aoTypes, aiHits);
+                }
+            }
+        }
+
+        for (int iTemplate = 0; iTemplate < TEMPLATE_COUNT; iTemplate++) {
+            for (int iVariant = 0; iVariant < 64; iVariant++) {
+                fillUserData(abUserData, iTemplate, rand);
+
+                assertSameIdentification(classifier,
+                        new CdSector2048(abUserData, 0, iVariant, 0), aoTypes, aiHits);
+
+                // the sync header doesn't match, so it's CD audio
+                byte[] abCdAudio = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+                System.arraycopy(abUserData, 0, abCdAudio, 0, abUserData.length);
+                assertSameIdentification(classifier,
+                        new CdSector2352(abCdAudio, 0, iVariant, 0), aoTypes, aiHits);
+
+                byte[] abMode1 = SyntheticDisc.makeMode2Sector(iVariant, 0, 0, 0, 0, abUserData);
+                abMode1[15] = 1;
+                System.arraycopy(abUserData, 0, abMode1, 16, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1);
+                assertSameIdentification(classifier,
+                        new CdSector2352(abMode1, 0, iVariant, 0), aoTypes, aiHits);
+            }
+        }
+    }
+
+}
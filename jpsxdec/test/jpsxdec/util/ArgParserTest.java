@@ -102,4 +102,30 @@ public class ArgParserTest {
         assertNull(sh.value);
     }
 
+    /** The batch command passes its matched -threads on to each disc this way. */
+    @Test
+    public void testCopyAppend() {
+        ArgParser ap = new ArgParser(new String[] {"-threads", "8", "-vf", "avi"});
+        StringHolder threads = ap.addStringOption("-threads");
+        ap.match();
+        assertEquals("8", threads.value);
+
+        ArgParser copy = ap.copyAppend("-threads", "2");
+        StringHolder vf = copy.addStringOption("-vf");
+        StringHolder copyThreads = copy.addStringOption("-threads");
+        copy.match();
+        assertEquals("avi", vf.value);
+        assertEquals("2", copyThreads.value);
+        assertFalse(copy.hasRemaining());
+
+        // the original is unchanged
+        assertTrue(ap.hasRemaining());
+        threads = ap.addStringOption("-threads");
+        ap.match();
+        assertNull(threads.value);
+
+        copy = new ArgParser(null).copyAppend("-a");
+        assertTrue(copy.hasRemaining());
+    }
+
 }
@@ -0,0 +1,214 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util.aviwriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+import jpsxdec.util.IO;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AviWriterOpenDmlTest {
+
+    private static final int WIDTH = 16, HEIGHT = 16;
+    private static final AudioFormat AUDIO_FORMAT = new AudioFormat(18900, 16, 2, true, false);
+
+    public AviWriterOpenDmlTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** Writes frames with audio in between, repeating every 10th frame.
+     * @return total number of frames. */
+    private static int writeAvi(File file, long lngMaxRiffSize, int iFrames) throws IOException {
+        AviWriterDIB avi = new AviWriterDIB(file, WIDTH, HEIGHT, 15, 1, AUDIO_FORMAT);
+        if (lngMaxRiffSize > 0)
+            avi.setMaxRiffSize(lngMaxRiffSize);
+        int[] aiRgb = new int[WIDTH * HEIGHT];
+        byte[] abAudio = new byte[1260 * 4];
+        int iTotal = 0;
+        for (int i = 0; i < iFrames; i++) {
+            Arrays.fill(aiRgb, i);
+            avi.writeFrameRGB(aiRgb, 0, WIDTH);
+            iTotal++;
+            if (i % 10 == 9) {
+                avi.repeatPreviousFrame();
+                iTotal++;
+            }
+            avi.writeAudio(abAudio);
+        }
+        avi.close();
+        return iTotal;
+    }
+
+    private static int fourcc(String s) {
+        return AVIstruct.string2int(s);
+    }
+
+    private static int int32(byte[] ab, int i) {
+        return IO.readSInt32LE(ab, i);
+    }
+
+    private static long int64(byte[] ab, int i) {
+        return (int32(ab, i) & 0xffffffffL) | ((long)int32(ab, i + 4) << 32);
+    }
+
+    /** Finds the first position of the fourcc in the header area. */
+    private static int find(byte[] ab, String s) {
+        int iFourcc = fourcc(s);
+        for (int i = 0; i < 16384; i++) {
+            if (int32(ab, i) == iFourcc)
+                return i;
+        }
+        return -1;
+    }
+
+    @Test
+    public void smallAviIsAvi10() throws IOException {
+        File file = File.createTempFile("avi10", ".avi");
+        try {
+            int iFrames = writeAvi(file, 0, 30);
+            byte[] ab = IO.readFile(file);
+            assertEquals(fourcc("RIFF"), int32(ab, 0));
+            assertEquals(ab.length, int32(ab, 4) + 8);
+            assertEquals(fourcc("AVI "), int32(ab, 8));
+
+            // OpenDML structures are left as junk
+            int iOdml = find(ab, "odml");
+            assertEquals(fourcc("JUNK"), int32(ab, iOdml - 8));
+            assertEquals(-1, find(ab, "indx"));
+
+            // avih dwTotalFrames
+            int iAvih = find(ab, "avih");
+            assertEquals(iFrames, int32(ab, iAvih + 8 + 16));
+
+            // idx1 is the last chunk
+            int iMovi = find(ab, "movi");
+            int iIdx1 = iMovi - 4 + int32(ab, iMovi - 4) + 4;
+            assertEquals(fourcc("idx1"), int32(ab, iIdx1));
+            int iEntries = int32(ab, iIdx1 + 4) / 16;
+            assertEquals(iFrames + 30, iEntries);
+            assertEquals(ab.length, iIdx1 + 8 + iEntries * 16);
+            for (int i = 0; i < iEntries; i++) {
+                int iEntry = iIdx1 + 8 + i * 16;
+                int iChunk = iMovi + int32(ab, iEntry + 8);
+                assertEquals(int32(ab, iEntry), int32(ab, iChunk));
+                assertEquals(int32(ab, iEntry + 12), int32(ab, iChunk + 4));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void largeAviIsOpenDml() throws IOException {
+        final long MAX_RIFF = 64 * 1024;
+        File file = File.createTempFile("opendml", ".avi");
+        try {
+            int iFrames = writeAvi(file, MAX_RIFF, 200);
+            byte[] ab = IO.readFile(file);
+
+            // walk the RIFF segments
+            int iSegments = 0;
+            int iPos = 0;
+            while (iPos < ab.length) {
+                assertEquals(fourcc("RIFF"), int32(ab, iPos));
+                assertEquals(fourcc(iSegments == 0 ? "AVI " : "AVIX"), int32(ab, iPos + 8));
+                int iSize = int32(ab, iPos + 4);
+                assertTrue(iSize <= MAX_RIFF);
+                iPos += 8 + iSize;
+                iSegments++;
+            }
+            assertEquals(ab.length, iPos);
+            assertTrue(iSegments > 2);
+
+            int iOdml = find(ab, "odml");
+            assertEquals(fourcc("LIST"), int32(ab, iOdml - 8));
+            assertEquals(iFrames, int32(ab, iOdml + 12));
+
+            int iAvih = find(ab, "avih");
+            int iFirstRiffFrames = int32(ab, iAvih + 8 + 16);
+            assertTrue(iFirstRiffFrames > 0 && iFirstRiffFrames < iFrames);
+
+            // check the video super index and all its standard indexes
+            int iIndx = find(ab, "indx");
+            assertEquals(iSegments, int32(ab, iIndx + 12));
+            assertEquals(fourcc("00dc"), int32(ab, iIndx + 16));
+            int iDuration = 0;
+            for (int i = 0; i < iSegments; i++) {
+                int iEntry = iIndx + 32 + i * 16;
+                int iIx = (int)int64(ab, iEntry);
+                assertEquals(fourcc("ix00"), int32(ab, iIx));
+                assertEquals(int32(ab, iEntry + 8), int32(ab, iIx + 4) + 8);
+                int iEntries = int32(ab, iIx + 12);
+                assertEquals(int32(ab, iEntry + 12), iEntries);
+                long lngBase = int64(ab, iIx + 20);
+                for (int j = 0; j < iEntries; j++) {
+                    int iChunk = (int)(lngBase + int32(ab, iIx + 32 + j * 8)) - 8;
+                    assertEquals(fourcc("00dc"), int32(ab, iChunk));
+                    assertEquals(int32(ab, iIx + 32 + j * 8 + 4), int32(ab, iChunk + 4));
+                }
+                iDuration += iEntries;
+            }
+            assertEquals(iFrames, iDuration);
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util.player;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ObjectPlayStreamTest {
+
+    public ObjectPlayStreamTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static final int COUNT = 200000;
+
+    @Test
+    public void itemsArriveInOrder() throws Exception {
+        final ObjectPlayStream<Integer> stream = new ObjectPlayStream<Integer>(4);
+        stream.readerOpen();
+        final boolean[] ablnWritten = new boolean[1];
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int i = 0; i < COUNT; i++) {
+                        if (!stream.write(Integer.valueOf(i)))
+                            return;
+                    }
+                    ablnWritten[0] = true;
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                } finally {
+                    stream.writerClose();
+                }
+            }
+        });
+        writer.start();
+
+        Integer o;
+        int iExpected = 0;
+        while ((o = stream.read()) != null) {
+            assertEquals(iExpected, o.intValue());
+            iExpected++;
+        }
+        writer.join();
+        assertTrue(ablnWritten[0]);
+        assertEquals(COUNT, iExpected);
+        assertTrue(stream.isReaderClosed());
+    }
+
+    @Test
+    public void closingReaderReleasesFullWriter() throws Exception {
+        final ObjectPlayStream<Integer> stream = new ObjectPlayStream<Integer>(2);
+        stream.readerPause();
+        assertTrue(stream.write(Integer.valueOf(1)));
+        assertTrue(stream.write(Integer.valueOf(2)));
+        final boolean[] ablnResult = {true};
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    // blocks because the queue is full
+                    ablnResult[0] = stream.write(Integer.valueOf(3));
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        writer.start();
+        Thread.sleep(50);
+        stream.readerClose();
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        assertFalse(ablnResult[0]);
+        assertNull(stream.read());
+
+        // reopening starts with an empty queue
+        stream.writerOpen();
+        stream.readerOpen();
+        assertTrue(stream.write(Integer.valueOf(4)));
+        assertEquals(4, stream.read().intValue());
+    }
+
+}
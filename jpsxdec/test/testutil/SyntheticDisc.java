@@ -0,0 +1,232 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package testutil;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import jpsxdec.audio.XaAdpcmDecoder;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector2352;
+import jpsxdec.cdreaders.SectorErrorCorrection;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2;
+import jpsxdec.psxvideo.encode.MacroBlockEncoder;
+import jpsxdec.psxvideo.encode.MdecEncoder;
+import jpsxdec.psxvideo.encode.PsxYCbCrImage;
+import jpsxdec.sectors.SectorStrVideo;
+import jpsxdec.util.IO;
+
+/** Writes small disc images with real content (STR video, XA audio and
+ * plain data) so tests don't need any (copyrighted) disc images. */
+public class SyntheticDisc {
+
+    private static final int STR_HEADER_SIZE = 32;
+    private static final int STR_PAYLOAD_SIZE =
+            CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1 - STR_HEADER_SIZE;
+    private static final int FRAME_WIDTH = 128;
+    private static final int FRAME_HEIGHT = 96;
+    /** Every 8th sector of a video is XA audio. */
+    private static final int XA_STRIDE = 8;
+
+    private static final byte[] SYNC_HEADER = {
+        (byte)0x00, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF,
+        (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0x00
+    };
+
+    /** Writes a disc image of raw 2352 byte sectors. The first quarter is
+     * plain data, followed by a video interleaved with XA audio, some
+     * random data, and an XA audio stream on its own.
+     * The file is deleted when the JVM exits. */
+    public static File write(int iSectorCount) throws Exception {
+        byte[][] aabFrames = new byte[3][];
+        for (int i = 0; i < aabFrames.length; i++)
+            aabFrames[i] = makeFrame(i);
+
+        int iVideoStart = iSectorCount / 4;
+        int iVideoEnd = iSectorCount / 2;
+        int iAudioStart = iSectorCount * 3 / 4;
+
+        Random rand = new Random(iSectorCount);
+        File file = File.createTempFile("SyntheticDisc", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            byte[] abUserData = new byte[CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2];
+            int iFrame = 0, iChunk = 0;
+            for (int iSector = 0; iSector < iSectorCount; iSector++) {
+                byte[] abSector;
+                if (iSector >= iAudioStart || (iSector >= iVideoStart && iSector < iVideoEnd && iSector % XA_STRIDE == 0)) {
+                    int iChannel = iSector >= iAudioStart ? 2 : 1;
+                    abSector = makeMode2Sector(iSector, 1, iChannel,
+                            SubMode.MASK_REAL_TIME | SubMode.MASK_FORM | SubMode.MASK_AUDIO,
+                            0x01, makeXaAdpcm(4, false, rand));
+                } else if (iSector >= iVideoStart && iSector < iVideoEnd) {
+                    byte[] abFrame = aabFrames[iFrame % aabFrames.length];
+                    int iChunks = abFrame.length / STR_PAYLOAD_SIZE;
+                    Arrays.fill(abUserData, (byte)0);
+                    IO.writeInt32LE(abUserData, 0, SectorStrVideo.VIDEO_SECTOR_MAGIC);
+                    IO.writeInt16LE(abUserData, 4, (short)iChunk);
+                    IO.writeInt16LE(abUserData, 6, (short)iChunks);
+                    IO.writeInt32LE(abUserData, 8, iFrame + 1);
+                    IO.writeInt32LE(abUserData, 12, (abFrame.length + 3) & ~3);
+                    IO.writeInt16LE(abUserData, 16, (short)FRAME_WIDTH);
+                    IO.writeInt16LE(abUserData, 18, (short)FRAME_HEIGHT);
+                    // the rest of the sector header is a copy of the frame header
+                    System.arraycopy(abFrame, 0, abUserData, 20, 8);
+                    System.arraycopy(abFrame, iChunk * STR_PAYLOAD_SIZE, abUserData, STR_HEADER_SIZE, STR_PAYLOAD_SIZE);
+                    int iSubMode = SubMode.MASK_REAL_TIME | SubMode.MASK_DATA;
+                    if (iChunk == iChunks - 1)
+                        iSubMode |= SubMode.MASK_EOF_MARKER;
+                    abSector = makeMode2Sector(iSector, 1, 1, iSubMode, 0, abUserData);
+                    iChunk++;
+                    if (iChunk == iChunks) {
+                        iChunk = 0;
+                        iFrame++;
+                    }
+                } else {
+                    rand.nextBytes(abUserData);
+                    abSector = makeMode2Sector(iSector, 0, 0, SubMode.MASK_DATA, 0, abUserData);
+                }
+                fos.write(abSector);
+            }
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    /** Encodes a frame and pads it to fill the last sector. */
+    private static byte[] makeFrame(int iSeed) throws Exception {
+        Random rand = new Random(iSeed);
+        BufferedImage bi = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < FRAME_HEIGHT; y++) {
+            for (int x = 0; x < FRAME_WIDTH; x++)
+                bi.setRGB(x, y, ((x + iSeed * 7) & 0xff) << 16 | ((y * 2) & 0xff) << 8 | (rand.nextInt() & 0x3f));
+        }
+        MdecEncoder encoder = new MdecEncoder(new PsxYCbCrImage(bi), FRAME_WIDTH, FRAME_HEIGHT);
+        int[] aiQscale = { 4, 4, 4, 4, 4, 4 };
+        for (MacroBlockEncoder macblk : encoder)
+            macblk.setToFullEncode(aiQscale);
+        byte[] abFrame = new BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2()
+                .compress(encoder.getStream(), FRAME_WIDTH, FRAME_HEIGHT);
+        int iSectors = (abFrame.length + STR_PAYLOAD_SIZE - 1) / STR_PAYLOAD_SIZE;
+        byte[] abPadded = new byte[iSectors * STR_PAYLOAD_SIZE];
+        System.arraycopy(abFrame, 0, abPadded, 0, abFrame.length);
+        return abPadded;
+    }
+
+    /** A sector of random XA ADPCM with consistent sound parameters.
+     * @param blnReservedRanges Also use the reserved ranges 13 to 15,
+     *                          which real discs shouldn't have. */
+    public static byte[] makeXaAdpcm(int iBitsPerSample, boolean blnReservedRanges, Random rand) {
+        int iRanges = blnReservedRanges ? 16 : 13;
+        byte[] ab = new byte[XaAdpcmDecoder.SIZEOF_ADPCM_SECTOR];
+        rand.nextBytes(ab);
+        for (int iOfs = 0; iOfs < ab.length; iOfs += XaAdpcmDecoder.SIZEOF_SOUND_GROUP) {
+            if (iBitsPerSample == 4) {
+                // 0,1,2,3, 0,1,2,3, 4,5,6,7, 4,5,6,7
+                for (int i = 0; i < 4; i++) {
+                    ab[iOfs + i] = ab[iOfs + 4 + i] = (byte)((rand.nextInt(4) << 4) | rand.nextInt(iRanges));
+                    ab[iOfs + 8 + i] = ab[iOfs + 12 + i] = (byte)((rand.nextInt(4) << 4) | rand.nextInt(iRanges));
+                }
+            } else {
+                // 0,1,2,3, 0,1,2,3, 0,1,2,3, 0,1,2,3
+                for (int i = 0; i < 4; i++) {
+                    ab[iOfs + i] = ab[iOfs + 4 + i] =
+                    ab[iOfs + 8 + i] = ab[iOfs + 12 + i] = (byte)((rand.nextInt(4) << 4) | rand.nextInt(iRanges));
+                }
+            }
+        }
+        return ab;
+    }
+
+    /** Builds a raw mode 1 sector with valid header and error correction. */
+    public static byte[] makeMode1Sector(int iSector, byte[] abUserData) {
+        byte[] abSector = makeHeader(iSector, 1);
+        System.arraycopy(abUserData, 0, abSector, 16,
+                         Math.min(abUserData.length, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1));
+        // unlike mode 2, the header is covered by the EDC and ECC
+        long lngEdc = SectorErrorCorrection.generateErrorDetectionAndCorrection(abSector, 0, 0x810);
+        for (int i = 0; i < 4; i++)
+            abSector[0x810 + i] = (byte)(lngEdc >> (i * 8));
+        SectorErrorCorrection.generateErrorCorrectionCode_P(abSector, 12, abSector, 0x81C);
+        SectorErrorCorrection.generateErrorCorrectionCode_Q(abSector, 12, abSector, 0x8C8);
+        return abSector;
+    }
+
+    /** Builds a raw mode 2 sector with valid header and error correction. */
+    public static byte[] makeMode2Sector(int iSector, int iFile, int iChannel,
+                                         int iSubMode, int iCodingInfo, byte[] abUserData)
+    {
+        byte[] abSector = makeHeader(iSector, 2);
+        for (int i = 16; i < 24; i += 4) {
+            abSector[i    ] = (byte)iFile;
+            abSector[i + 1] = (byte)iChannel;
+            abSector[i + 2] = (byte)iSubMode;
+            abSector[i + 3] = (byte)iCodingInfo;
+        }
+        int iForm = (iSubMode & SubMode.MASK_FORM) == 0 ? 1 : 2;
+        int iUserDataSize = iForm == 1 ? CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1
+                                       : CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM2;
+        System.arraycopy(abUserData, 0, abSector, 24, Math.min(abUserData.length, iUserDataSize));
+        CdSector2352.rebuildErrorCorrection(abSector, iForm);
+        return abSector;
+    }
+
+    /** Sector with only the sync header and header filled in. */
+    private static byte[] makeHeader(int iSector, int iMode) {
+        byte[] abSector = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+        System.arraycopy(SYNC_HEADER, 0, abSector, 0, SYNC_HEADER.length);
+        // sector addresses start after the 2 second pregap
+        int iAddress = iSector + 150;
+        abSector[12] = toBcd(iAddress / 75 / 60);
+        abSector[13] = toBcd((iAddress / 75) % 60);
+        abSector[14] = toBcd(iAddress % 75);
+        abSector[15] = (byte)iMode;
+        return abSector;
+    }
+
+    private static byte toBcd(int i) {
+        return (byte)(((i / 10) << 4) | (i % 10));
+    }
+
+}